@@ -0,0 +1,100 @@
+package com.formulario.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generación y validación de tokens de examen contra la implementación original (un Mac nuevo
+ * por llamada y hexadecimal con StringBuilder).
+ * <p>
+ * Se corre con el perfil benchmark:
+ * {@code mvn -Pbenchmark test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.formulario.util.ExamenTokenUtilBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExamenTokenUtilBenchmark {
+
+    private static final String SECRETO = "default-secret-key-change-in-production-2024";
+
+    private long examenId;
+    private String token;
+
+    @Setup
+    public void preparar() {
+        examenId = 123456L;
+        token = ExamenTokenUtil.generarToken(examenId);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String generarActual() {
+        return ExamenTokenUtil.generarToken(examenId);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String generarOriginal() throws Exception {
+        return generarOriginal(examenId);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Long validarActual() {
+        return ExamenTokenUtil.validarYExtraerId(token);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Long validarOriginal() throws Exception {
+        String decodificado = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        int separador = decodificado.lastIndexOf('-');
+        String id = decodificado.substring(0, separador);
+        return hashOriginal(id).equals(decodificado.substring(separador + 1)) ? Long.parseLong(id) : null;
+    }
+
+    private static String generarOriginal(long examenId) throws Exception {
+        String token = examenId + "-" + hashOriginal(Long.toString(examenId));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String hashOriginal(String valor) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRETO.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        byte[] hashBytes = mac.doFinal(valor.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder();
+        for (byte b : hashBytes) {
+            String h = Integer.toHexString(0xff & b);
+            if (h.length() == 1) {
+                hex.append('0');
+            }
+            hex.append(h);
+        }
+        return hex.substring(0, 16);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ExamenTokenUtilBenchmark.class.getSimpleName()).build()).run();
+    }
+}
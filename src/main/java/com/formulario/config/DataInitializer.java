@@ -8,15 +8,19 @@ import com.formulario.repository.LocalidadRepository;
 import com.formulario.repository.UsuarioRepository;
 import com.formulario.repository.PreguntaRepository;
 import com.formulario.service.AuthService;
+import com.formulario.service.EstadisticasExamenesService;
+import com.formulario.service.BancoPreguntasService;
 import com.formulario.service.ExamenService;
 import com.formulario.service.RecomendacionService;
 import com.formulario.service.RolProfesionalService;
 import com.formulario.service.ConfiguracionService;
+import com.formulario.service.RenovacionLinksService;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -46,12 +50,18 @@ public class DataInitializer implements CommandLineRunner {
     @Autowired
     private AuthService authService;
     
+    @Autowired
+    private EstadisticasExamenesService estadisticasExamenesService;
+    
     @Autowired
     private PreguntaRepository preguntaRepository;
     
     @Autowired
     private ExamenService examenService;
     
+    @Autowired
+    private BancoPreguntasService bancoPreguntasService;
+    
     @Autowired
     private RecomendacionService recomendacionService;
     
@@ -60,9 +70,18 @@ public class DataInitializer implements CommandLineRunner {
     
     @Autowired
     private ConfiguracionService configuracionService;
+    
+    @Autowired
+    private RenovacionLinksService renovacionLinksService;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
 
     @Override
     public void run(String... args) throws Exception {
+        // Alinear la secuencia de respuestas con los IDs existentes (antes se generaban con IDENTITY)
+        alinearSecuenciaRespuestas();
+        
         // Cargar provincias argentinas si no existen
         if (provinciaRepository.count() == 0) {
             cargarProvinciasArgentinas();
@@ -85,6 +104,12 @@ public class DataInitializer implements CommandLineRunner {
             examenService.inicializarPreguntasEjemplo();
         }
         
+        // Precargar el banco de preguntas en memoria para que el primer examen no consulte la BD
+        bancoPreguntasService.obtenerBanco();
+        
+        // Reconstruir el resumen de estadísticas del dashboard (solo si está habilitado)
+        estadisticasExamenesService.reconstruir();
+        
         // Inicializar posiciones laborales de ejemplo
         logger.info("🔄 Inicializando posiciones laborales de ejemplo...");
         recomendacionService.inicializarPosicionesEjemplo();
@@ -93,6 +118,9 @@ public class DataInitializer implements CommandLineRunner {
         logger.info("🔄 Inicializando roles profesionales de ejemplo...");
         rolProfesionalService.inicializarRolesEjemplo();
         
+        // Indexar el catálogo: vincular por título los roles que aún no tienen posición laboral
+        rolProfesionalService.vincularRolesConPosiciones();
+        
         // Crear usuario administrador solo si no existe
         if (usuarioRepository.findByUsername("admin").isEmpty()) {
             logger.info("🔄 Usuario admin no existe, creando por primera vez...");
@@ -104,6 +132,26 @@ public class DataInitializer implements CommandLineRunner {
         // Inicializar configuraciones del sistema
         logger.info("🔄 Inicializando configuraciones del sistema...");
         configuracionService.inicializarConfiguracionesPorDefecto();
+        
+        // Retomar la renovación masiva de links si el último arranque la cortó a mitad de camino
+        renovacionLinksService.reanudarPendiente();
+    }
+
+    /**
+     * La secuencia respuestas_examen_seq la crea Hibernate empezando en 1; en bases con respuestas
+     * previas se adelanta hasta el mayor ID para que los bloques de 50 IDs no choquen con filas existentes.
+     */
+    private void alinearSecuenciaRespuestas() {
+        try {
+            Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM respuestas_examen", Long.class);
+            Long valorActual = jdbcTemplate.queryForObject("SELECT last_value FROM respuestas_examen_seq", Long.class);
+            if (maxId != null && valorActual != null && valorActual < maxId) {
+                jdbcTemplate.queryForObject("SELECT setval('respuestas_examen_seq', ?)", Long.class, maxId);
+                logger.info("✅ Secuencia respuestas_examen_seq alineada al ID " + maxId);
+            }
+        } catch (Exception e) {
+            logger.warn("⚠️ No se pudo verificar la secuencia respuestas_examen_seq: " + e.getMessage());
+        }
     }
 
     private void cargarProvinciasArgentinas() {
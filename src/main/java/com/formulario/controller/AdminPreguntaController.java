@@ -5,6 +5,7 @@ import com.formulario.model.Pregunta;
 import com.formulario.model.Usuario;
 import com.formulario.repository.OpcionRepository;
 import com.formulario.repository.PreguntaRepository;
+import com.formulario.service.BancoPreguntasService;
 import com.formulario.service.FileUploadService;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -34,6 +35,9 @@ public class AdminPreguntaController {
     @Autowired
     private FileUploadService fileUploadService;
     
+    @Autowired
+    private BancoPreguntasService bancoPreguntasService;
+    
     /**
      * Verifica que el usuario sea administrador
      */
@@ -42,6 +46,16 @@ public class AdminPreguntaController {
         return usuarioSesion != null && usuarioSesion.getRol() == Usuario.Rol.ADMIN;
     }
     
+    /**
+     * Acota la dificultad recibida del formulario al rango válido (básica por defecto)
+     */
+    private Integer normalizarDificultad(Integer dificultad) {
+        if (dificultad == null) {
+            return Pregunta.DIFICULTAD_BASICA;
+        }
+        return Math.max(Pregunta.DIFICULTAD_BASICA, Math.min(Pregunta.DIFICULTAD_AVANZADA, dificultad));
+    }
+    
     /**
      * Muestra la lista de todas las preguntas
      */
@@ -211,6 +225,7 @@ public class AdminPreguntaController {
             @RequestParam String opcion3,
             @RequestParam String opcion4,
             @RequestParam(required = false) Boolean activa,
+            @RequestParam(required = false) Integer dificultad,
             @RequestParam(required = false) MultipartFile imagenFile,
             HttpSession session,
             Model model,
@@ -239,6 +254,7 @@ public class AdminPreguntaController {
             pregunta.setAreaConocimiento(areaConocimiento);
             pregunta.setOpcionCorrecta(opcionCorrecta);
             pregunta.setActiva(activa != null && activa);
+            pregunta.setDificultad(normalizarDificultad(dificultad));
             
             // Procesar imagen subida
             if (imagenFile != null && !imagenFile.isEmpty()) {
@@ -269,6 +285,7 @@ public class AdminPreguntaController {
             opcionRepository.saveAll(opciones);
             pregunta.setOpciones(opciones);
             preguntaRepository.save(pregunta);
+            bancoPreguntasService.reconstruirTrasCommit();
             
             redirectAttributes.addFlashAttribute("mensaje", "Pregunta creada exitosamente.");
         } catch (Exception e) {
@@ -294,6 +311,7 @@ public class AdminPreguntaController {
             @RequestParam String opcion3,
             @RequestParam String opcion4,
             @RequestParam(required = false) Boolean activa,
+            @RequestParam(required = false) Integer dificultad,
             @RequestParam(required = false) MultipartFile imagenFile,
             @RequestParam(required = false) String eliminarImagen,
             HttpSession session,
@@ -327,6 +345,7 @@ public class AdminPreguntaController {
             pregunta.setAreaConocimiento(areaConocimiento);
             pregunta.setOpcionCorrecta(opcionCorrecta);
             pregunta.setActiva(activa != null && activa);
+            pregunta.setDificultad(normalizarDificultad(dificultad));
             
             // Manejar imagen: eliminar si se solicita
             if (eliminarImagen != null && "true".equals(eliminarImagen)) {
@@ -375,6 +394,7 @@ public class AdminPreguntaController {
             opcionRepository.saveAll(nuevasOpciones);
             pregunta.setOpciones(nuevasOpciones);
             preguntaRepository.save(pregunta);
+            bancoPreguntasService.reconstruirTrasCommit();
             
             redirectAttributes.addFlashAttribute("mensaje", "Pregunta actualizada exitosamente.");
         } catch (Exception e) {
@@ -409,6 +429,7 @@ public class AdminPreguntaController {
             Pregunta pregunta = preguntaOpt.get();
             pregunta.setActiva(false);
             preguntaRepository.save(pregunta);
+            bancoPreguntasService.reconstruirTrasCommit();
             
             redirectAttributes.addFlashAttribute("mensaje", "Pregunta eliminada (desactivada) exitosamente.");
         } catch (Exception e) {
@@ -493,6 +514,10 @@ public class AdminPreguntaController {
                 }
             }
             
+            if (totalEliminadas > 0) {
+                bancoPreguntasService.reconstruirTrasCommit();
+            }
+            
             redirectAttributes.addFlashAttribute("mensaje", 
                 "Limpieza completada. Se eliminaron " + totalEliminadas + " opciones duplicadas.");
         } catch (Exception e) {
@@ -3,6 +3,9 @@ package com.formulario.controller;
 import com.formulario.model.RolProfesional;
 import com.formulario.model.Usuario;
 import com.formulario.repository.RolProfesionalRepository;
+import com.formulario.service.MatrizCompatibilidadRolesService;
+import com.formulario.service.RolProfesionalService;
+import com.formulario.service.VersionCatalogoService;
 import jakarta.servlet.http.HttpSession;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,6 +25,15 @@ public class AdminRolProfesionalController {
     @Autowired
     private RolProfesionalRepository rolProfesionalRepository;
     
+    @Autowired
+    private VersionCatalogoService versionCatalogoService;
+    
+    @Autowired
+    private MatrizCompatibilidadRolesService matrizCompatibilidadRolesService;
+    
+    @Autowired
+    private RolProfesionalService rolProfesionalService;
+    
     /**
      * Verifica que el usuario sea administrador
      */
@@ -150,6 +162,9 @@ public class AdminRolProfesionalController {
         try {
             rol.setActivo(activo != null && activo);
             rolProfesionalRepository.save(rol);
+            rolProfesionalService.vincularRolesConPosiciones();
+            versionCatalogoService.registrarCambio();
+            matrizCompatibilidadRolesService.reconstruirTrasCommit();
             redirectAttributes.addFlashAttribute("mensaje", "Rol profesional creado exitosamente.");
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("error", "Error al crear el rol profesional: " + e.getMessage());
@@ -219,6 +234,9 @@ public class AdminRolProfesionalController {
             rolExistente.setActivo(activo != null && activo);
             
             rolProfesionalRepository.save(rolExistente);
+            rolProfesionalService.vincularRolesConPosiciones();
+            versionCatalogoService.registrarCambio();
+            matrizCompatibilidadRolesService.reconstruirTrasCommit();
             redirectAttributes.addFlashAttribute("mensaje", "Rol profesional actualizado exitosamente.");
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("error", "Error al actualizar el rol profesional: " + e.getMessage());
@@ -252,6 +270,8 @@ public class AdminRolProfesionalController {
             RolProfesional rol = rolOpt.get();
             rol.setActivo(false);
             rolProfesionalRepository.save(rol);
+            versionCatalogoService.registrarCambio();
+            matrizCompatibilidadRolesService.reconstruirTrasCommit();
             
             redirectAttributes.addFlashAttribute("mensaje", "Rol profesional eliminado (desactivado) exitosamente.");
         } catch (Exception e) {
@@ -2,12 +2,14 @@ package com.formulario.controller;
 
 import com.formulario.model.Examen;
 import com.formulario.model.Pregunta;
+import com.formulario.model.PreguntaBanco;
 import com.formulario.model.Localidad;
 import com.formulario.model.LocalidadDTO;
 import com.formulario.model.Provincia;
 import com.formulario.service.FormularioService;
 import com.formulario.service.LocalidadService;
 import com.formulario.service.ExamenService;
+import com.formulario.service.RecalculoPuntuacionesService;
 import com.formulario.repository.ExamenRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -24,7 +26,6 @@ import java.util.ArrayList;
 import java.util.stream.Collectors;
 import com.formulario.model.RespuestaExamen;
 import com.formulario.model.Opcion;
-import java.util.Objects;
 import com.formulario.model.InscripcionDTO;
 import com.formulario.model.Persona;
 import com.formulario.repository.PersonaRepository;
@@ -45,6 +46,9 @@ public class ApiController {
     @Autowired
     private ExamenService examenService;
     
+    @Autowired
+    private RecalculoPuntuacionesService recalculoPuntuacionesService;
+    
     @Autowired
     private ExamenRepository examenRepository;
     
@@ -127,36 +131,27 @@ public class ApiController {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
             }
             
-            List<Pregunta> preguntas = examenService.generarPreguntasExamen();
-            logger.info("Preguntas generadas para examen {}: {}", identificador, preguntas.size());
+            // Sorteo congelado por examen: las recargas devuelven las mismas preguntas desde caché
+            List<PreguntaBanco> preguntas = examenService.obtenerPreguntasExamen(examen);
+            logger.info("Preguntas asignadas al examen {}: {}", identificador, preguntas.size());
             
             // Crear una lista de preguntas simplificada para evitar problemas de serialización
             List<Map<String, Object>> preguntasSimplificadas = new ArrayList<>();
-            for (Pregunta pregunta : preguntas) {
+            for (PreguntaBanco pregunta : preguntas) {
                 Map<String, Object> preguntaMap = new HashMap<>();
                 preguntaMap.put("id", pregunta.getId());
                 preguntaMap.put("enunciado", pregunta.getEnunciado());
                 preguntaMap.put("areaConocimiento", pregunta.getAreaConocimiento());
                 preguntaMap.put("opcionCorrecta", pregunta.getOpcionCorrecta());
                 
-                // Agregar opciones (ordenadas por el campo orden)
+                // Agregar opciones (el banco de preguntas ya las entrega ordenadas por el campo orden)
                 List<Map<String, Object>> opcionesList = new ArrayList<>();
-                if (pregunta.getOpciones() != null) {
-                    // Ordenar opciones por el campo orden antes de agregarlas
-                    List<Opcion> opcionesOrdenadas = pregunta.getOpciones().stream()
-                        .sorted((o1, o2) -> Integer.compare(
-                            o1.getOrden() != null ? o1.getOrden() : 0,
-                            o2.getOrden() != null ? o2.getOrden() : 0
-                        ))
-                        .collect(Collectors.toList());
-                    
-                    for (var opcion : opcionesOrdenadas) {
-                        Map<String, Object> opcionMap = new HashMap<>();
-                        opcionMap.put("id", opcion.getId());
-                        opcionMap.put("texto", opcion.getTexto());
-                        opcionMap.put("orden", opcion.getOrden());
-                        opcionesList.add(opcionMap);
-                    }
+                for (PreguntaBanco.OpcionBanco opcion : pregunta.getOpciones()) {
+                    Map<String, Object> opcionMap = new HashMap<>();
+                    opcionMap.put("id", opcion.getId());
+                    opcionMap.put("texto", opcion.getTexto());
+                    opcionMap.put("orden", opcion.getOrden());
+                    opcionesList.add(opcionMap);
                 }
                 preguntaMap.put("opciones", opcionesList);
                 preguntasSimplificadas.add(preguntaMap);
@@ -205,21 +200,19 @@ public class ApiController {
     @GetMapping("/debug/preguntas")
     public ResponseEntity<String> debugPreguntas() {
         try {
-            List<Pregunta> preguntas = examenService.generarPreguntasExamen();
+            List<PreguntaBanco> preguntas = examenService.generarPreguntasExamen();
             StringBuilder result = new StringBuilder();
             result.append("Total de preguntas generadas: ").append(preguntas.size()).append("\n\n");
             
             for (int i = 0; i < Math.min(preguntas.size(), 5); i++) {
-                Pregunta pregunta = preguntas.get(i);
+                PreguntaBanco pregunta = preguntas.get(i);
                 result.append("Pregunta ").append(i + 1).append(":\n");
                 result.append("  ID: ").append(pregunta.getId()).append("\n");
                 result.append("  Área: ").append(pregunta.getAreaConocimiento()).append("\n");
                 result.append("  Enunciado: ").append(pregunta.getEnunciado()).append("\n");
-                result.append("  Opciones: ").append(pregunta.getOpciones() != null ? pregunta.getOpciones().size() : 0).append("\n");
-                if (pregunta.getOpciones() != null) {
-                    for (var opcion : pregunta.getOpciones()) {
-                        result.append("    - ").append(opcion.getOrden()).append(": ").append(opcion.getTexto()).append("\n");
-                    }
+                result.append("  Opciones: ").append(pregunta.getOpciones().size()).append("\n");
+                for (var opcion : pregunta.getOpciones()) {
+                    result.append("    - ").append(opcion.getOrden()).append(": ").append(opcion.getTexto()).append("\n");
                 }
                 result.append("\n");
             }
@@ -390,54 +383,19 @@ public class ApiController {
         }
     }
     
-    // Endpoint para recalcular puntuaciones de todos los exámenes
+    // Endpoint para recalcular puntuaciones de todos los exámenes: lanza el proceso por lotes en segundo plano
+    // (retoma desde el último checkpoint salvo reiniciar=true) y el avance se consulta en /recalcular-puntuaciones/estado
     @PostMapping("/recalcular-puntuaciones")
-    public ResponseEntity<String> recalcularPuntuaciones() {
-        try {
-            List<Examen> examenes = examenRepository.findAll();
-            StringBuilder result = new StringBuilder();
-            result.append("Recalculando puntuaciones para ").append(examenes.size()).append(" exámenes...\n\n");
-            
-            int examenesActualizados = 0;
-            for (Examen examen : examenes) {
-                if (examen.getFechaFin() != null && examen.getRespuestas() != null && !examen.getRespuestas().isEmpty()) {
-                    // Forzar la carga de las respuestas
-                    examen.getRespuestas().size();
-                    
-                    // Guardar puntuaciones originales para comparar
-                    Integer pbOriginal = examen.getProgramacionBasica();
-                    Integer edOriginal = examen.getEstructurasDatos();
-                    Integer algOriginal = examen.getAlgoritmos();
-                    Integer bdOriginal = examen.getBaseDatos();
-                    
-                    // Recalcular puntuaciones
-                    examen.calcularPuntuaciones();
-                    
-                    // Verificar si hubo cambios
-                    if (!Objects.equals(pbOriginal, examen.getProgramacionBasica()) ||
-                        !Objects.equals(edOriginal, examen.getEstructurasDatos()) ||
-                        !Objects.equals(algOriginal, examen.getAlgoritmos()) ||
-                        !Objects.equals(bdOriginal, examen.getBaseDatos())) {
-                        
-                        examenRepository.save(examen);
-                        examenesActualizados++;
-                        
-                        result.append("Examen ID ").append(examen.getId()).append(" (").append(examen.getPersona().getEmail()).append(") actualizado:\n");
-                        result.append("  PB: ").append(pbOriginal).append(" -> ").append(examen.getProgramacionBasica()).append("\n");
-                        result.append("  ED: ").append(edOriginal).append(" -> ").append(examen.getEstructurasDatos()).append("\n");
-                        result.append("  ALG: ").append(algOriginal).append(" -> ").append(examen.getAlgoritmos()).append("\n");
-                        result.append("  BD: ").append(bdOriginal).append(" -> ").append(examen.getBaseDatos()).append("\n");
-                        result.append("  Promedio: ").append(examen.getPromedio()).append("\n");
-                        result.append("  Aprobado: ").append(examen.isAprobado()).append("\n\n");
-                    }
-                }
-            }
-            
-            result.append("Proceso completado. ").append(examenesActualizados).append(" exámenes actualizados.");
-            return ResponseEntity.ok(result.toString());
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error: " + e.getMessage());
+    public ResponseEntity<Map<String, Object>> recalcularPuntuaciones(@RequestParam(defaultValue = "false") boolean reiniciar) {
+        if (!recalculoPuntuacionesService.iniciar(reiniciar)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(recalculoPuntuacionesService.obtenerEstado());
         }
+        return ResponseEntity.accepted().body(recalculoPuntuacionesService.obtenerEstado());
+    }
+    
+    @GetMapping("/recalcular-puntuaciones/estado")
+    public ResponseEntity<Map<String, Object>> estadoRecalculoPuntuaciones() {
+        return ResponseEntity.ok(recalculoPuntuacionesService.obtenerEstado());
     }
 
     @GetMapping("/test-debug")
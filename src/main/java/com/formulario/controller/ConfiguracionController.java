@@ -1,16 +1,29 @@
 package com.formulario.controller;
 
 import com.formulario.model.ConfiguracionSistema;
+import com.formulario.model.TokenRevocado;
 import com.formulario.model.Usuario;
+import com.formulario.service.BondareaService;
+import com.formulario.service.CacheRecomendacionesService;
 import com.formulario.service.ConfiguracionService;
+import com.formulario.service.EnviosBondareaService;
+import com.formulario.service.IdempotenciaAltaPersonaService;
+import com.formulario.service.PdfCacheService;
+import com.formulario.service.RenderizadorPdfService;
+import com.formulario.service.TokensExamenService;
+import com.formulario.service.TrabajosPdfService;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Controller
 @RequestMapping("/configuracion")
@@ -19,6 +32,30 @@ public class ConfiguracionController {
     @Autowired
     private ConfiguracionService configuracionService;
     
+    @Autowired
+    private CacheRecomendacionesService cacheRecomendacionesService;
+    
+    @Autowired
+    private PdfCacheService pdfCacheService;
+    
+    @Autowired
+    private RenderizadorPdfService renderizadorPdfService;
+    
+    @Autowired
+    private TrabajosPdfService trabajosPdfService;
+    
+    @Autowired
+    private BondareaService bondareaService;
+    
+    @Autowired
+    private EnviosBondareaService enviosBondareaService;
+    
+    @Autowired
+    private IdempotenciaAltaPersonaService idempotenciaAltaPersonaService;
+    
+    @Autowired
+    private TokensExamenService tokensExamenService;
+    
     /**
      * Muestra la página de configuraciones
      */
@@ -42,6 +79,109 @@ public class ConfiguracionController {
         return "configuracion";
     }
     
+    /**
+     * Métricas de las cachés en memoria y en disco (aciertos, fallos, desalojos, colas de PDFs)
+     */
+    @GetMapping("/caches")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> obtenerEstadisticasCaches(HttpSession session) {
+        Usuario usuarioSesion = (Usuario) session.getAttribute("usuario");
+        if (usuarioSesion == null || usuarioSesion.getRol() != Usuario.Rol.ADMIN) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("recomendaciones", cacheRecomendacionesService.estadisticas());
+        estadisticas.put("pdf", pdfCacheService.estadisticas());
+        estadisticas.put("renderizadoPdf", renderizadorPdfService.estadisticas());
+        estadisticas.put("trabajosPdf", trabajosPdfService.estadisticas());
+        estadisticas.put("bondarea", bondareaService.estadisticas());
+        estadisticas.put("altasBondarea", idempotenciaAltaPersonaService.estadisticas());
+        estadisticas.put("configuracion", configuracionService.estadisticas());
+        estadisticas.put("tokensExamen", tokensExamenService.estadisticas());
+        return ResponseEntity.ok(estadisticas);
+    }
+    
+    /**
+     * Outbox de Bondarea: contadores por estado y envíos que agotaron los reintentos (dead letter)
+     */
+    @GetMapping("/bondarea/envios")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> obtenerEnviosBondarea(
+            @RequestParam(defaultValue = "100") int limite,
+            HttpSession session) {
+        Usuario usuarioSesion = (Usuario) session.getAttribute("usuario");
+        if (usuarioSesion == null || usuarioSesion.getRol() != Usuario.Rol.ADMIN) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        
+        Map<String, Object> respuesta = new LinkedHashMap<>();
+        respuesta.put("estadisticas", enviosBondareaService.estadisticas());
+        respuesta.put("fallidos", enviosBondareaService.listarFallidos(Math.min(limite, 1000)));
+        return ResponseEntity.ok(respuesta);
+    }
+    
+    /**
+     * Vuelve a encolar un envío a Bondarea que quedó fallido
+     */
+    @PostMapping("/bondarea/envios/{id}/reintentar")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> reintentarEnvioBondarea(@PathVariable Long id, HttpSession session) {
+        Usuario usuarioSesion = (Usuario) session.getAttribute("usuario");
+        if (usuarioSesion == null || usuarioSesion.getRol() != Usuario.Rol.ADMIN) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        
+        if (!enviosBondareaService.reintentar(id)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(Map.of("success", false, "error", "No existe un envío fallido con ID " + id + " o su caso ya tiene una actualización más nueva"));
+        }
+        return ResponseEntity.ok(Map.of("success", true, "id", id));
+    }
+    
+    /**
+     * Revoca un link de examen (por ejemplo, uno que se filtró). Acepta el token o la URL completa.
+     */
+    @PostMapping("/tokens/revocar")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> revocarToken(
+            @RequestParam String token,
+            @RequestParam(required = false) String motivo,
+            HttpSession session) {
+        Usuario usuarioSesion = (Usuario) session.getAttribute("usuario");
+        if (usuarioSesion == null || usuarioSesion.getRol() != Usuario.Rol.ADMIN) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        
+        try {
+            TokenRevocado revocado = tokensExamenService.revocar(token, motivo, usuarioSesion.getUsername());
+            Map<String, Object> respuesta = new LinkedHashMap<>();
+            respuesta.put("success", true);
+            respuesta.put("examenId", revocado.getExamenId());
+            respuesta.put("proposito", revocado.getProposito());
+            respuesta.put("vencimiento", revocado.getVencimiento() != null ? revocado.getVencimiento().toString() : null);
+            return ResponseEntity.ok(respuesta);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "error", e.getMessage()));
+        }
+    }
+    
+    /**
+     * Últimos links de examen revocados
+     */
+    @GetMapping("/tokens/revocados")
+    @ResponseBody
+    public ResponseEntity<List<TokenRevocado>> obtenerTokensRevocados(
+            @RequestParam(defaultValue = "100") int limite,
+            HttpSession session) {
+        Usuario usuarioSesion = (Usuario) session.getAttribute("usuario");
+        if (usuarioSesion == null || usuarioSesion.getRol() != Usuario.Rol.ADMIN) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        
+        return ResponseEntity.ok(tokensExamenService.listarRevocados(Math.min(limite, 1000)));
+    }
+    
     /**
      * Cambia el estado de las inscripciones
      */
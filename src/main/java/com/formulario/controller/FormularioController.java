@@ -7,20 +7,26 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import jakarta.validation.Valid;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.ArrayList;
-import java.util.stream.Collectors;
+import java.util.concurrent.Callable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpHeaders;
@@ -30,6 +36,7 @@ import com.formulario.model.RecomendacionRolDTO;
 import com.formulario.model.RecomendacionEstudiosDTO;
 import com.formulario.repository.RecomendacionEstudiosRepository;
 import com.formulario.repository.IntentoFallidoGuardarRecomendacionRepository;
+import com.formulario.repository.InscripcionConsultaRepository;
 import com.formulario.model.IntentoFallidoGuardarRecomendacion;
 import com.formulario.util.ExamenTokenUtil;
 import jakarta.servlet.http.HttpServletRequest;
@@ -37,6 +44,7 @@ import jakarta.servlet.http.HttpServletRequest;
 @Controller
 public class FormularioController {
     private static final Logger logger = LoggerFactory.getLogger(FormularioController.class);
+    private static final int TAMANIO_MAXIMO_PAGINA_INSCRIPCIONES = 200;
     
     @Autowired
     private FormularioService formularioService;
@@ -53,6 +61,18 @@ public class FormularioController {
     @Autowired
     private BondareaService bondareaService;
     
+    @Autowired
+    private EnviosBondareaService enviosBondareaService;
+    
+    @Autowired
+    private RenovacionLinksService renovacionLinksService;
+    
+    @Autowired
+    private IdempotenciaAltaPersonaService idempotenciaAltaPersonaService;
+    
+    @Autowired
+    private TokensExamenService tokensExamenService;
+    
     @Autowired
     private RolProfesionalService rolProfesionalService;
     
@@ -65,6 +85,12 @@ public class FormularioController {
     @Autowired
     private IntentoFallidoGuardarRecomendacionRepository intentoFallidoGuardarRecomendacionRepository;
     
+    @Autowired
+    private ExportacionService exportacionService;
+    
+    @Autowired
+    private LotePdfService lotePdfService;
+    
     // Página principal - Ahora redirige directamente al examen
     @GetMapping("/")
     public String index(Model model) {
@@ -108,6 +134,7 @@ public class FormularioController {
             @RequestBody(required = false) Map<String, Object> requestBody,
             @RequestHeader(value = "X-API-Token", required = false) String apiToken,
             @RequestHeader(value = "Authorization", required = false) String authorization,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @RequestParam(value = "idCaso", required = false) String idCasoParam,
             @RequestParam(value = "id", required = false) String idParam,
             HttpServletRequest request,
@@ -233,62 +260,22 @@ public class FormularioController {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
             }
             
-            // Obtener datos de la persona desde Bondarea
-            String idStage = "B26F5NF6"; // ID Stage específico según requerimiento
-            logger.info("Obteniendo datos de persona desde Bondarea: idStage={}, idCaso={}", idStage, idCaso);
-            
-            Map<String, Object> datosBondarea = bondareaService.obtenerSolicitudFinanciamiento(idStage, idCaso);
+            // Un reintento de un caso ya dado de alta devuelve los mismos links sin llamar a Bondarea
+            final String idCasoAlta = idCaso.trim();
+            IdempotenciaAltaPersonaService.Resultado resultado = idempotenciaAltaPersonaService.resolver(
+                idCasoAlta, idempotencyKey,
+                examenExistente -> armarAltaRegistrada(request, examenExistente),
+                () -> crearAltaDesdeBondarea(request, idCasoAlta));
             
-            if (datosBondarea == null || datosBondarea.isEmpty()) {
-                logger.warn("No se pudieron obtener datos de Bondarea para idCaso: {}", idCaso);
+            IdempotenciaAltaPersonaService.AltaRegistrada alta = resultado.getAlta();
+            if (alta == null) {
+                logger.warn("No se pudieron obtener datos de Bondarea para idCaso: {}", idCasoAlta);
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(Map.of("error", "No se encontraron datos en Bondarea para el ID de caso proporcionado", 
-                                 "idCaso", idCaso,
+                                 "idCaso", idCasoAlta,
                                  "mensaje", "El ID debe existir en Bondarea usando GET /monitoring/B26F5NF6/{id}"));
             }
-
-           datosBondarea = (Map<String, Object>) datosBondarea.get("data");
-            logger.info("✅ Datos obtenidos exitosamente desde Bondarea para idCaso: {}", idCaso);
-            // Mapear datos de Bondarea a Persona
-            Persona persona = mapearPersonaDesdeBondarea(datosBondarea, idCaso);
-            
-            // Obtener email para verificar si la persona ya existe
-            String email = persona.getEmail();
-            
-            // Verificar que el email sea válido (ya debería estar validado en mapearPersonaDesdeBondarea)
-            if (email == null || email.trim().isEmpty() || !esEmailValido(email)) {
-                logger.warn("Email inválido obtenido de Bondarea, usando email generado: {}", email);
-                email = "sin-email-" + System.currentTimeMillis() + "@example.com";
-                persona.setEmail(email);
-            }
-            
-            // Guardar la persona
-            Persona personaGuardada = formularioService.guardarPersona(persona);
-            
-            // Crear examen
-            Examen examen = new Examen(personaGuardada);
-            examen = formularioService.guardarExamen(examen);
-            
-            logger.info("Persona y examen creados exitosamente - Persona ID: {}, Examen ID: {}, Email: {}", 
-                       personaGuardada.getId(), examen.getId(), personaGuardada.getEmail());
-            
-            // Construir URL del examen y de reintento usando token hash
-            String examenUrl = construirUrlExamen(request, examen);
-            String urlReintento = construirUrlReintento(request, examen);
-            logger.info("URL del examen construida: {}", examenUrl);
-            logger.info("URL de reintento construida: {}", urlReintento);
-
-            // Enviar URL de reintento a Bondarea (custom_B26FNCDU)
-            try {
-                Map<String, Object> resultadoReintento = bondareaService.actualizarUrlReintentoEnBondarea(idCaso, urlReintento);
-                if (Boolean.TRUE.equals(resultadoReintento.get("success"))) {
-                    logger.info("URL de reintento enviada a Bondarea (custom_B26FNCDU) para idCaso: {}", idCaso);
-                } else {
-                    logger.warn("No se pudo enviar URL de reintento a Bondarea para idCaso: {}", idCaso);
-                }
-            } catch (Exception e) {
-                logger.error("Error al enviar URL de reintento a Bondarea para idCaso: {} - {}", idCaso, e.getMessage(), e);
-            }
+            String examenUrl = alta.getExamenUrl();
             
             // Verificar si el cliente solicita redirección explícitamente
             String acceptHeader = request.getHeader("Accept");
@@ -299,11 +286,15 @@ public class FormularioController {
             logger.info("Accept header: {}, X-Response-Type: {}, Solicita redirección: {}", 
                        acceptHeader, responseType, solicitaRedireccion);
             
+            HttpHeaders headers = new HttpHeaders();
+            if (resultado.isRepetida()) {
+                headers.set("Idempotent-Replayed", "true");
+            }
+            
             // Por defecto, devolver JSON (mejor para APIs/webhooks que no siguen redirecciones)
             // Solo redirigir si se solicita explícitamente
             if (solicitaRedireccion) {
                 logger.info("Devolviendo redirección 302 a: {}", examenUrl);
-                HttpHeaders headers = new HttpHeaders();
                 headers.setLocation(java.net.URI.create(examenUrl));
                 
                 return ResponseEntity.status(HttpStatus.FOUND)
@@ -315,14 +306,17 @@ public class FormularioController {
             logger.info("Devolviendo respuesta JSON con examenUrl: {}", examenUrl);
             Map<String, Object> respuesta = new HashMap<>();
             respuesta.put("success", true);
-            respuesta.put("mensaje", "Persona y examen creados exitosamente");
-            respuesta.put("personaId", personaGuardada.getId());
-            respuesta.put("examenId", examen.getId());
+            respuesta.put("mensaje", resultado.isRepetida()
+                ? "La persona y el examen ya estaban creados para este caso"
+                : "Persona y examen creados exitosamente");
+            respuesta.put("personaId", alta.getPersonaId());
+            respuesta.put("examenId", alta.getExamenId());
             respuesta.put("examenUrl", examenUrl);
-            respuesta.put("custom_B26FNCDU", urlReintento);
-            respuesta.put("reintentoUrl", urlReintento);
-            respuesta.put("email", personaGuardada.getEmail());
-            return ResponseEntity.ok(respuesta);
+            respuesta.put("custom_B26FNCDU", alta.getUrlReintento());
+            respuesta.put("reintentoUrl", alta.getUrlReintento());
+            respuesta.put("email", alta.getEmail());
+            respuesta.put("repetida", resultado.isRepetida());
+            return ResponseEntity.ok().headers(headers).body(respuesta);
             
         } catch (Exception e) {
             logger.error("Error al crear persona desde API", e);
@@ -331,6 +325,69 @@ public class FormularioController {
         }
     }
     
+    /**
+     * Alta completa de un caso: trae los datos de Bondarea, guarda persona y examen y
+     * envía la URL de reintento a Bondarea. Devuelve null si el caso no existe en Bondarea.
+     */
+    @SuppressWarnings("unchecked")
+    private IdempotenciaAltaPersonaService.AltaRegistrada crearAltaDesdeBondarea(HttpServletRequest request, String idCaso) {
+        // Obtener datos de la persona desde Bondarea
+        String idStage = "B26F5NF6"; // ID Stage específico según requerimiento
+        logger.info("Obteniendo datos de persona desde Bondarea: idStage={}, idCaso={}", idStage, idCaso);
+        
+        Map<String, Object> datosBondarea = bondareaService.obtenerSolicitudFinanciamiento(idStage, idCaso);
+        
+        if (datosBondarea == null || datosBondarea.isEmpty()) {
+            return null;
+        }
+
+        datosBondarea = (Map<String, Object>) datosBondarea.get("data");
+        logger.info("✅ Datos obtenidos exitosamente desde Bondarea para idCaso: {}", idCaso);
+        // Mapear datos de Bondarea a Persona
+        Persona persona = mapearPersonaDesdeBondarea(datosBondarea, idCaso);
+        
+        // Verificar que el email sea válido (ya debería estar validado en mapearPersonaDesdeBondarea)
+        String email = persona.getEmail();
+        if (email == null || email.trim().isEmpty() || !esEmailValido(email)) {
+            logger.warn("Email inválido obtenido de Bondarea, usando email generado: {}", email);
+            email = "sin-email-" + System.currentTimeMillis() + "@example.com";
+            persona.setEmail(email);
+        }
+        
+        // Guardar persona y examen juntos (la restricción única sobre id_caso_bondarea frena duplicados)
+        Examen examen = formularioService.guardarPersonaConExamen(persona);
+        
+        logger.info("Persona y examen creados exitosamente - Persona ID: {}, Examen ID: {}, Email: {}", 
+                   examen.getPersona().getId(), examen.getId(), examen.getPersona().getEmail());
+        
+        IdempotenciaAltaPersonaService.AltaRegistrada alta = armarAltaRegistrada(request, examen);
+        logger.info("URL del examen construida: {}", alta.getExamenUrl());
+        logger.info("URL de reintento construida: {}", alta.getUrlReintento());
+
+        // Enviar URL de reintento a Bondarea (custom_B26FNCDU)
+        try {
+            Map<String, Object> resultadoReintento = bondareaService.actualizarUrlReintentoEnBondarea(idCaso, alta.getUrlReintento());
+            if (Boolean.TRUE.equals(resultadoReintento.get("success"))) {
+                logger.info("URL de reintento enviada a Bondarea (custom_B26FNCDU) para idCaso: {}", idCaso);
+            } else {
+                logger.warn("No se pudo enviar URL de reintento a Bondarea para idCaso: {}", idCaso);
+            }
+        } catch (Exception e) {
+            logger.error("Error al enviar URL de reintento a Bondarea para idCaso: {} - {}", idCaso, e.getMessage(), e);
+        }
+        return alta;
+    }
+    
+    /**
+     * Links y datos de respuesta del alta de un examen (solo arma URLs, sin llamadas remotas)
+     */
+    private IdempotenciaAltaPersonaService.AltaRegistrada armarAltaRegistrada(HttpServletRequest request, Examen examen) {
+        Persona persona = examen.getPersona();
+        return new IdempotenciaAltaPersonaService.AltaRegistrada(
+            persona.getId(), examen.getId(), persona.getEmail(),
+            construirUrlExamen(request, examen), construirUrlReintento(request, examen));
+    }
+    
     /**
      * Webhook para Bondarea: cuando se elimina un caso en Bondarea, Bondarea puede llamar
      * a este endpoint para eliminar también el examen asociado en la base de datos local.
@@ -378,6 +435,7 @@ public class FormularioController {
                     .body(Map.of("error", "Falta el identificador del caso", "mensaje", "Incluir idCaso (o id, caseId) en el body"));
             }
             formularioService.eliminarExamenPorIdCasoBondarea(idCaso);
+            bondareaService.olvidarCaso(idCaso);
             logger.info("Examen eliminado localmente por caso Bondarea eliminado: idCaso={}", idCaso);
             return ResponseEntity.ok(Map.of(
                 "ok", true,
@@ -555,7 +613,7 @@ public class FormularioController {
         if (examenId != null) {
             Optional<Examen> examenOpt = formularioService.buscarExamenPorId(examenId);
             if (examenOpt.isPresent()) {
-                String token = com.formulario.util.ExamenTokenUtil.generarToken(examenId);
+                String token = tokensExamenService.generar(examenId, ExamenTokenUtil.Proposito.EXAMEN);
                 return "redirect:/examen/" + token;
             }
             // Fallback a ID si no se encuentra el examen
@@ -580,7 +638,7 @@ public class FormularioController {
             Examen examen = new Examen(persona.get());
             examen = formularioService.guardarExamen(examen);
             
-            String token = com.formulario.util.ExamenTokenUtil.generarToken(examen.getId());
+            String token = tokensExamenService.generar(examen.getId(), ExamenTokenUtil.Proposito.EXAMEN);
             return "redirect:/examen/" + token;
         }
         
@@ -652,6 +710,21 @@ public class FormularioController {
         }
     }
     
+    /**
+     * Token con el que la página del examen carga las preguntas y lo finaliza. Si se entró con un link
+     * versionado se reutiliza ese mismo link, así revocarlo o su vencimiento también cortan el envío;
+     * si se entró con un link sin versión o por ID se emite un token EXAMEN nuevo.
+     */
+    private String tokenDePagina(String identificador, Long examenId) {
+        ExamenTokenUtil.TokenExamen entrante = ExamenTokenUtil.decodificar(identificador);
+        if (entrante != null && entrante.esVersionado()
+                && entrante.getProposito() == ExamenTokenUtil.Proposito.EXAMEN
+                && examenId.equals(entrante.getExamenId())) {
+            return identificador;
+        }
+        return tokensExamenService.generar(examenId, ExamenTokenUtil.Proposito.EXAMEN);
+    }
+    
     // Nuevo sistema de examen múltiple choice - Acepta token hash o ID para compatibilidad
     @GetMapping("/examen/{identificador}")
     public String mostrarExamen(@PathVariable String identificador, Model model, RedirectAttributes redirectAttributes) {
@@ -680,6 +753,7 @@ public class FormularioController {
             
             model.addAttribute("examen", examen);
             model.addAttribute("persona", examen.getPersona());
+            model.addAttribute("examenToken", tokenDePagina(identificador, examen.getId()));
             
             logger.info("Examen cargado exitosamente");
             logger.info("Redirigiendo a la plantilla examen.html");
@@ -743,64 +817,14 @@ public class FormularioController {
             
             logger.info("Respuestas finales: {}", respuestasFinales);
             
-            // Procesar el examen
-            examen = examenService.procesarRespuestas(examenId, respuestasFinales);
+            // Procesar el examen; la actualización del caso en Bondarea se encola en la misma transacción
+            // y la envía el despachador del outbox, así el candidato no espera a Bondarea
+            examen = examenService.procesarRespuestas(examenId, respuestasFinales,
+                examenCorregido -> enviosBondareaService.encolarResultadoExamen(
+                    examenCorregido, construirUrlReintento(request, examenCorregido)));
             
             logger.info("Examen procesado exitosamente para persona: {}", examen.getPersona().getId());
             
-            // Actualizar caso en Bondarea si la persona tiene idCaso
-            String idCaso = examen.getPersona().getIdCasoBondarea();
-            if (idCaso != null && !idCaso.trim().isEmpty()) {
-                try {
-                    logger.info("Intentando actualizar caso en Bondarea: idCaso={}", idCaso);
-                    
-                    // Obtener datos de la recomendación de estudios seleccionada por el usuario
-                    String nombreInstitucion = null;
-                    String nombreCurso = null;
-                    String duracion = null;
-                    Long idCurso = null;
-                    java.math.BigDecimal monto = null;
-                    
-                    if (examen.getRecomendacionEstudiosSeleccionada() != null) {
-                        RecomendacionEstudios recomendacion = examen.getRecomendacionEstudiosSeleccionada();
-                        nombreInstitucion = recomendacion.getNombreInstitucion();
-                        nombreCurso = recomendacion.getNombreOferta();
-                        duracion = recomendacion.getDuracion();
-                        idCurso = recomendacion.getId();
-                        monto = recomendacion.getCosto();
-                        logger.info("Datos de recomendación seleccionada - Institución: {}, Curso: {}, Duración: {}, ID: {}, Monto: {}", 
-                                   nombreInstitucion, nombreCurso, duracion, idCurso, monto);
-                    } else {
-                        logger.warn("No hay recomendación de estudios seleccionada para el examen");
-                    }
-                    
-                    // Construir comentarios con información del examen
-                    String comentarios = String.format("Examen completado - Promedio: %.1f%%, Lógica: %d%%, Matemática: %d%%, Creatividad: %d%%, Programación: %d%%",
-                        examen.getPromedio(),
-                        examen.getLogica() != null ? examen.getLogica() : 0,
-                        examen.getMatematica() != null ? examen.getMatematica() : 0,
-                        examen.getCreatividad() != null ? examen.getCreatividad() : 0,
-                        examen.getProgramacion() != null ? examen.getProgramacion() : 0);
-                    
-                    String urlReintento = construirUrlReintento(request, examen);
-
-                    // Llamar al método de actualización en Bondarea (incluye custom_B26FNCDU)
-                    Map<String, Object> resultadoActualizacion = bondareaService.actualizarCasoEnBondarea(
-                        idCaso, examen, nombreInstitucion, nombreCurso, duracion, idCurso, monto, comentarios, urlReintento);
-                    Boolean actualizado = (Boolean) resultadoActualizacion.get("success");
-                    if (actualizado != null && actualizado) {
-                        logger.info("✅ Caso actualizado exitosamente en Bondarea para idCaso: {}", idCaso);
-                    } else {
-                        logger.warn("⚠️ No se pudo actualizar el caso en Bondarea para idCaso: {}", idCaso);
-                    }
-                } catch (Exception e) {
-                    logger.error("Error al actualizar caso en Bondarea para idCaso: {} - {}", idCaso, e.getMessage(), e);
-                    // No interrumpir el flujo si falla la actualización en Bondarea
-                }
-            } else {
-                logger.info("Persona no tiene idCaso de Bondarea, omitiendo actualización");
-            }
-            
             redirectAttributes.addFlashAttribute("mensaje", "Examen completado correctamente");
             return "redirect:/resultado/" + examen.getPersona().getId();
             
@@ -957,7 +981,10 @@ public class FormularioController {
                                 logger.warn("trackingPars no disponible en la respuesta de Bondarea");
                             }
                         } else {
-                            logger.warn("⚠️ No se pudo actualizar el caso en Bondarea para idCaso: {}", idCaso);
+                            // La redirección no puede esperar, pero la actualización no se pierde: la reintenta el outbox
+                            logger.warn("⚠️ No se pudo actualizar el caso en Bondarea para idCaso: {}, se encola para reintentar", idCaso);
+                            enviosBondareaService.encolar(idCaso, bondareaService.construirCuerpoActualizacion(
+                                examen, nombreInstitucion, nombreCurso, duracion, idCurso, monto, comentarios, urlReintento));
                         }
                     } catch (Exception e) {
                         logger.error("Error al actualizar caso en Bondarea para idCaso: {} - {}", idCaso, e.getMessage(), e);
@@ -1135,8 +1162,8 @@ public class FormularioController {
 
     /**
      * Renueva en Bondarea el link de reintento de TODOS los exámenes que tienen idCasoBondarea.
-     * Proceso en segundo plano con 4 segundos de delay entre cada llamada.
-     * Ver progreso: docker logs -f p5_form_app | grep RENOVAR-LINKS
+     * Corre en segundo plano con un límite de solicitudes por minuto (bondarea.renovacion.*) y se retoma
+     * sola si la aplicación se reinicia. Progreso: GET /api/renovar-links-bondarea
      */
     @PostMapping("/api/renovar-links-bondarea")
     public ResponseEntity<?> renovarLinksBondarea(
@@ -1146,100 +1173,82 @@ public class FormularioController {
             @RequestParam(value = "limite", required = false) Integer limite,
             HttpServletRequest request) {
 
-        // Validar token de API
-        String token = apiToken;
-        if (token == null && authorization != null && authorization.startsWith("Bearer ")) {
-            token = authorization.substring(7);
-        }
-        if (!configuracionService.validarApiToken(token)) {
+        if (!validarTokenApi(apiToken, authorization)) {
             logger.warn("Intento de renovar links con token inválido desde IP: {}", getClientIpAddress(request));
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                 .body(Map.of("error", "Token de API inválido o no proporcionado"));
         }
 
         // Sanitizar baseUrl: quitar slash final si tiene
-        final String baseUrl = baseUrlParam.endsWith("/") ? baseUrlParam.substring(0, baseUrlParam.length() - 1) : baseUrlParam;
+        String baseUrl = baseUrlParam.endsWith("/") ? baseUrlParam.substring(0, baseUrlParam.length() - 1) : baseUrlParam;
 
         // Límite opcional de registros a procesar (para pruebas). Null = todos.
-        final Integer limiteProcesar = limite;
-
-        // Cargar exámenes y contar cuántos tienen idCasoBondarea
-        List<Examen> todosLosExamenes = formularioService.listarTodosLosExamenes();
-        long conBondarea = todosLosExamenes.stream()
-            .filter(e -> e.getPersona() != null
-                && e.getPersona().getIdCasoBondarea() != null
-                && !e.getPersona().getIdCasoBondarea().isBlank())
-            .count();
-
-        logger.info("[RENOVAR-LINKS] Solicitud recibida - {} exámenes totales, {} con idCasoBondarea",
-            todosLosExamenes.size(), conBondarea);
-
-        // Iniciar proceso en segundo plano
-        Thread proceso = new Thread(() -> {
-            long aProcesar = limiteProcesar != null ? Math.min(limiteProcesar, conBondarea) : conBondarea;
-            logger.info("🔄 [RENOVAR-LINKS] Iniciando renovación - {} exámenes a procesar{}, delay: 4s",
-                aProcesar, limiteProcesar != null ? " (LÍMITE DE PRUEBA)" : "");
-            int actualizados = 0, errores = 0, sinBondarea = 0, procesados = 0;
-
-            for (Examen examen : todosLosExamenes) {
-                // Cortar si se alcanzó el límite de prueba
-                if (limiteProcesar != null && procesados >= limiteProcesar) {
-                    logger.info("🔵 [RENOVAR-LINKS] Límite de prueba alcanzado ({} registros)", limiteProcesar);
-                    break;
-                }
-
-                if (examen.getPersona() == null) { sinBondarea++; continue; }
-                String idCaso = examen.getPersona().getIdCasoBondarea();
-                if (idCaso == null || idCaso.isBlank()) { sinBondarea++; continue; }
-
-                procesados++;
-                try {
-                    String nuevoLink = baseUrl + "/examen/reintento/" + ExamenTokenUtil.generarToken(examen.getId());
-                    Map<String, Object> resultado = bondareaService.actualizarUrlReintentoEnBondarea(idCaso, nuevoLink);
-
-                    if (Boolean.TRUE.equals(resultado.get("success"))) {
-                        actualizados++;
-                        logger.info("✅ [RENOVAR-LINKS] {}/{} | Examen: {} | idCaso: {}",
-                            procesados, aProcesar, examen.getId(), idCaso);
-                    } else {
-                        errores++;
-                        logger.warn("❌ [RENOVAR-LINKS] {}/{} | Falló | Examen: {} | idCaso: {} | Respuesta: {}",
-                            procesados, aProcesar, examen.getId(), idCaso, resultado);
-                    }
-
-                    Thread.sleep(4000);
-
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    logger.error("🛑 [RENOVAR-LINKS] Proceso interrumpido en examen ID: {}", examen.getId());
-                    break;
-                } catch (Exception e) {
-                    errores++;
-                    logger.error("❌ [RENOVAR-LINKS] {}/{} | Error | Examen: {} | idCaso: {} | {}",
-                        procesados, aProcesar, examen.getId(), idCaso, e.getMessage());
-                    try { Thread.sleep(4000); } catch (InterruptedException ie) { Thread.currentThread().interrupt(); break; }
-                }
-            }
-
-            logger.info("🏁 [RENOVAR-LINKS] Proceso completado: {} actualizados ✅ | {} errores ❌ | {} sin Bondarea ⏭",
-                actualizados, errores, sinBondarea);
-        });
-
-        proceso.setName("renovar-links-bondarea");
-        proceso.setDaemon(true);
-        proceso.start();
+        TrabajoRenovacionLinks trabajo = renovacionLinksService.iniciar(baseUrl, limite);
+        if (trabajo == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                "success", false,
+                "error", "Ya hay una renovación de links en curso",
+                "progreso", renovacionLinksService.obtenerProgreso()
+            ));
+        }
 
-        long tiempoMinutos = (conBondarea * 4) / 60;
+        logger.info("[RENOVAR-LINKS] Trabajo {} iniciado - {} exámenes con idCasoBondarea{}",
+            trabajo.getId(), trabajo.getTotalEstimado(), limite != null ? " (LÍMITE DE PRUEBA)" : "");
         return ResponseEntity.accepted().body(Map.of(
             "success", true,
             "mensaje", "Proceso iniciado en segundo plano",
-            "examenesConBondarea", conBondarea,
-            "examenesTotales", todosLosExamenes.size(),
-            "tiempoEstimadoMinutos", tiempoMinutos,
-            "comoVerProgreso", "En el servidor: docker logs -f p5_form_app | grep RENOVAR-LINKS"
+            "trabajoId", trabajo.getId(),
+            "examenesConBondarea", trabajo.getTotalEstimado(),
+            "comoVerProgreso", "GET /api/renovar-links-bondarea (cancelar: POST /api/renovar-links-bondarea/cancelar)"
         ));
     }
 
+    /**
+     * Progreso de la última renovación de links
+     */
+    @GetMapping("/api/renovar-links-bondarea")
+    public ResponseEntity<?> progresoRenovarLinksBondarea(
+            @RequestHeader(value = "X-API-Token", required = false) String apiToken,
+            @RequestHeader(value = "Authorization", required = false) String authorization) {
+        if (!validarTokenApi(apiToken, authorization)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body(Map.of("error", "Token de API inválido o no proporcionado"));
+        }
+        Map<String, Object> progreso = renovacionLinksService.obtenerProgreso();
+        if (progreso == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(Map.of("error", "Todavía no se ejecutó ninguna renovación de links"));
+        }
+        return ResponseEntity.ok(progreso);
+    }
+
+    /**
+     * Cancela la renovación de links en curso (los envíos ya iniciados terminan)
+     */
+    @PostMapping("/api/renovar-links-bondarea/cancelar")
+    public ResponseEntity<?> cancelarRenovarLinksBondarea(
+            @RequestHeader(value = "X-API-Token", required = false) String apiToken,
+            @RequestHeader(value = "Authorization", required = false) String authorization) {
+        if (!validarTokenApi(apiToken, authorization)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body(Map.of("error", "Token de API inválido o no proporcionado"));
+        }
+        if (!renovacionLinksService.cancelar()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("success", false, "error", "No hay una renovación de links en curso"));
+        }
+        return ResponseEntity.accepted().body(Map.of("success", true, "mensaje", "Cancelación solicitada"));
+    }
+
+    // Token de API por X-API-Token o Authorization: Bearer
+    private boolean validarTokenApi(String apiToken, String authorization) {
+        String token = apiToken;
+        if (token == null && authorization != null && authorization.startsWith("Bearer ")) {
+            token = authorization.substring(7);
+        }
+        return configuracionService.validarApiToken(token);
+    }
+
     // Vista de todas las inscripciones con resultados
     @GetMapping("/inscripciones")
     public String mostrarInscripciones(
@@ -1252,66 +1261,40 @@ public class FormularioController {
             HttpServletRequest request,
             Model model) {
         try {
-            // Obtener todos los datos de la base de datos
-            List<InscripcionDTO> inscripciones = formularioService.obtenerTodasLasInscripciones();
-            logger.info("Inscripciones obtenidas de BD: {}", inscripciones.size());
+            // Totales sobre el conjunto filtrado (no sobre la página), calculados en la base
+            ResumenInscripcionesDTO resumen = formularioService.resumirInscripciones(dni, cuil, email, estadoTiempo);
 
-            // Generar link de reintento para TODOS los exámenes (con clave actual)
+            // Paginación en la base: solo se leen las filas de la página pedida
+            int pageSize = Math.max(1, Math.min(size, TAMANIO_MAXIMO_PAGINA_INSCRIPCIONES));
+            int totalItems = (int) resumen.getTotalInscripciones();
+            int totalPages = totalItems == 0 ? 1 : (int) Math.ceil((double) totalItems / pageSize);
+            int currentPage = Math.max(0, Math.min(page, totalPages - 1));
+            List<InscripcionDTO> inscripcionesPagina = totalItems > 0
+                ? formularioService.buscarInscripciones(dni, cuil, email, estadoTiempo, PageRequest.of(currentPage, pageSize))
+                : new ArrayList<>();
+            int fromIndex = currentPage * pageSize;
+            int toIndex = fromIndex + inscripcionesPagina.size();
+
+            // Generar link de reintento para los exámenes de la página (con clave actual)
             // Esto permite al admin copiar y reenviar links válidos a cualquier candidato
             String baseUrl = obtenerBaseUrl(request);
-            inscripciones.forEach(inscripcion -> {
-                String tokenReintento = ExamenTokenUtil.generarToken(inscripcion.getId());
+            inscripcionesPagina.forEach(inscripcion -> {
+                String tokenReintento = tokensExamenService.generar(inscripcion.getId(), ExamenTokenUtil.Proposito.REINTENTO);
                 inscripcion.setLinkReintentoAutomatico(baseUrl + "/examen/reintento/" + tokenReintento);
             });
 
-            // Aplicar filtros
-            List<InscripcionDTO> inscripcionesFiltradas = inscripciones.stream()
-                .filter(inscripcion -> {
-                    boolean cumpleFiltros = true;
-                    if (dni != null && !dni.trim().isEmpty())
-                        cumpleFiltros = cumpleFiltros && inscripcion.getDni() != null &&
-                                       inscripcion.getDni().contains(dni.trim());
-                    if (cuil != null && !cuil.trim().isEmpty())
-                        cumpleFiltros = cumpleFiltros && inscripcion.getCuil() != null &&
-                                       inscripcion.getCuil().contains(cuil.trim());
-                    if (email != null && !email.trim().isEmpty())
-                        cumpleFiltros = cumpleFiltros && inscripcion.getEmail() != null &&
-                                       inscripcion.getEmail().toLowerCase().contains(email.trim().toLowerCase());
-                    if (estadoTiempo != null && !estadoTiempo.trim().isEmpty())
-                        cumpleFiltros = cumpleFiltros && estadoTiempo.trim().equals(inscripcion.getEstadoTiempo());
-                    return cumpleFiltros;
-                })
-                .collect(Collectors.toList());
-
-            // Calcular stats sobre el total filtrado (no sobre la página)
-            double promedioGeneral = inscripcionesFiltradas.stream()
-                .mapToDouble(i -> i.getPromedio() != null ? i.getPromedio() : 0.0)
-                .average().orElse(0.0);
-            long totalAprobados   = inscripcionesFiltradas.stream().filter(i -> Boolean.TRUE.equals(i.getAprobado())).count();
-            long totalDesaprobados = inscripcionesFiltradas.stream().filter(i -> Boolean.FALSE.equals(i.getAprobado())).count();
-
-            // Paginación sobre los resultados filtrados
-            int totalItems = inscripcionesFiltradas.size();
-            int totalPages = totalItems == 0 ? 1 : (int) Math.ceil((double) totalItems / size);
-            int currentPage = Math.max(0, Math.min(page, totalPages - 1));
-            int fromIndex = currentPage * size;
-            int toIndex = Math.min(fromIndex + size, totalItems);
-            List<InscripcionDTO> inscripcionesPagina = totalItems > 0
-                ? inscripcionesFiltradas.subList(fromIndex, toIndex)
-                : new ArrayList<>();
-
             logger.info("Paginación: página {}/{}, mostrando {}-{} de {} registros",
                 currentPage + 1, totalPages, fromIndex + 1, toIndex, totalItems);
 
             // Modelo
             model.addAttribute("inscripciones", inscripcionesPagina);
-            model.addAttribute("promedioGeneral", promedioGeneral);
+            model.addAttribute("promedioGeneral", resumen.getPromedioGeneral());
             model.addAttribute("totalInscripciones", totalItems);
-            model.addAttribute("totalAprobados", totalAprobados);
-            model.addAttribute("totalDesaprobados", totalDesaprobados);
+            model.addAttribute("totalAprobados", resumen.getTotalAprobados());
+            model.addAttribute("totalDesaprobados", resumen.getTotalDesaprobados());
             model.addAttribute("currentPage", currentPage);
             model.addAttribute("totalPages", totalPages);
-            model.addAttribute("pageSize", size);
+            model.addAttribute("pageSize", pageSize);
             model.addAttribute("fromIndex", fromIndex + 1);
             model.addAttribute("toIndex", toIndex);
 
@@ -1380,7 +1363,7 @@ public class FormularioController {
                                    HttpServletRequest request,
                                    RedirectAttributes redirectAttributes) {
         try {
-            Long examenId = ExamenTokenUtil.validarYExtraerId(examenToken);
+            Long examenId = tokensExamenService.validar(examenToken, ExamenTokenUtil.Proposito.REINTENTO);
             if (examenId == null) {
                 logger.warn("Link de reintento inválido o vencido: {}", examenToken);
                 redirectAttributes.addFlashAttribute("error", "El link de reintento es inválido o ha vencido");
@@ -1431,20 +1414,112 @@ public class FormularioController {
     
     // Endpoint para descargar Excel con todas las inscripciones
     @GetMapping("/inscripciones/excel")
-    public ResponseEntity<byte[]> descargarExcelInscripciones() {
-        try {
-            byte[] excelContent = formularioService.generarExcelInscripciones();
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"));
-            headers.setContentDispositionFormData("attachment", "inscripciones_completas.xlsx");
-            headers.setCacheControl("must-revalidate, post-check=0, pre-check=0");
-            
-            return new ResponseEntity<>(excelContent, headers, HttpStatus.OK);
-        } catch (Exception e) {
-            logger.error("Error al generar Excel de inscripciones", e);
-            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+    public ResponseEntity<StreamingResponseBody> descargarExcelInscripciones() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"));
+        headers.setContentDispositionFormData("attachment", "inscripciones_completas.xlsx");
+        headers.setCacheControl("must-revalidate, post-check=0, pre-check=0");
+        
+        // El archivo se genera mientras se envía: no se arma entero en memoria
+        StreamingResponseBody cuerpo = salida -> {
+            try {
+                formularioService.escribirExcelInscripciones(salida);
+            } catch (Exception e) {
+                logger.error("Error al generar Excel de inscripciones", e);
+                throw e;
+            }
+        };
+        return new ResponseEntity<>(cuerpo, headers, HttpStatus.OK);
+    }
+    
+    // Exportación masiva en CSV/NDJSON (inscripciones, puntuaciones por área o respuestas), opcionalmente comprimida con gzip
+    @GetMapping("/inscripciones/exportar/{conjunto}")
+    public ResponseEntity<StreamingResponseBody> exportarDatos(@PathVariable String conjunto,
+                                                               @RequestParam(defaultValue = "csv") String formato,
+                                                               @RequestParam(defaultValue = "false") boolean gzip) {
+        ExportacionService.Conjunto conjuntoExportado = ExportacionService.Conjunto.desde(conjunto);
+        ExportacionService.Formato formatoExportado = ExportacionService.Formato.desde(formato);
+        if (conjuntoExportado == null || formatoExportado == null) {
+            return ResponseEntity.badRequest().build();
         }
+        
+        String nombreArchivo = conjuntoExportado.getNombre() + "." + formatoExportado.getExtension() + (gzip ? ".gz" : "");
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(gzip ? "application/gzip" : formatoExportado.getContentType()));
+        headers.setContentDispositionFormData("attachment", nombreArchivo);
+        headers.setCacheControl("no-store");
+        
+        StreamingResponseBody cuerpo = salida -> {
+            try {
+                exportacionService.exportar(conjuntoExportado, formatoExportado, gzip, salida);
+            } catch (Exception e) {
+                logger.error("Error al exportar {} en {}", conjunto, formato, e);
+                throw e;
+            }
+        };
+        return new ResponseEntity<>(cuerpo, headers, HttpStatus.OK);
+    }
+    
+    // Descarga masiva de PDFs en un ZIP, con los mismos filtros que el listado de inscripciones (solo exámenes finalizados)
+    @GetMapping("/inscripciones/pdf-zip")
+    public ResponseEntity<StreamingResponseBody> descargarPdfsInscripciones(
+            @RequestParam(required = false) String dni,
+            @RequestParam(required = false) String cuil,
+            @RequestParam(required = false) String email,
+            @RequestParam(required = false) String estadoTiempo,
+            @RequestParam(defaultValue = "admin") String tipo,
+            HttpServletRequest request) {
+        PdfService.TipoPdf tipoPdf;
+        switch (tipo.toLowerCase()) {
+            case "resultado":
+                tipoPdf = PdfService.TipoPdf.SOLO_RESULTADO;
+                break;
+            case "recomendaciones":
+                tipoPdf = PdfService.TipoPdf.SOLO_RECOMENDACIONES;
+                break;
+            case "completo":
+                tipoPdf = PdfService.TipoPdf.RESULTADO_COMPLETO;
+                break;
+            case "admin":
+                tipoPdf = PdfService.TipoPdf.ADMIN_COMPLETO;
+                break;
+            default:
+                return ResponseEntity.badRequest().build();
+        }
+        
+        LotePdfService.Reserva reserva = lotePdfService.reservar();
+        if (reserva == null) {
+            logger.warn("Descarga masiva de PDFs rechazada: ya hay otra en curso");
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "60")
+                .build();
+        }
+        // Si la solicitud asíncrona vence o el cliente corta antes de que el cuerpo se ejecute,
+        // escribirZip nunca corre: liberar el lugar al completarse la solicitud, pase lo que pase
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor("lotePdfReserva",
+            new CallableProcessingInterceptor() {
+                @Override
+                public <T> void afterCompletion(NativeWebRequest webRequest, Callable<T> task) {
+                    reserva.liberar();
+                }
+            });
+        
+        InscripcionConsultaRepository.FiltroInscripciones filtro = formularioService.crearFiltro(dni, cuil, email, estadoTiempo);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/zip"));
+        headers.setContentDispositionFormData("attachment", "pdfs_inscripciones_" +
+            LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".zip");
+        headers.setCacheControl("no-store");
+        
+        StreamingResponseBody cuerpo = salida -> {
+            try {
+                lotePdfService.escribirZip(reserva, filtro, tipoPdf, salida);
+            } catch (Exception e) {
+                logger.error("Error al generar el ZIP de PDFs de inscripciones", e);
+                throw e;
+            }
+        };
+        return new ResponseEntity<>(cuerpo, headers, HttpStatus.OK);
     }
     
     // Método auxiliar para construir la URL de redirección a Bondarea
@@ -1501,7 +1576,7 @@ public class FormularioController {
         }
         
         // Generar token hash para el examen
-        String token = com.formulario.util.ExamenTokenUtil.generarToken(examen.getId());
+        String token = tokensExamenService.generar(examen.getId(), ExamenTokenUtil.Proposito.EXAMEN);
         
         // Agregar ruta del examen con token
         url.append("/examen/").append(token);
@@ -1514,7 +1589,7 @@ public class FormularioController {
     }
 
     private String construirUrlReintento(HttpServletRequest request, Examen examen) {
-        String tokenReintento = com.formulario.util.ExamenTokenUtil.generarToken(examen.getId());
+        String tokenReintento = tokensExamenService.generar(examen.getId(), ExamenTokenUtil.Proposito.REINTENTO);
         return obtenerBaseUrl(request) + "/examen/reintento/" + tokenReintento;
     }
 
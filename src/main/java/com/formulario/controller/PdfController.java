@@ -1,9 +1,14 @@
 package com.formulario.controller;
 
 import com.formulario.service.PdfService;
+import com.formulario.service.PdfService.TipoPdf;
+import com.formulario.service.RenderizadorPdfService.PdfSaturadoException;
+import com.formulario.service.TrabajosPdfService;
+import com.formulario.service.TrabajosPdfService.TrabajoPdf;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -11,11 +16,14 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Map;
 
 @Controller
 @RequestMapping("/pdf")
@@ -23,91 +31,40 @@ public class PdfController {
     
     private static final Logger logger = LoggerFactory.getLogger(PdfController.class);
     
+    private static final long MAXIMA_ESPERA_TRABAJO_SEGUNDOS = 30;
+    private static final int SEGUNDOS_ENTRE_CONSULTAS_TRABAJO = 2;
+    
     @Autowired
     private PdfService pdfService;
     
+    @Autowired
+    private TrabajosPdfService trabajosPdfService;
+    
     /**
      * Genera un PDF completo con resultado del examen y recomendaciones laborales
      */
     @GetMapping("/resultado-completo/{personaId}")
-    public ResponseEntity<byte[]> generarPdfCompleto(@PathVariable Long personaId) {
-        try {
-            logger.info("Generando PDF completo para persona ID: {}", personaId);
-            
-            byte[] pdfBytes = pdfService.generarPdfResultado(personaId);
-            
-            String filename = "resultado_examen_" + personaId + "_" + 
-                            LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".pdf";
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.setContentDispositionFormData("attachment", filename);
-            headers.setContentLength(pdfBytes.length);
-            
-            logger.info("PDF completo generado exitosamente para persona ID: {}", personaId);
-            
-            return new ResponseEntity<>(pdfBytes, headers, HttpStatus.OK);
-            
-        } catch (Exception e) {
-            logger.error("Error al generar PDF completo para persona ID: {}", personaId, e);
-            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
-        }
+    public ResponseEntity<byte[]> generarPdfCompleto(@PathVariable Long personaId,
+                                                     @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return responderPdf(personaId, TipoPdf.RESULTADO_COMPLETO, "resultado_examen_", ifNoneMatch);
     }
     
     /**
      * Genera un PDF solo con el resultado del examen
      */
     @GetMapping("/solo-resultado/{personaId}")
-    public ResponseEntity<byte[]> generarPdfSoloResultado(@PathVariable Long personaId) {
-        try {
-            logger.info("Generando PDF solo resultado para persona ID: {}", personaId);
-            
-            byte[] pdfBytes = pdfService.generarPdfSoloResultado(personaId);
-            
-            String filename = "resultado_examen_" + personaId + "_" + 
-                            LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".pdf";
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.setContentDispositionFormData("attachment", filename);
-            headers.setContentLength(pdfBytes.length);
-            
-            logger.info("PDF solo resultado generado exitosamente para persona ID: {}", personaId);
-            
-            return new ResponseEntity<>(pdfBytes, headers, HttpStatus.OK);
-            
-        } catch (Exception e) {
-            logger.error("Error al generar PDF solo resultado para persona ID: {}", personaId, e);
-            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
-        }
+    public ResponseEntity<byte[]> generarPdfSoloResultado(@PathVariable Long personaId,
+                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return responderPdf(personaId, TipoPdf.SOLO_RESULTADO, "resultado_examen_", ifNoneMatch);
     }
     
     /**
      * Genera un PDF solo con las recomendaciones laborales
      */
     @GetMapping("/solo-recomendaciones/{personaId}")
-    public ResponseEntity<byte[]> generarPdfSoloRecomendaciones(@PathVariable Long personaId) {
-        try {
-            logger.info("Generando PDF solo recomendaciones para persona ID: {}", personaId);
-            
-            byte[] pdfBytes = pdfService.generarPdfSoloRecomendaciones(personaId);
-            
-            String filename = "recomendaciones_laborales_" + personaId + "_" + 
-                            LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".pdf";
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.setContentDispositionFormData("attachment", filename);
-            headers.setContentLength(pdfBytes.length);
-            
-            logger.info("PDF solo recomendaciones generado exitosamente para persona ID: {}", personaId);
-            
-            return new ResponseEntity<>(pdfBytes, headers, HttpStatus.OK);
-            
-        } catch (Exception e) {
-            logger.error("Error al generar PDF solo recomendaciones para persona ID: {}", personaId, e);
-            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
-        }
+    public ResponseEntity<byte[]> generarPdfSoloRecomendaciones(@PathVariable Long personaId,
+                                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return responderPdf(personaId, TipoPdf.SOLO_RECOMENDACIONES, "recomendaciones_laborales_", ifNoneMatch);
     }
     
     /**
@@ -115,44 +72,16 @@ public class PdfController {
      */
     @GetMapping("/{personaId}")
     public ResponseEntity<byte[]> generarPdf(@PathVariable Long personaId, 
-                                           @RequestParam(defaultValue = "completo") String tipo) {
-        try {
-            logger.info("Generando PDF tipo '{}' para persona ID: {}", tipo, personaId);
-            
-            byte[] pdfBytes;
-            String filename;
-            
-            switch (tipo.toLowerCase()) {
-                case "resultado":
-                    pdfBytes = pdfService.generarPdfSoloResultado(personaId);
-                    filename = "resultado_examen_" + personaId + "_" + 
-                              LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".pdf";
-                    break;
-                case "recomendaciones":
-                    pdfBytes = pdfService.generarPdfSoloRecomendaciones(personaId);
-                    filename = "recomendaciones_laborales_" + personaId + "_" + 
-                              LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".pdf";
-                    break;
-                case "completo":
-                default:
-                    pdfBytes = pdfService.generarPdfResultado(personaId);
-                    filename = "resultado_completo_" + personaId + "_" + 
-                              LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".pdf";
-                    break;
-            }
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.setContentDispositionFormData("attachment", filename);
-            headers.setContentLength(pdfBytes.length);
-            
-            logger.info("PDF tipo '{}' generado exitosamente para persona ID: {}", tipo, personaId);
-            
-            return new ResponseEntity<>(pdfBytes, headers, HttpStatus.OK);
-            
-        } catch (Exception e) {
-            logger.error("Error al generar PDF tipo '{}' para persona ID: {}", tipo, personaId, e);
-            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+                                           @RequestParam(defaultValue = "completo") String tipo,
+                                           @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        switch (tipo.toLowerCase()) {
+            case "resultado":
+                return responderPdf(personaId, TipoPdf.SOLO_RESULTADO, "resultado_examen_", ifNoneMatch);
+            case "recomendaciones":
+                return responderPdf(personaId, TipoPdf.SOLO_RECOMENDACIONES, "recomendaciones_laborales_", ifNoneMatch);
+            case "completo":
+            default:
+                return responderPdf(personaId, TipoPdf.RESULTADO_COMPLETO, "resultado_completo_", ifNoneMatch);
         }
     }
     
@@ -160,27 +89,166 @@ public class PdfController {
      * Genera un PDF completo con preguntas y respuestas (solo para administradores)
      */
     @GetMapping("/admin/completo/{personaId}")
-    public ResponseEntity<byte[]> generarPdfCompletoAdmin(@PathVariable Long personaId) {
+    public ResponseEntity<byte[]> generarPdfCompletoAdmin(@PathVariable Long personaId,
+                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return responderPdf(personaId, TipoPdf.ADMIN_COMPLETO, "resultado_completo_admin_", ifNoneMatch);
+    }
+    
+    /**
+     * Arma la respuesta de descarga de un PDF. Si el examen está finalizado el PDF es cacheable:
+     * se responde con ETag y, si el cliente ya tiene esa versión (If-None-Match), con 304 sin generar nada.
+     */
+    private ResponseEntity<byte[]> responderPdf(Long personaId, TipoPdf tipo, String prefijoArchivo, String ifNoneMatch) {
         try {
-            logger.info("Generando PDF completo con preguntas para administrador - persona ID: {}", personaId);
+            logger.info("Generando PDF {} para persona ID: {}", tipo, personaId);
             
-            byte[] pdfBytes = pdfService.generarPdfCompletoConPreguntas(personaId);
+            String clave = pdfService.calcularClaveCache(personaId, tipo);
+            String etag = clave != null ? "\"" + clave + "\"" : null;
             
-            String filename = "resultado_completo_admin_" + personaId + "_" + 
-                            LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".pdf";
+            if (etag != null && coincideEtag(ifNoneMatch, etag)) {
+                logger.info("PDF {} sin cambios para persona ID: {} (304)", tipo, personaId);
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .build();
+            }
             
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.setContentDispositionFormData("attachment", filename);
-            headers.setContentLength(pdfBytes.length);
+            byte[] pdfBytes = pdfService.obtenerPdf(personaId, tipo, clave);
             
-            logger.info("PDF completo con preguntas generado exitosamente para administrador - persona ID: {}", personaId);
+            logger.info("PDF {} generado exitosamente para persona ID: {}", tipo, personaId);
             
-            return new ResponseEntity<>(pdfBytes, headers, HttpStatus.OK);
+            return respuestaPdf(pdfBytes, prefijoArchivo + personaId, etag);
             
+        } catch (PdfSaturadoException e) {
+            logger.warn("PDF {} para persona ID: {} rechazado: {}", tipo, personaId, e.getMessage());
+            return respuestaSaturado(e);
         } catch (Exception e) {
-            logger.error("Error al generar PDF completo con preguntas para administrador - persona ID: {}", personaId, e);
+            logger.error("Error al generar PDF {} para persona ID: {}", tipo, personaId, e);
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
+    
+    /**
+     * Encola la generación asíncrona de un PDF; la respuesta trae el ID del trabajo para consultar su estado.
+     * El PDF de administración (con preguntas y respuestas) no se puede pedir por acá.
+     */
+    @PostMapping("/trabajos/{personaId}")
+    public ResponseEntity<Map<String, Object>> encolarPdf(@PathVariable Long personaId,
+                                                          @RequestParam(defaultValue = "completo") String tipo) {
+        if ("admin".equalsIgnoreCase(tipo)) {
+            logger.warn("Trabajo de PDF de administración rechazado para persona ID: {}", personaId);
+            return ResponseEntity.badRequest().body(Map.of("error", "Tipo de PDF no permitido"));
+        }
+        try {
+            TrabajoPdf trabajo = trabajosPdfService.encolar(personaId, tipoDesdeParametro(tipo));
+            Map<String, Object> respuesta = trabajo.resumen();
+            respuesta.put("urlEstado", "/pdf/trabajos/" + trabajo.getId());
+            respuesta.put("urlDescarga", "/pdf/trabajos/" + trabajo.getId() + "/descarga");
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(respuesta);
+        } catch (PdfSaturadoException e) {
+            logger.warn("Trabajo de PDF para persona ID: {} rechazado: {}", personaId, e.getMessage());
+            return respuestaSaturado(e);
+        }
+    }
+    
+    /**
+     * Estado de un trabajo de PDF asíncrono
+     */
+    @GetMapping("/trabajos/{id}")
+    public ResponseEntity<Map<String, Object>> estadoTrabajo(@PathVariable String id) {
+        TrabajoPdf trabajo = trabajosPdfService.obtener(id);
+        if (trabajo == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(trabajo.resumen());
+    }
+    
+    /**
+     * Descarga el PDF de un trabajo asíncrono. Con esperarSegundos la respuesta se demora hasta
+     * que el PDF esté listo (máximo 30 s); si sigue en curso responde 202 con Retry-After.
+     */
+    @GetMapping("/trabajos/{id}/descarga")
+    public ResponseEntity<byte[]> descargarTrabajo(@PathVariable String id,
+                                                   @RequestParam(defaultValue = "0") long esperarSegundos) {
+        TrabajoPdf trabajo = trabajosPdfService.obtener(id);
+        if (trabajo == null) {
+            return ResponseEntity.notFound().build();
+        }
+        trabajo.esperar(Math.min(Math.max(esperarSegundos, 0), MAXIMA_ESPERA_TRABAJO_SEGUNDOS));
+        
+        switch (trabajo.getEstado()) {
+            case LISTO:
+                return respuestaPdf(trabajo.getPdf(), prefijoArchivo(trabajo.getTipo()) + trabajo.getPersonaId(), trabajo.getEtag());
+            case ERROR:
+                return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+            default:
+                return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(SEGUNDOS_ENTRE_CONSULTAS_TRABAJO))
+                    .build();
+        }
+    }
+    
+    private ResponseEntity<byte[]> respuestaPdf(byte[] pdfBytes, String nombreBase, String etag) {
+        String filename = nombreBase + "_" + 
+                        LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".pdf";
+        
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_PDF);
+        headers.setContentDispositionFormData("attachment", filename);
+        headers.setContentLength(pdfBytes.length);
+        if (etag != null) {
+            headers.setETag(etag);
+            headers.setCacheControl(CacheControl.noCache().cachePrivate());
+        }
+        
+        return new ResponseEntity<>(pdfBytes, headers, HttpStatus.OK);
+    }
+    
+    private <T> ResponseEntity<T> respuestaSaturado(PdfSaturadoException e) {
+        return ResponseEntity.status(e.getEstadoHttp())
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getReintentarEnSegundos()))
+            .build();
+    }
+    
+    private TipoPdf tipoDesdeParametro(String tipo) {
+        switch (tipo.toLowerCase()) {
+            case "resultado":
+                return TipoPdf.SOLO_RESULTADO;
+            case "recomendaciones":
+                return TipoPdf.SOLO_RECOMENDACIONES;
+            case "completo":
+            default:
+                return TipoPdf.RESULTADO_COMPLETO;
+        }
+    }
+    
+    private String prefijoArchivo(TipoPdf tipo) {
+        switch (tipo) {
+            case SOLO_RESULTADO:
+                return "resultado_examen_";
+            case SOLO_RECOMENDACIONES:
+                return "recomendaciones_laborales_";
+            case ADMIN_COMPLETO:
+                return "resultado_completo_admin_";
+            case RESULTADO_COMPLETO:
+            default:
+                return "resultado_completo_";
+        }
+    }
+    
+    private boolean coincideEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidato : ifNoneMatch.split(",")) {
+            String valor = candidato.trim();
+            if (valor.startsWith("W/")) {
+                valor = valor.substring(2);
+            }
+            if (valor.equals(etag) || valor.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
 } 
\ No newline at end of file
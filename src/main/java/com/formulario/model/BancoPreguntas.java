@@ -0,0 +1,75 @@
+package com.formulario.model;
+
+import com.formulario.model.Pregunta.AreaConocimiento;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot inmutable y versionado del banco de preguntas activas, agrupado por área de conocimiento.
+ * Se reemplaza completo (nunca se modifica) cada vez que el administrador cambia las preguntas.
+ */
+public final class BancoPreguntas {
+
+    private final long version;
+    private final LocalDateTime fechaConstruccion;
+    private final Map<AreaConocimiento, List<PreguntaBanco>> preguntasPorArea;
+    private final Map<Long, PreguntaBanco> preguntasPorId;
+    private final int totalPreguntas;
+
+    public BancoPreguntas(long version, List<Pregunta> preguntasActivas) {
+        Map<AreaConocimiento, List<PreguntaBanco>> porArea = new EnumMap<>(AreaConocimiento.class);
+        for (AreaConocimiento area : AreaConocimiento.values()) {
+            porArea.put(area, new ArrayList<>());
+        }
+
+        Map<Long, PreguntaBanco> porId = new HashMap<>();
+        for (Pregunta pregunta : preguntasActivas) {
+            if (pregunta.getAreaConocimiento() == null || porId.containsKey(pregunta.getId())) {
+                continue;
+            }
+            PreguntaBanco preguntaBanco = new PreguntaBanco(pregunta);
+            porArea.get(pregunta.getAreaConocimiento()).add(preguntaBanco);
+            porId.put(preguntaBanco.getId(), preguntaBanco);
+        }
+
+        for (AreaConocimiento area : AreaConocimiento.values()) {
+            porArea.put(area, Collections.unmodifiableList(porArea.get(area)));
+        }
+
+        this.version = version;
+        this.fechaConstruccion = LocalDateTime.now();
+        this.preguntasPorArea = Collections.unmodifiableMap(porArea);
+        this.preguntasPorId = Collections.unmodifiableMap(porId);
+        this.totalPreguntas = porId.size();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public LocalDateTime getFechaConstruccion() {
+        return fechaConstruccion;
+    }
+
+    public List<PreguntaBanco> getPreguntas(AreaConocimiento area) {
+        return preguntasPorArea.get(area);
+    }
+
+    public PreguntaBanco getPregunta(Long id) {
+        return preguntasPorId.get(id);
+    }
+
+    public int getTotalPreguntas() {
+        return totalPreguntas;
+    }
+
+    public boolean estaVacio() {
+        return totalPreguntas == 0;
+    }
+}
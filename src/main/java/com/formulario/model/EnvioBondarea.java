@@ -0,0 +1,99 @@
+package com.formulario.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Actualización de un caso de Bondarea pendiente de envío (outbox). Se inserta en la misma transacción
+ * que el cambio que la origina y un despachador en segundo plano la envía, con reintentos; las que agotan
+ * los reintentos quedan en estado FALLIDO para revisarlas desde administración.
+ * La clave de idempotencia (caso + hash del body) evita encolar dos veces la misma actualización.
+ * Cada caso se envía en orden: una actualización nueva reemplaza a las anteriores del mismo caso que
+ * todavía no se entregaron (quedan REEMPLAZADO), así un reintento viejo nunca pisa datos más nuevos.
+ */
+@Entity
+@Table(name = "envios_bondarea",
+       uniqueConstraints = @UniqueConstraint(name = "uk_envios_bondarea_clave", columnNames = "clave_idempotencia"),
+       indexes = {
+           @Index(name = "idx_envios_bondarea_estado_proximo", columnList = "estado, proximo_intento"),
+           @Index(name = "idx_envios_bondarea_caso", columnList = "id_caso, estado")
+       })
+public class EnvioBondarea {
+
+    public enum Estado { PENDIENTE, EN_PROCESO, ENVIADO, FALLIDO, REEMPLAZADO }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "id_caso", nullable = false, length = 50)
+    private String idCaso;
+
+    @Column(name = "clave_idempotencia", nullable = false, length = 120)
+    private String claveIdempotencia;
+
+    /** Body del PUT en JSON, con las claves ordenadas. */
+    @Column(name = "payload", nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado", nullable = false, length = 20)
+    private Estado estado = Estado.PENDIENTE;
+
+    @Column(name = "intentos", nullable = false)
+    private int intentos;
+
+    @Column(name = "proximo_intento", nullable = false)
+    private LocalDateTime proximoIntento;
+
+    @Column(name = "ultimo_error", length = 500)
+    private String ultimoError;
+
+    @Column(name = "tracking_pars", length = 200)
+    private String trackingPars;
+
+    @Column(name = "fecha_creacion", nullable = false)
+    private LocalDateTime fechaCreacion;
+
+    @Column(name = "fecha_actualizacion")
+    private LocalDateTime fechaActualizacion;
+
+    @Column(name = "fecha_envio")
+    private LocalDateTime fechaEnvio;
+
+    public EnvioBondarea() {}
+
+    public EnvioBondarea(String idCaso, String claveIdempotencia, String payload) {
+        this.idCaso = idCaso;
+        this.claveIdempotencia = claveIdempotencia;
+        this.payload = payload;
+        this.fechaCreacion = LocalDateTime.now();
+        this.fechaActualizacion = this.fechaCreacion;
+        this.proximoIntento = this.fechaCreacion;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public String getIdCaso() { return idCaso; }
+    public void setIdCaso(String idCaso) { this.idCaso = idCaso; }
+    public String getClaveIdempotencia() { return claveIdempotencia; }
+    public void setClaveIdempotencia(String claveIdempotencia) { this.claveIdempotencia = claveIdempotencia; }
+    public String getPayload() { return payload; }
+    public void setPayload(String payload) { this.payload = payload; }
+    public Estado getEstado() { return estado; }
+    public void setEstado(Estado estado) { this.estado = estado; }
+    public int getIntentos() { return intentos; }
+    public void setIntentos(int intentos) { this.intentos = intentos; }
+    public LocalDateTime getProximoIntento() { return proximoIntento; }
+    public void setProximoIntento(LocalDateTime proximoIntento) { this.proximoIntento = proximoIntento; }
+    public String getUltimoError() { return ultimoError; }
+    public void setUltimoError(String ultimoError) { this.ultimoError = ultimoError; }
+    public String getTrackingPars() { return trackingPars; }
+    public void setTrackingPars(String trackingPars) { this.trackingPars = trackingPars; }
+    public LocalDateTime getFechaCreacion() { return fechaCreacion; }
+    public void setFechaCreacion(LocalDateTime fechaCreacion) { this.fechaCreacion = fechaCreacion; }
+    public LocalDateTime getFechaActualizacion() { return fechaActualizacion; }
+    public void setFechaActualizacion(LocalDateTime fechaActualizacion) { this.fechaActualizacion = fechaActualizacion; }
+    public LocalDateTime getFechaEnvio() { return fechaEnvio; }
+    public void setFechaEnvio(LocalDateTime fechaEnvio) { this.fechaEnvio = fechaEnvio; }
+}
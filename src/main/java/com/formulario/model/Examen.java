@@ -5,8 +5,6 @@ import jakarta.validation.constraints.*;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.stream.Collectors;
 import com.formulario.model.Pregunta.AreaConocimiento;
 
@@ -28,6 +26,25 @@ public class Examen {
     private Integer creatividad;
     private Integer programacion;
     
+    // Contadores por área de respuestas correctas / respondidas; se actualizan al corregir cada respuesta
+    // y permiten recalcular las puntuaciones sin recorrer las respuestas
+    @Column(name = "correctas_logica", nullable = false, columnDefinition = "integer default 0")
+    private int correctasLogica;
+    @Column(name = "total_logica", nullable = false, columnDefinition = "integer default 0")
+    private int totalLogica;
+    @Column(name = "correctas_matematica", nullable = false, columnDefinition = "integer default 0")
+    private int correctasMatematica;
+    @Column(name = "total_matematica", nullable = false, columnDefinition = "integer default 0")
+    private int totalMatematica;
+    @Column(name = "correctas_creatividad", nullable = false, columnDefinition = "integer default 0")
+    private int correctasCreatividad;
+    @Column(name = "total_creatividad", nullable = false, columnDefinition = "integer default 0")
+    private int totalCreatividad;
+    @Column(name = "correctas_programacion", nullable = false, columnDefinition = "integer default 0")
+    private int correctasProgramacion;
+    @Column(name = "total_programacion", nullable = false, columnDefinition = "integer default 0")
+    private int totalProgramacion;
+    
     // Información del examen
     private LocalDateTime fechaInicio;
     private LocalDateTime fechaFin;
@@ -37,6 +54,10 @@ public class Examen {
     
     private String comentarios;
     
+    // Sorteo congelado de preguntas (IDs y permutación de opciones, ver SorteoExamen)
+    @Column(name = "preguntas_asignadas", columnDefinition = "TEXT")
+    private String preguntasAsignadas;
+    
     @OneToMany(mappedBy = "examen", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<RespuestaExamen> respuestas;
     
@@ -78,48 +99,69 @@ public class Examen {
         return getPromedio() >= 70;
     }
     
-    // Método para calcular puntuación por área
+    // Método para calcular puntuación por área recorriendo las respuestas (reconstruye los contadores)
     public void calcularPuntuaciones() {
         if (respuestas == null || respuestas.isEmpty()) {
             return;
         }
         
-        // Contadores para cada área
-        Map<AreaConocimiento, Integer> correctasPorArea = new HashMap<>();
-        Map<AreaConocimiento, Integer> totalPorArea = new HashMap<>();
-        
-        // Inicializar contadores
-        for (AreaConocimiento area : AreaConocimiento.values()) {
-            correctasPorArea.put(area, 0);
-            totalPorArea.put(area, 0);
-        }
-        
-        // Contar respuestas correctas e incorrectas por área
+        reiniciarContadores();
         for (RespuestaExamen respuesta : respuestas) {
-            AreaConocimiento area = respuesta.getPregunta().getAreaConocimiento();
-            totalPorArea.put(area, totalPorArea.get(area) + 1);
-            
-            if (respuesta.isEsCorrecta()) {
-                correctasPorArea.put(area, correctasPorArea.get(area) + 1);
-            }
+            registrarRespuesta(respuesta.getPregunta().getAreaConocimiento(), respuesta.isEsCorrecta());
         }
         
-        // Calcular porcentajes por área
-        this.logica = calcularPorcentaje(correctasPorArea, totalPorArea, AreaConocimiento.LOGICA);
-        this.matematica = calcularPorcentaje(correctasPorArea, totalPorArea, AreaConocimiento.MATEMATICA);
-        this.creatividad = calcularPorcentaje(correctasPorArea, totalPorArea, AreaConocimiento.CREATIVIDAD);
-        this.programacion = calcularPorcentaje(correctasPorArea, totalPorArea, AreaConocimiento.PROGRAMACION);
+        recalcularDesdeContadores();
+    }
+    
+    /**
+     * Recalcula las puntuaciones: usa los contadores por área si existen y solo recorre las respuestas
+     * en exámenes corregidos antes de que existieran los contadores.
+     */
+    public void recalcularPuntuaciones() {
+        if (tieneContadores()) {
+            recalcularDesdeContadores();
+        } else {
+            calcularPuntuaciones();
+        }
+    }
+    
+    // Suma una respuesta corregida a los contadores de su área
+    public void registrarRespuesta(AreaConocimiento area, boolean esCorrecta) {
+        int correcta = esCorrecta ? 1 : 0;
+        switch (area) {
+            case LOGICA -> { totalLogica++; correctasLogica += correcta; }
+            case MATEMATICA -> { totalMatematica++; correctasMatematica += correcta; }
+            case CREATIVIDAD -> { totalCreatividad++; correctasCreatividad += correcta; }
+            case PROGRAMACION -> { totalProgramacion++; correctasProgramacion += correcta; }
+        }
+    }
+    
+    public void reiniciarContadores() {
+        correctasLogica = totalLogica = 0;
+        correctasMatematica = totalMatematica = 0;
+        correctasCreatividad = totalCreatividad = 0;
+        correctasProgramacion = totalProgramacion = 0;
+    }
+    
+    public boolean tieneContadores() {
+        return totalLogica + totalMatematica + totalCreatividad + totalProgramacion > 0;
+    }
+    
+    // Cálculo puramente aritmético de porcentajes y totales a partir de los contadores
+    public void recalcularDesdeContadores() {
+        this.logica = calcularPorcentaje(correctasLogica, totalLogica);
+        this.matematica = calcularPorcentaje(correctasMatematica, totalMatematica);
+        this.creatividad = calcularPorcentaje(correctasCreatividad, totalCreatividad);
+        this.programacion = calcularPorcentaje(correctasProgramacion, totalProgramacion);
         
-        // Calcular totales
-        this.totalPreguntas = respuestas.size();
-        this.respuestasCorrectas = (int) respuestas.stream().filter(RespuestaExamen::isEsCorrecta).count();
+        this.totalPreguntas = totalLogica + totalMatematica + totalCreatividad + totalProgramacion;
+        this.respuestasCorrectas = correctasLogica + correctasMatematica + correctasCreatividad + correctasProgramacion;
     }
     
     // Método auxiliar para calcular porcentaje
-    private Integer calcularPorcentaje(Map<AreaConocimiento, Integer> correctas, Map<AreaConocimiento, Integer> totales, AreaConocimiento area) {
-        int total = totales.get(area);
+    private Integer calcularPorcentaje(int correctas, int total) {
         if (total == 0) return 0;
-        return (correctas.get(area) * 100) / total;
+        return (correctas * 100) / total;
     }
     
     // Getters y Setters
@@ -167,6 +209,38 @@ public class Examen {
         return programacion;
     }
     
+    public int getCorrectasLogica() {
+        return correctasLogica;
+    }
+    
+    public int getTotalLogica() {
+        return totalLogica;
+    }
+    
+    public int getCorrectasMatematica() {
+        return correctasMatematica;
+    }
+    
+    public int getTotalMatematica() {
+        return totalMatematica;
+    }
+    
+    public int getCorrectasCreatividad() {
+        return correctasCreatividad;
+    }
+    
+    public int getTotalCreatividad() {
+        return totalCreatividad;
+    }
+    
+    public int getCorrectasProgramacion() {
+        return correctasProgramacion;
+    }
+    
+    public int getTotalProgramacion() {
+        return totalProgramacion;
+    }
+    
     public void setProgramacion(Integer programacion) {
         this.programacion = programacion;
     }
@@ -196,6 +270,14 @@ public class Examen {
         this.comentarios = comentarios;
     }
     
+    public String getPreguntasAsignadas() {
+        return preguntasAsignadas;
+    }
+    
+    public void setPreguntasAsignadas(String preguntasAsignadas) {
+        this.preguntasAsignadas = preguntasAsignadas;
+    }
+    
     public LocalDateTime getFechaInicio() {
         return fechaInicio;
     }
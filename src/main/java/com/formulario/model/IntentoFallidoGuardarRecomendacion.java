@@ -8,7 +8,8 @@ import java.time.LocalDateTime;
  * (error de red, 5xx en servidor, etc.) para poder mostrar en admin que fue la opción 3.
  */
 @Entity
-@Table(name = "intentos_fallo_guardar_recomendacion")
+@Table(name = "intentos_fallo_guardar_recomendacion",
+       indexes = @Index(name = "idx_intentos_fallo_examen_fecha", columnList = "examen_id, fecha_hora"))
 public class IntentoFallidoGuardarRecomendacion {
 
     @Id
@@ -0,0 +1,244 @@
+package com.formulario.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Requisitos y pesos de todos los roles profesionales activos compilados en arrays primitivos
+ * (una columna por área), para puntuar un examen contra todos los roles en un único recorrido
+ * sin tocar entidades. Es inmutable: cuando cambia el catálogo se arma una matriz nueva.
+ * El puntaje es el mismo que {@link RolProfesional#calcularCompatibilidad(Examen)}.
+ */
+public final class MatrizCompatibilidadRoles {
+
+    private static final int AREAS = 4;
+    private static final int LOGICA = 0;
+    private static final int MATEMATICA = 1;
+    private static final int CREATIVIDAD = 2;
+    private static final int PROGRAMACION = 3;
+
+    private final long version;
+    private final int totalRoles;
+    private final long[] rolIds;
+    private final String[] categorias;
+    private final String[] niveles;
+
+    // Por área y por rol: mínimo requerido (solo válido si tieneMinimo) y peso (0 = no pondera)
+    private final int[][] minimos;
+    private final boolean[][] tieneMinimo;
+    private final int[][] pesos;
+    // Promedio mínimo por rol (NEGATIVE_INFINITY = sin mínimo)
+    private final double[] minimosPromedio;
+
+    public MatrizCompatibilidadRoles(long version, List<RolProfesional> roles) {
+        List<RolProfesional> ordenados = new ArrayList<>(roles);
+        ordenados.sort(Comparator.comparing(RolProfesional::getId, Comparator.nullsLast(Comparator.naturalOrder())));
+
+        this.version = version;
+        this.totalRoles = ordenados.size();
+        this.rolIds = new long[totalRoles];
+        this.categorias = new String[totalRoles];
+        this.niveles = new String[totalRoles];
+        this.minimos = new int[AREAS][totalRoles];
+        this.tieneMinimo = new boolean[AREAS][totalRoles];
+        this.pesos = new int[AREAS][totalRoles];
+        this.minimosPromedio = new double[totalRoles];
+
+        for (int i = 0; i < totalRoles; i++) {
+            RolProfesional rol = ordenados.get(i);
+            rolIds[i] = rol.getId() != null ? rol.getId() : -1;
+            categorias[i] = rol.getCategoria();
+            niveles[i] = rol.getNivel();
+            compilarArea(LOGICA, i, rol.getMinLogica(), rol.getPesoLogica());
+            compilarArea(MATEMATICA, i, rol.getMinMatematica(), rol.getPesoMatematica());
+            compilarArea(CREATIVIDAD, i, rol.getMinCreatividad(), rol.getPesoCreatividad());
+            compilarArea(PROGRAMACION, i, rol.getMinProgramacion(), rol.getPesoProgramacion());
+            minimosPromedio[i] = rol.getMinPromedio() != null ? rol.getMinPromedio() : Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    private void compilarArea(int area, int rol, Integer minimo, Integer peso) {
+        tieneMinimo[area][rol] = minimo != null;
+        minimos[area][rol] = minimo != null ? minimo : 0;
+        pesos[area][rol] = peso != null && peso > 0 ? peso : 0;
+    }
+
+    /**
+     * Los k roles más compatibles con el examen (compatibilidad > 0), de mayor a menor.
+     * Se mantiene un heap de tamaño k en lugar de ordenar todos los roles.
+     * @param categoria si no es null, solo roles de esa categoría
+     * @param nivel si no es null, solo roles de ese nivel
+     */
+    public List<PuntajeRol> mejores(Examen examen, int k, String categoria, String nivel) {
+        if (examen == null || k <= 0 || totalRoles == 0) {
+            return Collections.emptyList();
+        }
+
+        int[] valores = new int[AREAS];
+        boolean[] presentes = new boolean[AREAS];
+        cargarArea(LOGICA, examen.getLogica(), valores, presentes);
+        cargarArea(MATEMATICA, examen.getMatematica(), valores, presentes);
+        cargarArea(CREATIVIDAD, examen.getCreatividad(), valores, presentes);
+        cargarArea(PROGRAMACION, examen.getProgramacion(), valores, presentes);
+        double promedio = examen.getPromedio();
+
+        MonticuloTopK monticulo = new MonticuloTopK(Math.min(k, totalRoles));
+        for (int i = 0; i < totalRoles; i++) {
+            if ((categoria != null && !categoria.equals(categorias[i])) || (nivel != null && !nivel.equals(niveles[i]))) {
+                continue;
+            }
+            double puntaje = puntuar(i, valores, presentes, promedio);
+            if (puntaje > 0) {
+                monticulo.ofrecer(i, puntaje);
+            }
+        }
+        return monticulo.extraerOrdenado(rolIds);
+    }
+
+    private static void cargarArea(int area, Integer valor, int[] valores, boolean[] presentes) {
+        presentes[area] = valor != null;
+        valores[area] = valor != null ? valor : 0;
+    }
+
+    private double puntuar(int rol, int[] valores, boolean[] presentes, double promedio) {
+        if (promedio < minimosPromedio[rol]) {
+            return 0.0;
+        }
+        double suma = 0.0;
+        int pesoTotal = 0;
+        for (int area = 0; area < AREAS; area++) {
+            boolean exigeMinimo = tieneMinimo[area][rol];
+            if (exigeMinimo && (!presentes[area] || valores[area] < minimos[area][rol])) {
+                return 0.0;
+            }
+            int peso = pesos[area][rol];
+            if (peso > 0 && presentes[area]) {
+                if (!exigeMinimo) {
+                    // Un área ponderada sin mínimo no se puede puntuar: el cálculo original la descarta con compatibilidad 0
+                    return 0.0;
+                }
+                suma += Math.min(120.0, 100.0 + ((valores[area] - minimos[area][rol]) / 10.0)) * peso;
+                pesoTotal += peso;
+            }
+        }
+        return pesoTotal > 0 ? Math.min(100.0, suma / pesoTotal) : 0.0;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getTotalRoles() {
+        return totalRoles;
+    }
+
+    /**
+     * Compatibilidad de un rol con un examen
+     */
+    public static final class PuntajeRol {
+
+        private final long rolId;
+        private final double compatibilidad;
+
+        public PuntajeRol(long rolId, double compatibilidad) {
+            this.rolId = rolId;
+            this.compatibilidad = compatibilidad;
+        }
+
+        public long getRolId() {
+            return rolId;
+        }
+
+        public double getCompatibilidad() {
+            return compatibilidad;
+        }
+    }
+
+    /**
+     * Heap de mínimos de capacidad fija sobre arrays paralelos: la raíz es el peor de los k mejores.
+     * A igual puntaje se prefiere el rol de menor índice (menor ID).
+     */
+    private static final class MonticuloTopK {
+
+        private final int[] indices;
+        private final double[] puntajes;
+        private int tamanio;
+
+        private MonticuloTopK(int capacidad) {
+            this.indices = new int[capacidad];
+            this.puntajes = new double[capacidad];
+        }
+
+        private void ofrecer(int indice, double puntaje) {
+            if (tamanio < indices.length) {
+                indices[tamanio] = indice;
+                puntajes[tamanio] = puntaje;
+                subir(tamanio++);
+            } else if (esPeor(indices[0], puntajes[0], indice, puntaje)) {
+                indices[0] = indice;
+                puntajes[0] = puntaje;
+                bajar(0);
+            }
+        }
+
+        private List<PuntajeRol> extraerOrdenado(long[] rolIds) {
+            PuntajeRol[] resultado = new PuntajeRol[tamanio];
+            for (int i = tamanio - 1; i >= 0; i--) {
+                resultado[i] = new PuntajeRol(rolIds[indices[0]], puntajes[0]);
+                tamanio--;
+                indices[0] = indices[tamanio];
+                puntajes[0] = puntajes[tamanio];
+                bajar(0);
+            }
+            List<PuntajeRol> lista = new ArrayList<>(resultado.length);
+            Collections.addAll(lista, resultado);
+            return lista;
+        }
+
+        // true si (indiceA, puntajeA) ordena por debajo de (indiceB, puntajeB)
+        private static boolean esPeor(int indiceA, double puntajeA, int indiceB, double puntajeB) {
+            return puntajeA < puntajeB || (puntajeA == puntajeB && indiceA > indiceB);
+        }
+
+        private void subir(int posicion) {
+            while (posicion > 0) {
+                int padre = (posicion - 1) >>> 1;
+                if (!esPeor(indices[posicion], puntajes[posicion], indices[padre], puntajes[padre])) {
+                    break;
+                }
+                intercambiar(posicion, padre);
+                posicion = padre;
+            }
+        }
+
+        private void bajar(int posicion) {
+            while (true) {
+                int izquierdo = 2 * posicion + 1;
+                if (izquierdo >= tamanio) {
+                    return;
+                }
+                int menor = izquierdo;
+                int derecho = izquierdo + 1;
+                if (derecho < tamanio && esPeor(indices[derecho], puntajes[derecho], indices[izquierdo], puntajes[izquierdo])) {
+                    menor = derecho;
+                }
+                if (!esPeor(indices[menor], puntajes[menor], indices[posicion], puntajes[posicion])) {
+                    return;
+                }
+                intercambiar(posicion, menor);
+                posicion = menor;
+            }
+        }
+
+        private void intercambiar(int a, int b) {
+            int indice = indices[a];
+            indices[a] = indices[b];
+            indices[b] = indice;
+            double puntaje = puntajes[a];
+            puntajes[a] = puntajes[b];
+            puntajes[b] = puntaje;
+        }
+    }
+}
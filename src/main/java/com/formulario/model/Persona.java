@@ -4,7 +4,8 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 
 @Entity
-@Table(name = "personas")
+@Table(name = "personas",
+       uniqueConstraints = @UniqueConstraint(name = "uk_personas_id_caso_bondarea", columnNames = "id_caso_bondarea"))
 public class Persona {
     
     @Id
@@ -59,7 +60,7 @@ public class Persona {
     @Pattern(regexp = "^[0-9]{11}$", message = "El CUIL debe tener exactamente 11 dígitos")
     private String cuil;
     
-    // ID del caso en Bondarea (opcional, solo para personas creadas desde Bondarea)
+    // ID del caso en Bondarea (opcional, solo para personas creadas desde Bondarea; único por persona)
     @Column(name = "id_caso_bondarea")
     private String idCasoBondarea;
     
@@ -12,7 +12,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 @Entity
-@Table(name = "posiciones_laborales")
+@Table(name = "posiciones_laborales",
+       indexes = @Index(name = "idx_posiciones_activa_minimos",
+                        columnList = "activa, min_promedio, min_logica, min_matematica, min_creatividad, min_programacion"))
 public class PosicionLaboral {
 
     private static final Logger logger = LoggerFactory.getLogger(PosicionLaboral.class);
@@ -43,18 +45,23 @@ public class PosicionLaboral {
     
     // Puntuaciones mínimas requeridas por área (0-100)
     @Min(0) @Max(100)
+    @Column(name = "min_logica")
     private Integer minLogica;
     
     @Min(0) @Max(100)
+    @Column(name = "min_matematica")
     private Integer minMatematica;
     
     @Min(0) @Max(100)
+    @Column(name = "min_creatividad")
     private Integer minCreatividad;
     
     @Min(0) @Max(100)
+    @Column(name = "min_programacion")
     private Integer minProgramacion;
     
     @Min(0) @Max(100)
+    @Column(name = "min_promedio")
     private Integer minPromedio;
     
     // Peso de cada área para esta posición (0-100)
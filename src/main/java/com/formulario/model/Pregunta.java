@@ -29,9 +29,15 @@ public class Pregunta {
     
     private boolean activa = true;
     
+    // Nivel de dificultad (1 = básica, 2 = intermedia, 3 = avanzada); se usa para ponderar el muestreo del examen
+    private Integer dificultad = DIFICULTAD_BASICA;
+    
     @Column(name = "imagen_url", length = 500)
     private String imagenUrl; // URL o ruta de la imagen asociada (opcional)
     
+    public static final int DIFICULTAD_BASICA = 1;
+    public static final int DIFICULTAD_AVANZADA = 3;
+    
     // Enum para las áreas de conocimiento
     public enum AreaConocimiento {
         LOGICA("Lógica"),
@@ -336,6 +342,14 @@ public class Pregunta {
         this.activa = activa;
     }
     
+    public Integer getDificultad() {
+        return dificultad;
+    }
+    
+    public void setDificultad(Integer dificultad) {
+        this.dificultad = dificultad;
+    }
+    
     public String getImagenUrl() {
         return imagenUrl;
     }
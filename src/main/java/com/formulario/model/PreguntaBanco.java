@@ -0,0 +1,144 @@
+package com.formulario.model;
+
+import com.formulario.model.Pregunta.AreaConocimiento;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Copia inmutable de una pregunta activa y sus opciones, usada por el banco de preguntas en memoria.
+ * No es una entidad JPA: se puede compartir entre hilos sin riesgo de lazy loading ni de merges accidentales.
+ */
+public final class PreguntaBanco {
+
+    private final Long id;
+    private final String enunciado;
+    private final AreaConocimiento areaConocimiento;
+    private final Integer opcionCorrecta;
+    private final String imagenUrl;
+    private final int dificultad;
+    private final List<OpcionBanco> opciones;
+
+    public PreguntaBanco(Pregunta pregunta) {
+        this.id = pregunta.getId();
+        this.enunciado = pregunta.getEnunciado();
+        this.areaConocimiento = pregunta.getAreaConocimiento();
+        this.opcionCorrecta = pregunta.getOpcionCorrecta();
+        this.imagenUrl = pregunta.getImagenUrl();
+        this.dificultad = pregunta.getDificultad() != null ? pregunta.getDificultad() : Pregunta.DIFICULTAD_BASICA;
+        this.opciones = ordenarOpciones(pregunta.getOpciones());
+    }
+
+    private PreguntaBanco(PreguntaBanco original, List<OpcionBanco> opciones) {
+        this.id = original.id;
+        this.enunciado = original.enunciado;
+        this.areaConocimiento = original.areaConocimiento;
+        this.opcionCorrecta = original.opcionCorrecta;
+        this.imagenUrl = original.imagenUrl;
+        this.dificultad = original.dificultad;
+        this.opciones = opciones;
+    }
+
+    /**
+     * Devuelve una copia con las opciones presentadas en otro orden (cada opción conserva su campo orden,
+     * que es el valor con el que se responde y se corrige). Si la permutación no aplica, devuelve la misma instancia.
+     */
+    public PreguntaBanco conOpcionesPermutadas(int[] permutacion) {
+        if (permutacion == null || permutacion.length != opciones.size()) {
+            return this;
+        }
+        List<OpcionBanco> permutadas = new ArrayList<>(opciones.size());
+        for (int posicion : permutacion) {
+            if (posicion < 0 || posicion >= opciones.size()) {
+                return this;
+            }
+            permutadas.add(opciones.get(posicion));
+        }
+        return new PreguntaBanco(this, Collections.unmodifiableList(permutadas));
+    }
+
+    /**
+     * Ordena las opciones por orden (y luego por ID) descartando duplicados del mismo orden,
+     * con el mismo criterio que usa la limpieza de duplicados del panel de administración.
+     */
+    private static List<OpcionBanco> ordenarOpciones(List<Opcion> opciones) {
+        if (opciones == null || opciones.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Opcion> ordenadas = new ArrayList<>(opciones);
+        ordenadas.sort(Comparator
+            .comparingInt((Opcion o) -> o.getOrden() != null ? o.getOrden() : 0)
+            .thenComparingLong(o -> o.getId() != null ? o.getId() : 0));
+
+        List<OpcionBanco> resultado = new ArrayList<>(ordenadas.size());
+        Set<Integer> ordenesUsados = new HashSet<>();
+        for (Opcion opcion : ordenadas) {
+            int orden = opcion.getOrden() != null ? opcion.getOrden() : 0;
+            if (ordenesUsados.add(orden)) {
+                resultado.add(new OpcionBanco(opcion.getId(), opcion.getTexto(), orden));
+            }
+        }
+        return Collections.unmodifiableList(resultado);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getEnunciado() {
+        return enunciado;
+    }
+
+    public AreaConocimiento getAreaConocimiento() {
+        return areaConocimiento;
+    }
+
+    public Integer getOpcionCorrecta() {
+        return opcionCorrecta;
+    }
+
+    public String getImagenUrl() {
+        return imagenUrl;
+    }
+
+    public int getDificultad() {
+        return dificultad;
+    }
+
+    public List<OpcionBanco> getOpciones() {
+        return opciones;
+    }
+
+    /**
+     * Opción de una pregunta del banco, ya ordenada.
+     */
+    public static final class OpcionBanco {
+
+        private final Long id;
+        private final String texto;
+        private final Integer orden;
+
+        public OpcionBanco(Long id, String texto, Integer orden) {
+            this.id = id;
+            this.texto = texto;
+            this.orden = orden;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getTexto() {
+            return texto;
+        }
+
+        public Integer getOrden() {
+            return orden;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.formulario.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Resultado de renovar el link de reintento de un caso dentro de una renovación masiva.
+ * Si el trabajo se retoma, los exámenes que ya tienen fila no se vuelven a enviar.
+ */
+@Entity
+@Table(name = "renovaciones_link_caso",
+       uniqueConstraints = @UniqueConstraint(name = "uk_renovacion_link_trabajo_examen", columnNames = {"trabajo_id", "examen_id"}))
+public class RenovacionLinkCaso {
+
+    public enum Estado { ACTUALIZADO, ERROR }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "trabajo_id", nullable = false)
+    private Long trabajoId;
+
+    @Column(name = "examen_id", nullable = false)
+    private Long examenId;
+
+    @Column(name = "id_caso", nullable = false, length = 50)
+    private String idCaso;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado", nullable = false, length = 20)
+    private Estado estado;
+
+    @Column(name = "error", length = 500)
+    private String error;
+
+    @Column(name = "fecha", nullable = false)
+    private LocalDateTime fecha;
+
+    public RenovacionLinkCaso() {}
+
+    public RenovacionLinkCaso(Long trabajoId, Long examenId, String idCaso, Estado estado, String error) {
+        this.trabajoId = trabajoId;
+        this.examenId = examenId;
+        this.idCaso = idCaso;
+        this.estado = estado;
+        this.error = error != null && error.length() > 500 ? error.substring(0, 500) : error;
+        this.fecha = LocalDateTime.now();
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public Long getTrabajoId() { return trabajoId; }
+    public void setTrabajoId(Long trabajoId) { this.trabajoId = trabajoId; }
+    public Long getExamenId() { return examenId; }
+    public void setExamenId(Long examenId) { this.examenId = examenId; }
+    public String getIdCaso() { return idCaso; }
+    public void setIdCaso(String idCaso) { this.idCaso = idCaso; }
+    public Estado getEstado() { return estado; }
+    public void setEstado(Estado estado) { this.estado = estado; }
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+    public LocalDateTime getFecha() { return fecha; }
+    public void setFecha(LocalDateTime fecha) { this.fecha = fecha; }
+}
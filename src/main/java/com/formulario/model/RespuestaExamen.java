@@ -7,8 +7,10 @@ import jakarta.validation.constraints.NotNull;
 @Table(name = "respuestas_examen")
 public class RespuestaExamen {
     
+    // Secuencia con asignación en bloque para que Hibernate pueda agrupar los INSERT en batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "respuestas_examen_seq")
+    @SequenceGenerator(name = "respuestas_examen_seq", sequenceName = "respuestas_examen_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -34,6 +36,14 @@ public class RespuestaExamen {
         this.esCorrecta = respuestaSeleccionada.equals(pregunta.getOpcionCorrecta());
     }
     
+    // Constructor para corrección en lote: la pregunta puede ser una referencia sin inicializar
+    public RespuestaExamen(Examen examen, Pregunta pregunta, Integer respuestaSeleccionada, boolean esCorrecta) {
+        this.examen = examen;
+        this.pregunta = pregunta;
+        this.respuestaSeleccionada = respuestaSeleccionada;
+        this.esCorrecta = esCorrecta;
+    }
+    
     // Getters y Setters
     public Long getId() {
         return id;
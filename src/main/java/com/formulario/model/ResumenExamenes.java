@@ -0,0 +1,53 @@
+package com.formulario.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Fila única con las sumas de puntuaciones de todos los exámenes, mantenida de forma incremental
+ * al corregir o eliminar exámenes para que el dashboard no tenga que recorrer la tabla de exámenes.
+ */
+@Entity
+@Table(name = "resumen_examenes")
+public class ResumenExamenes {
+
+    public static final Long ID_UNICO = 1L;
+
+    @Id
+    private Long id = ID_UNICO;
+
+    @Column(name = "suma_promedio", nullable = false)
+    private double sumaPromedio;
+
+    @Column(name = "suma_logica", nullable = false)
+    private long sumaLogica;
+
+    @Column(name = "suma_matematica", nullable = false)
+    private long sumaMatematica;
+
+    @Column(name = "suma_creatividad", nullable = false)
+    private long sumaCreatividad;
+
+    @Column(name = "suma_programacion", nullable = false)
+    private long sumaProgramacion;
+
+    @Column(name = "fecha_actualizacion")
+    private LocalDateTime fechaActualizacion;
+
+    public ResumenExamenes() {}
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public double getSumaPromedio() { return sumaPromedio; }
+    public void setSumaPromedio(double sumaPromedio) { this.sumaPromedio = sumaPromedio; }
+    public long getSumaLogica() { return sumaLogica; }
+    public void setSumaLogica(long sumaLogica) { this.sumaLogica = sumaLogica; }
+    public long getSumaMatematica() { return sumaMatematica; }
+    public void setSumaMatematica(long sumaMatematica) { this.sumaMatematica = sumaMatematica; }
+    public long getSumaCreatividad() { return sumaCreatividad; }
+    public void setSumaCreatividad(long sumaCreatividad) { this.sumaCreatividad = sumaCreatividad; }
+    public long getSumaProgramacion() { return sumaProgramacion; }
+    public void setSumaProgramacion(long sumaProgramacion) { this.sumaProgramacion = sumaProgramacion; }
+    public LocalDateTime getFechaActualizacion() { return fechaActualizacion; }
+    public void setFechaActualizacion(LocalDateTime fechaActualizacion) { this.fechaActualizacion = fechaActualizacion; }
+}
@@ -0,0 +1,35 @@
+package com.formulario.model;
+
+/**
+ * Totales del listado de inscripciones (sobre todo el conjunto filtrado, no solo la página).
+ */
+public class ResumenInscripcionesDTO {
+
+    private final long totalInscripciones;
+    private final double promedioGeneral;
+    private final long totalAprobados;
+    private final long totalDesaprobados;
+
+    public ResumenInscripcionesDTO(long totalInscripciones, double promedioGeneral, long totalAprobados) {
+        this.totalInscripciones = totalInscripciones;
+        this.promedioGeneral = promedioGeneral;
+        this.totalAprobados = totalAprobados;
+        this.totalDesaprobados = totalInscripciones - totalAprobados;
+    }
+
+    public long getTotalInscripciones() {
+        return totalInscripciones;
+    }
+
+    public double getPromedioGeneral() {
+        return promedioGeneral;
+    }
+
+    public long getTotalAprobados() {
+        return totalAprobados;
+    }
+
+    public long getTotalDesaprobados() {
+        return totalDesaprobados;
+    }
+}
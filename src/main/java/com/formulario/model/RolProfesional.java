@@ -5,7 +5,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 @Entity
-@Table(name = "roles_profesionales")
+@Table(name = "roles_profesionales",
+       indexes = @Index(name = "idx_roles_activo_minimos",
+                        columnList = "activo, min_promedio, min_logica, min_matematica, min_creatividad, min_programacion"))
 public class RolProfesional {
 
     private static final Logger logger = LoggerFactory.getLogger(RolProfesional.class);
@@ -39,10 +41,15 @@ public class RolProfesional {
     private String rutaCarrera;
     
     // Requisitos mínimos de habilidades
+    @Column(name = "min_logica")
     private Integer minLogica;
+    @Column(name = "min_matematica")
     private Integer minMatematica;
+    @Column(name = "min_creatividad")
     private Integer minCreatividad;
+    @Column(name = "min_programacion")
     private Integer minProgramacion;
+    @Column(name = "min_promedio")
     private Integer minPromedio;
     
     // Pesos para el cálculo de compatibilidad
@@ -0,0 +1,94 @@
+package com.formulario.model;
+
+import java.util.List;
+
+/**
+ * Sorteo congelado de un examen: IDs de pregunta en el orden presentado y, opcionalmente,
+ * la permutación de opciones de cada una. Se guarda en {@code examenes.preguntas_asignadas}
+ * con el formato compacto {@code id[:permutación],id[:permutación],...}, donde la permutación
+ * son las posiciones (0-9) de las opciones ya ordenadas, ej: {@code 12:2031,45,7:1320}.
+ */
+public final class SorteoExamen {
+
+    private static final char SEPARADOR_PREGUNTAS = ',';
+    private static final char SEPARADOR_PERMUTACION = ':';
+
+    private final long[] preguntaIds;
+    private final int[][] permutaciones;
+
+    private SorteoExamen(long[] preguntaIds, int[][] permutaciones) {
+        this.preguntaIds = preguntaIds;
+        this.permutaciones = permutaciones;
+    }
+
+    /**
+     * Arma el sorteo a partir de las preguntas elegidas y sus permutaciones (null = orden original)
+     */
+    public static SorteoExamen de(List<PreguntaBanco> preguntas, int[][] permutaciones) {
+        long[] ids = new long[preguntas.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = preguntas.get(i).getId();
+        }
+        return new SorteoExamen(ids, permutaciones != null ? permutaciones : new int[ids.length][]);
+    }
+
+    /**
+     * Reconstruye un sorteo desde su forma persistida
+     */
+    public static SorteoExamen decodificar(String codificado) {
+        if (codificado == null || codificado.isBlank()) {
+            return null;
+        }
+        String[] partes = codificado.split(String.valueOf(SEPARADOR_PREGUNTAS));
+        long[] ids = new long[partes.length];
+        int[][] permutaciones = new int[partes.length][];
+        for (int i = 0; i < partes.length; i++) {
+            String parte = partes[i].trim();
+            int separador = parte.indexOf(SEPARADOR_PERMUTACION);
+            if (separador < 0) {
+                ids[i] = Long.parseLong(parte);
+                continue;
+            }
+            ids[i] = Long.parseLong(parte.substring(0, separador));
+            String permutacion = parte.substring(separador + 1);
+            permutaciones[i] = new int[permutacion.length()];
+            for (int j = 0; j < permutacion.length(); j++) {
+                permutaciones[i][j] = permutacion.charAt(j) - '0';
+            }
+        }
+        return new SorteoExamen(ids, permutaciones);
+    }
+
+    public String codificar() {
+        StringBuilder sb = new StringBuilder(preguntaIds.length * 8);
+        for (int i = 0; i < preguntaIds.length; i++) {
+            if (i > 0) {
+                sb.append(SEPARADOR_PREGUNTAS);
+            }
+            sb.append(preguntaIds[i]);
+            int[] permutacion = permutaciones[i];
+            if (permutacion != null && permutacion.length > 0) {
+                sb.append(SEPARADOR_PERMUTACION);
+                for (int posicion : permutacion) {
+                    sb.append((char) ('0' + posicion));
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    public int getTotalPreguntas() {
+        return preguntaIds.length;
+    }
+
+    public long getPreguntaId(int indice) {
+        return preguntaIds[indice];
+    }
+
+    /**
+     * Permutación de opciones de la pregunta en la posición dada (null = orden original)
+     */
+    public int[] getPermutacion(int indice) {
+        return permutaciones[indice];
+    }
+}
@@ -0,0 +1,73 @@
+package com.formulario.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Link de examen revocado (por ejemplo, porque se filtró). Se identifica por la huella
+ * (SHA-256) de la parte firmada del token, así la revocación vale aunque se rote el secreto.
+ */
+@Entity
+@Table(name = "tokens_revocados",
+       indexes = {
+           @Index(name = "idx_tokens_revocados_examen", columnList = "examen_id"),
+           @Index(name = "idx_tokens_revocados_fecha", columnList = "fecha")
+       })
+public class TokenRevocado {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "huella", nullable = false, unique = true, length = 64)
+    private String huella;
+
+    @Column(name = "examen_id", nullable = false)
+    private Long examenId;
+
+    /** Propósito del token (null = token sin versión) */
+    @Column(name = "proposito", length = 20)
+    private String proposito;
+
+    @Column(name = "vencimiento")
+    private LocalDateTime vencimiento;
+
+    @Column(name = "motivo", length = 500)
+    private String motivo;
+
+    @Column(name = "usuario", length = 100)
+    private String usuario;
+
+    @Column(name = "fecha", nullable = false)
+    private LocalDateTime fecha;
+
+    public TokenRevocado() {}
+
+    public TokenRevocado(String huella, Long examenId, String proposito, LocalDateTime vencimiento,
+                         String motivo, String usuario) {
+        this.huella = huella;
+        this.examenId = examenId;
+        this.proposito = proposito;
+        this.vencimiento = vencimiento;
+        this.motivo = motivo != null && motivo.length() > 500 ? motivo.substring(0, 500) : motivo;
+        this.usuario = usuario;
+        this.fecha = LocalDateTime.now();
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public String getHuella() { return huella; }
+    public void setHuella(String huella) { this.huella = huella; }
+    public Long getExamenId() { return examenId; }
+    public void setExamenId(Long examenId) { this.examenId = examenId; }
+    public String getProposito() { return proposito; }
+    public void setProposito(String proposito) { this.proposito = proposito; }
+    public LocalDateTime getVencimiento() { return vencimiento; }
+    public void setVencimiento(LocalDateTime vencimiento) { this.vencimiento = vencimiento; }
+    public String getMotivo() { return motivo; }
+    public void setMotivo(String motivo) { this.motivo = motivo; }
+    public String getUsuario() { return usuario; }
+    public void setUsuario(String usuario) { this.usuario = usuario; }
+    public LocalDateTime getFecha() { return fecha; }
+    public void setFecha(LocalDateTime fecha) { this.fecha = fecha; }
+}
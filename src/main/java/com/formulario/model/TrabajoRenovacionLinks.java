@@ -0,0 +1,89 @@
+package com.formulario.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Ejecución de la renovación masiva de links de reintento en Bondarea. Guarda el último examen
+ * hasta el que se procesaron todos los casos, para retomar desde ahí si la aplicación se reinicia.
+ */
+@Entity
+@Table(name = "trabajos_renovacion_links")
+public class TrabajoRenovacionLinks {
+
+    public enum Estado { EN_CURSO, COMPLETADO, CANCELADO, ERROR }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "base_url", nullable = false, length = 500)
+    private String baseUrl;
+
+    /** Máximo de casos a procesar (null = todos). */
+    @Column(name = "limite")
+    private Integer limite;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado", nullable = false, length = 20)
+    private Estado estado = Estado.EN_CURSO;
+
+    @Column(name = "ultimo_examen_id", nullable = false)
+    private long ultimoExamenId;
+
+    @Column(name = "total_estimado", nullable = false)
+    private long totalEstimado;
+
+    @Column(name = "actualizados", nullable = false)
+    private long actualizados;
+
+    @Column(name = "errores", nullable = false)
+    private long errores;
+
+    @Column(name = "error", length = 500)
+    private String error;
+
+    @Column(name = "fecha_inicio", nullable = false)
+    private LocalDateTime fechaInicio;
+
+    @Column(name = "fecha_actualizacion")
+    private LocalDateTime fechaActualizacion;
+
+    @Column(name = "fecha_fin")
+    private LocalDateTime fechaFin;
+
+    public TrabajoRenovacionLinks() {}
+
+    public TrabajoRenovacionLinks(String baseUrl, Integer limite, long totalEstimado) {
+        this.baseUrl = baseUrl;
+        this.limite = limite;
+        this.totalEstimado = totalEstimado;
+        this.fechaInicio = LocalDateTime.now();
+        this.fechaActualizacion = this.fechaInicio;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public String getBaseUrl() { return baseUrl; }
+    public void setBaseUrl(String baseUrl) { this.baseUrl = baseUrl; }
+    public Integer getLimite() { return limite; }
+    public void setLimite(Integer limite) { this.limite = limite; }
+    public Estado getEstado() { return estado; }
+    public void setEstado(Estado estado) { this.estado = estado; }
+    public long getUltimoExamenId() { return ultimoExamenId; }
+    public void setUltimoExamenId(long ultimoExamenId) { this.ultimoExamenId = ultimoExamenId; }
+    public long getTotalEstimado() { return totalEstimado; }
+    public void setTotalEstimado(long totalEstimado) { this.totalEstimado = totalEstimado; }
+    public long getActualizados() { return actualizados; }
+    public void setActualizados(long actualizados) { this.actualizados = actualizados; }
+    public long getErrores() { return errores; }
+    public void setErrores(long errores) { this.errores = errores; }
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+    public LocalDateTime getFechaInicio() { return fechaInicio; }
+    public void setFechaInicio(LocalDateTime fechaInicio) { this.fechaInicio = fechaInicio; }
+    public LocalDateTime getFechaActualizacion() { return fechaActualizacion; }
+    public void setFechaActualizacion(LocalDateTime fechaActualizacion) { this.fechaActualizacion = fechaActualizacion; }
+    public LocalDateTime getFechaFin() { return fechaFin; }
+    public void setFechaFin(LocalDateTime fechaFin) { this.fechaFin = fechaFin; }
+}
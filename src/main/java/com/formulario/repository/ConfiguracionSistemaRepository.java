@@ -2,6 +2,7 @@ package com.formulario.repository;
 
 import com.formulario.model.ConfiguracionSistema;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -12,4 +13,14 @@ public interface ConfiguracionSistemaRepository extends JpaRepository<Configurac
     Optional<ConfiguracionSistema> findByClave(String clave);
     
     boolean existsByClave(String clave);
+    
+    /**
+     * Firma del contenido de la tabla calculada en la base (hash de todos los pares clave=valor), para detectar
+     * cambios hechos por otras instancias. A diferencia de la fecha de actualización, no depende del reloj
+     * de la instancia que guardó y cambia ante cualquier edición de un valor (PostgreSQL).
+     */
+    @Query(value = "SELECT md5(COALESCE(string_agg(c.clave || '=' || COALESCE(c.valor, ''), ',' ORDER BY c.clave), '')) " +
+           "FROM configuracion_sistema c",
+           nativeQuery = true)
+    String obtenerFirmaCambios();
 } 
\ No newline at end of file
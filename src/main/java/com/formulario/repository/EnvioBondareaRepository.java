@@ -0,0 +1,76 @@
+package com.formulario.repository;
+
+import com.formulario.model.EnvioBondarea;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface EnvioBondareaRepository extends JpaRepository<EnvioBondarea, Long> {
+
+    /** Inserta el envío salvo que ya exista uno con la misma clave de idempotencia; devuelve las filas insertadas. */
+    @Modifying
+    @Query(value = "INSERT INTO envios_bondarea (id_caso, clave_idempotencia, payload, estado, intentos, " +
+                   "proximo_intento, fecha_creacion, fecha_actualizacion) " +
+                   "VALUES (:idCaso, :clave, :payload, 'PENDIENTE', 0, :ahora, :ahora, :ahora) " +
+                   "ON CONFLICT (clave_idempotencia) DO NOTHING", nativeQuery = true)
+    int insertarSiNoExiste(@Param("idCaso") String idCaso,
+                           @Param("clave") String clave,
+                           @Param("payload") String payload,
+                           @Param("ahora") LocalDateTime ahora);
+
+    /** Último envío encolado para el caso (el de mayor ID), en cualquier estado. */
+    Optional<EnvioBondarea> findFirstByIdCasoOrderByIdDesc(String idCaso);
+
+    /** Indica si hay un envío del caso encolado después del indicado. */
+    boolean existsByIdCasoAndIdGreaterThan(String idCaso, Long id);
+
+    /** Borra un envío ya terminado con esa clave, para poder volver a encolar el mismo body detrás de otros más nuevos. */
+    @Modifying
+    @Query("DELETE FROM EnvioBondarea e WHERE e.claveIdempotencia = :clave " +
+           "AND e.estado <> com.formulario.model.EnvioBondarea.Estado.EN_PROCESO")
+    int eliminarTerminadoPorClave(@Param("clave") String clave);
+
+    /** Marca como reemplazados los envíos del caso que todavía no se entregaron, salvo el de la clave indicada. */
+    @Modifying
+    @Query("UPDATE EnvioBondarea e SET e.estado = com.formulario.model.EnvioBondarea.Estado.REEMPLAZADO, " +
+           "e.fechaActualizacion = :ahora " +
+           "WHERE e.idCaso = :idCaso AND e.claveIdempotencia <> :clave " +
+           "AND e.estado IN (com.formulario.model.EnvioBondarea.Estado.PENDIENTE, com.formulario.model.EnvioBondarea.Estado.FALLIDO)")
+    int reemplazarAnteriores(@Param("idCaso") String idCaso, @Param("clave") String clave, @Param("ahora") LocalDateTime ahora);
+
+    // IDs de los envíos pendientes cuyo próximo intento ya venció, los más viejos primero. Un envío espera
+    // mientras su caso tenga otro en proceso o uno pendiente anterior: cada caso se envía de a uno y en orden
+    @Query("SELECT e.id FROM EnvioBondarea e WHERE e.estado = com.formulario.model.EnvioBondarea.Estado.PENDIENTE " +
+           "AND e.proximoIntento <= :ahora " +
+           "AND NOT EXISTS (SELECT o.id FROM EnvioBondarea o WHERE o.idCaso = e.idCaso AND o.id <> e.id " +
+           "AND (o.estado = com.formulario.model.EnvioBondarea.Estado.EN_PROCESO " +
+           "OR (o.estado = com.formulario.model.EnvioBondarea.Estado.PENDIENTE AND o.id < e.id))) " +
+           "ORDER BY e.proximoIntento, e.id")
+    List<Long> findIdsPendientesVencidos(@Param("ahora") LocalDateTime ahora, Pageable pageable);
+
+    /** Toma un envío pendiente para procesarlo; devuelve 0 si otro despachador ya lo tomó. */
+    @Modifying
+    @Query("UPDATE EnvioBondarea e SET e.estado = com.formulario.model.EnvioBondarea.Estado.EN_PROCESO, " +
+           "e.fechaActualizacion = :ahora " +
+           "WHERE e.id = :id AND e.estado = com.formulario.model.EnvioBondarea.Estado.PENDIENTE")
+    int tomar(@Param("id") Long id, @Param("ahora") LocalDateTime ahora);
+
+    /** Devuelve a pendientes los envíos que quedaron en proceso (por ejemplo, por un reinicio a mitad del envío). */
+    @Modifying
+    @Query("UPDATE EnvioBondarea e SET e.estado = com.formulario.model.EnvioBondarea.Estado.PENDIENTE, " +
+           "e.fechaActualizacion = :ahora " +
+           "WHERE e.estado = com.formulario.model.EnvioBondarea.Estado.EN_PROCESO AND e.fechaActualizacion < :limite")
+    int liberarEnProcesoAnterioresA(@Param("limite") LocalDateTime limite, @Param("ahora") LocalDateTime ahora);
+
+    List<EnvioBondarea> findByEstadoOrderByFechaActualizacionDesc(EnvioBondarea.Estado estado, Pageable pageable);
+
+    long countByEstado(EnvioBondarea.Estado estado);
+}
@@ -2,13 +2,18 @@ package com.formulario.repository;
 
 import com.formulario.model.Examen;
 import com.formulario.model.Persona;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ExamenRepository extends JpaRepository<Examen, Long> {
@@ -39,4 +44,109 @@ public interface ExamenRepository extends JpaRepository<Examen, Long> {
            "LEFT JOIN FETCH r.posicionesLaborales " +
            "WHERE e.id = :id")
     Optional<Examen> findByIdWithRecomendacionEstudios(@Param("id") Long id);
-} 
\ No newline at end of file
+
+    /** Congela el sorteo de preguntas solo si el examen todavía no tiene uno (evita pisar un sorteo concurrente). */
+    @Modifying
+    @Query("UPDATE Examen e SET e.preguntasAsignadas = :preguntas WHERE e.id = :id AND e.preguntasAsignadas IS NULL")
+    int asignarPreguntasSiNoAsignadas(@Param("id") Long id, @Param("preguntas") String preguntas);
+
+    @Query("SELECT e.preguntasAsignadas FROM Examen e WHERE e.id = :id")
+    String findPreguntasAsignadasById(@Param("id") Long id);
+
+    /**
+     * Recalcula en la base, de forma conjunta, los contadores por área y las puntuaciones de los exámenes
+     * finalizados con IDs en [desdeId, hastaId], agregando las respuestas en una sola consulta (PostgreSQL).
+     */
+    @Modifying
+    @Query(value = "UPDATE examenes e SET " +
+           "correctas_logica = a.correctas_logica, total_logica = a.total_logica, " +
+           "correctas_matematica = a.correctas_matematica, total_matematica = a.total_matematica, " +
+           "correctas_creatividad = a.correctas_creatividad, total_creatividad = a.total_creatividad, " +
+           "correctas_programacion = a.correctas_programacion, total_programacion = a.total_programacion, " +
+           "logica = CASE WHEN a.total_logica = 0 THEN 0 ELSE a.correctas_logica * 100 / a.total_logica END, " +
+           "matematica = CASE WHEN a.total_matematica = 0 THEN 0 ELSE a.correctas_matematica * 100 / a.total_matematica END, " +
+           "creatividad = CASE WHEN a.total_creatividad = 0 THEN 0 ELSE a.correctas_creatividad * 100 / a.total_creatividad END, " +
+           "programacion = CASE WHEN a.total_programacion = 0 THEN 0 ELSE a.correctas_programacion * 100 / a.total_programacion END, " +
+           "total_preguntas = a.total_logica + a.total_matematica + a.total_creatividad + a.total_programacion, " +
+           "respuestas_correctas = a.correctas_logica + a.correctas_matematica + a.correctas_creatividad + a.correctas_programacion " +
+           "FROM (SELECT r.examen_id, " +
+           "  CAST(COUNT(*) FILTER (WHERE p.area_conocimiento = 'LOGICA' AND r.es_correcta) AS integer) AS correctas_logica, " +
+           "  CAST(COUNT(*) FILTER (WHERE p.area_conocimiento = 'LOGICA') AS integer) AS total_logica, " +
+           "  CAST(COUNT(*) FILTER (WHERE p.area_conocimiento = 'MATEMATICA' AND r.es_correcta) AS integer) AS correctas_matematica, " +
+           "  CAST(COUNT(*) FILTER (WHERE p.area_conocimiento = 'MATEMATICA') AS integer) AS total_matematica, " +
+           "  CAST(COUNT(*) FILTER (WHERE p.area_conocimiento = 'CREATIVIDAD' AND r.es_correcta) AS integer) AS correctas_creatividad, " +
+           "  CAST(COUNT(*) FILTER (WHERE p.area_conocimiento = 'CREATIVIDAD') AS integer) AS total_creatividad, " +
+           "  CAST(COUNT(*) FILTER (WHERE p.area_conocimiento = 'PROGRAMACION' AND r.es_correcta) AS integer) AS correctas_programacion, " +
+           "  CAST(COUNT(*) FILTER (WHERE p.area_conocimiento = 'PROGRAMACION') AS integer) AS total_programacion " +
+           "  FROM respuestas_examen r JOIN preguntas p ON p.id = r.pregunta_id " +
+           "  WHERE r.examen_id BETWEEN :desdeId AND :hastaId " +
+           "  GROUP BY r.examen_id) a " +
+           "WHERE e.id = a.examen_id AND e.fecha_fin IS NOT NULL",
+           nativeQuery = true)
+    int recalcularPuntuacionesEnRango(@Param("desdeId") Long desdeId, @Param("hastaId") Long hastaId);
+
+    /** Recorre con cursor (fetch size acotado) los IDs de exámenes finalizados posteriores al indicado. Requiere transacción. */
+    @QueryHints({
+        @QueryHint(name = org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = org.hibernate.jpa.HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT e.id FROM Examen e WHERE e.id > :desdeId AND e.fechaFin IS NOT NULL ORDER BY e.id")
+    Stream<Long> streamIdsFinalizadosDesde(@Param("desdeId") Long desdeId);
+
+    long countByFechaFinIsNotNullAndIdGreaterThan(Long id);
+
+    // Página de (ID de examen, ID de caso de Bondarea) de los exámenes con caso, a partir de un ID (keyset)
+    @Query("SELECT e.id, p.idCasoBondarea FROM Examen e JOIN e.persona p " +
+           "WHERE e.id > :desdeId AND p.idCasoBondarea IS NOT NULL AND TRIM(p.idCasoBondarea) <> '' ORDER BY e.id")
+    List<Object[]> findCasosBondareaDesde(@Param("desdeId") Long desdeId, Pageable pageable);
+
+    @Query("SELECT COUNT(e) FROM Examen e JOIN e.persona p " +
+           "WHERE e.id > :desdeId AND p.idCasoBondarea IS NOT NULL AND TRIM(p.idCasoBondarea) <> ''")
+    long countCasosBondareaDesde(@Param("desdeId") Long desdeId);
+
+    /**
+     * Versión del examen finalizado de una persona: ID del examen más un hash de la fila del examen y de la persona,
+     * de modo que cambia ante cualquier modificación de puntuaciones, recomendación elegida o datos personales.
+     * Vacío si la persona no tiene examen finalizado (PostgreSQL).
+     */
+    @Query(value = "SELECT e.id || '-' || md5(CAST(e AS text) || CAST(p AS text)) " +
+           "FROM examenes e JOIN personas p ON p.id = e.persona_id " +
+           "WHERE e.persona_id = :personaId AND e.fecha_fin IS NOT NULL",
+           nativeQuery = true)
+    Optional<String> findVersionFinalizadoByPersonaId(@Param("personaId") Long personaId);
+
+    /**
+     * Firma de las puntuaciones del examen finalizado de una persona (ID del examen y puntaje de cada área):
+     * las recomendaciones solo dependen de esto y del catálogo. Vacío si no hay examen finalizado.
+     */
+    @Query(value = "SELECT e.id || ':' || COALESCE(CAST(e.logica AS text), '-') || ':' || COALESCE(CAST(e.matematica AS text), '-') " +
+           "|| ':' || COALESCE(CAST(e.creatividad AS text), '-') || ':' || COALESCE(CAST(e.programacion AS text), '-') " +
+           "FROM examenes e WHERE e.persona_id = :personaId AND e.fecha_fin IS NOT NULL",
+           nativeQuery = true)
+    Optional<String> findFirmaPuntuacionesFinalizadoByPersonaId(@Param("personaId") Long personaId);
+
+    /**
+     * Totales de todos los exámenes en una sola consulta: cantidad y sumas de promedio y de cada área
+     * (las puntuaciones nulas cuentan como 0, igual que en el dashboard).
+     */
+    @Query(value = "SELECT COUNT(*) AS \"totalExamenes\", " +
+           "COALESCE(SUM(COALESCE((COALESCE(e.logica, 0) + COALESCE(e.matematica, 0) + COALESCE(e.creatividad, 0) + COALESCE(e.programacion, 0))" +
+           " / CAST(NULLIF(num_nonnulls(e.logica, e.matematica, e.creatividad, e.programacion), 0) AS double precision), 0)), 0) AS \"sumaPromedio\", " +
+           "COALESCE(SUM(e.logica), 0) AS \"sumaLogica\", " +
+           "COALESCE(SUM(e.matematica), 0) AS \"sumaMatematica\", " +
+           "COALESCE(SUM(e.creatividad), 0) AS \"sumaCreatividad\", " +
+           "COALESCE(SUM(e.programacion), 0) AS \"sumaProgramacion\" " +
+           "FROM examenes e",
+           nativeQuery = true)
+    TotalesExamenes obtenerTotales();
+
+    /** Proyección de {@link #obtenerTotales()}. */
+    interface TotalesExamenes {
+        Long getTotalExamenes();
+        Double getSumaPromedio();
+        Long getSumaLogica();
+        Long getSumaMatematica();
+        Long getSumaCreatividad();
+        Long getSumaProgramacion();
+    }
+}
@@ -0,0 +1,265 @@
+package com.formulario.repository;
+
+import com.formulario.model.InscripcionDTO;
+import com.formulario.model.ResumenInscripcionesDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Consultas de solo lectura del listado de inscripciones (examen + persona) resueltas en la base:
+ * filtros, estado temporal del examen, último intento fallido y paginación, sin cargar entidades.
+ */
+@Repository
+public class InscripcionConsultaRepository {
+
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+    // Mismo criterio que el cálculo en Java: se finaliza "en tiempo" si los minutos completos entre inicio y fin
+    // no superan el límite, es decir, si fin < inicio + (límite + 1) minutos
+    private static final String ESTADO_TIEMPO_SQL =
+        "CASE " +
+        "WHEN e.fecha_inicio IS NULL THEN " +
+        "  CASE WHEN e.fecha_fin IS NOT NULL THEN '" + InscripcionDTO.ESTADO_TIEMPO_FINALIZADO_EN_TIEMPO + "' " +
+        "  ELSE '" + InscripcionDTO.ESTADO_TIEMPO_EN_CURSO + "' END " +
+        "WHEN e.fecha_fin IS NOT NULL THEN " +
+        "  CASE WHEN e.fecha_fin < e.fecha_inicio + make_interval(mins => :limiteMinutos + 1) " +
+        "  THEN '" + InscripcionDTO.ESTADO_TIEMPO_FINALIZADO_EN_TIEMPO + "' " +
+        "  ELSE '" + InscripcionDTO.ESTADO_TIEMPO_FINALIZADO_FUERA_DE_TIEMPO + "' END " +
+        "WHEN :ahora > e.fecha_inicio + make_interval(mins => :limiteMinutos) " +
+        "  THEN '" + InscripcionDTO.ESTADO_TIEMPO_TIEMPO_AGOTADO_SIN_FINALIZAR + "' " +
+        "ELSE '" + InscripcionDTO.ESTADO_TIEMPO_EN_CURSO + "' END";
+
+    // Promedio de las áreas con puntuación (igual que Examen.getPromedio)
+    public static final String PROMEDIO_SQL =
+        "COALESCE((COALESCE(e.logica, 0) + COALESCE(e.matematica, 0) + COALESCE(e.creatividad, 0) + COALESCE(e.programacion, 0))" +
+        " / CAST(NULLIF(num_nonnulls(e.logica, e.matematica, e.creatividad, e.programacion), 0) AS double precision), 0)";
+
+    private static final String DESDE_SQL = " FROM examenes e JOIN personas p ON p.id = e.persona_id";
+
+    private static final double NOTA_APROBACION = 70.0;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Devuelve las filas de una página del listado, ordenado por ID de examen. No cuenta el total:
+     * quien pagina ya lo tiene de {@link #resumir(FiltroInscripciones)}
+     */
+    public List<InscripcionDTO> buscar(FiltroInscripciones filtro, Pageable pageable) {
+        MapSqlParameterSource parametros = new MapSqlParameterSource();
+        StringBuilder sql = new StringBuilder(1024)
+            .append("SELECT e.id, p.nombre, p.apellido, p.cuil, p.email, p.trabaja_actualmente, p.trabaja_sector_it, ")
+            .append("e.logica, e.matematica, e.creatividad, e.programacion, e.fecha_fin, ")
+            .append(ESTADO_TIEMPO_SQL).append(" AS estado_tiempo, ")
+            .append("(SELECT MAX(i.fecha_hora) FROM intentos_fallo_guardar_recomendacion i WHERE i.examen_id = e.id) AS ultimo_intento_fallido")
+            .append(DESDE_SQL);
+        agregarFiltros(sql, parametros, filtro);
+        sql.append(" ORDER BY e.id");
+        if (pageable.isPaged()) {
+            sql.append(" LIMIT :limite OFFSET :desplazamiento");
+            parametros.addValue("limite", pageable.getPageSize());
+            parametros.addValue("desplazamiento", pageable.getOffset());
+        }
+
+        return jdbcTemplate.query(sql.toString(), parametros, MAPEADOR);
+    }
+
+    /**
+     * Total, promedio general y aprobados del conjunto filtrado, en una sola consulta agregada
+     */
+    public ResumenInscripcionesDTO resumir(FiltroInscripciones filtro) {
+        MapSqlParameterSource parametros = new MapSqlParameterSource();
+        StringBuilder sql = new StringBuilder(512)
+            .append("SELECT COUNT(*) AS total, COALESCE(AVG(x.promedio), 0) AS promedio, ")
+            .append("COUNT(*) FILTER (WHERE x.promedio >= ").append(NOTA_APROBACION).append(") AS aprobados ")
+            .append("FROM (SELECT ").append(PROMEDIO_SQL).append(" AS promedio").append(DESDE_SQL);
+        agregarFiltros(sql, parametros, filtro);
+        sql.append(") x");
+        return jdbcTemplate.queryForObject(sql.toString(), parametros, (rs, fila) ->
+            new ResumenInscripcionesDTO(rs.getLong("total"), rs.getDouble("promedio"), rs.getLong("aprobados")));
+    }
+
+    /**
+     * Siguiente tanda de exámenes finalizados del conjunto filtrado, con ID mayor a despuesDeExamenId
+     * (paginación por clave, para recorrer cohortes grandes sin OFFSET)
+     */
+    public List<CandidatoPdf> buscarFinalizadosDesde(FiltroInscripciones filtro, long despuesDeExamenId, int limite) {
+        MapSqlParameterSource parametros = new MapSqlParameterSource();
+        StringBuilder sql = new StringBuilder(512)
+            .append("SELECT e.id, p.id AS persona_id, p.nombre, p.apellido, p.cuil").append(DESDE_SQL);
+        agregarFiltros(sql, parametros, filtro);
+        sql.append(" AND e.fecha_fin IS NOT NULL AND e.id > :despuesDe ORDER BY e.id LIMIT :limite");
+        parametros.addValue("despuesDe", despuesDeExamenId);
+        parametros.addValue("limite", limite);
+        return jdbcTemplate.query(sql.toString(), parametros, (rs, fila) -> new CandidatoPdf(
+            rs.getLong("id"), rs.getLong("persona_id"),
+            rs.getString("nombre"), rs.getString("apellido"), rs.getString("cuil")));
+    }
+
+    private void agregarFiltros(StringBuilder sql, MapSqlParameterSource parametros, FiltroInscripciones filtro) {
+        // Parámetros del estado temporal (los usa la columna calculada y, si corresponde, el filtro)
+        parametros.addValue("limiteMinutos", filtro.getLimiteMinutos());
+        parametros.addValue("ahora", Timestamp.valueOf(LocalDateTime.now()));
+
+        sql.append(" WHERE 1 = 1");
+        if (tieneValor(filtro.getDni())) {
+            // El DNI son los 8 dígitos centrales del CUIL
+            sql.append(" AND SUBSTRING(p.cuil FROM 3 FOR 8) LIKE :dni");
+            parametros.addValue("dni", contiene(filtro.getDni().trim()));
+        }
+        if (tieneValor(filtro.getCuil())) {
+            sql.append(" AND p.cuil LIKE :cuil");
+            parametros.addValue("cuil", contiene(filtro.getCuil().trim()));
+        }
+        if (tieneValor(filtro.getEmail())) {
+            sql.append(" AND LOWER(p.email) LIKE :email");
+            parametros.addValue("email", contiene(filtro.getEmail().trim().toLowerCase()));
+        }
+        if (tieneValor(filtro.getEstadoTiempo())) {
+            sql.append(" AND (").append(ESTADO_TIEMPO_SQL).append(") = :estadoTiempo");
+            parametros.addValue("estadoTiempo", filtro.getEstadoTiempo().trim());
+        }
+    }
+
+    private static boolean tieneValor(String valor) {
+        return valor != null && !valor.trim().isEmpty();
+    }
+
+    // Patrón LIKE de "contiene" escapando los comodines que escriba el usuario
+    private static String contiene(String valor) {
+        String escapado = valor.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return "%" + escapado + "%";
+    }
+
+    private static final RowMapper<InscripcionDTO> MAPEADOR = (rs, fila) -> {
+        Integer logica = (Integer) rs.getObject("logica");
+        Integer matematica = (Integer) rs.getObject("matematica");
+        Integer creatividad = (Integer) rs.getObject("creatividad");
+        Integer programacion = (Integer) rs.getObject("programacion");
+        double promedio = promedio(logica, matematica, creatividad, programacion);
+
+        Timestamp fechaFin = rs.getTimestamp("fecha_fin");
+        InscripcionDTO dto = new InscripcionDTO(
+            rs.getLong("id"),
+            rs.getString("nombre"),
+            rs.getString("apellido"),
+            rs.getString("cuil"),
+            rs.getString("email"),
+            rs.getString("trabaja_actualmente"),
+            rs.getString("trabaja_sector_it"),
+            logica, matematica, creatividad, programacion,
+            promedio,
+            promedio >= NOTA_APROBACION,
+            fechaFin != null ? fechaFin.toLocalDateTime().format(FORMATO_FECHA) : "No completado"
+        );
+        dto.setEstadoTiempo(rs.getString("estado_tiempo"));
+
+        Timestamp ultimoIntento = rs.getTimestamp("ultimo_intento_fallido");
+        if (ultimoIntento != null) {
+            dto.setTieneIntentoFallidoGuardarRecomendacion(true);
+            dto.setIntentoFallidoGuardarRecomendacionFecha(ultimoIntento.toLocalDateTime().format(FORMATO_FECHA));
+        }
+        return dto;
+    };
+
+    private static double promedio(Integer... puntuaciones) {
+        int suma = 0;
+        int cantidad = 0;
+        for (Integer puntuacion : puntuaciones) {
+            if (puntuacion != null) {
+                suma += puntuacion;
+                cantidad++;
+            }
+        }
+        return cantidad == 0 ? 0.0 : (double) suma / cantidad;
+    }
+
+    /**
+     * Filtros del listado de inscripciones; los vacíos no se aplican
+     */
+    public static class FiltroInscripciones {
+
+        private final String dni;
+        private final String cuil;
+        private final String email;
+        private final String estadoTiempo;
+        private final int limiteMinutos;
+
+        public FiltroInscripciones(String dni, String cuil, String email, String estadoTiempo, int limiteMinutos) {
+            this.dni = dni;
+            this.cuil = cuil;
+            this.email = email;
+            this.estadoTiempo = estadoTiempo;
+            this.limiteMinutos = limiteMinutos;
+        }
+
+        public String getDni() {
+            return dni;
+        }
+
+        public String getCuil() {
+            return cuil;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public String getEstadoTiempo() {
+            return estadoTiempo;
+        }
+
+        public int getLimiteMinutos() {
+            return limiteMinutos;
+        }
+    }
+
+    /**
+     * Examen finalizado a incluir en una descarga masiva de PDFs
+     */
+    public static class CandidatoPdf {
+
+        private final long examenId;
+        private final long personaId;
+        private final String nombre;
+        private final String apellido;
+        private final String cuil;
+
+        public CandidatoPdf(long examenId, long personaId, String nombre, String apellido, String cuil) {
+            this.examenId = examenId;
+            this.personaId = personaId;
+            this.nombre = nombre;
+            this.apellido = apellido;
+            this.cuil = cuil;
+        }
+
+        public long getExamenId() {
+            return examenId;
+        }
+
+        public long getPersonaId() {
+            return personaId;
+        }
+
+        public String getNombre() {
+            return nombre;
+        }
+
+        public String getApellido() {
+            return apellido;
+        }
+
+        public String getCuil() {
+            return cuil;
+        }
+    }
+}
@@ -30,7 +30,7 @@ public interface PosicionLaboralRepository extends JpaRepository<PosicionLaboral
     @Query("SELECT p FROM PosicionLaboral p WHERE p.activa = true AND (p.minPromedio IS NULL OR p.minPromedio <= :promedio)")
     List<PosicionLaboral> findPosicionesCompatiblesPorPromedio(@Param("promedio") Double promedio);
     
-    // Buscar posiciones que requieren puntuaciones mínimas específicas
+    // Buscar posiciones cuyos mínimos cumple el examen (usa idx_posiciones_activa_minimos)
     @Query("SELECT p FROM PosicionLaboral p WHERE p.activa = true " +
            "AND (p.minLogica IS NULL OR p.minLogica <= :logica) " +
            "AND (p.minMatematica IS NULL OR p.minMatematica <= :matematica) " +
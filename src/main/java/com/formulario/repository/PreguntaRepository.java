@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -33,4 +34,12 @@ public interface PreguntaRepository extends JpaRepository<Pregunta, Long> {
     // Obtener todas las preguntas con sus opciones cargadas (para el dashboard)
     @Query("SELECT DISTINCT p FROM Pregunta p LEFT JOIN FETCH p.opciones ORDER BY p.id")
     List<Pregunta> findAllWithOpciones();
+
+    // Obtener todas las preguntas activas con sus opciones en una sola consulta (banco de preguntas en memoria)
+    @Query("SELECT DISTINCT p FROM Pregunta p LEFT JOIN FETCH p.opciones WHERE p.activa = true ORDER BY p.id")
+    List<Pregunta> findActivasWithOpciones();
+
+    // Obtener preguntas puntuales con sus opciones (incluye inactivas, para exámenes ya sorteados)
+    @Query("SELECT DISTINCT p FROM Pregunta p LEFT JOIN FETCH p.opciones WHERE p.id IN :ids")
+    List<Pregunta> findAllByIdWithOpciones(@Param("ids") Collection<Long> ids);
 } 
\ No newline at end of file
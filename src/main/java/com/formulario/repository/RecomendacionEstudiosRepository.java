@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -24,6 +25,10 @@ public interface RecomendacionEstudiosRepository extends JpaRepository<Recomenda
     @Query("SELECT re FROM RecomendacionEstudios re JOIN re.posicionesLaborales pl WHERE pl.id = :posicionId AND re.activa = true")
     List<RecomendacionEstudios> findByPosicionLaboralId(@Param("posicionId") Long posicionId);
     
+    // Recomendaciones vinculadas a varias posiciones laborales en una sola consulta: filas [posicionId, recomendacion]
+    @Query("SELECT pl.id, re FROM RecomendacionEstudios re JOIN re.posicionesLaborales pl WHERE pl.id IN :posicionIds AND re.activa = true")
+    List<Object[]> findByPosicionLaboralIdIn(@Param("posicionIds") Collection<Long> posicionIds);
+    
     // Buscar recomendaciones por rango de costo
     @Query("SELECT re FROM RecomendacionEstudios re WHERE re.activa = true AND re.costo BETWEEN :costoMin AND :costoMax ORDER BY re.costo ASC")
     List<RecomendacionEstudios> findByCostoBetween(@Param("costoMin") java.math.BigDecimal costoMin, 
@@ -0,0 +1,25 @@
+package com.formulario.repository;
+
+import com.formulario.model.RenovacionLinkCaso;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface RenovacionLinkCasoRepository extends JpaRepository<RenovacionLinkCaso, Long> {
+
+    // Exámenes de la página que el trabajo ya procesó (para no reenviarlos al retomar)
+    @Query("SELECT r.examenId FROM RenovacionLinkCaso r WHERE r.trabajoId = :trabajoId AND r.examenId IN :examenIds")
+    List<Long> findExamenIdsProcesados(@Param("trabajoId") Long trabajoId, @Param("examenIds") Collection<Long> examenIds);
+
+    long countByTrabajoId(Long trabajoId);
+
+    long countByTrabajoIdAndEstado(Long trabajoId, RenovacionLinkCaso.Estado estado);
+
+    List<RenovacionLinkCaso> findByTrabajoIdAndEstadoOrderByIdDesc(Long trabajoId, RenovacionLinkCaso.Estado estado, Pageable pageable);
+}
@@ -0,0 +1,32 @@
+package com.formulario.repository;
+
+import com.formulario.model.ResumenExamenes;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface ResumenExamenesRepository extends JpaRepository<ResumenExamenes, Long> {
+
+    /** Suma las diferencias de un examen al resumen con un UPDATE atómico (sin leer la fila). */
+    @Modifying
+    @Query("UPDATE ResumenExamenes r SET " +
+           "r.sumaPromedio = r.sumaPromedio + :promedio, " +
+           "r.sumaLogica = r.sumaLogica + :logica, " +
+           "r.sumaMatematica = r.sumaMatematica + :matematica, " +
+           "r.sumaCreatividad = r.sumaCreatividad + :creatividad, " +
+           "r.sumaProgramacion = r.sumaProgramacion + :programacion, " +
+           "r.fechaActualizacion = :fecha " +
+           "WHERE r.id = :id")
+    int acumular(@Param("id") Long id,
+                 @Param("promedio") double promedio,
+                 @Param("logica") long logica,
+                 @Param("matematica") long matematica,
+                 @Param("creatividad") long creatividad,
+                 @Param("programacion") long programacion,
+                 @Param("fecha") LocalDateTime fecha);
+}
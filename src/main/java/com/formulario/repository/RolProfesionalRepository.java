@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -18,6 +19,13 @@ public interface RolProfesionalRepository extends JpaRepository<RolProfesional,
     @Query("SELECT r FROM RolProfesional r LEFT JOIN FETCH r.posicionLaboral WHERE r.activo = true")
     List<RolProfesional> findByActivoTrueWithPosicionLaboral();
     
+    // Buscar roles puntuales con posición laboral cargada (JOIN FETCH)
+    @Query("SELECT r FROM RolProfesional r LEFT JOIN FETCH r.posicionLaboral WHERE r.id IN :ids")
+    List<RolProfesional> findByIdInWithPosicionLaboral(@Param("ids") Collection<Long> ids);
+    
+    // Buscar roles sin posición laboral vinculada (para vincularlos por título)
+    List<RolProfesional> findByPosicionLaboralIsNull();
+    
     // Buscar por categoría
     List<RolProfesional> findByCategoriaAndActivoTrue(String categoria);
     
@@ -31,8 +39,8 @@ public interface RolProfesionalRepository extends JpaRepository<RolProfesional,
     @Query("SELECT r FROM RolProfesional r WHERE r.activo = true AND (r.minPromedio IS NULL OR r.minPromedio <= :promedio)")
     List<RolProfesional> findRolesCompatiblesPorPromedio(@Param("promedio") Double promedio);
     
-    // Buscar roles que requieren puntuaciones mínimas específicas
-    @Query("SELECT r FROM RolProfesional r WHERE r.activo = true " +
+    // Buscar roles cuyos mínimos cumple el examen, con su posición laboral (usa idx_roles_activo_minimos)
+    @Query("SELECT r FROM RolProfesional r LEFT JOIN FETCH r.posicionLaboral WHERE r.activo = true " +
            "AND (r.minLogica IS NULL OR r.minLogica <= :logica) " +
            "AND (r.minMatematica IS NULL OR r.minMatematica <= :matematica) " +
            "AND (r.minCreatividad IS NULL OR r.minCreatividad <= :creatividad) " +
@@ -0,0 +1,29 @@
+package com.formulario.repository;
+
+import com.formulario.model.TokenRevocado;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TokenRevocadoRepository extends JpaRepository<TokenRevocado, Long> {
+
+    boolean existsByHuella(String huella);
+
+    boolean existsByExamenId(Long examenId);
+
+    // Huellas revocadas desde una fecha (carga incremental del filtro de Bloom); fila: fecha, huella
+    @Query("SELECT t.fecha, t.huella FROM TokenRevocado t WHERE t.fecha >= :desde")
+    List<Object[]> findHuellasDesde(@Param("desde") LocalDateTime desde);
+
+    // Todas las huellas revocadas (reconstrucción del filtro); fila: fecha, huella
+    @Query("SELECT t.fecha, t.huella FROM TokenRevocado t")
+    List<Object[]> findTodasLasHuellas();
+
+    List<TokenRevocado> findAllByOrderByIdDesc(Pageable pageable);
+}
@@ -0,0 +1,15 @@
+package com.formulario.repository;
+
+import com.formulario.model.TrabajoRenovacionLinks;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface TrabajoRenovacionLinksRepository extends JpaRepository<TrabajoRenovacionLinks, Long> {
+
+    Optional<TrabajoRenovacionLinks> findFirstByEstadoOrderByIdDesc(TrabajoRenovacionLinks.Estado estado);
+
+    Optional<TrabajoRenovacionLinks> findFirstByOrderByIdDesc();
+}
@@ -0,0 +1,80 @@
+package com.formulario.service;
+
+import com.formulario.model.BancoPreguntas;
+import com.formulario.model.Pregunta;
+import com.formulario.model.PreguntaBanco;
+import com.formulario.repository.PreguntaRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Mantiene en memoria el banco de preguntas activas para que armar un examen no consulte la base de datos.
+ * El snapshot es inmutable y se reemplaza de forma atómica cuando el administrador modifica preguntas.
+ */
+@Service
+public class BancoPreguntasService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BancoPreguntasService.class);
+
+    @Autowired
+    private PreguntaRepository preguntaRepository;
+
+    private final AtomicReference<BancoPreguntas> snapshot = new AtomicReference<>();
+
+    private final AtomicLong versiones = new AtomicLong();
+
+    /**
+     * Devuelve el snapshot vigente; lo construye en el primer acceso
+     */
+    public BancoPreguntas obtenerBanco() {
+        BancoPreguntas actual = snapshot.get();
+        if (actual != null) {
+            return actual;
+        }
+        return reconstruir();
+    }
+
+    /**
+     * Busca una pregunta activa en el snapshot vigente (null si no existe o está inactiva)
+     */
+    public PreguntaBanco buscarPregunta(Long preguntaId) {
+        return obtenerBanco().getPregunta(preguntaId);
+    }
+
+    /**
+     * Vuelve a cargar todas las preguntas activas con una sola consulta y publica un snapshot nuevo
+     */
+    public synchronized BancoPreguntas reconstruir() {
+        List<Pregunta> preguntasActivas = preguntaRepository.findActivasWithOpciones();
+        BancoPreguntas nuevo = new BancoPreguntas(versiones.incrementAndGet(), preguntasActivas);
+        snapshot.set(nuevo);
+        logger.info("Banco de preguntas reconstruido: versión {}, {} preguntas activas",
+                    nuevo.getVersion(), nuevo.getTotalPreguntas());
+        return nuevo;
+    }
+
+    /**
+     * Reconstruye el snapshot cuando la transacción actual confirme sus cambios.
+     * Si no hay transacción activa, reconstruye inmediatamente.
+     */
+    public void reconstruirTrasCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            reconstruir();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                reconstruir();
+            }
+        });
+    }
+}
@@ -1,18 +1,37 @@
 package com.formulario.service;
 
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.formulario.model.Examen;
+import com.formulario.util.CacheAcotada;
+import com.formulario.util.Disyuntor;
+import com.formulario.util.LimitadorTasa;
 
 /**
  * Servicio para interactuar con la API de Bondarea
@@ -25,7 +44,54 @@ public class BondareaService {
     @Autowired
     private ConfiguracionService configuracionService;
     
-    private final RestTemplate restTemplate;
+    @Value("${bondarea.http.connect-timeout-ms:3000}")
+    private int connectTimeoutMs;
+    
+    @Value("${bondarea.http.read-timeout-ms:8000}")
+    private int readTimeoutMs;
+    
+    @Value("${bondarea.http.reintentos:2}")
+    private int reintentos;
+    
+    @Value("${bondarea.http.espera-inicial-ms:200}")
+    private long esperaInicialMs;
+    
+    @Value("${bondarea.http.presupuesto-ms:15000}")
+    private long presupuestoMs;
+    
+    @Value("${bondarea.circuito.fallos:3}")
+    private int fallosParaAbrir;
+    
+    @Value("${bondarea.circuito.abierto-segundos:30}")
+    private int abiertoSegundos;
+    
+    @Value("${bondarea.casos.cache.max-entradas:2000}")
+    private int maxCasosEnCache;
+    
+    @Value("${bondarea.casos.cache.ttl-segundos:30}")
+    private int ttlCasosSegundos;
+    
+    @Value("${bondarea.casos.cache.ttl-no-encontrado-segundos:10}")
+    private int ttlNoEncontradoSegundos;
+    
+    private RestTemplate restTemplate;
+    
+    // Datos de casos consultados hace poco (GET /monitoring), clave "{idStage}/{idCaso}"; los 404 también se guardan
+    private CacheAcotada<String, ConsultaCaso> casos;
+    
+    // Consultas remotas en curso: las consultas simultáneas del mismo caso esperan la misma respuesta
+    private final ConcurrentHashMap<String, CompletableFuture<ConsultaCaso>> consultasEnVuelo = new ConcurrentHashMap<>();
+    
+    private final LongAdder consultasRemotas = new LongAdder();
+    private final LongAdder nanosConsultasRemotas = new LongAdder();
+    private final AtomicLong maxNanosConsultaRemota = new AtomicLong();
+    private final LongAdder consultasCoalescidas = new LongAdder();
+    
+    // Un circuit breaker por URL base, en el orden de BONDAREA_BASE_URLS
+    private final Map<String, Disyuntor> disyuntores = new LinkedHashMap<>();
+    
+    // Última URL base que respondió: se prueba primero en la siguiente llamada
+    private final AtomicReference<String> ultimaUrlBuena = new AtomicReference<>();
     
     // URL base de la API de Bondarea
     private static final String[] BONDAREA_BASE_URLS = {
@@ -42,8 +108,258 @@ public class BondareaService {
     // Formato correcto de la URL según la documentación: /api/v2/monitoring/{idStage}/{idCaso}
     private static final String BONDAREA_API_PATH = "/api/v2/monitoring/{idStage}/{idCaso}";
     
-    public BondareaService() {
-        this.restTemplate = new RestTemplate();
+    @PostConstruct
+    public void inicializar() {
+        // Cliente JDK compartido: reutiliza conexiones (keep-alive), negocia HTTP/2 y cae a HTTP/1.1 si el host no lo soporta
+        HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+        this.restTemplate = new RestTemplate(requestFactory);
+        
+        for (String baseUrl : BONDAREA_BASE_URLS) {
+            disyuntores.put(baseUrl, new Disyuntor(baseUrl, Math.max(1, fallosParaAbrir),
+                Duration.ofSeconds(Math.max(1, abiertoSegundos))));
+        }
+        casos = new CacheAcotada<>(Math.max(1, maxCasosEnCache), Duration.ofSeconds(Math.max(1, ttlCasosSegundos)));
+    }
+    
+    /**
+     * Ejecuta la llamada contra las URLs base de Bondarea: primero la última que respondió y luego el
+     * resto, salteando las que tienen el circuito abierto. Si solo hubo fallos de conexión, timeouts o
+     * 5xx, reintenta la ronda con espera exponencial con jitter, siempre dentro de bondarea.http.presupuesto-ms.
+     * Un 404/401/403 pasa a la siguiente URL (el caso puede estar en la otra instancia) sin contar como
+     * falla del host; cualquier otro 4xx se propaga enseguida.
+     * @throws HttpClientErrorException si todas las URLs respondieron con error del cliente
+     * @throws RestClientException si no hubo respuesta válida o todos los circuitos están abiertos
+     */
+    private ResponseEntity<Map<String, Object>> intercambiar(HttpMethod metodo, String idStage, String idCaso,
+                                                             HttpEntity<?> entity) {
+        return intercambiar(metodo, idStage, idCaso, entity, null);
+    }
+    
+    /**
+     * Igual que {@link #intercambiar(HttpMethod, String, String, HttpEntity)}, pero toma un permiso del
+     * limitador antes de cada solicitud HTTP (cada reintento y cada URL base cuentan), así un proceso
+     * masivo respeta su tasa aunque un caso necesite varios intentos.
+     * @param limitador limitador de tasa del llamador (null = sin límite)
+     */
+    private ResponseEntity<Map<String, Object>> intercambiar(HttpMethod metodo, String idStage, String idCaso,
+                                                             HttpEntity<?> entity, LimitadorTasa limitador) {
+        String ruta = BONDAREA_API_PATH
+            .replace("{idStage}", idStage)
+            .replace("{idCaso}", idCaso);
+        long limite = System.nanoTime() + Duration.ofMillis(presupuestoMs).toNanos();
+        RestClientException ultimoError = null;
+        
+        for (int ronda = 0; ronda <= Math.max(0, reintentos); ronda++) {
+            if (ronda > 0) {
+                esperarAntesDeReintentar(ronda, limite);
+            }
+            boolean huboFallaTransitoria = false;
+            
+            for (String baseUrl : urlsEnOrden()) {
+                Disyuntor disyuntor = disyuntores.get(baseUrl);
+                if (!disyuntor.permitir()) {
+                    logger.debug("Circuito abierto para {}, se omite", baseUrl);
+                    continue;
+                }
+                
+                String url = baseUrl + ruta;
+                if (limitador != null) {
+                    esperarPermiso(limitador);
+                }
+                logger.debug("[Ronda {}] {} {}", ronda + 1, metodo, url);
+                try {
+                    @SuppressWarnings("unchecked")
+                    ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
+                        url,
+                        metodo,
+                        entity,
+                        (Class<Map<String, Object>>) (Class<?>) Map.class
+                    );
+                    disyuntor.registrarExito();
+                    ultimaUrlBuena.set(baseUrl);
+                    if (metodo != HttpMethod.GET) {
+                        // Los datos del caso cambiaron: la próxima consulta va a Bondarea
+                        olvidarCaso(idCaso);
+                    }
+                    return response;
+                } catch (HttpClientErrorException.TooManyRequests e) {
+                    disyuntor.registrarFallo();
+                    ultimoError = e;
+                    huboFallaTransitoria = true;
+                } catch (HttpClientErrorException e) {
+                    // El host respondió: no es una falla de disponibilidad
+                    disyuntor.registrarExito();
+                    ultimoError = e;
+                    int status = e.getStatusCode().value();
+                    if (status != 404 && status != 401 && status != 403) {
+                        throw e;
+                    }
+                    logger.debug("HTTP {} en {}, se prueba la siguiente URL base", status, baseUrl);
+                } catch (RestClientException e) {
+                    // 5xx, timeout o error de conexión
+                    disyuntor.registrarFallo();
+                    ultimoError = e;
+                    huboFallaTransitoria = true;
+                    logger.warn("Falla al llamar a {}: {}", baseUrl, e.getMessage());
+                }
+                
+                if (System.nanoTime() >= limite) {
+                    break;
+                }
+            }
+            
+            if (!huboFallaTransitoria || System.nanoTime() >= limite) {
+                break;
+            }
+        }
+        
+        if (ultimoError == null) {
+            throw new ResourceAccessException("Bondarea no disponible: circuitos abiertos para todas las URLs base");
+        }
+        throw ultimoError;
+    }
+    
+    // Última URL que respondió primero, el resto en el orden configurado
+    private List<String> urlsEnOrden() {
+        List<String> urls = new ArrayList<>(BONDAREA_BASE_URLS.length);
+        String preferida = ultimaUrlBuena.get();
+        if (preferida != null) {
+            urls.add(preferida);
+        }
+        for (String baseUrl : BONDAREA_BASE_URLS) {
+            if (!baseUrl.equals(preferida)) {
+                urls.add(baseUrl);
+            }
+        }
+        return urls;
+    }
+    
+    private void esperarPermiso(LimitadorTasa limitador) {
+        try {
+            limitador.adquirir();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResourceAccessException("Llamada a Bondarea interrumpida");
+        }
+    }
+    
+    // Espera exponencial con jitter (entre la mitad y el total del tramo), recortada al presupuesto restante
+    private void esperarAntesDeReintentar(int ronda, long limite) {
+        long tramo = Math.max(1, esperaInicialMs) << Math.min(ronda - 1, 10);
+        long espera = ThreadLocalRandom.current().nextLong(tramo / 2, tramo + 1);
+        long restante = Duration.ofNanos(limite - System.nanoTime()).toMillis();
+        espera = Math.min(espera, restante);
+        if (espera <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(espera);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResourceAccessException("Llamada a Bondarea interrumpida");
+        }
+    }
+    
+    /**
+     * Consulta un caso (GET /monitoring/{idStage}/{idCaso}) pasando por la caché de casos.
+     * Si otra solicitud ya está consultando el mismo caso, espera esa respuesta en lugar de
+     * hacer otra llamada. Solo se cachean las respuestas con datos y los 404; los demás errores
+     * se propagan sin cachear.
+     * @throws RestClientException si Bondarea no respondió o respondió con otro error
+     */
+    private ConsultaCaso consultarCaso(String idStage, String idCaso, HttpEntity<?> entity) {
+        String clave = idStage + "/" + idCaso;
+        ConsultaCaso cacheada = casos.obtener(clave);
+        if (cacheada != null) {
+            logger.debug("Caso {} obtenido de la caché", clave);
+            return cacheada;
+        }
+        
+        CompletableFuture<ConsultaCaso> propia = new CompletableFuture<>();
+        CompletableFuture<ConsultaCaso> enVuelo = consultasEnVuelo.putIfAbsent(clave, propia);
+        if (enVuelo != null) {
+            consultasCoalescidas.increment();
+            logger.debug("Caso {} ya se está consultando, se espera esa respuesta", clave);
+            try {
+                return enVuelo.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException causa) {
+                    throw causa;
+                }
+                throw e;
+            }
+        }
+        
+        try {
+            ConsultaCaso consulta = consultarCasoRemoto(idStage, idCaso, entity);
+            casos.guardar(clave, consulta, consulta.isEncontrado()
+                ? Duration.ofSeconds(Math.max(1, ttlCasosSegundos))
+                : Duration.ofSeconds(Math.max(1, ttlNoEncontradoSegundos)));
+            propia.complete(consulta);
+            return consulta;
+        } catch (RuntimeException e) {
+            propia.completeExceptionally(e);
+            throw e;
+        } finally {
+            consultasEnVuelo.remove(clave, propia);
+        }
+    }
+    
+    private ConsultaCaso consultarCasoRemoto(String idStage, String idCaso, HttpEntity<?> entity) {
+        long inicio = System.nanoTime();
+        try {
+            ResponseEntity<Map<String, Object>> response = intercambiar(HttpMethod.GET, idStage, idCaso, entity);
+            logger.info("Respuesta recibida - Status: {}, Body presente: {}", 
+                response.getStatusCode(), response.getBody() != null);
+            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
+                return new ConsultaCaso(response.getBody());
+            }
+            throw new RestClientException("Respuesta no exitosa o vacía - Status: " + response.getStatusCode());
+        } catch (HttpClientErrorException.NotFound e) {
+            return ConsultaCaso.NO_ENCONTRADO;
+        } finally {
+            long nanos = System.nanoTime() - inicio;
+            consultasRemotas.increment();
+            nanosConsultasRemotas.add(nanos);
+            maxNanosConsultaRemota.accumulateAndGet(nanos, Math::max);
+        }
+    }
+    
+    /**
+     * Descarta los datos cacheados de un caso (en todos los idStage), por ejemplo al modificarlo o eliminarlo
+     */
+    public void olvidarCaso(String idCaso) {
+        if (idCaso == null || idCaso.isEmpty()) {
+            return;
+        }
+        String sufijo = "/" + idCaso.trim();
+        casos.invalidarSi(clave -> clave.endsWith(sufijo));
+    }
+    
+    /**
+     * Estado de los circuitos por URL base, la URL preferida actual y el uso de la caché de casos
+     */
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("urlPreferida", ultimaUrlBuena.get());
+        Map<String, Object> circuitos = new LinkedHashMap<>();
+        disyuntores.forEach((baseUrl, disyuntor) -> circuitos.put(baseUrl, disyuntor.estadisticas()));
+        estadisticas.put("circuitos", circuitos);
+        
+        Map<String, Object> cacheCasos = new LinkedHashMap<>(casos.estadisticas());
+        long remotas = consultasRemotas.sum();
+        cacheCasos.put("consultasRemotas", remotas);
+        cacheCasos.put("consultasCoalescidas", consultasCoalescidas.sum());
+        cacheCasos.put("latenciaPromedioMs", remotas == 0 ? 0 : Duration.ofNanos(nanosConsultasRemotas.sum() / remotas).toMillis());
+        cacheCasos.put("latenciaMaxMs", Duration.ofNanos(maxNanosConsultaRemota.get()).toMillis());
+        estadisticas.put("casos", cacheCasos);
+        return estadisticas;
     }
     
     /**
@@ -74,77 +390,34 @@ public class BondareaService {
         HttpEntity<String> entity = new HttpEntity<>(headers);
         
         String ultimoError = null;
-        int intentos = 0;
-        int totalIntentos = BONDAREA_BASE_URLS.length;
-        
-        // Intentar con cada URL base hasta encontrar una que funcione
-        for (String baseUrl : BONDAREA_BASE_URLS) {
-            intentos++;
-            try {
-                String url = baseUrl + BONDAREA_API_PATH
-                    .replace("{idStage}", idStage)
-                    .replace("{idCaso}", idCaso);
-                
-                logger.info("[Intento {}/{}] Consultando URL: {}", intentos, totalIntentos, url);
-                
-                // Realizar la petición GET
-                @SuppressWarnings("unchecked")
-                ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.GET,
-                    entity,
-                    (Class<Map<String, Object>>) (Class<?>) Map.class
-                );
-                
-                logger.info("Respuesta recibida - Status: {}, Body presente: {}", 
-                    response.getStatusCode(), response.getBody() != null);
-                
-                if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                    logger.info("✅ Datos obtenidos exitosamente de Bondarea desde URL: {} para idStage: {}, idCaso: {}", 
-                        url, idStage, idCaso);
-                    return response.getBody();
-                } else {
-                    logger.warn("Respuesta no exitosa o vacía - Status: {}, Body: {}", 
-                        response.getStatusCode(), response.getBody());
-                }
-                
-            } catch (HttpClientErrorException e) {
-                // Manejar errores HTTP específicos
-                String errorMsg = String.format("HTTP %d: %s", e.getStatusCode().value(), 
-                    e.getResponseBodyAsString() != null ? e.getResponseBodyAsString() : e.getMessage());
-                logger.warn("[Intento {}/{}] Error HTTP al consultar {}: {}", 
-                    intentos, totalIntentos, baseUrl, errorMsg);
-                ultimoError = errorMsg;
-                
-                if (e.getStatusCode().value() == 404) {
-                    logger.debug("URL no encontrada (404), intentando siguiente URL base");
-                    continue;
-                } else if (e.getStatusCode().value() == 401 || e.getStatusCode().value() == 403) {
-                    logger.error("Error de autenticación ({}): Verificar que el token sea correcto", e.getStatusCode().value());
-                    ultimoError = "Error de autenticación: " + errorMsg;
-                    continue;
-                }
-            } catch (RestClientException e) {
-                String errorMsg = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
-                logger.warn("[Intento {}/{}] Error al consultar {}: {}", 
-                    intentos, totalIntentos, baseUrl, errorMsg);
-                ultimoError = errorMsg;
-                
-                if (errorMsg.contains("timeout") || errorMsg.contains("Connection refused") || 
-                    errorMsg.contains("UnknownHostException")) {
-                    logger.debug("Problema de conexión, intentando siguiente URL base");
-                    continue;
-                }
-            } catch (Exception e) {
-                String errorMsg = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
-                logger.error("[Intento {}/{}] Error inesperado con {}: {}", 
-                    intentos, totalIntentos, baseUrl, errorMsg, e);
-                ultimoError = errorMsg;
+        try {
+            ConsultaCaso consulta = consultarCaso(idStage, idCaso, entity);
+            
+            if (consulta.isEncontrado()) {
+                logger.info("✅ Datos obtenidos exitosamente de Bondarea para idStage: {}, idCaso: {}", 
+                    idStage, idCaso);
+                // Copia para que el llamador no modifique la entrada cacheada
+                return new LinkedHashMap<>(consulta.getDatos());
+            }
+            ultimoError = "HTTP 404: caso no encontrado";
+            
+        } catch (HttpClientErrorException e) {
+            // Manejar errores HTTP específicos
+            ultimoError = String.format("HTTP %d: %s", e.getStatusCode().value(), 
+                e.getResponseBodyAsString() != null ? e.getResponseBodyAsString() : e.getMessage());
+            if (e.getStatusCode().value() == 401 || e.getStatusCode().value() == 403) {
+                logger.error("Error de autenticación ({}): Verificar que el token sea correcto", e.getStatusCode().value());
+                ultimoError = "Error de autenticación: " + ultimoError;
             }
+        } catch (RestClientException e) {
+            ultimoError = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        } catch (Exception e) {
+            ultimoError = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            logger.error("Error inesperado al consultar Bondarea: {}", ultimoError, e);
         }
         
-        logger.error("❌ No se pudo obtener datos de Bondarea para idStage: {}, idCaso: {} después de intentar {} URLs. Último error: {}", 
-            idStage, idCaso, totalIntentos, ultimoError);
+        logger.error("❌ No se pudo obtener datos de Bondarea para idStage: {}, idCaso: {}. Último error: {}", 
+            idStage, idCaso, ultimoError);
         return null;
     }
     
@@ -178,54 +451,30 @@ public class BondareaService {
         
         HttpEntity<String> entity = new HttpEntity<>(headers);
         
-        // Intentar con cada URL base
-        for (String baseUrl : BONDAREA_BASE_URLS) {
-            try {
-                String url = baseUrl + BONDAREA_API_PATH
-                    .replace("{idStage}", idStage)
-                    .replace("{idCaso}", idCaso);
-                
-                logger.debug("Validando existencia en URL: {}", url);
-                
-                // Realizar la petición GET
-                @SuppressWarnings("unchecked")
-                ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.GET,
-                    entity,
-                    (Class<Map<String, Object>>) (Class<?>) Map.class
-                );
-                
-                if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                    logger.info("✅ ID de caso {} validado exitosamente en Bondarea (idStage: {})", idCaso, idStage);
-                    return true;
-                }
-                
-            } catch (HttpClientErrorException e) {
-                if (e.getStatusCode().value() == 404) {
-                    logger.warn("ID de caso {} no encontrado en Bondarea (404) - idStage: {}", idCaso, idStage);
-                    return false; // No encontrado, no intentar más URLs
-                } else if (e.getStatusCode().value() == 401 || e.getStatusCode().value() == 403) {
-                    logger.error("Error de autenticación al validar ID: {}", e.getStatusCode().value());
-                    // Continuar con siguiente URL base
-                    continue;
-                } else {
-                    logger.warn("Error HTTP {} al validar ID en {}: {}", e.getStatusCode().value(), baseUrl, e.getMessage());
-                    // Continuar con siguiente URL base
-                    continue;
-                }
-            } catch (RestClientException e) {
-                logger.warn("Error de conexión al validar ID en {}: {}", baseUrl, e.getMessage());
-                // Continuar con siguiente URL base
-                continue;
-            } catch (Exception e) {
-                logger.error("Error inesperado al validar ID en {}: {}", baseUrl, e.getMessage(), e);
-                // Continuar con siguiente URL base
-                continue;
+        try {
+            ConsultaCaso consulta = consultarCaso(idStage, idCaso.trim(), entity);
+            if (consulta.isEncontrado()) {
+                logger.info("✅ ID de caso {} validado exitosamente en Bondarea (idStage: {})", idCaso, idStage);
+                return true;
+            }
+            logger.warn("ID de caso {} no encontrado en Bondarea (404) - idStage: {}", idCaso, idStage);
+            return false;
+        } catch (HttpClientErrorException e) {
+            if (e.getStatusCode().value() == 404) {
+                logger.warn("ID de caso {} no encontrado en Bondarea (404) - idStage: {}", idCaso, idStage);
+                return false;
+            } else if (e.getStatusCode().value() == 401 || e.getStatusCode().value() == 403) {
+                logger.error("Error de autenticación al validar ID: {}", e.getStatusCode().value());
+            } else {
+                logger.warn("Error HTTP {} al validar ID: {}", e.getStatusCode().value(), e.getMessage());
             }
+        } catch (RestClientException e) {
+            logger.warn("Error de conexión al validar ID: {}", e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error inesperado al validar ID: {}", e.getMessage(), e);
         }
         
-        logger.warn("❌ No se pudo validar el ID de caso {} en Bondarea después de intentar todas las URLs", idCaso);
+        logger.warn("❌ No se pudo validar el ID de caso {} en Bondarea", idCaso);
         return false;
     }
     
@@ -312,9 +561,21 @@ public class BondareaService {
             return resultadoFallidoBondarea();
         }
 
-        String idStage = "B26F5NF6";
-        logger.info("Actualizando caso en Bondarea: idStage={}, idCaso={}", idStage, idCaso);
+        logger.info("Actualizando caso en Bondarea: idStage={}, idCaso={}", "B26F5NF6", idCaso);
 
+        Map<String, Object> requestBody = construirCuerpoActualizacion(examen, nombreInstitucion, nombreCurso,
+            duracion, idCurso, monto, comentarios, urlReintentoTest);
+        return ejecutarPutBondarea(idCaso, requestBody);
+    }
+
+    /**
+     * Arma el body del PUT de actualización de un caso con los resultados del examen y los datos del curso
+     * (mismos parámetros opcionales que {@link #actualizarCasoEnBondarea}), sin enviarlo.
+     */
+    public Map<String, Object> construirCuerpoActualizacion(Examen examen, String nombreInstitucion, String nombreCurso,
+                                                           String duracion, Long idCurso, java.math.BigDecimal monto,
+                                                           String comentarios, String urlReintentoTest) {
+        String idStage = "B26F5NF6";
         Map<String, Object> requestBody = new HashMap<>();
         requestBody.put("id_etapa", idStage);
         
@@ -390,7 +651,18 @@ public class BondareaService {
         }
 
         agregarUrlReintentoSiPresente(requestBody, urlReintentoTest);
+        return requestBody;
+    }
 
+    /**
+     * Envía a Bondarea un body de actualización ya armado (por ejemplo, uno guardado en el outbox).
+     * @return Map con "success", "trackingPars" y, si falló, "error" con el último error
+     */
+    public Map<String, Object> enviarActualizacion(String idCaso, Map<String, Object> requestBody) {
+        if (idCaso == null || idCaso.trim().isEmpty()) {
+            logger.warn("ID de caso vacío o nulo - No se puede actualizar en Bondarea");
+            return resultadoFallidoBondarea();
+        }
         return ejecutarPutBondarea(idCaso, requestBody);
     }
 
@@ -398,6 +670,14 @@ public class BondareaService {
      * Actualiza en Bondarea únicamente el campo custom_B26FNCDU (URL de reintento del test).
      */
     public Map<String, Object> actualizarUrlReintentoEnBondarea(String idCaso, String urlReintento) {
+        return actualizarUrlReintentoEnBondarea(idCaso, urlReintento, null);
+    }
+
+    /**
+     * Actualiza la URL de reintento tomando un permiso del limitador por cada solicitud HTTP
+     * (incluidos reintentos y la otra URL base), para la renovación masiva de links.
+     */
+    public Map<String, Object> actualizarUrlReintentoEnBondarea(String idCaso, String urlReintento, LimitadorTasa limitador) {
         if (idCaso == null || idCaso.trim().isEmpty()) {
             logger.warn("ID de caso vacío o nulo - No se puede actualizar URL de reintento en Bondarea");
             return resultadoFallidoBondarea();
@@ -415,7 +695,7 @@ public class BondareaService {
         logger.info("Actualizando URL de reintento en Bondarea: idStage={}, idCaso={}, custom_B26FNCDU={}",
             idStage, idCaso, urlReintento);
 
-        return ejecutarPutBondarea(idCaso, requestBody);
+        return ejecutarPutBondarea(idCaso, requestBody, limitador);
     }
 
     private void agregarUrlReintentoSiPresente(Map<String, Object> requestBody, String urlReintentoTest) {
@@ -432,11 +712,16 @@ public class BondareaService {
     }
 
     private Map<String, Object> ejecutarPutBondarea(String idCaso, Map<String, Object> requestBody) {
+        return ejecutarPutBondarea(idCaso, requestBody, null);
+    }
+
+    private Map<String, Object> ejecutarPutBondarea(String idCaso, Map<String, Object> requestBody, LimitadorTasa limitador) {
         Map<String, Object> resultado = resultadoFallidoBondarea();
 
         String token = configuracionService.obtenerApiTokenBondarea();
         if (token == null || token.isEmpty()) {
             logger.warn("Token de Bondarea no configurado - No se puede actualizar el caso");
+            resultado.put("error", "Token de Bondarea no configurado");
             return resultado;
         }
 
@@ -462,70 +747,63 @@ public class BondareaService {
         HttpEntity<String> entity = new HttpEntity<>(jsonBody, headers);
 
         String ultimoError = null;
-        for (String baseUrl : BONDAREA_BASE_URLS) {
-            try {
-                String url = baseUrl + BONDAREA_API_PATH
-                    .replace("{idStage}", idStage)
-                    .replace("{idCaso}", idCaso);
-
-                logger.info("Actualizando caso en URL: {}", url);
-
-                @SuppressWarnings("unchecked")
-                ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.PUT,
-                    entity,
-                    (Class<Map<String, Object>>) (Class<?>) Map.class
-                );
-
-                if (response.getStatusCode().is2xxSuccessful()) {
-                    logger.info("✅ Caso actualizado exitosamente en Bondarea: idStage={}, idCaso={}", idStage, idCaso);
-
-                    Map<String, Object> responseBody = response.getBody();
-                    if (responseBody != null) {
-                        Object trackingParsObj = responseBody.get("trackingPars");
-                        if (trackingParsObj != null) {
-                            String trackingPars = trackingParsObj.toString();
-                            logger.info("trackingPars obtenido de la respuesta: {}", trackingPars);
-                            resultado.put("trackingPars", trackingPars);
-                        }
-                    }
+        try {
+            ResponseEntity<Map<String, Object>> response = intercambiar(HttpMethod.PUT, idStage, idCaso, entity, limitador);
 
-                    resultado.put("success", true);
-                    return resultado;
-                } else {
-                    logger.warn("Respuesta no exitosa - Status: {}", response.getStatusCode());
-                    ultimoError = "Status: " + response.getStatusCode();
+            if (response.getStatusCode().is2xxSuccessful()) {
+                logger.info("✅ Caso actualizado exitosamente en Bondarea: idStage={}, idCaso={}", idStage, idCaso);
+
+                Map<String, Object> responseBody = response.getBody();
+                if (responseBody != null) {
+                    Object trackingParsObj = responseBody.get("trackingPars");
+                    if (trackingParsObj != null) {
+                        String trackingPars = trackingParsObj.toString();
+                        logger.info("trackingPars obtenido de la respuesta: {}", trackingPars);
+                        resultado.put("trackingPars", trackingPars);
+                    }
                 }
 
-            } catch (HttpClientErrorException e) {
-                String errorMsg = String.format("HTTP %d: %s", e.getStatusCode().value(),
-                    e.getResponseBodyAsString() != null ? e.getResponseBodyAsString() : e.getMessage());
-                logger.error("Error HTTP al actualizar caso en {}: {}", baseUrl, errorMsg);
-                ultimoError = errorMsg;
+                resultado.put("success", true);
+                return resultado;
+            } else {
+                logger.warn("Respuesta no exitosa - Status: {}", response.getStatusCode());
+                ultimoError = "Status: " + response.getStatusCode();
+            }
 
-                if (e.getStatusCode().value() == 401 || e.getStatusCode().value() == 403) {
-                    logger.error("Error de autenticación: Verificar que el token sea correcto");
-                    break;
-                } else if (e.getStatusCode().value() == 404) {
-                    logger.warn("Caso no encontrado (404) en {}", baseUrl);
-                    continue;
-                }
-            } catch (RestClientException e) {
-                String errorMsg = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
-                logger.warn("Error de conexión al actualizar caso en {}: {}", baseUrl, errorMsg);
-                ultimoError = errorMsg;
-                continue;
-            } catch (Exception e) {
-                String errorMsg = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
-                logger.error("Error inesperado al actualizar caso en {}: {}", baseUrl, errorMsg, e);
-                ultimoError = errorMsg;
+        } catch (HttpClientErrorException e) {
+            ultimoError = String.format("HTTP %d: %s", e.getStatusCode().value(),
+                e.getResponseBodyAsString() != null ? e.getResponseBodyAsString() : e.getMessage());
+            if (e.getStatusCode().value() == 401 || e.getStatusCode().value() == 403) {
+                logger.error("Error de autenticación: Verificar que el token sea correcto");
+            } else if (e.getStatusCode().value() == 404) {
+                logger.warn("Caso {} no encontrado (404) en Bondarea", idCaso);
             }
+        } catch (RestClientException e) {
+            ultimoError = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        } catch (Exception e) {
+            ultimoError = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            logger.error("Error inesperado al actualizar caso {} en Bondarea: {}", idCaso, ultimoError, e);
         }
 
-        logger.error("❌ No se pudo actualizar el caso {} en Bondarea después de intentar todas las URLs. Último error: {}",
+        logger.error("❌ No se pudo actualizar el caso {} en Bondarea. Último error: {}",
             idCaso, ultimoError);
+        resultado.put("error", ultimoError);
         return resultado;
     }
-}
 
+    /**
+     * Resultado de consultar un caso: sus datos, o {@link #NO_ENCONTRADO} si Bondarea respondió 404
+     */
+    private static final class ConsultaCaso {
+        static final ConsultaCaso NO_ENCONTRADO = new ConsultaCaso(null);
+
+        private final Map<String, Object> datos;
+
+        ConsultaCaso(Map<String, Object> datos) {
+            this.datos = datos;
+        }
+
+        boolean isEncontrado() { return datos != null; }
+        Map<String, Object> getDatos() { return datos; }
+    }
+}
@@ -0,0 +1,100 @@
+package com.formulario.service;
+
+import com.formulario.model.RecomendacionDTO;
+import com.formulario.model.RecomendacionRolDTO;
+import com.formulario.repository.ExamenRepository;
+import com.formulario.util.CacheAcotada;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Memoriza las recomendaciones (de roles y de posiciones) de los exámenes finalizados.
+ * La clave es (examen y sus puntuaciones, versión del catálogo): las puntuaciones de un examen
+ * finalizado no cambian, y cualquier cambio del catálogo genera una versión nueva, así que una
+ * entrada nunca queda desactualizada; las viejas salen por LRU o por vencimiento.
+ * Los exámenes sin finalizar no se cachean.
+ */
+@Service
+public class CacheRecomendacionesService {
+
+    @Autowired
+    private ExamenRepository examenRepository;
+
+    @Autowired
+    private VersionCatalogoService versionCatalogoService;
+
+    @Value("${recomendaciones.cache.max-entradas:5000}")
+    private int maxEntradas;
+
+    @Value("${recomendaciones.cache.ttl-minutos:60}")
+    private int ttlMinutos;
+
+    private CacheAcotada<String, List<RecomendacionRolDTO>> roles;
+    private CacheAcotada<String, List<RecomendacionDTO>> posiciones;
+
+    @PostConstruct
+    public void inicializar() {
+        Duration ttl = Duration.ofMinutes(Math.max(1, ttlMinutos));
+        roles = new CacheAcotada<>(Math.max(1, maxEntradas), ttl);
+        posiciones = new CacheAcotada<>(Math.max(1, maxEntradas), ttl);
+    }
+
+    public List<RecomendacionRolDTO> obtenerRoles(Long personaId, Supplier<List<RecomendacionRolDTO>> calculo) {
+        return memorizar(roles, personaId, calculo);
+    }
+
+    public List<RecomendacionDTO> obtenerPosiciones(Long personaId, Supplier<List<RecomendacionDTO>> calculo) {
+        return memorizar(posiciones, personaId, calculo);
+    }
+
+    private <T> List<T> memorizar(CacheAcotada<String, List<T>> cache, Long personaId, Supplier<List<T>> calculo) {
+        String clave = calcularClave(personaId);
+        if (clave == null) {
+            return calculo.get();
+        }
+        List<T> guardadas = cache.obtener(clave);
+        if (guardadas != null) {
+            // Copia de la lista para que el llamador pueda reordenarla o recortarla sin tocar la caché
+            return new ArrayList<>(guardadas);
+        }
+        List<T> calculadas = calculo.get();
+        // Una lista vacía puede venir de un error ya registrado: no se memoriza para no fijarlo
+        if (!calculadas.isEmpty()) {
+            cache.guardar(clave, new ArrayList<>(calculadas));
+        }
+        return calculadas;
+    }
+
+    private String calcularClave(Long personaId) {
+        if (personaId == null) {
+            return null;
+        }
+        return examenRepository.findFirmaPuntuacionesFinalizadoByPersonaId(personaId)
+            .map(firma -> firma + "@" + versionCatalogoService.obtenerVersion())
+            .orElse(null);
+    }
+
+    public void limpiar() {
+        roles.limpiar();
+        posiciones.limpiar();
+    }
+
+    /**
+     * Métricas de aciertos/fallos de ambas cachés
+     */
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("roles", roles.estadisticas());
+        estadisticas.put("posiciones", posiciones.estadisticas());
+        return estadisticas;
+    }
+}
@@ -2,26 +2,89 @@ package com.formulario.service;
 
 import com.formulario.model.ConfiguracionSistema;
 import com.formulario.repository.ConfiguracionSistemaRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Configuración del sistema guardada en la tabla configuracion_sistema.
+ * Los valores se leen de una instantánea inmutable en memoria (lecturas sin bloqueo ni consultas),
+ * que se reemplaza de forma atómica al guardar una configuración. Para tomar los cambios hechos
+ * por otras instancias, un hilo compara cada pocos segundos una firma del contenido de la tabla y
+ * recarga la instantánea si cambió.
+ */
 @Service
 public class ConfiguracionService {
     
+    private static final Logger logger = LoggerFactory.getLogger(ConfiguracionService.class);
+    
     @Autowired
     private ConfiguracionSistemaRepository configuracionRepository;
     
+    @Value("${configuracion.cache.intervalo-segundos:5}")
+    private int intervaloSegundos;
+    
     // Constantes para las claves de configuración
     public static final String CLAVE_INSCRIPCIONES_ABIERTAS = "inscripciones_abiertas";
     public static final String CLAVE_API_TOKEN_BONDAREA = "api_token_bondarea";
     
+    private final AtomicReference<Instantanea> instantanea = new AtomicReference<>();
+    
+    private final AtomicLong recargas = new AtomicLong();
+    
+    private ScheduledExecutorService vigilante;
+    
+    @PostConstruct
+    public void inicializar() {
+        if (intervaloSegundos <= 0) {
+            return;
+        }
+        vigilante = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "configuracion-vigilante");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        vigilante.scheduleWithFixedDelay(this::recargarSiCambioSinFallar, intervaloSegundos,
+            intervaloSegundos, TimeUnit.SECONDS);
+    }
+    
+    @PreDestroy
+    public void detener() {
+        if (vigilante != null) {
+            vigilante.shutdownNow();
+        }
+    }
+    
     /**
-     * Obtiene el valor de una configuración por su clave
+     * Devuelve el valor vigente de una configuración desde la instantánea en memoria, o null si no existe
+     */
+    public String obtenerValor(String clave) {
+        return obtenerInstantanea().valores.get(clave);
+    }
+    
+    /**
+     * Obtiene una configuración por su clave, leyendo de la base (para valores que se leen
+     * y escriben en la misma operación, como checkpoints). Las lecturas frecuentes usan {@link #obtenerValor}.
      */
     public Optional<ConfiguracionSistema> obtenerConfiguracion(String clave) {
         return configuracionRepository.findByClave(clave);
@@ -53,15 +116,17 @@ public class ConfiguracionService {
             configuracion.setUsuarioActualizacion(usuario);
         }
         
-        return configuracionRepository.save(configuracion);
+        ConfiguracionSistema guardada = configuracionRepository.save(configuracion);
+        recargarTrasCommit();
+        return guardada;
     }
     
     /**
      * Verifica si las inscripciones están abiertas
      */
     public boolean estanInscripcionesAbiertas() {
-        Optional<ConfiguracionSistema> config = configuracionRepository.findByClave(CLAVE_INSCRIPCIONES_ABIERTAS);
-        return config.map(c -> "true".equalsIgnoreCase(c.getValor())).orElse(true); // Por defecto abiertas
+        String valor = obtenerValor(CLAVE_INSCRIPCIONES_ABIERTAS);
+        return valor == null || "true".equalsIgnoreCase(valor); // Por defecto abiertas
     }
     
     /**
@@ -81,8 +146,8 @@ public class ConfiguracionService {
      * Obtiene el token de API de Bondarea
      */
     public String obtenerApiTokenBondarea() {
-        Optional<ConfiguracionSistema> config = configuracionRepository.findByClave(CLAVE_API_TOKEN_BONDAREA);
-        return config.map(ConfiguracionSistema::getValor).orElse("");
+        String valor = obtenerValor(CLAVE_API_TOKEN_BONDAREA);
+        return valor != null ? valor : "";
     }
     
     /**
@@ -119,6 +184,97 @@ public class ConfiguracionService {
             );
             config.setUsuarioActualizacion("SISTEMA");
             configuracionRepository.save(config);
+            recargarTrasCommit();
+        }
+    }
+    
+    /**
+     * Vuelve a leer toda la tabla y reemplaza la instantánea
+     */
+    public synchronized Instantanea recargar() {
+        // La firma se lee antes que los valores: si algo cambia en el medio, la próxima revisión recarga otra vez
+        String firma = leerFirma();
+        Map<String, String> valores = new HashMap<>();
+        for (ConfiguracionSistema config : configuracionRepository.findAll()) {
+            if (config.getValor() != null) {
+                valores.put(config.getClave(), config.getValor());
+            }
+        }
+        Instantanea nueva = new Instantanea(Map.copyOf(valores), firma, LocalDateTime.now());
+        instantanea.set(nueva);
+        recargas.incrementAndGet();
+        logger.debug("Configuración recargada: {} claves, firma {}", valores.size(), firma);
+        return nueva;
+    }
+    
+    /**
+     * Recarga la instantánea cuando la transacción actual confirme sus cambios.
+     * Si no hay transacción activa, recarga inmediatamente.
+     */
+    public void recargarTrasCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            recargar();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recargar();
+            }
+        });
+    }
+    
+    public Map<String, Object> estadisticas() {
+        Instantanea actual = instantanea.get();
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("claves", actual != null ? actual.valores.size() : 0);
+        estadisticas.put("firma", actual != null ? actual.firma : null);
+        estadisticas.put("cargadaEn", actual != null ? actual.cargadaEn.toString() : null);
+        estadisticas.put("recargas", recargas.get());
+        estadisticas.put("intervaloSegundos", intervaloSegundos);
+        return estadisticas;
+    }
+    
+    private Instantanea obtenerInstantanea() {
+        Instantanea actual = instantanea.get();
+        if (actual != null) {
+            return actual;
+        }
+        return recargar();
+    }
+    
+    private void recargarSiCambioSinFallar() {
+        try {
+            Instantanea actual = instantanea.get();
+            if (actual == null) {
+                return; // Todavía no se leyó ninguna configuración: se carga en el primer acceso
+            }
+            String firma = leerFirma();
+            if (!Objects.equals(firma, actual.firma)) {
+                logger.info("La configuración cambió en la base (firma {} -> {}), se recarga", actual.firma, firma);
+                recargar();
+            }
+        } catch (Exception e) {
+            logger.warn("No se pudo revisar si cambió la configuración: {}", e.getMessage());
+        }
+    }
+    
+    private String leerFirma() {
+        return configuracionRepository.obtenerFirmaCambios();
+    }
+    
+    /**
+     * Valores de configuración vigentes en un momento dado (inmutable)
+     */
+    public static final class Instantanea {
+        private final Map<String, String> valores;
+        private final String firma;
+        private final LocalDateTime cargadaEn;
+        
+        private Instantanea(Map<String, String> valores, String firma, LocalDateTime cargadaEn) {
+            this.valores = valores;
+            this.firma = firma;
+            this.cargadaEn = cargadaEn;
         }
     }
 } 
\ No newline at end of file
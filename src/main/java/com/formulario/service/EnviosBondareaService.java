@@ -0,0 +1,381 @@
+package com.formulario.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.formulario.model.EnvioBondarea;
+import com.formulario.model.Examen;
+import com.formulario.model.RecomendacionEstudios;
+import com.formulario.repository.EnvioBondareaRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Outbox de actualizaciones de casos de Bondarea. Las actualizaciones se guardan en la tabla
+ * envios_bondarea dentro de la transacción que las origina, y un despachador en segundo plano
+ * las envía con concurrencia acotada, de a uno por caso y en orden. Si un envío falla se reintenta
+ * con espera exponencial; al agotar los reintentos queda FALLIDO (dead letter) hasta que un
+ * administrador lo reencole.
+ */
+@Service
+public class EnviosBondareaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EnviosBondareaService.class);
+
+    // Claves ordenadas: el mismo body produce siempre el mismo JSON y por lo tanto la misma clave de idempotencia
+    private static final ObjectMapper JSON = new ObjectMapper()
+        .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    @Autowired
+    private EnvioBondareaRepository envioBondareaRepository;
+
+    @Autowired
+    private BondareaService bondareaService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${bondarea.outbox.hilos:2}")
+    private int hilos;
+
+    @Value("${bondarea.outbox.lote:20}")
+    private int tamanioLote;
+
+    @Value("${bondarea.outbox.intervalo-segundos:10}")
+    private int intervaloSegundos;
+
+    @Value("${bondarea.outbox.max-intentos:8}")
+    private int maxIntentos;
+
+    @Value("${bondarea.outbox.espera-inicial-segundos:30}")
+    private long esperaInicialSegundos;
+
+    @Value("${bondarea.outbox.espera-max-minutos:60}")
+    private long esperaMaxMinutos;
+
+    @Value("${bondarea.outbox.en-proceso-max-minutos:10}")
+    private long enProcesoMaxMinutos;
+
+    private TransactionTemplate escritura;
+    private ScheduledExecutorService programador;
+    private ExecutorService ejecutor;
+
+    @PostConstruct
+    public void inicializar() {
+        escritura = new TransactionTemplate(transactionManager);
+        escritura.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        // Un solo hilo despacha (las rondas nunca se solapan) y reparte los envíos en un pool acotado
+        programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "bondarea-outbox");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        AtomicInteger numeroHilo = new AtomicInteger();
+        ejecutor = Executors.newFixedThreadPool(Math.max(1, hilos), r -> {
+            Thread hilo = new Thread(r, "bondarea-envio-" + numeroHilo.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        programador.scheduleWithFixedDelay(this::despacharSinFallar, intervaloSegundos,
+            Math.max(1, intervaloSegundos), TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void detener() {
+        programador.shutdownNow();
+        ejecutor.shutdownNow();
+    }
+
+    /**
+     * Encola la actualización del caso con el resultado del examen recién corregido.
+     * Debe llamarse dentro de la transacción que finaliza el examen.
+     * @return false si la persona no tiene caso de Bondarea o la misma actualización ya estaba encolada
+     */
+    @Transactional
+    public boolean encolarResultadoExamen(Examen examen, String urlReintento) {
+        String idCaso = examen.getPersona() != null ? examen.getPersona().getIdCasoBondarea() : null;
+        if (idCaso == null || idCaso.trim().isEmpty()) {
+            logger.info("Persona no tiene idCaso de Bondarea, omitiendo actualización");
+            return false;
+        }
+
+        String nombreInstitucion = null;
+        String nombreCurso = null;
+        String duracion = null;
+        Long idCurso = null;
+        BigDecimal monto = null;
+        RecomendacionEstudios recomendacion = examen.getRecomendacionEstudiosSeleccionada();
+        if (recomendacion != null) {
+            nombreInstitucion = recomendacion.getNombreInstitucion();
+            nombreCurso = recomendacion.getNombreOferta();
+            duracion = recomendacion.getDuracion();
+            idCurso = recomendacion.getId();
+            monto = recomendacion.getCosto();
+        }
+
+        String comentarios = String.format("Examen completado - Promedio: %.1f%%, Lógica: %d%%, Matemática: %d%%, Creatividad: %d%%, Programación: %d%%",
+            examen.getPromedio(),
+            examen.getLogica() != null ? examen.getLogica() : 0,
+            examen.getMatematica() != null ? examen.getMatematica() : 0,
+            examen.getCreatividad() != null ? examen.getCreatividad() : 0,
+            examen.getProgramacion() != null ? examen.getProgramacion() : 0);
+
+        return encolar(idCaso, bondareaService.construirCuerpoActualizacion(examen, nombreInstitucion, nombreCurso,
+            duracion, idCurso, monto, comentarios, urlReintento));
+    }
+
+    /**
+     * Encola un body de actualización para el caso. Si el último envío del caso ya tiene el mismo body
+     * no se vuelve a encolar. Los envíos anteriores del caso que todavía no se entregaron quedan
+     * reemplazados por el nuevo, para que un reintento viejo no pise datos más recientes en Bondarea.
+     * @return true si se encoló un envío nuevo
+     */
+    @Transactional
+    public boolean encolar(String idCaso, Map<String, Object> cuerpo) {
+        String payload;
+        try {
+            payload = JSON.writeValueAsString(cuerpo);
+        } catch (Exception e) {
+            throw new RuntimeException("No se pudo serializar la actualización de Bondarea: " + e.getMessage(), e);
+        }
+        String caso = idCaso.trim();
+        String clave = caso + ":" + sha256(payload);
+        LocalDateTime ahora = LocalDateTime.now();
+
+        EnvioBondarea ultimo = envioBondareaRepository.findFirstByIdCasoOrderByIdDesc(caso).orElse(null);
+        if (ultimo != null && !clave.equals(ultimo.getClaveIdempotencia())) {
+            // El mismo body se había enviado antes que otro más nuevo: se vuelve a encolar al final
+            envioBondareaRepository.eliminarTerminadoPorClave(clave);
+        }
+        boolean encolado = envioBondareaRepository.insertarSiNoExiste(caso, clave, payload, ahora) > 0;
+        if (!encolado) {
+            logger.info("La actualización del caso {} ya estaba encolada (clave {}), se omite", caso, clave);
+            return false;
+        }
+        int reemplazados = envioBondareaRepository.reemplazarAnteriores(caso, clave, ahora);
+        logger.info("Actualización del caso {} encolada para Bondarea{}", caso,
+            reemplazados > 0 ? " (reemplaza " + reemplazados + " envíos sin entregar)" : "");
+        despertarTrasCommit();
+        return true;
+    }
+
+    // Envía enseguida lo encolado, sin esperar a la próxima ronda del despachador
+    private void despertarTrasCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            despertar();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                despertar();
+            }
+        });
+    }
+
+    private void despertar() {
+        try {
+            programador.execute(this::despacharSinFallar);
+        } catch (Exception e) {
+            logger.debug("No se pudo adelantar el despacho de Bondarea: {}", e.getMessage());
+        }
+    }
+
+    private void despacharSinFallar() {
+        try {
+            despachar();
+        } catch (Exception e) {
+            logger.error("Error en el despachador de envíos a Bondarea: {}", e.getMessage(), e);
+        }
+    }
+
+    // Toma los envíos vencidos por lotes y los envía en el pool; cada lote termina antes de tomar el siguiente
+    private void despachar() throws InterruptedException {
+        LocalDateTime ahora = LocalDateTime.now();
+        Integer liberados = escritura.execute(status ->
+            envioBondareaRepository.liberarEnProcesoAnterioresA(ahora.minusMinutes(Math.max(1, enProcesoMaxMinutos)), ahora));
+        if (liberados != null && liberados > 0) {
+            logger.warn("{} envíos a Bondarea quedaron en proceso sin terminar, vuelven a pendientes", liberados);
+        }
+
+        List<Long> ids;
+        do {
+            ids = envioBondareaRepository.findIdsPendientesVencidos(LocalDateTime.now(), PageRequest.of(0, Math.max(1, tamanioLote)));
+            List<Callable<Void>> envios = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                Integer tomado = escritura.execute(status -> envioBondareaRepository.tomar(id, LocalDateTime.now()));
+                if (tomado != null && tomado > 0) {
+                    envios.add(() -> {
+                        enviar(id);
+                        return null;
+                    });
+                }
+            }
+            ejecutor.invokeAll(envios);
+        } while (ids.size() == Math.max(1, tamanioLote) && !Thread.currentThread().isInterrupted());
+    }
+
+    private void enviar(Long id) {
+        EnvioBondarea envio = envioBondareaRepository.findById(id).orElse(null);
+        if (envio == null) {
+            return;
+        }
+
+        String error;
+        String trackingPars = null;
+        try {
+            Map<String, Object> cuerpo = JSON.readValue(envio.getPayload(), new TypeReference<Map<String, Object>>() {});
+            Map<String, Object> resultado = bondareaService.enviarActualizacion(envio.getIdCaso(), cuerpo);
+            if (Boolean.TRUE.equals(resultado.get("success"))) {
+                error = null;
+                trackingPars = (String) resultado.get("trackingPars");
+            } else {
+                error = resultado.get("error") != null ? resultado.get("error").toString() : "Bondarea no confirmó la actualización";
+            }
+        } catch (Exception e) {
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+
+        String errorFinal = error;
+        String trackingParsFinal = trackingPars;
+        escritura.executeWithoutResult(status -> registrarResultado(id, errorFinal, trackingParsFinal));
+    }
+
+    private void registrarResultado(Long id, String error, String trackingPars) {
+        EnvioBondarea envio = envioBondareaRepository.findById(id).orElse(null);
+        if (envio == null) {
+            return;
+        }
+        LocalDateTime ahora = LocalDateTime.now();
+        envio.setIntentos(envio.getIntentos() + 1);
+        envio.setFechaActualizacion(ahora);
+
+        if (error == null) {
+            envio.setEstado(EnvioBondarea.Estado.ENVIADO);
+            envio.setFechaEnvio(ahora);
+            envio.setTrackingPars(trackingPars);
+            envio.setUltimoError(null);
+            logger.info("✅ Envío {} del caso {} entregado a Bondarea (intento {})", id, envio.getIdCaso(), envio.getIntentos());
+        } else {
+            envio.setUltimoError(error.length() > 500 ? error.substring(0, 500) : error);
+            if (envioBondareaRepository.existsByIdCasoAndIdGreaterThan(envio.getIdCaso(), id)) {
+                // Mientras se enviaba se encoló una actualización más nueva del caso: no se reintenta
+                envio.setEstado(EnvioBondarea.Estado.REEMPLAZADO);
+                logger.info("Envío {} del caso {} falló y ya hay una actualización más nueva, queda reemplazado", id, envio.getIdCaso());
+            } else if (envio.getIntentos() >= Math.max(1, maxIntentos)) {
+                envio.setEstado(EnvioBondarea.Estado.FALLIDO);
+                logger.error("❌ Envío {} del caso {} agotó {} intentos, queda como fallido: {}",
+                    id, envio.getIdCaso(), envio.getIntentos(), error);
+            } else {
+                envio.setEstado(EnvioBondarea.Estado.PENDIENTE);
+                envio.setProximoIntento(ahora.plusSeconds(calcularEsperaSegundos(envio.getIntentos())));
+                logger.warn("⚠️ Envío {} del caso {} falló (intento {}), se reintenta a las {}: {}",
+                    id, envio.getIdCaso(), envio.getIntentos(), envio.getProximoIntento(), error);
+            }
+        }
+        envioBondareaRepository.save(envio);
+    }
+
+    // Espera exponencial con jitter (entre la mitad y el total del tramo), con tope
+    private long calcularEsperaSegundos(int intentos) {
+        long tope = Math.max(1, esperaMaxMinutos) * 60;
+        long tramo = Math.min(tope, Math.max(1, esperaInicialSegundos) << Math.min(intentos - 1, 20));
+        return ThreadLocalRandom.current().nextLong(Math.max(1, tramo / 2), tramo + 1);
+    }
+
+    /**
+     * Envíos que agotaron los reintentos, los más recientes primero
+     */
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> listarFallidos(int limite) {
+        List<Map<String, Object>> fallidos = new ArrayList<>();
+        for (EnvioBondarea envio : envioBondareaRepository.findByEstadoOrderByFechaActualizacionDesc(
+                EnvioBondarea.Estado.FALLIDO, PageRequest.of(0, Math.max(1, limite)))) {
+            Map<String, Object> resumen = new LinkedHashMap<>();
+            resumen.put("id", envio.getId());
+            resumen.put("idCaso", envio.getIdCaso());
+            resumen.put("intentos", envio.getIntentos());
+            resumen.put("ultimoError", envio.getUltimoError());
+            resumen.put("fechaCreacion", envio.getFechaCreacion());
+            resumen.put("fechaActualizacion", envio.getFechaActualizacion());
+            resumen.put("payload", envio.getPayload());
+            fallidos.add(resumen);
+        }
+        return fallidos;
+    }
+
+    /**
+     * Vuelve a encolar un envío fallido, con los intentos en cero
+     * @return false si no existe, no está fallido o el caso ya tiene una actualización más nueva
+     */
+    @Transactional
+    public boolean reintentar(Long id) {
+        EnvioBondarea envio = envioBondareaRepository.findById(id).orElse(null);
+        if (envio == null || envio.getEstado() != EnvioBondarea.Estado.FALLIDO) {
+            return false;
+        }
+        if (envioBondareaRepository.existsByIdCasoAndIdGreaterThan(envio.getIdCaso(), id)) {
+            logger.warn("Envío {} del caso {} no se reencola: el caso ya tiene una actualización más nueva", id, envio.getIdCaso());
+            return false;
+        }
+        LocalDateTime ahora = LocalDateTime.now();
+        envio.setEstado(EnvioBondarea.Estado.PENDIENTE);
+        envio.setIntentos(0);
+        envio.setProximoIntento(ahora);
+        envio.setFechaActualizacion(ahora);
+        envioBondareaRepository.save(envio);
+        logger.info("Envío {} del caso {} reencolado manualmente", id, envio.getIdCaso());
+        despertarTrasCommit();
+        return true;
+    }
+
+    @Transactional(readOnly = true)
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        for (EnvioBondarea.Estado estado : EnvioBondarea.Estado.values()) {
+            estadisticas.put(estado.name().toLowerCase(), envioBondareaRepository.countByEstado(estado));
+        }
+        estadisticas.put("hilos", hilos);
+        estadisticas.put("maxIntentos", maxIntentos);
+        return estadisticas;
+    }
+
+    private static String sha256(String texto) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(texto.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.formulario.service;
+
+import com.formulario.model.Examen;
+import com.formulario.model.ResumenExamenes;
+import com.formulario.repository.ExamenRepository;
+import com.formulario.repository.ExamenRepository.TotalesExamenes;
+import com.formulario.repository.ResumenExamenesRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Estadísticas generales de exámenes para el dashboard. Por defecto se calculan con una única consulta
+ * agregada; con {@code examen.estadisticas.resumen-materializado=true} se leen de la tabla
+ * {@code resumen_examenes}, que se actualiza con la diferencia de cada examen corregido o eliminado
+ * y se reconstruye completa al iniciar y tras un recálculo masivo.
+ */
+@Service
+public class EstadisticasExamenesService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EstadisticasExamenesService.class);
+
+    @Autowired
+    private ExamenRepository examenRepository;
+
+    @Autowired
+    private ResumenExamenesRepository resumenExamenesRepository;
+
+    @Value("${examen.estadisticas.resumen-materializado:false}")
+    private boolean resumenMaterializado;
+
+    public boolean usaResumenMaterializado() {
+        return resumenMaterializado;
+    }
+
+    @Transactional(readOnly = true)
+    public Map<String, Object> obtenerEstadisticas() {
+        if (!resumenMaterializado) {
+            TotalesExamenes totales = examenRepository.obtenerTotales();
+            return armarEstadisticas(totales.getTotalExamenes(), totales.getSumaPromedio(), totales.getSumaLogica(),
+                totales.getSumaMatematica(), totales.getSumaCreatividad(), totales.getSumaProgramacion());
+        }
+
+        ResumenExamenes resumen = resumenExamenesRepository.findById(ResumenExamenes.ID_UNICO).orElse(null);
+        if (resumen == null) {
+            // Todavía no se construyó: responder con la consulta agregada
+            TotalesExamenes totales = examenRepository.obtenerTotales();
+            return armarEstadisticas(totales.getTotalExamenes(), totales.getSumaPromedio(), totales.getSumaLogica(),
+                totales.getSumaMatematica(), totales.getSumaCreatividad(), totales.getSumaProgramacion());
+        }
+        // La cantidad de exámenes se cuenta aparte: los exámenes se crean desde varios flujos y sin puntuación no suman
+        return armarEstadisticas(examenRepository.count(), resumen.getSumaPromedio(), resumen.getSumaLogica(),
+            resumen.getSumaMatematica(), resumen.getSumaCreatividad(), resumen.getSumaProgramacion());
+    }
+
+    /**
+     * Aporte actual de un examen a las sumas del resumen: {promedio, lógica, matemática, creatividad, programación}
+     */
+    public double[] aporte(Examen examen) {
+        return new double[] {
+            examen.getPromedio(),
+            valor(examen.getLogica()),
+            valor(examen.getMatematica()),
+            valor(examen.getCreatividad()),
+            valor(examen.getProgramacion())
+        };
+    }
+
+    /**
+     * Registra en el resumen el cambio de puntuación de un examen (aporte previo vs. puntuación actual)
+     */
+    @Transactional
+    public void registrarCambio(double[] aporteAnterior, Examen examen) {
+        if (!resumenMaterializado) {
+            return;
+        }
+        double[] aporteNuevo = aporte(examen);
+        acumular(aporteNuevo, aporteAnterior);
+    }
+
+    /**
+     * Descuenta del resumen el aporte de un examen que se va a eliminar
+     */
+    @Transactional
+    public void registrarBaja(Examen examen) {
+        if (!resumenMaterializado) {
+            return;
+        }
+        acumular(new double[5], aporte(examen));
+    }
+
+    /**
+     * Reconstruye el resumen completo desde la consulta agregada
+     */
+    @Transactional
+    public void reconstruir() {
+        if (!resumenMaterializado) {
+            return;
+        }
+        TotalesExamenes totales = examenRepository.obtenerTotales();
+        ResumenExamenes resumen = resumenExamenesRepository.findById(ResumenExamenes.ID_UNICO).orElseGet(ResumenExamenes::new);
+        resumen.setSumaPromedio(totales.getSumaPromedio());
+        resumen.setSumaLogica(totales.getSumaLogica());
+        resumen.setSumaMatematica(totales.getSumaMatematica());
+        resumen.setSumaCreatividad(totales.getSumaCreatividad());
+        resumen.setSumaProgramacion(totales.getSumaProgramacion());
+        resumen.setFechaActualizacion(LocalDateTime.now());
+        resumenExamenesRepository.save(resumen);
+        logger.info("Resumen de exámenes reconstruido ({} exámenes)", totales.getTotalExamenes());
+    }
+
+    private void acumular(double[] nuevo, double[] anterior) {
+        double promedio = nuevo[0] - anterior[0];
+        long logica = Math.round(nuevo[1] - anterior[1]);
+        long matematica = Math.round(nuevo[2] - anterior[2]);
+        long creatividad = Math.round(nuevo[3] - anterior[3]);
+        long programacion = Math.round(nuevo[4] - anterior[4]);
+        if (promedio == 0 && logica == 0 && matematica == 0 && creatividad == 0 && programacion == 0) {
+            return;
+        }
+        int filas = resumenExamenesRepository.acumular(ResumenExamenes.ID_UNICO, promedio, logica, matematica,
+            creatividad, programacion, LocalDateTime.now());
+        if (filas == 0) {
+            // Sin fila todavía: se arma completa en el próximo reconstruir() y mientras tanto se usa la consulta agregada
+            logger.debug("Resumen de exámenes sin construir, se omite la actualización incremental");
+        }
+    }
+
+    private Map<String, Object> armarEstadisticas(long total, double sumaPromedio, long sumaLogica,
+                                                  long sumaMatematica, long sumaCreatividad, long sumaProgramacion) {
+        Map<String, Object> estadisticas = new HashMap<>();
+        if (total == 0) {
+            estadisticas.put("totalInscripciones", 0);
+            estadisticas.put("examenesCompletados", 0);
+            estadisticas.put("promedioCalificacion", 0.0);
+            estadisticas.put("promedioPorArea", new HashMap<>());
+            return estadisticas;
+        }
+
+        // Estadísticas generales
+        estadisticas.put("totalInscripciones", total);
+        estadisticas.put("examenesCompletados", total);
+        estadisticas.put("promedioCalificacion", Math.round(sumaPromedio / total * 10.0) / 10.0);
+
+        // Promedio por área (nombres heredados que usa la vista)
+        Map<String, Double> promedioPorArea = new HashMap<>();
+        // Mismo mapeo que los getters de compatibilidad de Examen (getProgramacionBasica, getEstructurasDatos, ...)
+        promedioPorArea.put("programacionBasica", (double) sumaProgramacion / total);
+        promedioPorArea.put("estructurasDatos", (double) sumaLogica / total);
+        promedioPorArea.put("algoritmos", (double) sumaMatematica / total);
+        promedioPorArea.put("baseDatos", (double) sumaCreatividad / total);
+        estadisticas.put("promedioPorArea", promedioPorArea);
+
+        return estadisticas;
+    }
+
+    private static double valor(Integer puntuacion) {
+        return puntuacion != null ? puntuacion : 0;
+    }
+}
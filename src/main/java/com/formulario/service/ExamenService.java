@@ -3,13 +3,17 @@ package com.formulario.service;
 import com.formulario.model.*;
 import com.formulario.repository.*;
 import com.formulario.repository.OpcionRepository;
+import com.formulario.util.CacheAcotada;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,68 +35,47 @@ public class ExamenService {
     @Autowired
     private OpcionRepository opcionRepository;
     
-    private static final int PREGUNTAS_POR_AREA = 8;
-    private static final int TOTAL_PREGUNTAS = 32; // 8 * 4 áreas
+    @Autowired
+    private BancoPreguntasService bancoPreguntasService;
+    
+    @Autowired
+    private MuestreadorPreguntas muestreadorPreguntas;
+    
+    @Autowired
+    private EstadisticasExamenesService estadisticasExamenesService;
+    
+    // Máximo de exámenes cuyo set de preguntas se mantiene armado en memoria
+    @Value("${examen.preguntas.cache.max-entradas:5000}")
+    private int maxExamenesEnCache;
+    
+    // Si es true, cada examen presenta las opciones en un orden propio (se congela junto con el sorteo)
+    @Value("${examen.muestreo.mezclar-opciones:false}")
+    private boolean mezclarOpciones;
+    
+    // Preguntas ya armadas por ID de examen, junto con la versión del banco con la que se armaron
+    private CacheAcotada<Long, PreguntasExamenCacheadas> cachePreguntasExamen;
+    
+    @PostConstruct
+    void inicializarCache() {
+        cachePreguntasExamen = new CacheAcotada<>(maxExamenesEnCache);
+    }
     
     /**
-     * Genera preguntas aleatorias para el examen
+     * Genera preguntas aleatorias para el examen a partir del banco de preguntas en memoria
      */
-    public List<Pregunta> generarPreguntasExamen() {
-        List<Pregunta> todasLasPreguntas = new ArrayList<>();
-        
+    public List<PreguntaBanco> generarPreguntasExamen() {
         try {
-            // Verificar si hay preguntas en la base de datos
-            long totalPreguntas = preguntaRepository.count();
-            logger.info("Total de preguntas en BD: " + totalPreguntas);
+            BancoPreguntas banco = bancoPreguntasService.obtenerBanco();
             
-            if (totalPreguntas == 0) {
+            if (banco.estaVacio() && preguntaRepository.count() == 0) {
                 logger.info("No hay preguntas en la base de datos. Inicializando preguntas de ejemplo...");
                 inicializarPreguntasEjemplo();
+                banco = bancoPreguntasService.reconstruir();
             }
             
-            // Obtener todas las preguntas activas por área con sus opciones cargadas
-            List<Pregunta> todasPreguntasLogica = preguntaRepository.findByAreaConocimientoWithOpciones(
-                Pregunta.AreaConocimiento.LOGICA);
-            Collections.shuffle(todasPreguntasLogica);
-            List<Pregunta> preguntasLogica = todasPreguntasLogica.stream()
-                .limit(PREGUNTAS_POR_AREA)
-                .collect(Collectors.toList());
-            logger.info("Preguntas lógica: " + preguntasLogica.size());
-            
-            List<Pregunta> todasPreguntasMatematica = preguntaRepository.findByAreaConocimientoWithOpciones(
-                Pregunta.AreaConocimiento.MATEMATICA);
-            Collections.shuffle(todasPreguntasMatematica);
-            List<Pregunta> preguntasMatematica = todasPreguntasMatematica.stream()
-                .limit(PREGUNTAS_POR_AREA)
-                .collect(Collectors.toList());
-            logger.info("Preguntas matemática: " + preguntasMatematica.size());
-            
-            List<Pregunta> todasPreguntasCreatividad = preguntaRepository.findByAreaConocimientoWithOpciones(
-                Pregunta.AreaConocimiento.CREATIVIDAD);
-            Collections.shuffle(todasPreguntasCreatividad);
-            List<Pregunta> preguntasCreatividad = todasPreguntasCreatividad.stream()
-                .limit(PREGUNTAS_POR_AREA)
-                .collect(Collectors.toList());
-            logger.info("Preguntas creatividad: " + preguntasCreatividad.size());
-            
-            List<Pregunta> todasPreguntasProgramacion = preguntaRepository.findByAreaConocimientoWithOpciones(
-                Pregunta.AreaConocimiento.PROGRAMACION);
-            Collections.shuffle(todasPreguntasProgramacion);
-            List<Pregunta> preguntasProgramacion = todasPreguntasProgramacion.stream()
-                .limit(PREGUNTAS_POR_AREA)
-                .collect(Collectors.toList());
-            logger.info("Preguntas programación: " + preguntasProgramacion.size());
-            
-            // Combinar todas las preguntas
-            todasLasPreguntas.addAll(preguntasLogica);
-            todasLasPreguntas.addAll(preguntasMatematica);
-            todasLasPreguntas.addAll(preguntasCreatividad);
-            todasLasPreguntas.addAll(preguntasProgramacion);
-            
-            logger.info("Total de preguntas combinadas: " + todasLasPreguntas.size());
-            
-            // Mezclar las preguntas para que no estén agrupadas por área
-            Collections.shuffle(todasLasPreguntas);
+            // Sorteo por área con Fisher-Yates parcial (ya devuelve las preguntas mezcladas entre áreas)
+            List<PreguntaBanco> todasLasPreguntas = muestreadorPreguntas.muestrear(banco);
+            logger.debug("Preguntas generadas: {} (banco versión {})", todasLasPreguntas.size(), banco.getVersion());
             
             return todasLasPreguntas;
             
@@ -104,19 +87,101 @@ public class ExamenService {
     }
     
     /**
-     * Procesa las respuestas del examen y calcula las puntuaciones
+     * Devuelve las preguntas asignadas a un examen. La primera vez sortea y congela el set en el examen;
+     * las cargas siguientes (recargas de página) devuelven exactamente las mismas preguntas desde memoria.
+     */
+    @Transactional
+    public List<PreguntaBanco> obtenerPreguntasExamen(Examen examen) {
+        BancoPreguntas banco = bancoPreguntasService.obtenerBanco();
+        
+        PreguntasExamenCacheadas cacheadas = cachePreguntasExamen.obtener(examen.getId());
+        if (cacheadas != null && cacheadas.versionBanco == banco.getVersion()) {
+            return cacheadas.preguntas;
+        }
+        
+        SorteoExamen sorteo = SorteoExamen.decodificar(examen.getPreguntasAsignadas());
+        if (sorteo == null) {
+            sorteo = sortearYCongelar(examen);
+        }
+        
+        List<PreguntaBanco> preguntas = resolverSorteo(sorteo, banco);
+        cachePreguntasExamen.guardar(examen.getId(), new PreguntasExamenCacheadas(banco.getVersion(), preguntas));
+        return preguntas;
+    }
+    
+    /**
+     * Sortea las preguntas del examen y las guarda. Si otra petición congeló un sorteo antes, se usa ese.
+     */
+    private SorteoExamen sortearYCongelar(Examen examen) {
+        List<PreguntaBanco> preguntas = generarPreguntasExamen();
+        int[][] permutaciones = null;
+        if (mezclarOpciones) {
+            permutaciones = new int[preguntas.size()][];
+            for (int i = 0; i < preguntas.size(); i++) {
+                int cantidadOpciones = preguntas.get(i).getOpciones().size();
+                // La permutación se guarda con un dígito por opción
+                if (cantidadOpciones > 1 && cantidadOpciones <= 10) {
+                    permutaciones[i] = muestreadorPreguntas.permutar(cantidadOpciones);
+                }
+            }
+        }
+        
+        SorteoExamen sorteo = SorteoExamen.de(preguntas, permutaciones);
+        String codificado = sorteo.codificar();
+        if (examenRepository.asignarPreguntasSiNoAsignadas(examen.getId(), codificado) == 0) {
+            codificado = examenRepository.findPreguntasAsignadasById(examen.getId());
+            sorteo = SorteoExamen.decodificar(codificado);
+            logger.info("Examen {} ya tenía preguntas asignadas por otra petición, se reutilizan", examen.getId());
+        }
+        examen.setPreguntasAsignadas(codificado);
+        return sorteo;
+    }
+    
+    /**
+     * Convierte un sorteo congelado en preguntas, tomándolas del banco en memoria.
+     * Solo consulta la BD por preguntas que dejaron de estar activas después del sorteo.
+     */
+    private List<PreguntaBanco> resolverSorteo(SorteoExamen sorteo, BancoPreguntas banco) {
+        List<Long> preguntaIds = new ArrayList<>(sorteo.getTotalPreguntas());
+        for (int i = 0; i < sorteo.getTotalPreguntas(); i++) {
+            preguntaIds.add(sorteo.getPreguntaId(i));
+        }
+        Map<Long, PreguntaBanco> encontradas = buscarPreguntas(preguntaIds, banco);
+        
+        List<PreguntaBanco> preguntas = new ArrayList<>(sorteo.getTotalPreguntas());
+        for (int i = 0; i < sorteo.getTotalPreguntas(); i++) {
+            long preguntaId = sorteo.getPreguntaId(i);
+            PreguntaBanco pregunta = encontradas.get(preguntaId);
+            if (pregunta == null) {
+                logger.warn("La pregunta {} del sorteo ya no existe, se omite", preguntaId);
+                continue;
+            }
+            preguntas.add(pregunta.conOpcionesPermutadas(sorteo.getPermutacion(i)));
+        }
+        return Collections.unmodifiableList(preguntas);
+    }
+    
+    /**
+     * Procesa las respuestas del examen y calcula las puntuaciones.
+     * Las preguntas se resuelven desde el banco en memoria (o con una sola consulta para las que ya no están activas)
+     * y las respuestas se insertan en lote.
      */
     @Transactional
     public Examen procesarRespuestas(Long examenId, Map<Long, Integer> respuestas) {
-        logger.info("=== INICIO PROCESAR RESPUESTAS ===");
-        logger.info("Procesando respuestas para examen ID: " + examenId);
-        logger.info("Respuestas recibidas: " + respuestas);
+        return procesarRespuestas(examenId, respuestas, null);
+    }
+    
+    /**
+     * Igual que {@link #procesarRespuestas(Long, Map)}, pero ejecuta {@code alFinalizar} con el examen corregido
+     * dentro de la misma transacción (por ejemplo, para encolar la actualización de Bondarea en el outbox).
+     */
+    @Transactional
+    public Examen procesarRespuestas(Long examenId, Map<Long, Integer> respuestas, Consumer<Examen> alFinalizar) {
+        logger.info("Procesando {} respuestas para examen ID: {}", respuestas.size(), examenId);
         
         Examen examen = examenRepository.findById(examenId)
             .orElseThrow(() -> new RuntimeException("Examen no encontrado"));
         
-        logger.info("Examen encontrado para persona: " + examen.getPersona().getEmail());
-        
         // Marcar fin del examen
         examen.setFechaFin(LocalDateTime.now());
         
@@ -126,96 +191,83 @@ public class ExamenService {
             examen.setTiempoTotalMinutos((int) minutos);
         }
         
-        // Procesar cada respuesta
-        List<RespuestaExamen> respuestasExamen = new ArrayList<>();
+        Map<Long, PreguntaBanco> preguntas = buscarPreguntas(respuestas.keySet(), bancoPreguntasService.obtenerBanco());
+        
+        // Aporte previo del examen al resumen de estadísticas (normalmente cero)
+        double[] aporteAnterior = estadisticasExamenesService.aporte(examen);
+        
+        // Corregir todas las respuestas y acumular en los contadores por área del examen
+        examen.reiniciarContadores();
+        List<RespuestaExamen> respuestasExamen = new ArrayList<>(respuestas.size());
         for (Map.Entry<Long, Integer> entry : respuestas.entrySet()) {
             Long preguntaId = entry.getKey();
             Integer respuestaSeleccionada = entry.getValue();
+            if (respuestaSeleccionada == null) {
+                logger.warn("Respuesta vacía para pregunta ID {} en examen {}, se omite", preguntaId, examenId);
+                continue;
+            }
             
-            logger.info("Procesando pregunta ID: " + preguntaId + ", respuesta: " + respuestaSeleccionada);
-            
-            Pregunta pregunta = preguntaRepository.findById(preguntaId)
-                .orElseThrow(() -> new RuntimeException("Pregunta no encontrada: " + preguntaId));
+            PreguntaBanco pregunta = preguntas.get(preguntaId);
+            if (pregunta == null) {
+                throw new RuntimeException("Pregunta no encontrada: " + preguntaId);
+            }
             
-            logger.info("Pregunta encontrada: " + pregunta.getEnunciado());
-            logger.info("Opción correcta de la pregunta: " + pregunta.getOpcionCorrecta());
+            boolean esCorrecta = respuestaSeleccionada.equals(pregunta.getOpcionCorrecta());
+            examen.registrarRespuesta(pregunta.getAreaConocimiento(), esCorrecta);
             
-            RespuestaExamen respuestaExamen = new RespuestaExamen(examen, pregunta, respuestaSeleccionada);
-            logger.info("Respuesta creada - Es correcta: " + respuestaExamen.isEsCorrecta());
-            respuestasExamen.add(respuestaExamen);
+            respuestasExamen.add(new RespuestaExamen(
+                examen, preguntaRepository.getReferenceById(preguntaId), respuestaSeleccionada, esCorrecta));
         }
         
-        logger.info("Total de respuestas a guardar: " + respuestasExamen.size());
-        
-        // Guardar respuestas
+        // Guardar respuestas (INSERT en batch, ver hibernate.jdbc.batch_size)
         List<RespuestaExamen> respuestasGuardadas = respuestaExamenRepository.saveAll(respuestasExamen);
-        logger.info("Respuestas guardadas exitosamente: " + respuestasGuardadas.size());
         
         // Asignar las respuestas al examen
         examen.setRespuestas(respuestasGuardadas);
         
-        // Calcular puntuaciones
-        logger.info("Calculando puntuaciones...");
-        examen.calcularPuntuaciones();
-        
-        logger.info("Puntuaciones calculadas:");
-        logger.info("  - Programación Básica: " + examen.getProgramacionBasica());
-        logger.info("  - Estructuras Datos: " + examen.getEstructurasDatos());
-        logger.info("  - Algoritmos: " + examen.getAlgoritmos());
-        logger.info("  - Base Datos: " + examen.getBaseDatos());
-        logger.info("  - Total Preguntas: " + examen.getTotalPreguntas());
-        logger.info("  - Respuestas Correctas: " + examen.getRespuestasCorrectas());
-        logger.info("  - Promedio: " + examen.getPromedio());
+        // Calcular puntuaciones a partir de los contadores
+        examen.recalcularDesdeContadores();
         
         // Guardar el examen actualizado
         Examen examenGuardado = examenRepository.save(examen);
-        logger.info("Examen guardado exitosamente");
-        logger.info("=== FIN PROCESAR RESPUESTAS ===");
+        estadisticasExamenesService.registrarCambio(aporteAnterior, examenGuardado);
+        logger.info("Examen {} procesado: {}/{} correctas, promedio {}", examenId,
+                    examen.getRespuestasCorrectas(), examen.getTotalPreguntas(), examen.getPromedio());
         
+        if (alFinalizar != null) {
+            alFinalizar.accept(examenGuardado);
+        }
         return examenGuardado;
     }
     
     /**
-     * Obtiene las estadísticas del examen para el dashboard
+     * Resuelve preguntas por ID desde el banco en memoria; las que no están (inactivas desde el sorteo)
+     * se cargan todas juntas con una única consulta.
      */
-    public Map<String, Object> obtenerEstadisticas() {
-        Map<String, Object> estadisticas = new HashMap<>();
-        
-        List<Examen> examenes = examenRepository.findAll();
-        
-        if (examenes.isEmpty()) {
-            estadisticas.put("totalInscripciones", 0);
-            estadisticas.put("examenesCompletados", 0);
-            estadisticas.put("promedioCalificacion", 0.0);
-            estadisticas.put("promedioPorArea", new HashMap<>());
-            return estadisticas;
+    private Map<Long, PreguntaBanco> buscarPreguntas(Collection<Long> preguntaIds, BancoPreguntas banco) {
+        Map<Long, PreguntaBanco> encontradas = new HashMap<>(preguntaIds.size() * 2);
+        List<Long> faltantes = new ArrayList<>();
+        for (Long preguntaId : preguntaIds) {
+            PreguntaBanco pregunta = banco.getPregunta(preguntaId);
+            if (pregunta != null) {
+                encontradas.put(preguntaId, pregunta);
+            } else {
+                faltantes.add(preguntaId);
+            }
         }
-        
-        // Estadísticas generales
-        estadisticas.put("totalInscripciones", examenes.size());
-        estadisticas.put("examenesCompletados", examenes.size());
-        
-        // Promedio general
-        double promedioGeneral = examenes.stream()
-            .mapToDouble(Examen::getPromedio)
-            .average()
-            .orElse(0.0);
-        estadisticas.put("promedioCalificacion", Math.round(promedioGeneral * 10.0) / 10.0);
-        
-        // Promedio por área
-        Map<String, Double> promedioPorArea = new HashMap<>();
-        promedioPorArea.put("programacionBasica", 
-            examenes.stream().mapToDouble(e -> e.getProgramacionBasica() != null ? e.getProgramacionBasica() : 0).average().orElse(0.0));
-        promedioPorArea.put("estructurasDatos", 
-            examenes.stream().mapToDouble(e -> e.getEstructurasDatos() != null ? e.getEstructurasDatos() : 0).average().orElse(0.0));
-        promedioPorArea.put("algoritmos", 
-            examenes.stream().mapToDouble(e -> e.getAlgoritmos() != null ? e.getAlgoritmos() : 0).average().orElse(0.0));
-        promedioPorArea.put("baseDatos", 
-            examenes.stream().mapToDouble(e -> e.getBaseDatos() != null ? e.getBaseDatos() : 0).average().orElse(0.0));
-        
-        estadisticas.put("promedioPorArea", promedioPorArea);
-        
-        return estadisticas;
+        if (!faltantes.isEmpty()) {
+            for (Pregunta pregunta : preguntaRepository.findAllByIdWithOpciones(faltantes)) {
+                encontradas.put(pregunta.getId(), new PreguntaBanco(pregunta));
+            }
+        }
+        return encontradas;
+    }
+    
+    /**
+     * Obtiene las estadísticas del examen para el dashboard (consulta agregada o resumen materializado)
+     */
+    public Map<String, Object> obtenerEstadisticas() {
+        return estadisticasExamenesService.obtenerEstadisticas();
     }
     
     /**
@@ -232,6 +284,8 @@ public class ExamenService {
         crearPreguntasMatematica();
         crearPreguntasCreatividad();
         crearPreguntasProgramacion();
+        
+        bancoPreguntasService.reconstruirTrasCommit();
     }
     
     private void crearPreguntasLogica() {
@@ -724,5 +778,13 @@ public class ExamenService {
         preguntaRepository.save(p8);
     }
     
-
+    private static final class PreguntasExamenCacheadas {
+        private final long versionBanco;
+        private final List<PreguntaBanco> preguntas;
+        
+        private PreguntasExamenCacheadas(long versionBanco, List<PreguntaBanco> preguntas) {
+            this.versionBanco = versionBanco;
+            this.preguntas = preguntas;
+        }
+    }
 } 
@@ -1,386 +1,278 @@
 package com.formulario.service;
 
 import com.formulario.model.*;
-import com.formulario.repository.PersonaRepository;
-import com.formulario.repository.ExamenRepository;
+import com.formulario.repository.PreguntaRepository;
+import jakarta.annotation.PostConstruct;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.sql.DataSource;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.ArrayList;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Exportación de inscripciones a Excel en modo streaming: {@link SXSSFWorkbook} mantiene en memoria
+ * solo una ventana de filas por hoja, los datos se leen una vez con un cursor y el archivo se escribe
+ * directamente en el stream de salida.
+ */
 @Service
 public class ExcelService {
 
     private static final Logger logger = LoggerFactory.getLogger(ExcelService.class);
 
+    // Filas por hoja que SXSSF mantiene en memoria antes de volcarlas a disco
+    private static final int VENTANA_FILAS = 100;
+    private static final int TAMANIO_FETCH = 500;
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+    private static final String[] HEADERS_RESUMEN = {
+        "ID", "Nombre", "Apellido", "DNI", "CUIL", "Email", 
+        "Trabaja Actualmente", "Sector IT", "Programación", "Lógica", 
+        "Matemática", "Creatividad", "Promedio", "Aprobado", "Fecha Examen"
+    };
+    private static final String[] HEADERS_DATOS_PERSONALES = {
+        "ID", "Nombre", "Apellido", "DNI", "CUIL", "Email", 
+        "Trabaja Actualmente", "Sector IT", "Fecha Examen"
+    };
+    private static final String[] HEADERS_RESULTADOS = {
+        "ID Examen", "Nombre", "Apellido", "Email", "Programación (%)", 
+        "Lógica (%)", "Matemática (%)", "Creatividad (%)", "Promedio (%)", 
+        "Aprobado", "Fecha Examen", "Tiempo Total (min)"
+    };
+    private static final String[] HEADERS_PREGUNTAS_RESPUESTAS = {
+        "ID Examen", "Nombre", "Apellido", "ID Pregunta", "Área", "Pregunta", 
+        "Opción Seleccionada", "Respuesta Correcta", "Es Correcta", "Opciones"
+    };
+
+    private static final String SQL_EXAMENES =
+        "SELECT e.id, p.id AS persona_id, p.nombre, p.apellido, p.cuil, p.email, p.trabaja_actualmente, p.trabaja_sector_it, " +
+        "e.logica, e.matematica, e.creatividad, e.programacion, e.fecha_fin, e.tiempo_total_minutos " +
+        "FROM examenes e JOIN personas p ON p.id = e.persona_id ORDER BY e.id";
+
+    private static final String SQL_RESPUESTAS =
+        "SELECT r.examen_id, p.nombre, p.apellido, r.pregunta_id, r.respuesta_seleccionada, r.es_correcta " +
+        "FROM respuestas_examen r JOIN examenes e ON e.id = r.examen_id JOIN personas p ON p.id = e.persona_id " +
+        "ORDER BY r.examen_id, r.id";
+
     @Autowired
-    private PersonaRepository personaRepository;
+    private DataSource dataSource;
     
     @Autowired
-    private ExamenRepository examenRepository;
+    private PreguntaRepository preguntaRepository;
+    
+    // JdbcTemplate propio con fetch size para recorrer con cursor sin tocar la configuración del compartido
+    private JdbcTemplate jdbcCursor;
     
+    @PostConstruct
+    public void inicializar() {
+        jdbcCursor = new JdbcTemplate(dataSource);
+        jdbcCursor.setFetchSize(TAMANIO_FETCH);
+    }
+    
+    /**
+     * Genera el Excel completo en memoria (para usos que necesitan el archivo entero)
+     */
+    @Transactional(readOnly = true)
     public byte[] generarExcelInscripciones() throws IOException {
-        try (Workbook workbook = new XSSFWorkbook()) {
-            
-            // Crear hoja de resumen
-            Sheet sheetResumen = workbook.createSheet("Resumen");
-            crearHojaResumen(sheetResumen);
-            
-            // Crear hoja de datos personales
-            Sheet sheetDatosPersonales = workbook.createSheet("Datos Personales");
-            crearHojaDatosPersonales(sheetDatosPersonales);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        escribirExcelInscripciones(outputStream);
+        return outputStream.toByteArray();
+    }
+    
+    /**
+     * Escribe el Excel de inscripciones en el stream indicado con memoria acotada. Requiere transacción
+     * para que PostgreSQL use un cursor (fetch size) en lugar de traer todas las filas de una vez.
+     */
+    @Transactional(readOnly = true)
+    public void escribirExcelInscripciones(OutputStream salida) throws IOException {
+        long inicio = System.currentTimeMillis();
+        SXSSFWorkbook workbook = new SXSSFWorkbook(VENTANA_FILAS);
+        workbook.setCompressTempFiles(true);
+        try {
+            // Estilos compartidos por todas las hojas
+            CellStyle headerStyle = crearEstiloHeader(workbook);
+            CellStyle dataStyle = crearEstiloDatos(workbook);
+            CellStyle porcentajeStyle = crearEstiloPorcentaje(workbook);
             
-            // Crear hoja de resultados por área
-            Sheet sheetResultados = workbook.createSheet("Resultados por Área");
-            crearHojaResultados(sheetResultados);
+            // Las hojas se crean en el orden en que se muestran y se llenan en paralelo con una sola lectura
+            Sheet sheetResumen = crearHoja(workbook, "Resumen", HEADERS_RESUMEN, 15, headerStyle);
+            Sheet sheetDatosPersonales = crearHoja(workbook, "Datos Personales", HEADERS_DATOS_PERSONALES, 20, headerStyle);
+            Sheet sheetResultados = crearHoja(workbook, "Resultados por Área", HEADERS_RESULTADOS, 18, headerStyle);
+            Sheet sheetPreguntasRespuestas = crearHoja(workbook, "Preguntas y Respuestas", HEADERS_PREGUNTAS_RESPUESTAS, 25, headerStyle);
+            Sheet sheetEstadisticas = crearHoja(workbook, "Estadísticas", new String[] {"Métrica", "Valor"}, 30, headerStyle);
             
-            // Crear hoja de preguntas y respuestas
-            Sheet sheetPreguntasRespuestas = workbook.createSheet("Preguntas y Respuestas");
-            crearHojaPreguntasRespuestas(sheetPreguntasRespuestas);
+            EstadisticasExportacion estadisticas = new EstadisticasExportacion();
+            int[] filaExamen = {1};
+            jdbcCursor.query(SQL_EXAMENES, (ResultSet rs) -> {
+                int fila = filaExamen[0]++;
+                FilaExamen examen = new FilaExamen(rs);
+                escribirFilaResumen(sheetResumen.createRow(fila), examen, dataStyle);
+                escribirFilaDatosPersonales(sheetDatosPersonales.createRow(fila), examen, dataStyle);
+                escribirFilaResultados(sheetResultados.createRow(fila), examen, dataStyle, porcentajeStyle);
+                estadisticas.agregar(examen);
+            });
             
-            // Crear hoja de estadísticas
-            Sheet sheetEstadisticas = workbook.createSheet("Estadísticas");
-            crearHojaEstadisticas(sheetEstadisticas);
+            escribirPreguntasRespuestas(sheetPreguntasRespuestas, dataStyle);
+            escribirEstadisticas(sheetEstadisticas, estadisticas, dataStyle);
             
-            // Escribir el archivo
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            workbook.write(outputStream);
-            return outputStream.toByteArray();
+            workbook.write(salida);
+            salida.flush();
+            logger.info("Excel de inscripciones generado: {} exámenes en {} ms", estadisticas.total, System.currentTimeMillis() - inicio);
+        } finally {
+            workbook.close();
+            // Borrar los archivos temporales de SXSSF
+            workbook.dispose();
         }
     }
     
-    private void crearHojaResumen(Sheet sheet) {
-        // Crear estilos
-        CellStyle headerStyle = crearEstiloHeader(sheet.getWorkbook());
-        CellStyle dataStyle = crearEstiloDatos(sheet.getWorkbook());
-        
-        // Crear encabezados
+    private Sheet crearHoja(Workbook workbook, String nombre, String[] headers, int anchoColumna, CellStyle headerStyle) {
+        Sheet sheet = workbook.createSheet(nombre);
         Row headerRow = sheet.createRow(0);
-        String[] headers = {
-            "ID", "Nombre", "Apellido", "DNI", "CUIL", "Email", 
-            "Trabaja Actualmente", "Sector IT", "Programación", "Lógica", 
-            "Matemática", "Creatividad", "Promedio", "Aprobado", "Fecha Examen"
-        };
-        
         for (int i = 0; i < headers.length; i++) {
             Cell cell = headerRow.createCell(i);
             cell.setCellValue(headers[i]);
             cell.setCellStyle(headerStyle);
-            sheet.setColumnWidth(i, 15 * 256); // Ancho de columna
-        }
-        
-        // Obtener datos
-        List<InscripcionDTO> inscripciones = obtenerTodasLasInscripciones();
-        
-        // Llenar datos
-        int rowNum = 1;
-        for (InscripcionDTO inscripcion : inscripciones) {
-            Row row = sheet.createRow(rowNum++);
-            
-            row.createCell(0).setCellValue(inscripcion.getId());
-            row.createCell(1).setCellValue(inscripcion.getNombre());
-            row.createCell(2).setCellValue(inscripcion.getApellido());
-            row.createCell(3).setCellValue(inscripcion.getDni());
-            row.createCell(4).setCellValue(inscripcion.getCuil());
-            row.createCell(5).setCellValue(inscripcion.getEmail());
-            row.createCell(6).setCellValue(inscripcion.getTrabajaActualmente());
-            row.createCell(7).setCellValue(inscripcion.getTrabajaSectorIT());
-            row.createCell(8).setCellValue(inscripcion.getProgramacionBasica() != null ? inscripcion.getProgramacionBasica() : 0);
-            row.createCell(9).setCellValue(inscripcion.getEstructurasDatos() != null ? inscripcion.getEstructurasDatos() : 0);
-            row.createCell(10).setCellValue(inscripcion.getAlgoritmos() != null ? inscripcion.getAlgoritmos() : 0);
-            row.createCell(11).setCellValue(inscripcion.getBaseDatos() != null ? inscripcion.getBaseDatos() : 0);
-            row.createCell(12).setCellValue(inscripcion.getPromedio() != null ? inscripcion.getPromedio() : 0.0);
-            row.createCell(13).setCellValue(inscripcion.getAprobado() != null ? (inscripcion.getAprobado() ? "Sí" : "No") : "Pendiente");
-            row.createCell(14).setCellValue(inscripcion.getFechaExamen());
-            
-            // Aplicar estilos
-            for (int i = 0; i < headers.length; i++) {
-                row.getCell(i).setCellStyle(dataStyle);
-            }
+            sheet.setColumnWidth(i, anchoColumna * 256);
         }
+        return sheet;
     }
     
-    private void crearHojaDatosPersonales(Sheet sheet) {
-        CellStyle headerStyle = crearEstiloHeader(sheet.getWorkbook());
-        CellStyle dataStyle = crearEstiloDatos(sheet.getWorkbook());
-        
-        // Encabezados
-        Row headerRow = sheet.createRow(0);
-        String[] headers = {
-            "ID", "Nombre", "Apellido", "DNI", "CUIL", "Email", 
-            "Trabaja Actualmente", "Sector IT", "Fecha Examen"
-        };
-        
-        for (int i = 0; i < headers.length; i++) {
-            Cell cell = headerRow.createCell(i);
-            cell.setCellValue(headers[i]);
-            cell.setCellStyle(headerStyle);
-            sheet.setColumnWidth(i, 20 * 256);
-        }
+    private void escribirFilaResumen(Row row, FilaExamen examen, CellStyle dataStyle) {
+        row.createCell(0).setCellValue(examen.id);
+        row.createCell(1).setCellValue(examen.nombre);
+        row.createCell(2).setCellValue(examen.apellido);
+        row.createCell(3).setCellValue(examen.dni());
+        row.createCell(4).setCellValue(examen.cuil);
+        row.createCell(5).setCellValue(examen.email);
+        row.createCell(6).setCellValue(examen.trabajaActualmente);
+        row.createCell(7).setCellValue(examen.trabajaSectorIT);
+        // Columnas heredadas del DTO de inscripciones (programacionBasica = lógica, etc.)
+        row.createCell(8).setCellValue(valor(examen.logica));
+        row.createCell(9).setCellValue(valor(examen.matematica));
+        row.createCell(10).setCellValue(valor(examen.creatividad));
+        row.createCell(11).setCellValue(valor(examen.programacion));
+        row.createCell(12).setCellValue(examen.promedio);
+        row.createCell(13).setCellValue(examen.aprobado() ? "Sí" : "No");
+        row.createCell(14).setCellValue(examen.fechaExamen());
         
-        // Obtener datos de exámenes con información de personas
-        List<Examen> examenes = examenRepository.findAll();
-        
-        int rowNum = 1;
-        for (Examen examen : examenes) {
-            if (examen.getPersona() != null) {
-                Persona persona = examen.getPersona();
-                Row row = sheet.createRow(rowNum++);
-                
-                row.createCell(0).setCellValue(persona.getId());
-                row.createCell(1).setCellValue(persona.getNombre());
-                row.createCell(2).setCellValue(persona.getApellido());
-                row.createCell(3).setCellValue(persona.getCuil() != null && persona.getCuil().length() >= 8 ? 
-                    persona.getCuil().substring(2, 10) : "");
-                row.createCell(4).setCellValue(persona.getCuil());
-                row.createCell(5).setCellValue(persona.getEmail());
-                row.createCell(6).setCellValue(persona.getTrabajaActualmente());
-                row.createCell(7).setCellValue(persona.getTrabajaSectorIT());
-                row.createCell(8).setCellValue(examen.getFechaFin() != null ? 
-                    examen.getFechaFin().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")) : "No completado");
-                
-                for (int i = 0; i < headers.length; i++) {
-                    row.getCell(i).setCellStyle(dataStyle);
-                }
-            }
-        }
+        aplicarEstilo(row, HEADERS_RESUMEN.length, dataStyle);
     }
     
-    private void crearHojaResultados(Sheet sheet) {
-        CellStyle headerStyle = crearEstiloHeader(sheet.getWorkbook());
-        CellStyle dataStyle = crearEstiloDatos(sheet.getWorkbook());
-        CellStyle porcentajeStyle = crearEstiloPorcentaje(sheet.getWorkbook());
-        
-        // Encabezados
-        Row headerRow = sheet.createRow(0);
-        String[] headers = {
-            "ID Examen", "Nombre", "Apellido", "Email", "Programación (%)", 
-            "Lógica (%)", "Matemática (%)", "Creatividad (%)", "Promedio (%)", 
-            "Aprobado", "Fecha Examen", "Tiempo Total (min)"
-        };
-        
-        for (int i = 0; i < headers.length; i++) {
-            Cell cell = headerRow.createCell(i);
-            cell.setCellValue(headers[i]);
-            cell.setCellStyle(headerStyle);
-            sheet.setColumnWidth(i, 18 * 256);
-        }
+    private void escribirFilaDatosPersonales(Row row, FilaExamen examen, CellStyle dataStyle) {
+        row.createCell(0).setCellValue(examen.personaId);
+        row.createCell(1).setCellValue(examen.nombre);
+        row.createCell(2).setCellValue(examen.apellido);
+        row.createCell(3).setCellValue(examen.dni());
+        row.createCell(4).setCellValue(examen.cuil);
+        row.createCell(5).setCellValue(examen.email);
+        row.createCell(6).setCellValue(examen.trabajaActualmente);
+        row.createCell(7).setCellValue(examen.trabajaSectorIT);
+        row.createCell(8).setCellValue(examen.fechaExamen());
         
-        // Obtener datos de exámenes
-        List<Examen> examenes = examenRepository.findAll();
+        aplicarEstilo(row, HEADERS_DATOS_PERSONALES.length, dataStyle);
+    }
+    
+    private void escribirFilaResultados(Row row, FilaExamen examen, CellStyle dataStyle, CellStyle porcentajeStyle) {
+        row.createCell(0).setCellValue(examen.id);
+        row.createCell(1).setCellValue(examen.nombre);
+        row.createCell(2).setCellValue(examen.apellido);
+        row.createCell(3).setCellValue(examen.email);
+        row.createCell(4).setCellValue(valor(examen.programacion));
+        row.createCell(5).setCellValue(valor(examen.logica));
+        row.createCell(6).setCellValue(valor(examen.matematica));
+        row.createCell(7).setCellValue(valor(examen.creatividad));
+        row.createCell(8).setCellValue(examen.promedio);
+        row.createCell(9).setCellValue(examen.aprobado() ? "Sí" : "No");
+        row.createCell(10).setCellValue(examen.fechaExamen());
+        row.createCell(11).setCellValue(valor(examen.tiempoTotalMinutos));
         
-        int rowNum = 1;
-        for (Examen examen : examenes) {
-            if (examen.getPersona() != null) {
-                Row row = sheet.createRow(rowNum++);
-                
-                row.createCell(0).setCellValue(examen.getId());
-                row.createCell(1).setCellValue(examen.getPersona().getNombre());
-                row.createCell(2).setCellValue(examen.getPersona().getApellido());
-                row.createCell(3).setCellValue(examen.getPersona().getEmail());
-                
-                // Porcentajes por área
-                Cell cellProgramacion = row.createCell(4);
-                cellProgramacion.setCellValue(examen.getProgramacion() != null ? examen.getProgramacion() : 0);
-                cellProgramacion.setCellStyle(porcentajeStyle);
-                
-                Cell cellLogica = row.createCell(5);
-                cellLogica.setCellValue(examen.getLogica() != null ? examen.getLogica() : 0);
-                cellLogica.setCellStyle(porcentajeStyle);
-                
-                Cell cellMatematica = row.createCell(6);
-                cellMatematica.setCellValue(examen.getMatematica() != null ? examen.getMatematica() : 0);
-                cellMatematica.setCellStyle(porcentajeStyle);
-                
-                Cell cellCreatividad = row.createCell(7);
-                cellCreatividad.setCellValue(examen.getCreatividad() != null ? examen.getCreatividad() : 0);
-                cellCreatividad.setCellStyle(porcentajeStyle);
-                
-                Cell cellPromedio = row.createCell(8);
-                cellPromedio.setCellValue(examen.getPromedio());
-                cellPromedio.setCellStyle(porcentajeStyle);
-                
-                row.createCell(9).setCellValue(examen.isAprobado() ? "Sí" : "No");
-                row.createCell(10).setCellValue(examen.getFechaFin() != null ? 
-                    examen.getFechaFin().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")) : "No completado");
-                row.createCell(11).setCellValue(examen.getTiempoTotalMinutos() != null ? examen.getTiempoTotalMinutos() : 0);
-                
-                // Aplicar estilos
-                for (int i = 0; i < headers.length; i++) {
-                    if (i < 4 || i > 8) { // No aplicar a las celdas de porcentaje
-                        row.getCell(i).setCellStyle(dataStyle);
-                    }
-                }
-            }
+        // Porcentajes por área y promedio con formato numérico, el resto con el estilo de datos
+        for (int i = 0; i < HEADERS_RESULTADOS.length; i++) {
+            row.getCell(i).setCellStyle(i >= 4 && i <= 8 ? porcentajeStyle : dataStyle);
         }
     }
     
-    private void crearHojaPreguntasRespuestas(Sheet sheet) {
-        CellStyle headerStyle = crearEstiloHeader(sheet.getWorkbook());
-        CellStyle dataStyle = crearEstiloDatos(sheet.getWorkbook());
-        
-        // Encabezados
-        Row headerRow = sheet.createRow(0);
-        String[] headers = {
-            "ID Examen", "Nombre", "Apellido", "ID Pregunta", "Área", "Pregunta", 
-            "Opción Seleccionada", "Respuesta Correcta", "Es Correcta", "Opciones"
-        };
-        
-        for (int i = 0; i < headers.length; i++) {
-            Cell cell = headerRow.createCell(i);
-            cell.setCellValue(headers[i]);
-            cell.setCellStyle(headerStyle);
-            sheet.setColumnWidth(i, 25 * 256);
+    private void escribirPreguntasRespuestas(Sheet sheet, CellStyle dataStyle) {
+        // Las preguntas son pocas: se resuelven una vez en memoria y las respuestas se recorren con cursor
+        Map<Long, PreguntaExportacion> preguntas = new HashMap<>();
+        for (Pregunta pregunta : preguntaRepository.findAllWithOpciones()) {
+            preguntas.put(pregunta.getId(), new PreguntaExportacion(pregunta));
         }
         
-        // Obtener datos de exámenes con respuestas
-        List<Examen> examenes = examenRepository.findAll();
-        
-        int rowNum = 1;
-        for (Examen examen : examenes) {
-            if (examen.getPersona() != null && examen.getRespuestas() != null) {
-                for (RespuestaExamen respuesta : examen.getRespuestas()) {
-                    Row row = sheet.createRow(rowNum++);
-                    
-                    row.createCell(0).setCellValue(examen.getId());
-                    row.createCell(1).setCellValue(examen.getPersona().getNombre());
-                    row.createCell(2).setCellValue(examen.getPersona().getApellido());
-                    row.createCell(3).setCellValue(respuesta.getPregunta().getId());
-                    row.createCell(4).setCellValue(respuesta.getPregunta().getAreaConocimiento().getNombre());
-                    
-                    // Pregunta (truncar si es muy larga)
-                    String pregunta = respuesta.getPregunta().getEnunciado();
-                    row.createCell(5).setCellValue(pregunta.length() > 100 ? pregunta.substring(0, 100) + "..." : pregunta);
-                    
-                    row.createCell(6).setCellValue(respuesta.getRespuestaSeleccionada());
-                    row.createCell(7).setCellValue(respuesta.getPregunta().getOpcionCorrecta());
-                    row.createCell(8).setCellValue(respuesta.isEsCorrecta() ? "Sí" : "No");
-                    
-                    // Opciones (formato: 1) Opción1 | 2) Opción2 | 3) Opción3 | 4) Opción4
-                    String opciones = respuesta.getPregunta().getOpciones().stream()
-                        .sorted((o1, o2) -> Integer.compare(o1.getOrden(), o2.getOrden()))
-                        .map(opcion -> opcion.getOrden() + ") " + opcion.getTexto())
-                        .collect(Collectors.joining(" | "));
-                    row.createCell(9).setCellValue(opciones.length() > 200 ? opciones.substring(0, 200) + "..." : opciones);
-                    
-                    // Aplicar estilos
-                    for (int i = 0; i < headers.length; i++) {
-                        row.getCell(i).setCellStyle(dataStyle);
-                    }
-                }
+        int[] rowNum = {1};
+        jdbcCursor.query(SQL_RESPUESTAS, (ResultSet rs) -> {
+            PreguntaExportacion pregunta = preguntas.get(rs.getLong("pregunta_id"));
+            if (pregunta == null) {
+                return;
             }
-        }
+            Row row = sheet.createRow(rowNum[0]++);
+            row.createCell(0).setCellValue(rs.getLong("examen_id"));
+            row.createCell(1).setCellValue(rs.getString("nombre"));
+            row.createCell(2).setCellValue(rs.getString("apellido"));
+            row.createCell(3).setCellValue(pregunta.id);
+            row.createCell(4).setCellValue(pregunta.area);
+            row.createCell(5).setCellValue(pregunta.enunciado);
+            row.createCell(6).setCellValue(rs.getInt("respuesta_seleccionada"));
+            row.createCell(7).setCellValue(pregunta.opcionCorrecta);
+            row.createCell(8).setCellValue(rs.getBoolean("es_correcta") ? "Sí" : "No");
+            row.createCell(9).setCellValue(pregunta.opciones);
+            
+            aplicarEstilo(row, HEADERS_PREGUNTAS_RESPUESTAS.length, dataStyle);
+        });
     }
     
-    private void crearHojaEstadisticas(Sheet sheet) {
-        CellStyle headerStyle = crearEstiloHeader(sheet.getWorkbook());
-        CellStyle dataStyle = crearEstiloDatos(sheet.getWorkbook());
-        
-        // Encabezados
-        Row headerRow = sheet.createRow(0);
-        String[] headers = {"Métrica", "Valor"};
-        
-        for (int i = 0; i < headers.length; i++) {
-            Cell cell = headerRow.createCell(i);
-            cell.setCellValue(headers[i]);
-            cell.setCellStyle(headerStyle);
-            sheet.setColumnWidth(i, 30 * 256);
-        }
-        
-        // Obtener estadísticas
-        List<InscripcionDTO> inscripciones = obtenerTodasLasInscripciones();
-        
+    private void escribirEstadisticas(Sheet sheet, EstadisticasExportacion estadisticas, CellStyle dataStyle) {
         int rowNum = 1;
-        
-        // Total de inscripciones
-        Row row1 = sheet.createRow(rowNum++);
-        row1.createCell(0).setCellValue("Total de Inscripciones");
-        row1.createCell(1).setCellValue(inscripciones.size());
-        
-        // Aprobados
-        long aprobados = inscripciones.stream().filter(i -> Boolean.TRUE.equals(i.getAprobado())).count();
-        Row row2 = sheet.createRow(rowNum++);
-        row2.createCell(0).setCellValue("Aprobados");
-        row2.createCell(1).setCellValue(aprobados);
-        
-        // Desaprobados
-        long desaprobados = inscripciones.stream().filter(i -> Boolean.FALSE.equals(i.getAprobado())).count();
-        Row row3 = sheet.createRow(rowNum++);
-        row3.createCell(0).setCellValue("Desaprobados");
-        row3.createCell(1).setCellValue(desaprobados);
-        
-        // Pendientes
-        long pendientes = inscripciones.stream().filter(i -> i.getAprobado() == null).count();
-        Row row4 = sheet.createRow(rowNum++);
-        row4.createCell(0).setCellValue("Pendientes");
-        row4.createCell(1).setCellValue(pendientes);
-        
-        // Promedio general
-        double promedioGeneral = inscripciones.stream()
-            .filter(i -> i.getPromedio() != null)
-            .mapToDouble(InscripcionDTO::getPromedio)
-            .average()
-            .orElse(0.0);
-        Row row5 = sheet.createRow(rowNum++);
-        row5.createCell(0).setCellValue("Promedio General");
-        row5.createCell(1).setCellValue(Math.round(promedioGeneral * 100.0) / 100.0);
-        
-        // Promedio por área
-        double promProgramacion = inscripciones.stream()
-            .filter(i -> i.getProgramacionBasica() != null)
-            .mapToDouble(i -> i.getProgramacionBasica())
-            .average()
-            .orElse(0.0);
-        Row row6 = sheet.createRow(rowNum++);
-        row6.createCell(0).setCellValue("Promedio Programación");
-        row6.createCell(1).setCellValue(Math.round(promProgramacion * 100.0) / 100.0);
-        
-        double promLogica = inscripciones.stream()
-            .filter(i -> i.getEstructurasDatos() != null)
-            .mapToDouble(i -> i.getEstructurasDatos())
-            .average()
-            .orElse(0.0);
-        Row row7 = sheet.createRow(rowNum++);
-        row7.createCell(0).setCellValue("Promedio Lógica");
-        row7.createCell(1).setCellValue(Math.round(promLogica * 100.0) / 100.0);
-        
-        double promMatematica = inscripciones.stream()
-            .filter(i -> i.getAlgoritmos() != null)
-            .mapToDouble(i -> i.getAlgoritmos())
-            .average()
-            .orElse(0.0);
-        Row row8 = sheet.createRow(rowNum++);
-        row8.createCell(0).setCellValue("Promedio Matemática");
-        row8.createCell(1).setCellValue(Math.round(promMatematica * 100.0) / 100.0);
-        
-        double promCreatividad = inscripciones.stream()
-            .filter(i -> i.getBaseDatos() != null)
-            .mapToDouble(i -> i.getBaseDatos())
-            .average()
-            .orElse(0.0);
-        Row row9 = sheet.createRow(rowNum++);
-        row9.createCell(0).setCellValue("Promedio Creatividad");
-        row9.createCell(1).setCellValue(Math.round(promCreatividad * 100.0) / 100.0);
-        
-        // Aplicar estilos
-        for (int i = 1; i < rowNum; i++) {
-            Row row = sheet.getRow(i);
-            for (int j = 0; j < 2; j++) {
-                row.getCell(j).setCellStyle(dataStyle);
-            }
+        rowNum = escribirMetrica(sheet, rowNum, "Total de Inscripciones", estadisticas.total, dataStyle);
+        rowNum = escribirMetrica(sheet, rowNum, "Aprobados", estadisticas.aprobados, dataStyle);
+        rowNum = escribirMetrica(sheet, rowNum, "Desaprobados", estadisticas.total - estadisticas.aprobados, dataStyle);
+        // El estado de aprobación siempre se calcula a partir del promedio, no quedan pendientes
+        rowNum = escribirMetrica(sheet, rowNum, "Pendientes", 0, dataStyle);
+        rowNum = escribirMetrica(sheet, rowNum, "Promedio General", redondear(estadisticas.promedioGeneral()), dataStyle);
+        // Mismas etiquetas y columnas que el DTO de inscripciones (programacionBasica = lógica, etc.)
+        rowNum = escribirMetrica(sheet, rowNum, "Promedio Programación", redondear(estadisticas.promedioLogica()), dataStyle);
+        rowNum = escribirMetrica(sheet, rowNum, "Promedio Lógica", redondear(estadisticas.promedioMatematica()), dataStyle);
+        rowNum = escribirMetrica(sheet, rowNum, "Promedio Matemática", redondear(estadisticas.promedioCreatividad()), dataStyle);
+        escribirMetrica(sheet, rowNum, "Promedio Creatividad", redondear(estadisticas.promedioProgramacion()), dataStyle);
+    }
+    
+    private int escribirMetrica(Sheet sheet, int rowNum, String metrica, double valor, CellStyle dataStyle) {
+        Row row = sheet.createRow(rowNum);
+        row.createCell(0).setCellValue(metrica);
+        row.createCell(1).setCellValue(valor);
+        aplicarEstilo(row, 2, dataStyle);
+        return rowNum + 1;
+    }
+    
+    private void aplicarEstilo(Row row, int columnas, CellStyle style) {
+        for (int i = 0; i < columnas; i++) {
+            row.getCell(i).setCellStyle(style);
         }
     }
     
+    private static double redondear(double valor) {
+        return Math.round(valor * 100.0) / 100.0;
+    }
+    
+    private static int valor(Integer numero) {
+        return numero != null ? numero : 0;
+    }
+    
     private CellStyle crearEstiloHeader(Workbook workbook) {
         CellStyle style = workbook.createCellStyle();
         Font font = workbook.createFont();
@@ -416,90 +308,147 @@ public class ExcelService {
         return style;
     }
     
-    // Método para obtener todas las inscripciones con resultados
-    private List<InscripcionDTO> obtenerTodasLasInscripciones() {
-        try {
-            logger.info("=== INICIO obtenerTodasLasInscripciones ===");
-            
-            // Usar el método estándar primero para evitar problemas con JOIN FETCH
-            List<Examen> examenes = examenRepository.findAll();
-            logger.info("Total de exámenes encontrados: " + examenes.size());
-            
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
-            
-            List<InscripcionDTO> resultado = examenes.stream()
-                .filter(examen -> {
-                    boolean tienePersona = examen.getPersona() != null;
-                    if (!tienePersona) {
-                        logger.info("Examen ID " + examen.getId() + " sin persona asociada");
-                    }
-                    return tienePersona;
-                })
-                .map(examen -> {
-                    Persona persona = examen.getPersona();
-                    String fechaExamen = examen.getFechaFin() != null ? 
-                        examen.getFechaFin().format(formatter) : "No completado";
-                    
-                    logger.info("Procesando examen ID: " + examen.getId() + " para persona: " + persona.getEmail());
-                    
-                    // Forzar la carga de las respuestas para asegurar que las puntuaciones estén calculadas
-                    if (examen.getRespuestas() != null) {
-                        int respuestasCount = examen.getRespuestas().size();
-                        logger.info("  - Respuestas cargadas: " + respuestasCount);
-                        
-                        // Si el examen está completado pero las puntuaciones son null, recalcular
-                        if (examen.getFechaFin() != null && 
-                            (examen.getLogica() == null || 
-                             examen.getMatematica() == null || 
-                             examen.getCreatividad() == null || 
-                             examen.getProgramacion() == null)) {
-                            logger.info("  - Recalculando puntuaciones para examen ID: " + examen.getId());
-                            examen.calcularPuntuaciones();
-                            examenRepository.save(examen);
-                        }
-                    } else {
-                        logger.info("  - No hay respuestas asociadas");
-                    }
-                    
-                    // Log de puntuaciones
-                    logger.info("  - Lógica: " + examen.getLogica());
-                    logger.info("  - Matemática: " + examen.getMatematica());
-                    logger.info("  - Creatividad: " + examen.getCreatividad());
-                    logger.info("  - Programación: " + examen.getProgramacion());
-                    logger.info("  - Promedio: " + examen.getPromedio());
-                    logger.info("  - Aprobado: " + examen.isAprobado());
-                    
-                    InscripcionDTO dto = new InscripcionDTO(
-                        examen.getId(),
-                        persona.getNombre(),
-                        persona.getApellido(),
-                        persona.getCuil(),
-                        persona.getEmail(),
-                        persona.getTrabajaActualmente(),
-                        persona.getTrabajaSectorIT(),
-                        examen.getLogica(),
-                        examen.getMatematica(),
-                        examen.getCreatividad(),
-                        examen.getProgramacion(),
-                        examen.getPromedio(),
-                        examen.isAprobado(),
-                        fechaExamen
-                    );
-                    
-                    logger.info("  - DTO creado exitosamente");
-                    return dto;
-                })
-                .collect(Collectors.toList());
-            
-            logger.info("Total de DTOs creados: " + resultado.size());
-            logger.info("=== FIN obtenerTodasLasInscripciones ===");
-            
-            return resultado;
-        } catch (Exception e) {
-            logger.error("Error en obtenerTodasLasInscripciones: " + e.getMessage());
-            e.printStackTrace();
-            // Si hay error, devolver lista vacía
-            return new ArrayList<>();
+    /**
+     * Fila de examen + persona leída del cursor
+     */
+    private static final class FilaExamen {
+        private final long id;
+        private final long personaId;
+        private final String nombre;
+        private final String apellido;
+        private final String cuil;
+        private final String email;
+        private final String trabajaActualmente;
+        private final String trabajaSectorIT;
+        private final Integer logica;
+        private final Integer matematica;
+        private final Integer creatividad;
+        private final Integer programacion;
+        private final Timestamp fechaFin;
+        private final Integer tiempoTotalMinutos;
+        private final double promedio;
+        
+        private FilaExamen(ResultSet rs) throws SQLException {
+            this.id = rs.getLong("id");
+            this.personaId = rs.getLong("persona_id");
+            this.nombre = rs.getString("nombre");
+            this.apellido = rs.getString("apellido");
+            this.cuil = rs.getString("cuil");
+            this.email = rs.getString("email");
+            this.trabajaActualmente = rs.getString("trabaja_actualmente");
+            this.trabajaSectorIT = rs.getString("trabaja_sector_it");
+            this.logica = (Integer) rs.getObject("logica");
+            this.matematica = (Integer) rs.getObject("matematica");
+            this.creatividad = (Integer) rs.getObject("creatividad");
+            this.programacion = (Integer) rs.getObject("programacion");
+            this.fechaFin = rs.getTimestamp("fecha_fin");
+            this.tiempoTotalMinutos = (Integer) rs.getObject("tiempo_total_minutos");
+            this.promedio = calcularPromedio();
+        }
+        
+        // Promedio de las áreas con puntuación (igual que Examen.getPromedio)
+        private double calcularPromedio() {
+            int suma = 0;
+            int cantidad = 0;
+            for (Integer puntuacion : new Integer[] {logica, matematica, creatividad, programacion}) {
+                if (puntuacion != null) {
+                    suma += puntuacion;
+                    cantidad++;
+                }
+            }
+            return cantidad == 0 ? 0.0 : (double) suma / cantidad;
+        }
+        
+        private boolean aprobado() {
+            return promedio >= 70;
+        }
+        
+        private String dni() {
+            return cuil != null && cuil.length() >= 10 ? cuil.substring(2, 10) : "";
+        }
+        
+        private String fechaExamen() {
+            return fechaFin != null ? fechaFin.toLocalDateTime().format(FORMATO_FECHA) : "No completado";
+        }
+    }
+    
+    /**
+     * Textos de una pregunta ya preparados para la hoja de preguntas y respuestas
+     */
+    private static final class PreguntaExportacion {
+        private final long id;
+        private final String area;
+        private final String enunciado;
+        private final int opcionCorrecta;
+        private final String opciones;
+        
+        private PreguntaExportacion(Pregunta pregunta) {
+            this.id = pregunta.getId();
+            this.area = pregunta.getAreaConocimiento().getNombre();
+            // Pregunta (truncar si es muy larga)
+            String texto = pregunta.getEnunciado();
+            this.enunciado = texto.length() > 100 ? texto.substring(0, 100) + "..." : texto;
+            this.opcionCorrecta = pregunta.getOpcionCorrecta();
+            // Opciones (formato: 1) Opción1 | 2) Opción2 | 3) Opción3 | 4) Opción4
+            String todas = pregunta.getOpciones().stream()
+                .sorted(Comparator.comparingInt(Opcion::getOrden))
+                .map(opcion -> opcion.getOrden() + ") " + opcion.getTexto())
+                .collect(Collectors.joining(" | "));
+            this.opciones = todas.length() > 200 ? todas.substring(0, 200) + "..." : todas;
+        }
+    }
+    
+    /**
+     * Acumuladores de la hoja de estadísticas, completados durante la única lectura de exámenes
+     */
+    private static final class EstadisticasExportacion {
+        private long total;
+        private long aprobados;
+        private double sumaPromedio;
+        private final long[] sumas = new long[4];
+        private final long[] cantidades = new long[4];
+        
+        private void agregar(FilaExamen examen) {
+            total++;
+            if (examen.aprobado()) {
+                aprobados++;
+            }
+            sumaPromedio += examen.promedio;
+            acumular(0, examen.logica);
+            acumular(1, examen.matematica);
+            acumular(2, examen.creatividad);
+            acumular(3, examen.programacion);
+        }
+        
+        private void acumular(int area, Integer puntuacion) {
+            if (puntuacion != null) {
+                sumas[area] += puntuacion;
+                cantidades[area]++;
+            }
+        }
+        
+        private double promedioGeneral() {
+            return total == 0 ? 0.0 : sumaPromedio / total;
+        }
+        
+        private double promedioArea(int area) {
+            return cantidades[area] == 0 ? 0.0 : (double) sumas[area] / cantidades[area];
+        }
+        
+        private double promedioLogica() {
+            return promedioArea(0);
+        }
+        
+        private double promedioMatematica() {
+            return promedioArea(1);
+        }
+        
+        private double promedioCreatividad() {
+            return promedioArea(2);
+        }
+        
+        private double promedioProgramacion() {
+            return promedioArea(3);
         }
     }
-} 
\ No newline at end of file
+}
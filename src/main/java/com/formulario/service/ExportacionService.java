@@ -0,0 +1,263 @@
+package com.formulario.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.formulario.repository.InscripcionConsultaRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exportaciones masivas en CSV o NDJSON (una fila JSON por línea) para análisis externo.
+ * Las filas se leen con cursor (fetch size) y se escriben a medida que llegan, así que la memoria
+ * usada no depende de la cantidad de filas exportadas.
+ */
+@Service
+public class ExportacionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportacionService.class);
+
+    private static final int TAMANIO_FETCH = 1000;
+    private static final int TAMANIO_BUFFER = 64 * 1024;
+
+    /**
+     * Conjuntos de datos exportables
+     */
+    public enum Conjunto {
+        INSCRIPCIONES("inscripciones",
+            "SELECT e.id AS examen_id, p.id AS persona_id, p.nombre, p.apellido, p.cuil, p.email, " +
+            "p.trabaja_actualmente, p.trabaja_sector_it, e.fecha_inicio, e.fecha_fin, e.tiempo_total_minutos, " +
+            "e.logica, e.matematica, e.creatividad, e.programacion, e.total_preguntas, e.respuestas_correctas, " +
+            InscripcionConsultaRepository.PROMEDIO_SQL + " AS promedio, " +
+            InscripcionConsultaRepository.PROMEDIO_SQL + " >= 70 AS aprobado " +
+            "FROM examenes e JOIN personas p ON p.id = e.persona_id ORDER BY e.id"),
+        PUNTUACIONES("puntuaciones",
+            "SELECT e.id AS examen_id, a.area, a.correctas, a.total, a.porcentaje " +
+            "FROM examenes e CROSS JOIN LATERAL (VALUES " +
+            "('LOGICA', e.correctas_logica, e.total_logica, e.logica), " +
+            "('MATEMATICA', e.correctas_matematica, e.total_matematica, e.matematica), " +
+            "('CREATIVIDAD', e.correctas_creatividad, e.total_creatividad, e.creatividad), " +
+            "('PROGRAMACION', e.correctas_programacion, e.total_programacion, e.programacion)" +
+            ") AS a(area, correctas, total, porcentaje) " +
+            "WHERE e.fecha_fin IS NOT NULL ORDER BY e.id"),
+        RESPUESTAS("respuestas",
+            "SELECT r.id AS respuesta_id, r.examen_id, r.pregunta_id, pr.area_conocimiento, pr.dificultad, " +
+            "r.respuesta_seleccionada, pr.opcion_correcta, r.es_correcta " +
+            "FROM respuestas_examen r JOIN preguntas pr ON pr.id = r.pregunta_id ORDER BY r.id");
+
+        private final String nombre;
+        private final String sql;
+
+        Conjunto(String nombre, String sql) {
+            this.nombre = nombre;
+            this.sql = sql;
+        }
+
+        public String getNombre() {
+            return nombre;
+        }
+
+        public static Conjunto desde(String nombre) {
+            for (Conjunto conjunto : values()) {
+                if (conjunto.nombre.equalsIgnoreCase(nombre)) {
+                    return conjunto;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Formatos de salida
+     */
+    public enum Formato {
+        CSV("csv", "text/csv; charset=UTF-8"),
+        NDJSON("ndjson", "application/x-ndjson");
+
+        private final String extension;
+        private final String contentType;
+
+        Formato(String extension, String contentType) {
+            this.extension = extension;
+            this.contentType = contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public static Formato desde(String nombre) {
+            for (Formato formato : values()) {
+                if (formato.extension.equalsIgnoreCase(nombre)) {
+                    return formato;
+                }
+            }
+            return null;
+        }
+    }
+
+    @Autowired
+    private DataSource dataSource;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    // JdbcTemplate propio con fetch size para recorrer con cursor sin tocar la configuración del compartido
+    private JdbcTemplate jdbcCursor;
+
+    @PostConstruct
+    public void inicializar() {
+        jdbcCursor = new JdbcTemplate(dataSource);
+        jdbcCursor.setFetchSize(TAMANIO_FETCH);
+    }
+
+    /**
+     * Escribe el conjunto en el stream indicado. Requiere transacción para que PostgreSQL use cursor.
+     */
+    @Transactional(readOnly = true)
+    public void exportar(Conjunto conjunto, Formato formato, boolean gzip, OutputStream salida) throws IOException {
+        long inicio = System.currentTimeMillis();
+        OutputStream destino = gzip ? new GZIPOutputStream(salida, TAMANIO_BUFFER) : salida;
+        long[] filas = {0};
+        try {
+            if (formato == Formato.NDJSON) {
+                escribirNdjson(conjunto, destino, filas);
+            } else {
+                escribirCsv(conjunto, destino, filas);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (destino instanceof GZIPOutputStream gzipStream) {
+            gzipStream.finish();
+        }
+        destino.flush();
+        logger.info("Exportación de {} en {}{}: {} filas en {} ms", conjunto.getNombre(), formato.getExtension(),
+                    gzip ? " (gzip)" : "", filas[0], System.currentTimeMillis() - inicio);
+    }
+
+    private void escribirCsv(Conjunto conjunto, OutputStream destino, long[] filas) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(destino, StandardCharsets.UTF_8), TAMANIO_BUFFER);
+        // Extractor en lugar de callback por fila: el encabezado sale de los metadatos aunque no haya filas
+        jdbcCursor.query(conjunto.sql, (ResultSetExtractor<Void>) rs -> {
+            try {
+                ResultSetMetaData metadatos = rs.getMetaData();
+                int columnas = metadatos.getColumnCount();
+                for (int i = 1; i <= columnas; i++) {
+                    if (i > 1) {
+                        writer.write(',');
+                    }
+                    escribirCampoCsv(writer, metadatos.getColumnLabel(i));
+                }
+                writer.write('\n');
+                while (rs.next()) {
+                    for (int i = 1; i <= columnas; i++) {
+                        if (i > 1) {
+                            writer.write(',');
+                        }
+                        Object valor = rs.getObject(i);
+                        if (valor != null) {
+                            escribirCampoCsv(writer, texto(valor));
+                        }
+                    }
+                    writer.write('\n');
+                    filas[0]++;
+                }
+                return null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.flush();
+    }
+
+    // Campo CSV (RFC 4180): entre comillas solo si contiene separador, comillas o saltos de línea
+    static void escribirCampoCsv(Writer writer, String valor) throws IOException {
+        boolean requiereComillas = false;
+        for (int i = 0; i < valor.length() && !requiereComillas; i++) {
+            char c = valor.charAt(i);
+            requiereComillas = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!requiereComillas) {
+            writer.write(valor);
+            return;
+        }
+        writer.write('"');
+        writer.write(valor.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private void escribirNdjson(Conjunto conjunto, OutputStream destino, long[] filas) throws IOException {
+        JsonGenerator generador = jsonFactory.createGenerator(destino, JsonEncoding.UTF8);
+        generador.setRootValueSeparator(null);
+        String[][] nombres = {null};
+        jdbcCursor.query(conjunto.sql, (ResultSet rs) -> {
+            try {
+                ResultSetMetaData metadatos = rs.getMetaData();
+                if (nombres[0] == null) {
+                    nombres[0] = new String[metadatos.getColumnCount()];
+                    for (int i = 0; i < nombres[0].length; i++) {
+                        nombres[0][i] = metadatos.getColumnLabel(i + 1);
+                    }
+                }
+                generador.writeStartObject();
+                for (int i = 0; i < nombres[0].length; i++) {
+                    generador.writeFieldName(nombres[0][i]);
+                    escribirValorJson(generador, rs, i + 1, metadatos.getColumnType(i + 1));
+                }
+                generador.writeEndObject();
+                generador.writeRaw('\n');
+                filas[0]++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        generador.flush();
+    }
+
+    private static void escribirValorJson(JsonGenerator generador, ResultSet rs, int columna, int tipo) throws IOException, SQLException {
+        Object valor = rs.getObject(columna);
+        if (valor == null) {
+            generador.writeNull();
+            return;
+        }
+        switch (tipo) {
+            case Types.INTEGER, Types.SMALLINT, Types.TINYINT, Types.BIGINT -> generador.writeNumber(((Number) valor).longValue());
+            case Types.DOUBLE, Types.FLOAT, Types.REAL, Types.NUMERIC, Types.DECIMAL -> generador.writeNumber(((Number) valor).doubleValue());
+            case Types.BOOLEAN, Types.BIT -> generador.writeBoolean((Boolean) valor);
+            default -> generador.writeString(texto(valor));
+        }
+    }
+
+    // Fechas en ISO-8601 (sin zona, como se guardan), el resto con su toString
+    private static String texto(Object valor) {
+        if (valor instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime().toString();
+        }
+        return valor.toString();
+    }
+}
@@ -3,10 +3,13 @@ package com.formulario.service;
 import com.formulario.model.Examen;
 import com.formulario.model.Persona;
 import com.formulario.model.InscripcionDTO;
-import com.formulario.model.IntentoFallidoGuardarRecomendacion;
+import com.formulario.model.ResumenInscripcionesDTO;
 import com.formulario.repository.ExamenRepository;
 import com.formulario.repository.PersonaRepository;
 import com.formulario.repository.IntentoFallidoGuardarRecomendacionRepository;
+import com.formulario.repository.InscripcionConsultaRepository;
+import com.formulario.repository.InscripcionConsultaRepository.FiltroInscripciones;
+import org.springframework.data.domain.Pageable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -16,11 +19,8 @@ import com.formulario.model.ResultadoDTO;
 import java.util.List;
 import java.util.Optional;
 import java.util.ArrayList;
-import java.util.stream.Collectors;
-import java.time.format.DateTimeFormatter;
 import java.io.IOException;
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.io.OutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,6 +42,21 @@ public class FormularioService {
     @Autowired
     private IntentoFallidoGuardarRecomendacionRepository intentoFallidoGuardarRecomendacionRepository;
     
+    @Autowired
+    private InscripcionConsultaRepository inscripcionConsultaRepository;
+    
+    @Autowired
+    private EstadisticasExamenesService estadisticasExamenesService;
+    
+    @Autowired
+    private PdfCacheService pdfCacheService;
+    
+    @Autowired
+    private IdempotenciaAltaPersonaService idempotenciaAltaPersonaService;
+    
+    @Autowired
+    private TokensExamenService tokensExamenService;
+    
     // Métodos para Persona
     public Persona guardarPersona(Persona persona) {
         return personaRepository.save(persona);
@@ -76,6 +91,21 @@ public class FormularioService {
         return examenRepository.save(examen);
     }
 
+    /**
+     * Guarda la persona de un caso de Bondarea y le crea el examen en una sola transacción,
+     * para que un fallo no deje una persona sin examen. Si el caso ya tiene persona (su examen
+     * se eliminó), se actualizan sus datos en lugar de insertar otra.
+     */
+    @Transactional
+    public Examen guardarPersonaConExamen(Persona persona) {
+        if (persona.getIdCasoBondarea() != null) {
+            personaRepository.findByIdCasoBondarea(persona.getIdCasoBondarea())
+                .ifPresent(existente -> persona.setId(existente.getId()));
+        }
+        Persona personaGuardada = personaRepository.save(persona);
+        return examenRepository.save(new Examen(personaGuardada));
+    }
+
     /**
      * Crea un nuevo examen para la misma persona eliminando el examen anterior.
      * Útil cuando el examen quedó agotado sin finalizar y se desea reintentar.
@@ -87,8 +117,11 @@ public class FormularioService {
         }
 
         Persona persona = examenAnterior.getPersona();
+        idempotenciaAltaPersonaService.olvidar(persona.getIdCasoBondarea());
 
         // Eliminar examen previo para respetar la relación 1 a 1 persona-examen.
+        estadisticasExamenesService.registrarBaja(examenAnterior);
+        pdfCacheService.invalidarPersona(persona.getId());
         examenRepository.delete(examenAnterior);
         examenRepository.flush();
 
@@ -111,10 +144,10 @@ public class FormularioService {
     
     /**
      * Busca un examen por token (hash calculado)
-     * El token se valida y se extrae el ID del examen
+     * El token se valida (propósito examen, vencimiento y revocación) y se extrae el ID del examen
      */
     public Optional<Examen> buscarExamenPorToken(String token) {
-        Long examenId = com.formulario.util.ExamenTokenUtil.validarYExtraerId(token);
+        Long examenId = tokensExamenService.validar(token, com.formulario.util.ExamenTokenUtil.Proposito.EXAMEN);
         if (examenId == null) {
             return Optional.empty();
         }
@@ -123,7 +156,8 @@ public class FormularioService {
     
     /**
      * Busca examen por token o ID (compatibilidad)
-     * Intenta primero como token, luego como ID numérico
+     * Intenta primero como token, luego como ID numérico; el ID solo se acepta mientras se
+     * aceptan los links sin versión (examen.token.aceptar-sin-version) y el examen no tenga links revocados
      */
     public Optional<Examen> buscarExamenPorTokenOId(String identificador) {
         // Intentar como token primero
@@ -133,12 +167,17 @@ public class FormularioService {
         }
         
         // Si no es token válido, intentar como ID numérico
+        Long id;
         try {
-            Long id = Long.parseLong(identificador);
-            return examenRepository.findById(id);
+            id = Long.parseLong(identificador);
         } catch (NumberFormatException e) {
             return Optional.empty();
         }
+        Long idAceptado = tokensExamenService.validarIdSinToken(id);
+        if (idAceptado == null) {
+            return Optional.empty();
+        }
+        return examenRepository.findById(idAceptado);
     }
     
     public Optional<Examen> buscarExamenPorPersona(Persona persona) {
@@ -166,6 +205,11 @@ public class FormularioService {
         intentoFallidoGuardarRecomendacionRepository.deleteByExamenId(examenId);
 
         // Eliminar examen (las respuestas se eliminan por cascade)
+        estadisticasExamenesService.registrarBaja(examen);
+        if (persona != null) {
+            pdfCacheService.invalidarPersona(persona.getId());
+            idempotenciaAltaPersonaService.olvidar(persona.getIdCasoBondarea());
+        }
         examenRepository.delete(examen);
         examenRepository.flush();
 
@@ -194,6 +238,9 @@ public class FormularioService {
         if (examenOpt.isEmpty()) {
             return true; // Sin examen asociado, ya sincronizado
         }
+        estadisticasExamenesService.registrarBaja(examenOpt.get());
+        pdfCacheService.invalidarPersona(personaOpt.get().getId());
+        idempotenciaAltaPersonaService.olvidar(idCaso);
         examenRepository.delete(examenOpt.get());
         return true;
     }
@@ -235,8 +282,8 @@ public class FormularioService {
                 examen.getCreatividad() == null || 
                 examen.getProgramacion() == null) {
                 logger.info("Puntuaciones no calculadas - recalculando...");
-                // Recalcular puntuaciones si es necesario
-                examen.calcularPuntuaciones();
+                // Recalcular puntuaciones si es necesario (aritmética sobre los contadores por área)
+                examen.recalcularPuntuaciones();
                 examenRepository.save(examen);
                 logger.info("Puntuaciones recalculadas");
             }
@@ -268,92 +315,10 @@ public class FormularioService {
         }
     }
     
-    // Método para obtener todas las inscripciones con resultados
+    // Método para obtener todas las inscripciones con resultados (sin filtros ni paginación)
     public List<InscripcionDTO> obtenerTodasLasInscripciones() {
         try {
-            logger.info("=== INICIO obtenerTodasLasInscripciones ===");
-            
-            // Usar el método estándar primero para evitar problemas con JOIN FETCH
-            List<Examen> examenes = examenRepository.findAll();
-            logger.info("Total de exámenes encontrados: " + examenes.size());
-            
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
-            
-            List<InscripcionDTO> resultado = examenes.stream()
-                .filter(examen -> {
-                    boolean tienePersona = examen.getPersona() != null;
-                    if (!tienePersona) {
-                        logger.info("Examen ID " + examen.getId() + " sin persona asociada");
-                    }
-                    return tienePersona;
-                })
-                .map(examen -> {
-                    Persona persona = examen.getPersona();
-                    String fechaExamen = examen.getFechaFin() != null ? 
-                        examen.getFechaFin().format(formatter) : "No completado";
-                    
-                    logger.info("Procesando examen ID: " + examen.getId() + " para persona: " + persona.getEmail());
-                    
-                    // Forzar la carga de las respuestas para asegurar que las puntuaciones estén calculadas
-                    if (examen.getRespuestas() != null) {
-                        int respuestasCount = examen.getRespuestas().size();
-                        logger.info("  - Respuestas cargadas: " + respuestasCount);
-                        
-                        // Si el examen está completado pero las puntuaciones son null, recalcular
-                        if (examen.getFechaFin() != null && 
-                            (examen.getLogica() == null || 
-                             examen.getMatematica() == null || 
-                             examen.getCreatividad() == null || 
-                             examen.getProgramacion() == null)) {
-                            logger.info("  - Recalculando puntuaciones para examen ID: " + examen.getId());
-                            examen.calcularPuntuaciones();
-                            examenRepository.save(examen);
-                        }
-                    } else {
-                        logger.info("  - No hay respuestas asociadas");
-                    }
-                    
-                    // Log de puntuaciones
-                    logger.info("  - Lógica: " + examen.getLogica());
-                    logger.info("  - Matemática: " + examen.getMatematica());
-                    logger.info("  - Creatividad: " + examen.getCreatividad());
-                    logger.info("  - Programación: " + examen.getProgramacion());
-                    logger.info("  - Promedio: " + examen.getPromedio());
-                    logger.info("  - Aprobado: " + examen.isAprobado());
-                    
-                    InscripcionDTO dto = new InscripcionDTO(
-                        examen.getId(),
-                        persona.getNombre(),
-                        persona.getApellido(),
-                        persona.getCuil(),
-                        persona.getEmail(),
-                        persona.getTrabajaActualmente(),
-                        persona.getTrabajaSectorIT(),
-                        examen.getLogica(),
-                        examen.getMatematica(),
-                        examen.getCreatividad(),
-                        examen.getProgramacion(),
-                        examen.getPromedio(),
-                        examen.isAprobado(),
-                        fechaExamen
-                    );
-                    dto.setEstadoTiempo(calcularEstadoTiempoExamen(examen));
-                    // Marcar si hubo intento fallido al guardar recomendación (opción 3)
-                    intentoFallidoGuardarRecomendacionRepository.findFirstByExamenIdOrderByFechaHoraDesc(examen.getId())
-                        .ifPresent(intento -> {
-                            dto.setTieneIntentoFallidoGuardarRecomendacion(true);
-                            LocalDateTime f = intento.getFechaHora();
-                            dto.setIntentoFallidoGuardarRecomendacionFecha(f != null ? f.format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")) : null);
-                        });
-                    logger.info("  - DTO creado exitosamente");
-                    return dto;
-                })
-                .collect(Collectors.toList());
-            
-            logger.info("Total de DTOs creados: " + resultado.size());
-            logger.info("=== FIN obtenerTodasLasInscripciones ===");
-            
-            return resultado;
+            return buscarInscripciones(null, null, null, null, Pageable.unpaged());
         } catch (Exception e) {
             logger.error("Error en obtenerTodasLasInscripciones: " + e.getMessage());
             e.printStackTrace();
@@ -362,40 +327,35 @@ public class FormularioService {
         }
     }
     
+    /**
+     * Filas de una página del listado de inscripciones con los filtros aplicados en la base
+     * (el estado temporal y el último intento fallido se calculan en la misma consulta).
+     * El total sale de {@link #resumirInscripciones}
+     */
+    public List<InscripcionDTO> buscarInscripciones(String dni, String cuil, String email, String estadoTiempo, Pageable pageable) {
+        return inscripcionConsultaRepository.buscar(crearFiltro(dni, cuil, email, estadoTiempo), pageable);
+    }
+    
+    /**
+     * Totales del listado (cantidad, promedio general, aprobados) sobre todo el conjunto filtrado
+     */
+    public ResumenInscripcionesDTO resumirInscripciones(String dni, String cuil, String email, String estadoTiempo) {
+        return inscripcionConsultaRepository.resumir(crearFiltro(dni, cuil, email, estadoTiempo));
+    }
+    
+    // Filtro del listado de inscripciones (lo reutiliza la descarga masiva de PDFs)
+    public FiltroInscripciones crearFiltro(String dni, String cuil, String email, String estadoTiempo) {
+        return new FiltroInscripciones(dni, cuil, email, estadoTiempo, TIEMPO_LIMITE_EXAMEN_MINUTOS);
+    }
+    
     // Método para generar Excel de inscripciones
     public byte[] generarExcelInscripciones() throws IOException {
         // Delegar al ExcelService
         return excelService.generarExcelInscripciones();
     }
-
-    /**
-     * Calcula el estado temporal del examen:
-     * - FINALIZADO_EN_TIEMPO: el usuario finalizó antes o justo al límite.
-     * - TIEMPO_AGOTADO_SIN_FINALIZAR: el tiempo se agotó y no finalizó.
-     * - FINALIZADO_FUERA_DE_TIEMPO: finalizó luego del límite.
-     * - EN_CURSO: todavía está dentro del tiempo y sin finalizar.
-     */
-    private String calcularEstadoTiempoExamen(Examen examen) {
-        LocalDateTime fechaInicio = examen.getFechaInicio();
-        LocalDateTime fechaFin = examen.getFechaFin();
-
-        if (fechaInicio == null) {
-            return fechaFin != null
-                ? InscripcionDTO.ESTADO_TIEMPO_FINALIZADO_EN_TIEMPO
-                : InscripcionDTO.ESTADO_TIEMPO_EN_CURSO;
-        }
-
-        LocalDateTime limite = fechaInicio.plusMinutes(TIEMPO_LIMITE_EXAMEN_MINUTOS);
-
-        if (fechaFin != null) {
-            long minutosEntreInicioYFin = ChronoUnit.MINUTES.between(fechaInicio, fechaFin);
-            return minutosEntreInicioYFin <= TIEMPO_LIMITE_EXAMEN_MINUTOS
-                ? InscripcionDTO.ESTADO_TIEMPO_FINALIZADO_EN_TIEMPO
-                : InscripcionDTO.ESTADO_TIEMPO_FINALIZADO_FUERA_DE_TIEMPO;
-        }
-
-        return LocalDateTime.now().isAfter(limite)
-            ? InscripcionDTO.ESTADO_TIEMPO_TIEMPO_AGOTADO_SIN_FINALIZAR
-            : InscripcionDTO.ESTADO_TIEMPO_EN_CURSO;
+    
+    // Método para escribir el Excel de inscripciones directamente en la respuesta (streaming, memoria acotada)
+    public void escribirExcelInscripciones(OutputStream salida) throws IOException {
+        excelService.escribirExcelInscripciones(salida);
     }
 } 
\ No newline at end of file
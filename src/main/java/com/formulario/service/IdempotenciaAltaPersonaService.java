@@ -0,0 +1,220 @@
+package com.formulario.service;
+
+import com.formulario.model.Examen;
+import com.formulario.model.Persona;
+import com.formulario.repository.ExamenRepository;
+import com.formulario.repository.PersonaRepository;
+import com.formulario.util.CacheAcotada;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Hace idempotente el alta de personas desde Bondarea (/api/persona/crear). Bondarea reintenta
+ * el webhook cuando se le vence el timeout: el reintento de un caso ya dado de alta devuelve los
+ * mismos links sin volver a consultar Bondarea ni insertar filas.
+ * <p>
+ * Las altas recientes se guardan en memoria por ID de caso (y por Idempotency-Key, si el llamador
+ * la manda); si no están en memoria se reconstruyen desde la base, donde la restricción única sobre
+ * personas.id_caso_bondarea evita duplicados aunque dos instancias reciban el mismo caso a la vez.
+ */
+@Service
+public class IdempotenciaAltaPersonaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotenciaAltaPersonaService.class);
+
+    @Autowired
+    private PersonaRepository personaRepository;
+
+    @Autowired
+    private ExamenRepository examenRepository;
+
+    @Value("${bondarea.altas.cache.max-entradas:10000}")
+    private int maxEntradas;
+
+    @Value("${bondarea.altas.cache.ttl-horas:24}")
+    private int ttlHoras;
+
+    /** Alta registrada por ID de caso */
+    private CacheAcotada<String, AltaRegistrada> altas;
+
+    /** Idempotency-Key -> ID de caso */
+    private CacheAcotada<String, String> claves;
+
+    /** Un candado por caso que se está dando de alta, para que los reintentos simultáneos esperen al primero */
+    private final ConcurrentHashMap<String, Object> enCurso = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void inicializar() {
+        Duration ttl = Duration.ofHours(Math.max(1, ttlHoras));
+        altas = new CacheAcotada<>(Math.max(1, maxEntradas), ttl);
+        claves = new CacheAcotada<>(Math.max(1, maxEntradas), ttl);
+    }
+
+    /**
+     * Devuelve el alta del caso si ya existe o la crea una sola vez.
+     * @param idCaso ID del caso en Bondarea
+     * @param claveIdempotencia valor del header Idempotency-Key (opcional)
+     * @param desdeExamen arma el alta a partir de un examen ya guardado (sin llamadas remotas)
+     * @param crear da de alta la persona y el examen; devuelve null si el caso no existe en Bondarea
+     */
+    public Resultado resolver(String idCaso, String claveIdempotencia,
+                              Function<Examen, AltaRegistrada> desdeExamen,
+                              Supplier<AltaRegistrada> crear) {
+        AltaRegistrada registrada = buscarEnMemoria(idCaso, claveIdempotencia);
+        if (registrada != null) {
+            return new Resultado(registrada, true);
+        }
+
+        Object candado = enCurso.computeIfAbsent(idCaso, k -> new Object());
+        try {
+            synchronized (candado) {
+                // Otro reintento pudo haber terminado el alta mientras esperábamos
+                registrada = buscarEnMemoria(idCaso, claveIdempotencia);
+                if (registrada != null) {
+                    return new Resultado(registrada, true);
+                }
+
+                Optional<Examen> existente = buscarExamenDelCaso(idCaso);
+                if (existente.isPresent()) {
+                    registrada = desdeExamen.apply(existente.get());
+                    recordar(idCaso, claveIdempotencia, registrada);
+                    logger.info("Alta repetida para idCaso {}: se devuelve el examen {} ya existente", idCaso, registrada.getExamenId());
+                    return new Resultado(registrada, true);
+                }
+
+                try {
+                    registrada = crear.get();
+                } catch (DataIntegrityViolationException e) {
+                    // Otra instancia dio de alta el mismo caso entre la búsqueda y el insert
+                    existente = buscarExamenDelCaso(idCaso);
+                    if (existente.isEmpty()) {
+                        throw e;
+                    }
+                    logger.info("Alta concurrente para idCaso {}: se devuelve el examen {} creado por otra solicitud", idCaso, existente.get().getId());
+                    registrada = desdeExamen.apply(existente.get());
+                    recordar(idCaso, claveIdempotencia, registrada);
+                    return new Resultado(registrada, true);
+                }
+                if (registrada != null) {
+                    recordar(idCaso, claveIdempotencia, registrada);
+                }
+                return new Resultado(registrada, false);
+            }
+        } finally {
+            enCurso.remove(idCaso, candado);
+        }
+    }
+
+    /**
+     * Olvida el alta de un caso (su examen se eliminó o se recreó). Si hay una transacción en curso
+     * se vuelve a olvidar después del commit, por si un reintento la volvió a leer mientras tanto.
+     */
+    public void olvidar(String idCaso) {
+        if (idCaso == null || idCaso.trim().isEmpty()) {
+            return;
+        }
+        String clave = idCaso.trim();
+        altas.invalidar(clave);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    altas.invalidar(clave);
+                }
+            });
+        }
+    }
+
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("altas", altas.estadisticas());
+        estadisticas.put("clavesIdempotencia", claves.estadisticas());
+        estadisticas.put("enCurso", enCurso.size());
+        return estadisticas;
+    }
+
+    private AltaRegistrada buscarEnMemoria(String idCaso, String claveIdempotencia) {
+        if (claveIdempotencia != null && !claveIdempotencia.isBlank()) {
+            String casoDeLaClave = claves.obtener(claveIdempotencia);
+            if (casoDeLaClave != null) {
+                AltaRegistrada registrada = altas.obtener(casoDeLaClave);
+                if (registrada != null) {
+                    return registrada;
+                }
+            }
+        }
+        return altas.obtener(idCaso);
+    }
+
+    private Optional<Examen> buscarExamenDelCaso(String idCaso) {
+        Optional<Persona> persona = personaRepository.findByIdCasoBondarea(idCaso);
+        if (persona.isEmpty()) {
+            return Optional.empty();
+        }
+        return examenRepository.findByPersona(persona.get());
+    }
+
+    private void recordar(String idCaso, String claveIdempotencia, AltaRegistrada registrada) {
+        altas.guardar(idCaso, registrada);
+        if (claveIdempotencia != null && !claveIdempotencia.isBlank()) {
+            claves.guardar(claveIdempotencia, idCaso);
+        }
+    }
+
+    /**
+     * Datos que devuelve el alta; es lo que se repite ante un reintento
+     */
+    public static class AltaRegistrada {
+        private final Long personaId;
+        private final Long examenId;
+        private final String email;
+        private final String examenUrl;
+        private final String urlReintento;
+
+        public AltaRegistrada(Long personaId, Long examenId, String email, String examenUrl, String urlReintento) {
+            this.personaId = personaId;
+            this.examenId = examenId;
+            this.email = email;
+            this.examenUrl = examenUrl;
+            this.urlReintento = urlReintento;
+        }
+
+        public Long getPersonaId() { return personaId; }
+        public Long getExamenId() { return examenId; }
+        public String getEmail() { return email; }
+        public String getExamenUrl() { return examenUrl; }
+        public String getUrlReintento() { return urlReintento; }
+    }
+
+    /**
+     * Alta devuelta por {@link #resolver}; {@code repetida} indica que no se creó nada nuevo.
+     * {@code alta} es null cuando el caso no existe en Bondarea.
+     */
+    public static class Resultado {
+        private final AltaRegistrada alta;
+        private final boolean repetida;
+
+        public Resultado(AltaRegistrada alta, boolean repetida) {
+            this.alta = alta;
+            this.repetida = repetida;
+        }
+
+        public AltaRegistrada getAlta() { return alta; }
+        public boolean isRepetida() { return repetida; }
+    }
+}
@@ -0,0 +1,235 @@
+package com.formulario.service;
+
+import com.formulario.repository.InscripcionConsultaRepository;
+import com.formulario.repository.InscripcionConsultaRepository.CandidatoPdf;
+import com.formulario.repository.InscripcionConsultaRepository.FiltroInscripciones;
+import com.formulario.service.PdfService.TipoPdf;
+import com.formulario.service.RenderizadorPdfService.PdfSaturadoException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Descarga masiva de PDFs: genera los PDFs de los exámenes finalizados de un conjunto filtrado
+ * y los escribe en un ZIP directo a la respuesta. Los candidatos se leen por tandas y los PDFs se
+ * generan en paralelo con una ventana acotada de trabajos en curso, así la memoria no depende del
+ * tamaño de la cohorte. Los PDFs ya cacheados en disco se reutilizan sin volver a renderizar.
+ */
+@Service
+public class LotePdfService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LotePdfService.class);
+
+    private static final int TAMANIO_TANDA = 200;
+    private static final int MAX_REINTENTOS_SATURADO = 5;
+
+    @Autowired
+    private InscripcionConsultaRepository inscripcionConsultaRepository;
+
+    @Autowired
+    private PdfService pdfService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${pdf.lote.hilos:2}")
+    private int hilos;
+
+    @Value("${pdf.lote.max-simultaneos:1}")
+    private int maxSimultaneos;
+
+    private ExecutorService ejecutor;
+    private TransactionTemplate lectura;
+    private Semaphore descargasEnCurso;
+
+    @PostConstruct
+    public void inicializar() {
+        lectura = new TransactionTemplate(transactionManager);
+        lectura.setReadOnly(true);
+        descargasEnCurso = new Semaphore(Math.max(1, maxSimultaneos));
+        AtomicInteger numeroHilo = new AtomicInteger();
+        ejecutor = Executors.newFixedThreadPool(Math.max(1, hilos), r -> {
+            Thread hilo = new Thread(r, "pdf-lote-" + numeroHilo.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    @PreDestroy
+    public void detener() {
+        ejecutor.shutdownNow();
+    }
+
+    /**
+     * Reserva un lugar para una descarga masiva; null si ya hay demasiadas en curso.
+     * {@link #escribirZip} libera el lugar al terminar, pero el llamador también debe liberarlo cuando
+     * la solicitud termina sin llegar a escribir (timeout asíncrono, cliente que corta, error).
+     */
+    public Reserva reservar() {
+        return descargasEnCurso.tryAcquire() ? new Reserva() : null;
+    }
+
+    /**
+     * Escribe el ZIP con un PDF por candidato del filtro. Los errores individuales no cortan la descarga:
+     * se listan al final en errores.txt dentro del mismo ZIP.
+     */
+    public void escribirZip(Reserva reserva, FiltroInscripciones filtro, TipoPdf tipo, OutputStream salida) throws IOException {
+        int ventana = Math.max(1, hilos) * 2;
+        Deque<PdfEnCurso> enCurso = new ArrayDeque<>(ventana);
+        StringBuilder errores = new StringBuilder();
+        int generados = 0;
+        int fallidos = 0;
+        long inicio = System.currentTimeMillis();
+
+        try (ZipOutputStream zip = new ZipOutputStream(salida, StandardCharsets.UTF_8)) {
+            long ultimoExamenId = 0;
+            List<CandidatoPdf> tanda;
+            do {
+                tanda = inscripcionConsultaRepository.buscarFinalizadosDesde(filtro, ultimoExamenId, TAMANIO_TANDA);
+                for (CandidatoPdf candidato : tanda) {
+                    ultimoExamenId = candidato.getExamenId();
+                    if (enCurso.size() >= ventana) {
+                        if (escribirSiguiente(enCurso.removeFirst(), zip, errores)) {
+                            generados++;
+                        } else {
+                            fallidos++;
+                        }
+                    }
+                    enCurso.addLast(new PdfEnCurso(candidato, ejecutor.submit(() -> generar(candidato.getPersonaId(), tipo))));
+                }
+            } while (tanda.size() == TAMANIO_TANDA);
+
+            while (!enCurso.isEmpty()) {
+                if (escribirSiguiente(enCurso.removeFirst(), zip, errores)) {
+                    generados++;
+                } else {
+                    fallidos++;
+                }
+            }
+
+            if (errores.length() > 0) {
+                zip.putNextEntry(new ZipEntry("errores.txt"));
+                zip.write(errores.toString().getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+            zip.finish();
+            logger.info("ZIP de PDFs {} generado: {} PDFs, {} con error ({} ms)",
+                tipo, generados, fallidos, System.currentTimeMillis() - inicio);
+        } catch (IOException | RuntimeException e) {
+            // El cliente cortó la descarga o falló la consulta: no seguir generando lo que quedó en la ventana
+            enCurso.forEach(pdf -> pdf.futuro.cancel(true));
+            throw e;
+        } finally {
+            reserva.liberar();
+        }
+    }
+
+    private boolean escribirSiguiente(PdfEnCurso pdf, ZipOutputStream zip, StringBuilder errores) throws IOException {
+        CandidatoPdf candidato = pdf.candidato;
+        byte[] contenido;
+        try {
+            contenido = pdf.futuro.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Descarga de PDFs interrumpida", e);
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause() != null ? e.getCause() : e;
+            logger.warn("No se pudo generar el PDF de la persona ID {} en la descarga masiva: {}",
+                candidato.getPersonaId(), causa.getMessage());
+            errores.append("Persona ").append(candidato.getPersonaId())
+                .append(" (examen ").append(candidato.getExamenId()).append("): ")
+                .append(causa.getMessage()).append('\n');
+            return false;
+        }
+        zip.putNextEntry(new ZipEntry(nombreArchivo(candidato)));
+        zip.write(contenido);
+        zip.closeEntry();
+        return true;
+    }
+
+    // Genera (o toma de la caché) el PDF; si el pool de renderizado está saturado espera y reintenta
+    private byte[] generar(Long personaId, TipoPdf tipo) throws Exception {
+        for (int intento = 1; ; intento++) {
+            try {
+                return lectura.execute(status -> {
+                    try {
+                        return pdfService.obtenerPdf(personaId, tipo, pdfService.calcularClaveCache(personaId, tipo));
+                    } catch (RuntimeException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new RuntimeException(e.getMessage(), e);
+                    }
+                });
+            } catch (PdfSaturadoException e) {
+                if (intento >= MAX_REINTENTOS_SATURADO) {
+                    throw e;
+                }
+                Thread.sleep(e.getReintentarEnSegundos() * 1000L);
+            }
+        }
+    }
+
+    private static String nombreArchivo(CandidatoPdf candidato) {
+        String nombre = limpiar(candidato.getApellido()) + "_" + limpiar(candidato.getNombre());
+        String cuil = candidato.getCuil() != null ? candidato.getCuil().replaceAll("[^0-9]", "") : "";
+        return nombre + (cuil.isEmpty() ? "" : "_" + cuil) + "_" + candidato.getPersonaId() + ".pdf";
+    }
+
+    // Nombre apto para una entrada de ZIP: sin acentos, espacios ni separadores de ruta
+    private static String limpiar(String valor) {
+        if (valor == null || valor.isBlank()) {
+            return "sin_dato";
+        }
+        String sinAcentos = Normalizer.normalize(valor.trim(), Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return sinAcentos.replaceAll("[^A-Za-z0-9]+", "_");
+    }
+
+    /**
+     * Lugar reservado para una descarga masiva. Liberarlo más de una vez no tiene efecto,
+     * así se puede liberar tanto al terminar el ZIP como al completarse la solicitud.
+     */
+    public final class Reserva {
+        private final AtomicBoolean liberada = new AtomicBoolean();
+
+        private Reserva() {}
+
+        public void liberar() {
+            if (liberada.compareAndSet(false, true)) {
+                descargasEnCurso.release();
+            }
+        }
+    }
+
+    private static final class PdfEnCurso {
+        private final CandidatoPdf candidato;
+        private final Future<byte[]> futuro;
+
+        private PdfEnCurso(CandidatoPdf candidato, Future<byte[]> futuro) {
+            this.candidato = candidato;
+            this.futuro = futuro;
+        }
+    }
+}
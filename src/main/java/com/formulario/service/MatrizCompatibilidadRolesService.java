@@ -0,0 +1,68 @@
+package com.formulario.service;
+
+import com.formulario.model.MatrizCompatibilidadRoles;
+import com.formulario.repository.RolProfesionalRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Mantiene la matriz de compatibilidad de los roles profesionales activos.
+ * La matriz se arma con una sola consulta y se reemplaza de forma atómica cuando el
+ * administrador modifica el catálogo de roles.
+ */
+@Service
+public class MatrizCompatibilidadRolesService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MatrizCompatibilidadRolesService.class);
+
+    @Autowired
+    private RolProfesionalRepository rolProfesionalRepository;
+
+    private final AtomicReference<MatrizCompatibilidadRoles> matriz = new AtomicReference<>();
+
+    private final AtomicLong versiones = new AtomicLong();
+
+    /**
+     * Devuelve la matriz vigente; la construye en el primer acceso
+     */
+    public MatrizCompatibilidadRoles obtenerMatriz() {
+        MatrizCompatibilidadRoles actual = matriz.get();
+        if (actual != null) {
+            return actual;
+        }
+        return reconstruir();
+    }
+
+    public synchronized MatrizCompatibilidadRoles reconstruir() {
+        MatrizCompatibilidadRoles nueva = new MatrizCompatibilidadRoles(versiones.incrementAndGet(),
+            rolProfesionalRepository.findByActivoTrue());
+        matriz.set(nueva);
+        logger.info("Matriz de compatibilidad de roles reconstruida: versión {}, {} roles activos",
+                    nueva.getVersion(), nueva.getTotalRoles());
+        return nueva;
+    }
+
+    /**
+     * Reconstruye la matriz cuando la transacción actual confirme sus cambios.
+     * Si no hay transacción activa, reconstruye inmediatamente.
+     */
+    public void reconstruirTrasCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            reconstruir();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                reconstruir();
+            }
+        });
+    }
+}
@@ -0,0 +1,372 @@
+package com.formulario.service;
+
+import com.formulario.model.BancoPreguntas;
+import com.formulario.model.Pregunta.AreaConocimiento;
+import com.formulario.model.PreguntaBanco;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Selecciona al azar las preguntas de un examen desde el banco en memoria.
+ * Usa un Fisher-Yates parcial y disperso sobre índices primitivos: por área solo se tocan las k posiciones
+ * sorteadas, así que el costo de un sorteo no crece con el tamaño del banco. Opcionalmente pondera la
+ * selección según la dificultad de cada pregunta.
+ */
+@Service
+public class MuestreadorPreguntas {
+
+    private static final Logger logger = LoggerFactory.getLogger(MuestreadorPreguntas.class);
+
+    public static final int PREGUNTAS_POR_AREA_DEFECTO = 8;
+
+    // Intentos de sorteo ponderado por pregunta antes de pasar al método exacto
+    private static final int MAX_INTENTOS_POR_PREGUNTA = 16;
+
+    // Estado de trabajo por hilo (generador y buffers reutilizables)
+    private static final ThreadLocal<Estado> ESTADO = ThreadLocal.withInitial(Estado::new);
+
+    // Cuotas por área, ej: "LOGICA:8,MATEMATICA:10" (las áreas omitidas usan el valor por defecto)
+    @Value("${examen.muestreo.cuotas:}")
+    private String cuotasConfiguradas;
+
+    // Pesos por dificultad, ej: "1:1.0,2:1.5,3:2.0" (vacío = selección uniforme)
+    @Value("${examen.muestreo.pesos-dificultad:}")
+    private String pesosConfigurados;
+
+    private int[] cuotas;
+
+    private double[] pesos;
+
+    // Pesos acumulados del último banco muestreado con los pesos configurados
+    private volatile PesosAcumulados pesosAcumulados;
+
+    @PostConstruct
+    void inicializar() {
+        cuotas = parsearCuotas(cuotasConfiguradas);
+        pesos = parsearPesos(pesosConfigurados);
+        logger.info("Muestreo de preguntas: cuotas por área {}, pesos por dificultad {}",
+                    Arrays.toString(cuotas), pesos != null ? Arrays.toString(pesos) : "uniforme");
+    }
+
+    /**
+     * Sortea un examen con las cuotas y pesos configurados
+     */
+    public List<PreguntaBanco> muestrear(BancoPreguntas banco) {
+        return muestrear(banco, cuotas, pesos, obtenerPesosAcumulados(banco));
+    }
+
+    /**
+     * Sortea un examen con cuotas por área y pesos por dificultad explícitos.
+     * Las áreas sin cuota usan el valor por defecto; si no hay pesos la selección es uniforme.
+     */
+    public List<PreguntaBanco> muestrear(BancoPreguntas banco,
+                                         Map<AreaConocimiento, Integer> cuotasPorArea,
+                                         Map<Integer, Double> pesosPorDificultad) {
+        int[] cuotasSorteo = new int[AreaConocimiento.values().length];
+        Arrays.fill(cuotasSorteo, PREGUNTAS_POR_AREA_DEFECTO);
+        if (cuotasPorArea != null) {
+            cuotasPorArea.forEach((area, cuota) -> cuotasSorteo[area.ordinal()] = Math.max(0, cuota));
+        }
+
+        double[] pesosSorteo = null;
+        if (pesosPorDificultad != null && !pesosPorDificultad.isEmpty()) {
+            int maxDificultad = pesosPorDificultad.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+            pesosSorteo = new double[Math.max(0, maxDificultad) + 1];
+            Arrays.fill(pesosSorteo, 1.0);
+            for (Map.Entry<Integer, Double> entry : pesosPorDificultad.entrySet()) {
+                if (entry.getKey() >= 0 && entry.getValue() != null && entry.getValue() > 0) {
+                    pesosSorteo[entry.getKey()] = entry.getValue();
+                }
+            }
+        }
+
+        return muestrear(banco, cuotasSorteo, pesosSorteo, null);
+    }
+
+    private List<PreguntaBanco> muestrear(BancoPreguntas banco, int[] cuotasSorteo, double[] pesosSorteo,
+                                          PesosAcumulados acumuladosCacheados) {
+        Estado estado = ESTADO.get();
+        AreaConocimiento[] areas = AreaConocimiento.values();
+
+        int total = 0;
+        for (AreaConocimiento area : areas) {
+            total += Math.min(cuotasSorteo[area.ordinal()], banco.getPreguntas(area).size());
+        }
+
+        PreguntaBanco[] seleccion = new PreguntaBanco[total];
+        int posicion = 0;
+        for (AreaConocimiento area : areas) {
+            List<PreguntaBanco> preguntas = banco.getPreguntas(area);
+            int n = preguntas.size();
+            int k = Math.min(cuotasSorteo[area.ordinal()], n);
+            if (k == 0) {
+                continue;
+            }
+
+            int[] indices;
+            if (pesosSorteo == null || k == n) {
+                indices = estado.sortearUniforme(n, k);
+            } else {
+                double[] acumulados = acumuladosCacheados != null
+                    ? acumuladosCacheados.porArea[area.ordinal()]
+                    : calcularAcumulados(preguntas, pesosSorteo);
+                indices = estado.sortearPonderado(acumulados, k);
+            }
+
+            for (int i = 0; i < k; i++) {
+                seleccion[posicion++] = preguntas.get(indices[i]);
+            }
+        }
+
+        // Mezclar para que las preguntas no queden agrupadas por área
+        SplittableRandom random = estado.random;
+        for (int i = seleccion.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            PreguntaBanco tmp = seleccion[i];
+            seleccion[i] = seleccion[j];
+            seleccion[j] = tmp;
+        }
+
+        return Arrays.asList(seleccion);
+    }
+
+    /**
+     * Genera una permutación aleatoria de las posiciones 0..cantidad-1 (para mezclar opciones)
+     */
+    public int[] permutar(int cantidad) {
+        SplittableRandom random = ESTADO.get().random;
+        int[] permutacion = new int[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            int j = random.nextInt(i + 1);
+            permutacion[i] = permutacion[j];
+            permutacion[j] = i;
+        }
+        return permutacion;
+    }
+
+    /**
+     * Devuelve los pesos acumulados por área para el banco dado, recalculándolos solo cuando cambia el snapshot
+     */
+    private PesosAcumulados obtenerPesosAcumulados(BancoPreguntas banco) {
+        if (pesos == null) {
+            return null;
+        }
+        PesosAcumulados actual = pesosAcumulados;
+        if (actual != null && actual.version == banco.getVersion()) {
+            return actual;
+        }
+        double[][] porArea = new double[AreaConocimiento.values().length][];
+        for (AreaConocimiento area : AreaConocimiento.values()) {
+            porArea[area.ordinal()] = calcularAcumulados(banco.getPreguntas(area), pesos);
+        }
+        actual = new PesosAcumulados(banco.getVersion(), porArea);
+        pesosAcumulados = actual;
+        return actual;
+    }
+
+    private static double[] calcularAcumulados(List<PreguntaBanco> preguntas, double[] pesosSorteo) {
+        double[] acumulados = new double[preguntas.size()];
+        double suma = 0;
+        for (int i = 0; i < acumulados.length; i++) {
+            int dificultad = preguntas.get(i).getDificultad();
+            suma += dificultad >= 0 && dificultad < pesosSorteo.length ? pesosSorteo[dificultad] : 1.0;
+            acumulados[i] = suma;
+        }
+        return acumulados;
+    }
+
+    private static int[] parsearCuotas(String valor) {
+        int[] resultado = new int[AreaConocimiento.values().length];
+        Arrays.fill(resultado, PREGUNTAS_POR_AREA_DEFECTO);
+        if (valor == null || valor.isBlank()) {
+            return resultado;
+        }
+        for (String par : valor.split(",")) {
+            String[] partes = par.trim().split(":");
+            try {
+                AreaConocimiento area = AreaConocimiento.valueOf(partes[0].trim().toUpperCase());
+                resultado[area.ordinal()] = Math.max(0, Integer.parseInt(partes[1].trim()));
+            } catch (RuntimeException e) {
+                logger.warn("Cuota de muestreo inválida ignorada: '{}'", par);
+            }
+        }
+        return resultado;
+    }
+
+    private static double[] parsearPesos(String valor) {
+        if (valor == null || valor.isBlank()) {
+            return null;
+        }
+        double[] resultado = new double[4];
+        Arrays.fill(resultado, 1.0);
+        boolean alguno = false;
+        for (String par : valor.split(",")) {
+            String[] partes = par.trim().split(":");
+            try {
+                int dificultad = Integer.parseInt(partes[0].trim());
+                double peso = Double.parseDouble(partes[1].trim());
+                if (dificultad < 0 || peso <= 0) {
+                    throw new IllegalArgumentException();
+                }
+                if (dificultad >= resultado.length) {
+                    int largoAnterior = resultado.length;
+                    resultado = Arrays.copyOf(resultado, dificultad + 1);
+                    Arrays.fill(resultado, largoAnterior, resultado.length, 1.0);
+                }
+                resultado[dificultad] = peso;
+                alguno = true;
+            } catch (RuntimeException e) {
+                logger.warn("Peso de dificultad inválido ignorado: '{}'", par);
+            }
+        }
+        return alguno ? resultado : null;
+    }
+
+    private static final class PesosAcumulados {
+        private final long version;
+        private final double[][] porArea;
+
+        private PesosAcumulados(long version, double[][] porArea) {
+            this.version = version;
+            this.porArea = porArea;
+        }
+    }
+
+    /**
+     * Generador y buffers de un hilo. El mapa abierto de enteros guarda solo las posiciones intercambiadas
+     * por el Fisher-Yates parcial, de modo que nunca se materializa el arreglo completo de índices.
+     */
+    private static final class Estado {
+
+        private final SplittableRandom random = new SplittableRandom();
+
+        private int[] resultado = new int[PREGUNTAS_POR_AREA_DEFECTO];
+        private int[] claves = new int[64];
+        private int[] valores = new int[64];
+        private int mascara;
+
+        private double[] clavesExactas = new double[PREGUNTAS_POR_AREA_DEFECTO];
+
+        int[] sortearUniforme(int n, int k) {
+            prepararBuffers(k);
+            for (int i = 0; i < k; i++) {
+                int j = i + random.nextInt(n - i);
+                int valorJ = obtener(j);
+                int valorI = obtener(i);
+                resultado[i] = valorJ;
+                guardar(j, valorI);
+            }
+            return resultado;
+        }
+
+        int[] sortearPonderado(double[] acumulados, int k) {
+            prepararBuffers(k);
+            double total = acumulados[acumulados.length - 1];
+            int elegidas = 0;
+            int intentos = 0;
+            int maxIntentos = k * MAX_INTENTOS_POR_PREGUNTA;
+            while (elegidas < k && intentos++ < maxIntentos) {
+                int indice = buscar(acumulados, random.nextDouble() * total);
+                if (obtener(indice) == indice) {
+                    guardar(indice, -1);
+                    resultado[elegidas++] = indice;
+                }
+            }
+            if (elegidas < k) {
+                // Pesos muy concentrados: sorteo exacto sin reemplazo (Efraimidis-Spirakis)
+                return sortearPonderadoExacto(acumulados, k);
+            }
+            return resultado;
+        }
+
+        private int[] sortearPonderadoExacto(double[] acumulados, int k) {
+            if (clavesExactas.length < k) {
+                clavesExactas = new double[k];
+            }
+            int llenas = 0;
+            int posicionMinima = 0;
+            for (int i = 0; i < acumulados.length; i++) {
+                double peso = i == 0 ? acumulados[0] : acumulados[i] - acumulados[i - 1];
+                double clave = Math.log(1.0 - random.nextDouble()) / peso;
+                if (llenas < k) {
+                    clavesExactas[llenas] = clave;
+                    resultado[llenas++] = i;
+                    if (llenas == k) {
+                        posicionMinima = posicionMinima(k);
+                    }
+                } else if (clave > clavesExactas[posicionMinima]) {
+                    clavesExactas[posicionMinima] = clave;
+                    resultado[posicionMinima] = i;
+                    posicionMinima = posicionMinima(k);
+                }
+            }
+            return resultado;
+        }
+
+        private int posicionMinima(int k) {
+            int minima = 0;
+            for (int i = 1; i < k; i++) {
+                if (clavesExactas[i] < clavesExactas[minima]) {
+                    minima = i;
+                }
+            }
+            return minima;
+        }
+
+        private static int buscar(double[] acumulados, double objetivo) {
+            int bajo = 0;
+            int alto = acumulados.length - 1;
+            while (bajo < alto) {
+                int medio = (bajo + alto) >>> 1;
+                if (acumulados[medio] > objetivo) {
+                    alto = medio;
+                } else {
+                    bajo = medio + 1;
+                }
+            }
+            return bajo;
+        }
+
+        private void prepararBuffers(int k) {
+            if (resultado.length < k) {
+                resultado = new int[k];
+            }
+            int capacidad = Integer.highestOneBit(Math.max(4, k * 4) - 1) << 1;
+            if (claves.length < capacidad) {
+                claves = new int[capacidad];
+                valores = new int[capacidad];
+            }
+            mascara = capacidad - 1;
+            Arrays.fill(claves, 0, capacidad, -1);
+        }
+
+        // Valor en la posición virtual (la propia posición si nunca se intercambió)
+        private int obtener(int posicion) {
+            int slot = (posicion * 0x9E3779B9) >>> 16 & mascara;
+            while (claves[slot] != -1) {
+                if (claves[slot] == posicion) {
+                    return valores[slot];
+                }
+                slot = (slot + 1) & mascara;
+            }
+            return posicion;
+        }
+
+        private void guardar(int posicion, int valor) {
+            int slot = (posicion * 0x9E3779B9) >>> 16 & mascara;
+            while (claves[slot] != -1 && claves[slot] != posicion) {
+                slot = (slot + 1) & mascara;
+            }
+            claves[slot] = posicion;
+            valores[slot] = valor;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.formulario.service;
+
+import com.formulario.repository.ExamenRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Caché en disco de PDFs ya generados, direccionada por contenido: la clave es un hash de
+ * (persona, plantilla, versión del examen, versión de la plantilla, versión del catálogo).
+ * Si cambia el examen, la plantilla o el catálogo cambia la clave y la entrada vieja deja de usarse
+ * hasta que la desaloja el LRU, acotado por el tamaño total en disco.
+ */
+@Service
+public class PdfCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PdfCacheService.class);
+
+    private static final String EXTENSION = ".pdf";
+
+    @Autowired
+    private ExamenRepository examenRepository;
+
+    @Autowired
+    private VersionCatalogoService versionCatalogoService;
+
+    @Value("${pdf.cache.habilitado:true}")
+    private boolean habilitado;
+
+    @Value("${pdf.cache.directorio:${java.io.tmpdir}/formulario-pdf-cache}")
+    private String directorioConfigurado;
+
+    @Value("${pdf.cache.max-mb:256}")
+    private long maxMegabytes;
+
+    private Path directorio;
+    private long maxBytes;
+
+    // Archivos en caché (nombre -> tamaño en bytes), en orden de acceso para el desalojo LRU
+    private final LinkedHashMap<String, Long> indice = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytesEnUso;
+
+    // Hash del contenido de cada plantilla, calculado una vez por plantilla
+    private final Map<String, String> versionesPlantilla = new ConcurrentHashMap<>();
+
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong desalojos = new AtomicLong();
+
+    @PostConstruct
+    public void inicializar() {
+        if (!habilitado) {
+            logger.info("Caché de PDFs deshabilitada");
+            return;
+        }
+        maxBytes = Math.max(1, maxMegabytes) * 1024 * 1024;
+        try {
+            directorio = Paths.get(directorioConfigurado).toAbsolutePath();
+            Files.createDirectories(directorio);
+            cargarIndice();
+            logger.info("Caché de PDFs en {}: {} archivos, {} KB (máximo {} MB)",
+                directorio, indice.size(), bytesEnUso / 1024, maxMegabytes);
+        } catch (IOException e) {
+            logger.warn("No se pudo preparar el directorio de caché de PDFs {}, se deshabilita: {}",
+                directorioConfigurado, e.getMessage());
+            habilitado = false;
+        }
+    }
+
+    /**
+     * Reconstruye el índice a partir de los archivos ya presentes, del más viejo al más reciente
+     */
+    private void cargarIndice() throws IOException {
+        List<Path> archivos = new ArrayList<>();
+        try (Stream<Path> listado = Files.list(directorio)) {
+            listado.filter(p -> p.getFileName().toString().endsWith(EXTENSION)).forEach(archivos::add);
+        }
+        archivos.sort(Comparator.comparingLong(p -> p.toFile().lastModified()));
+        synchronized (indice) {
+            for (Path archivo : archivos) {
+                long tamanio = archivo.toFile().length();
+                indice.put(archivo.getFileName().toString(), tamanio);
+                bytesEnUso += tamanio;
+            }
+            desalojarExcedente();
+        }
+    }
+
+    /**
+     * Calcula la clave del PDF de una persona para la plantilla dada.
+     * Devuelve null si no es cacheable (caché deshabilitada o examen sin finalizar).
+     */
+    public String calcularClave(Long personaId, String plantilla) {
+        if (!habilitado || personaId == null) {
+            return null;
+        }
+        Optional<String> versionExamen = examenRepository.findVersionFinalizadoByPersonaId(personaId);
+        if (versionExamen.isEmpty()) {
+            return null;
+        }
+        String material = personaId + "|" + plantilla + "|" + versionExamen.get() + "|"
+            + obtenerVersionPlantilla(plantilla) + "|" + versionCatalogoService.obtenerVersion();
+        return sha256(material.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Devuelve el PDF guardado para la clave, o null si no está en caché
+     */
+    public byte[] obtener(Long personaId, String clave) {
+        if (!habilitado || clave == null) {
+            return null;
+        }
+        String nombre = nombreArchivo(personaId, clave);
+        synchronized (indice) {
+            if (indice.get(nombre) == null) {
+                fallos.incrementAndGet();
+                return null;
+            }
+        }
+        try {
+            byte[] pdf = Files.readAllBytes(directorio.resolve(nombre));
+            aciertos.incrementAndGet();
+            return pdf;
+        } catch (NoSuchFileException e) {
+            // Desalojado o invalidado entre la consulta al índice y la lectura
+            quitarDelIndice(nombre);
+        } catch (IOException e) {
+            logger.warn("No se pudo leer el PDF en caché {}: {}", nombre, e.getMessage());
+            quitarDelIndice(nombre);
+        }
+        fallos.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Guarda un PDF generado. Se escribe en un archivo temporal y se mueve de forma atómica,
+     * así un lector concurrente nunca ve un archivo a medio escribir.
+     */
+    public void guardar(Long personaId, String clave, byte[] pdf) {
+        if (!habilitado || clave == null || pdf == null || pdf.length > maxBytes) {
+            return;
+        }
+        String nombre = nombreArchivo(personaId, clave);
+        Path temporal = null;
+        try {
+            temporal = Files.createTempFile(directorio, "pdf-", ".tmp");
+            Files.write(temporal, pdf);
+            Files.move(temporal, directorio.resolve(nombre),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.warn("No se pudo guardar el PDF {} en caché: {}", nombre, e.getMessage());
+            if (temporal != null) {
+                borrarArchivo(temporal);
+            }
+            return;
+        }
+        synchronized (indice) {
+            Long anterior = indice.put(nombre, (long) pdf.length);
+            bytesEnUso += pdf.length - (anterior != null ? anterior : 0);
+            desalojarExcedente();
+        }
+    }
+
+    /**
+     * Elimina todos los PDFs en caché de una persona (por ejemplo, al borrar o recrear su examen)
+     */
+    public void invalidarPersona(Long personaId) {
+        if (!habilitado || personaId == null) {
+            return;
+        }
+        String prefijo = personaId + "-";
+        List<String> eliminados = new ArrayList<>();
+        synchronized (indice) {
+            Iterator<Map.Entry<String, Long>> it = indice.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Long> entrada = it.next();
+                if (entrada.getKey().startsWith(prefijo)) {
+                    bytesEnUso -= entrada.getValue();
+                    eliminados.add(entrada.getKey());
+                    it.remove();
+                }
+            }
+        }
+        eliminados.forEach(nombre -> borrarArchivo(directorio.resolve(nombre)));
+    }
+
+    public void limpiar() {
+        if (!habilitado) {
+            return;
+        }
+        List<String> eliminados;
+        synchronized (indice) {
+            eliminados = new ArrayList<>(indice.keySet());
+            indice.clear();
+            bytesEnUso = 0;
+        }
+        eliminados.forEach(nombre -> borrarArchivo(directorio.resolve(nombre)));
+        logger.info("Caché de PDFs vaciada: {} archivos eliminados", eliminados.size());
+    }
+
+    /**
+     * Resumen de métricas para endpoints de diagnóstico
+     */
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("habilitado", habilitado);
+        synchronized (indice) {
+            estadisticas.put("archivos", indice.size());
+            estadisticas.put("bytesEnUso", bytesEnUso);
+        }
+        estadisticas.put("maxBytes", maxBytes);
+        estadisticas.put("aciertos", aciertos.get());
+        estadisticas.put("fallos", fallos.get());
+        estadisticas.put("desalojos", desalojos.get());
+        return estadisticas;
+    }
+
+    // Debe llamarse con el lock del índice tomado
+    private void desalojarExcedente() {
+        Iterator<Map.Entry<String, Long>> it = indice.entrySet().iterator();
+        while (bytesEnUso > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> masViejo = it.next();
+            bytesEnUso -= masViejo.getValue();
+            borrarArchivo(directorio.resolve(masViejo.getKey()));
+            it.remove();
+            desalojos.incrementAndGet();
+        }
+    }
+
+    private void quitarDelIndice(String nombre) {
+        synchronized (indice) {
+            Long tamanio = indice.remove(nombre);
+            if (tamanio != null) {
+                bytesEnUso -= tamanio;
+            }
+        }
+    }
+
+    private String obtenerVersionPlantilla(String plantilla) {
+        return versionesPlantilla.computeIfAbsent(plantilla, nombre -> {
+            try (InputStream in = new ClassPathResource("templates/" + nombre + ".html").getInputStream()) {
+                return sha256(in.readAllBytes());
+            } catch (IOException e) {
+                logger.warn("No se pudo leer la plantilla {} para versionar la caché de PDFs: {}", nombre, e.getMessage());
+                return "sin-version";
+            }
+        });
+    }
+
+    private static String nombreArchivo(Long personaId, String clave) {
+        return personaId + "-" + clave + EXTENSION;
+    }
+
+    private static void borrarArchivo(Path archivo) {
+        try {
+            Files.deleteIfExists(archivo);
+        } catch (IOException e) {
+            logger.warn("No se pudo borrar el archivo de caché {}: {}", archivo, e.getMessage());
+        }
+    }
+
+    private static String sha256(byte[] datos) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(datos));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
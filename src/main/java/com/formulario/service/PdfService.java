@@ -2,13 +2,12 @@ package com.formulario.service;
 
 import com.formulario.model.*;
 import com.formulario.repository.RespuestaExamenRepository;
-import com.itextpdf.html2pdf.HtmlConverter;
+import com.formulario.service.RenderizadorPdfService.PdfSaturadoException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
 
-import java.io.ByteArrayOutputStream;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
@@ -31,6 +30,69 @@ public class PdfService {
     @Autowired
     private RespuestaExamenRepository respuestaExamenRepository;
     
+    @Autowired
+    private PdfCacheService pdfCacheService;
+    
+    @Autowired
+    private RenderizadorPdfService renderizadorPdfService;
+    
+    /**
+     * Tipos de PDF disponibles, con la plantilla que usa cada uno
+     */
+    public enum TipoPdf {
+        RESULTADO_COMPLETO("pdf-resultado"),
+        SOLO_RESULTADO("pdf-solo-resultado"),
+        SOLO_RECOMENDACIONES("pdf-solo-recomendaciones"),
+        ADMIN_COMPLETO("pdf-resultado-admin");
+        
+        private final String plantilla;
+        
+        TipoPdf(String plantilla) {
+            this.plantilla = plantilla;
+        }
+        
+        public String getPlantilla() {
+            return plantilla;
+        }
+    }
+    
+    /**
+     * Clave (y ETag) del PDF en la caché, o null si no es cacheable (ej: examen sin finalizar)
+     */
+    public String calcularClaveCache(Long personaId, TipoPdf tipo) {
+        return pdfCacheService.calcularClave(personaId, tipo.getPlantilla());
+    }
+    
+    /**
+     * Devuelve el PDF desde la caché en disco si existe para la clave; si no, lo genera y lo guarda
+     */
+    public byte[] obtenerPdf(Long personaId, TipoPdf tipo, String clave) throws Exception {
+        byte[] enCache = pdfCacheService.obtener(personaId, clave);
+        if (enCache != null) {
+            return enCache;
+        }
+        
+        byte[] pdfBytes;
+        switch (tipo) {
+            case SOLO_RESULTADO:
+                pdfBytes = generarPdfSoloResultado(personaId);
+                break;
+            case SOLO_RECOMENDACIONES:
+                pdfBytes = generarPdfSoloRecomendaciones(personaId);
+                break;
+            case ADMIN_COMPLETO:
+                pdfBytes = generarPdfCompletoConPreguntas(personaId);
+                break;
+            case RESULTADO_COMPLETO:
+            default:
+                pdfBytes = generarPdfResultado(personaId);
+                break;
+        }
+        
+        pdfCacheService.guardar(personaId, clave, pdfBytes);
+        return pdfBytes;
+    }
+    
     /**
      * Genera un PDF con el resultado del examen y recomendaciones laborales
      */
@@ -61,12 +123,11 @@ public class PdfService {
             // Generar el HTML usando la plantilla
             String htmlContent = templateEngine.process("pdf-resultado", context);
             
-            // Convertir HTML a PDF
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            HtmlConverter.convertToPdf(htmlContent, outputStream);
-            
-            return outputStream.toByteArray();
+            // Convertir HTML a PDF en el pool de renderizado
+            return renderizadorPdfService.convertir(htmlContent);
             
+        } catch (PdfSaturadoException e) {
+            throw e;
         } catch (Exception e) {
             throw new Exception("Error al generar PDF: " + e.getMessage(), e);
         }
@@ -94,12 +155,11 @@ public class PdfService {
             // Generar el HTML usando la plantilla
             String htmlContent = templateEngine.process("pdf-solo-resultado", context);
             
-            // Convertir HTML a PDF
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            HtmlConverter.convertToPdf(htmlContent, outputStream);
-            
-            return outputStream.toByteArray();
+            // Convertir HTML a PDF en el pool de renderizado
+            return renderizadorPdfService.convertir(htmlContent);
             
+        } catch (PdfSaturadoException e) {
+            throw e;
         } catch (Exception e) {
             throw new Exception("Error al generar PDF: " + e.getMessage(), e);
         }
@@ -131,12 +191,11 @@ public class PdfService {
             // Generar el HTML usando la plantilla
             String htmlContent = templateEngine.process("pdf-solo-recomendaciones", context);
             
-            // Convertir HTML a PDF
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            HtmlConverter.convertToPdf(htmlContent, outputStream);
-            
-            return outputStream.toByteArray();
+            // Convertir HTML a PDF en el pool de renderizado
+            return renderizadorPdfService.convertir(htmlContent);
             
+        } catch (PdfSaturadoException e) {
+            throw e;
         } catch (Exception e) {
             throw new Exception("Error al generar PDF: " + e.getMessage(), e);
         }
@@ -182,12 +241,11 @@ public class PdfService {
             // Generar el HTML usando la plantilla
             String htmlContent = templateEngine.process("pdf-resultado-admin", context);
             
-            // Convertir HTML a PDF
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            HtmlConverter.convertToPdf(htmlContent, outputStream);
-            
-            return outputStream.toByteArray();
+            // Convertir HTML a PDF en el pool de renderizado
+            return renderizadorPdfService.convertir(htmlContent);
             
+        } catch (PdfSaturadoException e) {
+            throw e;
         } catch (Exception e) {
             throw new Exception("Error al generar PDF: " + e.getMessage(), e);
         }
@@ -0,0 +1,202 @@
+package com.formulario.service;
+
+import com.formulario.repository.ExamenRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Recalcula las puntuaciones de todos los exámenes en segundo plano, por lotes de IDs consecutivos.
+ * Los IDs se recorren con un cursor de solo lectura y cada lote se actualiza con el UPDATE agregado
+ * de {@link ExamenRepository#recalcularPuntuacionesEnRango} en su propia transacción, guardando el
+ * último ID procesado en la configuración del sistema para poder retomar si el proceso se corta.
+ */
+@Service
+public class RecalculoPuntuacionesService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecalculoPuntuacionesService.class);
+
+    public static final String CLAVE_CHECKPOINT = "recalculo_puntuaciones_ultimo_id";
+
+    @Autowired
+    private ExamenRepository examenRepository;
+
+    @Autowired
+    private ConfiguracionService configuracionService;
+
+    @Autowired
+    private EstadisticasExamenesService estadisticasExamenesService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${examen.recalculo.tamanio-lote:500}")
+    private int tamanioLote;
+
+    private TransactionTemplate lectura;
+    private TransactionTemplate escritura;
+    private final ExecutorService ejecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread hilo = new Thread(r, "recalculo-puntuaciones");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    private final AtomicBoolean enEjecucion = new AtomicBoolean(false);
+
+    // Estado del último proceso (lo escribe solo el hilo del proceso)
+    private volatile String estado = "SIN_EJECUTAR";
+    private volatile long desdeId;
+    private volatile long ultimoIdProcesado;
+    private volatile long totalEstimado;
+    private volatile long examenesRevisados;
+    private volatile long examenesActualizados;
+    private volatile int lotesCompletados;
+    private volatile LocalDateTime fechaInicio;
+    private volatile LocalDateTime fechaFin;
+    private volatile String error;
+
+    @PostConstruct
+    public void inicializar() {
+        lectura = new TransactionTemplate(transactionManager);
+        lectura.setReadOnly(true);
+        escritura = new TransactionTemplate(transactionManager);
+        escritura.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PreDestroy
+    public void detener() {
+        ejecutor.shutdownNow();
+    }
+
+    /**
+     * Lanza el recálculo en segundo plano. Retoma desde el último checkpoint salvo que se pida reiniciar.
+     *
+     * @return false si ya hay un recálculo en curso
+     */
+    public boolean iniciar(boolean reiniciar) {
+        if (!enEjecucion.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            long checkpoint = reiniciar ? 0L : leerCheckpoint();
+            desdeId = checkpoint;
+            ultimoIdProcesado = checkpoint;
+            totalEstimado = examenRepository.countByFechaFinIsNotNullAndIdGreaterThan(checkpoint);
+            examenesRevisados = 0;
+            examenesActualizados = 0;
+            lotesCompletados = 0;
+            fechaInicio = LocalDateTime.now();
+            fechaFin = null;
+            error = null;
+            estado = "EN_CURSO";
+            ejecutor.submit(() -> ejecutar(checkpoint));
+            return true;
+        } catch (RuntimeException e) {
+            enEjecucion.set(false);
+            throw e;
+        }
+    }
+
+    public boolean estaEnEjecucion() {
+        return enEjecucion.get();
+    }
+
+    public Map<String, Object> obtenerEstado() {
+        Map<String, Object> resumen = new LinkedHashMap<>();
+        resumen.put("estado", estado);
+        resumen.put("desdeId", desdeId);
+        resumen.put("ultimoIdProcesado", ultimoIdProcesado);
+        resumen.put("totalEstimado", totalEstimado);
+        resumen.put("examenesRevisados", examenesRevisados);
+        resumen.put("examenesActualizados", examenesActualizados);
+        resumen.put("lotesCompletados", lotesCompletados);
+        resumen.put("porcentaje", totalEstimado == 0 ? 100 : Math.min(100, examenesRevisados * 100 / totalEstimado));
+        resumen.put("fechaInicio", fechaInicio);
+        resumen.put("fechaFin", fechaFin);
+        resumen.put("tamanioLote", tamanioLote);
+        resumen.put("error", error);
+        return resumen;
+    }
+
+    private void ejecutar(long checkpoint) {
+        logger.info("Recálculo de puntuaciones iniciado desde el examen ID {} ({} exámenes estimados)", checkpoint, totalEstimado);
+        try {
+            lectura.executeWithoutResult(status -> {
+                try (Stream<Long> ids = examenRepository.streamIdsFinalizadosDesde(checkpoint)) {
+                    long[] lote = new long[tamanioLote];
+                    int[] cantidad = {0};
+                    ids.forEach(id -> {
+                        lote[cantidad[0]++] = id;
+                        if (cantidad[0] == tamanioLote) {
+                            procesarLote(lote[0], lote[cantidad[0] - 1], cantidad[0]);
+                            cantidad[0] = 0;
+                        }
+                    });
+                    if (cantidad[0] > 0) {
+                        procesarLote(lote[0], lote[cantidad[0] - 1], cantidad[0]);
+                    }
+                }
+            });
+            // Terminado: el próximo recálculo vuelve a empezar desde el principio
+            guardarCheckpoint(0L);
+            estadisticasExamenesService.reconstruir();
+            estado = "COMPLETADO";
+            logger.info("Recálculo de puntuaciones completado: {} exámenes revisados, {} actualizados en {} lotes",
+                        examenesRevisados, examenesActualizados, lotesCompletados);
+        } catch (Exception e) {
+            estado = "ERROR";
+            error = e.getMessage();
+            logger.error("Recálculo de puntuaciones interrumpido tras el examen ID {}: {}", ultimoIdProcesado, e.getMessage(), e);
+        } finally {
+            fechaFin = LocalDateTime.now();
+            enEjecucion.set(false);
+        }
+    }
+
+    // Actualiza el rango de IDs y avanza el checkpoint en la misma transacción
+    private void procesarLote(long primerId, long ultimoId, int cantidad) {
+        Integer actualizados = escritura.execute(status -> {
+            int filas = examenRepository.recalcularPuntuacionesEnRango(primerId, ultimoId);
+            guardarCheckpoint(ultimoId);
+            return filas;
+        });
+        ultimoIdProcesado = ultimoId;
+        examenesRevisados += cantidad;
+        examenesActualizados += actualizados != null ? actualizados : 0;
+        lotesCompletados++;
+        logger.debug("Lote {} de recálculo: IDs {}-{}, {} exámenes actualizados", lotesCompletados, primerId, ultimoId, actualizados);
+    }
+
+    private long leerCheckpoint() {
+        return configuracionService.obtenerConfiguracion(CLAVE_CHECKPOINT)
+            .map(config -> {
+                try {
+                    return Long.parseLong(config.getValor().trim());
+                } catch (NumberFormatException e) {
+                    logger.warn("Checkpoint de recálculo inválido '{}', se empieza desde el principio", config.getValor());
+                    return 0L;
+                }
+            })
+            .orElse(0L);
+    }
+
+    private void guardarCheckpoint(long id) {
+        configuracionService.guardarConfiguracion(CLAVE_CHECKPOINT, String.valueOf(id),
+            "Último examen procesado por el recálculo de puntuaciones (0 = sin recálculo pendiente)", "SISTEMA");
+    }
+}
@@ -24,6 +24,9 @@ public class RecomendacionEstudiosService {
     @Autowired
     private PosicionLaboralRepository posicionLaboralRepository;
     
+    @Autowired
+    private VersionCatalogoService versionCatalogoService;
+    
     /**
      * Obtiene todas las recomendaciones de estudios activas
      */
@@ -63,7 +66,9 @@ public class RecomendacionEstudiosService {
     public RecomendacionEstudios crearDesdeApi(Map<String, Object> datos) {
         RecomendacionEstudios rec = new RecomendacionEstudios();
         mapearCamposDesdeApi(rec, datos);
-        return recomendacionEstudiosRepository.save(rec);
+        RecomendacionEstudios guardada = recomendacionEstudiosRepository.save(rec);
+        versionCatalogoService.registrarCambio();
+        return guardada;
     }
 
     /**
@@ -75,7 +80,9 @@ public class RecomendacionEstudiosService {
         RecomendacionEstudios rec = recomendacionEstudiosRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("Recomendación de estudios no encontrada con ID: " + id));
         mapearCamposDesdeApi(rec, datos);
-        return recomendacionEstudiosRepository.save(rec);
+        RecomendacionEstudios guardada = recomendacionEstudiosRepository.save(rec);
+        versionCatalogoService.registrarCambio();
+        return guardada;
     }
 
     /**
@@ -128,6 +135,7 @@ public class RecomendacionEstudiosService {
         }
         
         RecomendacionEstudios guardada = recomendacionEstudiosRepository.save(recomendacion);
+        versionCatalogoService.registrarCambio();
         return new RecomendacionEstudiosDTO(guardada);
     }
     
@@ -173,6 +181,7 @@ public class RecomendacionEstudiosService {
         }
         
         RecomendacionEstudios actualizada = recomendacionEstudiosRepository.save(recomendacion);
+        versionCatalogoService.registrarCambio();
         return Optional.of(new RecomendacionEstudiosDTO(actualizada));
     }
     
@@ -190,6 +199,7 @@ public class RecomendacionEstudiosService {
         RecomendacionEstudios recomendacion = recomendacionOpt.get();
         recomendacion.setActiva(false);
         recomendacionEstudiosRepository.save(recomendacion);
+        versionCatalogoService.registrarCambio();
         return true;
     }
     
@@ -200,6 +210,7 @@ public class RecomendacionEstudiosService {
     public boolean eliminarFisicamente(Long id) {
         if (recomendacionEstudiosRepository.existsById(id)) {
             recomendacionEstudiosRepository.deleteById(id);
+            versionCatalogoService.registrarCambio();
             return true;
         }
         return false;
@@ -19,6 +19,12 @@ public class RecomendacionService {
     @Autowired
     private PosicionLaboralRepository posicionLaboralRepository;
     
+    @Autowired
+    private VersionCatalogoService versionCatalogoService;
+    
+    @Autowired
+    private CacheRecomendacionesService cacheRecomendacionesService;
+    
     @Autowired
     private FormularioService formularioService;
     
@@ -27,6 +33,11 @@ public class RecomendacionService {
      */
     @Transactional(readOnly = true)
     public List<RecomendacionDTO> generarRecomendaciones(Long personaId) {
+        // Un examen finalizado se calcula una sola vez por versión del catálogo
+        return cacheRecomendacionesService.obtenerPosiciones(personaId, () -> calcularRecomendaciones(personaId));
+    }
+    
+    private List<RecomendacionDTO> calcularRecomendaciones(Long personaId) {
         try {
             logger.info("🔄 Iniciando generación de recomendaciones para persona ID: " + personaId);
             
@@ -40,31 +51,27 @@ public class RecomendacionService {
             Examen examen = examenOpt.get();
             logger.info("✅ Examen encontrado - ID: " + examen.getId());
             
-            // Obtener todas las posiciones activas
-            List<PosicionLaboral> posiciones = posicionLaboralRepository.findByActivaTrue();
-            logger.info("📋 Posiciones laborales activas encontradas: " + posiciones.size());
+            // Solo las posiciones activas cuyos mínimos cumple el examen: el resto ni se lee de la base
+            List<PosicionLaboral> posiciones = buscarPosicionesElegibles(examen);
+            logger.info("📋 Posiciones laborales elegibles encontradas: " + posiciones.size());
             
             if (posiciones.isEmpty()) {
-                logger.info("❌ No hay posiciones laborales activas en la base de datos");
+                logger.info("❌ No hay posiciones laborales elegibles para el examen ID: " + examen.getId());
                 return new ArrayList<>();
             }
             
-            // Calcular compatibilidad para cada posición
+            // Calcular compatibilidad solo sobre las elegibles
             List<RecomendacionDTO> recomendaciones = new ArrayList<>();
             
             for (PosicionLaboral posicion : posiciones) {
                 try {
-                    logger.info("🔄 Calculando compatibilidad para: " + posicion.getTitulo());
                     double compatibilidad = posicion.calcularCompatibilidad(examen);
-                    logger.info("📊 Compatibilidad calculada: " + compatibilidad);
                     
                     // Solo incluir posiciones con compatibilidad > 0
                     if (compatibilidad > 0) {
-                        RecomendacionDTO recomendacion = new RecomendacionDTO(posicion, examen, compatibilidad);
-                        recomendaciones.add(recomendacion);
-                        logger.info("✅ Recomendación agregada: " + posicion.getTitulo() + " (" + compatibilidad + ")");
+                        recomendaciones.add(new RecomendacionDTO(posicion, examen, compatibilidad));
                     } else {
-                        logger.info("❌ Compatibilidad insuficiente: " + posicion.getTitulo() + " (" + compatibilidad + ")");
+                        logger.debug("Compatibilidad insuficiente: {} ({})", posicion.getTitulo(), compatibilidad);
                     }
                 } catch (Exception e) {
                     logger.error("❌ Error al calcular compatibilidad para " + posicion.getTitulo() + ": " + e.getMessage());
@@ -87,6 +94,18 @@ public class RecomendacionService {
         }
     }
     
+    /**
+     * Posiciones activas cuyos puntajes mínimos cumple el examen, filtradas en la consulta
+     */
+    private List<PosicionLaboral> buscarPosicionesElegibles(Examen examen) {
+        return posicionLaboralRepository.findPosicionesCompatibles(
+                examen.getLogica(),
+                examen.getMatematica(),
+                examen.getCreatividad(),
+                examen.getProgramacion(),
+                examen.getPromedio());
+    }
+    
     /**
      * Genera recomendaciones filtradas por categoría
      */
@@ -573,6 +592,7 @@ public class RecomendacionService {
             
             // Guardar todas las posiciones
             posicionLaboralRepository.saveAll(posiciones);
+            versionCatalogoService.registrarCambio();
             
             logger.info("✅ " + posiciones.size() + " posiciones laborales creadas exitosamente");
             
@@ -0,0 +1,181 @@
+package com.formulario.service;
+
+import com.itextpdf.html2pdf.ConverterProperties;
+import com.itextpdf.html2pdf.HtmlConverter;
+import com.itextpdf.html2pdf.resolver.font.DefaultFontProvider;
+import com.itextpdf.layout.font.FontProvider;
+import com.itextpdf.layout.font.FontSet;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Conversión HTML → PDF (iText) en un pool de hilos propio, con paralelismo y cola acotados,
+ * para que las descargas de PDFs no ocupen los hilos de Tomcat ni compitan sin límite por CPU.
+ * Las fuentes se cargan una sola vez al iniciar y se comparten entre conversiones.
+ */
+@Service
+public class RenderizadorPdfService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RenderizadorPdfService.class);
+
+    @Value("${pdf.render.hilos:2}")
+    private int hilos;
+
+    @Value("${pdf.render.cola-max:20}")
+    private int colaMax;
+
+    @Value("${pdf.render.timeout-segundos:60}")
+    private int timeoutSegundos;
+
+    @Value("${pdf.render.reintentar-en-segundos:5}")
+    private int reintentarEnSegundos;
+
+    private ThreadPoolExecutor ejecutor;
+
+    // Propiedades base del conversor y fuentes ya cargadas (el FontSet es de solo lectura después del arranque)
+    private ConverterProperties propiedadesBase;
+    private FontSet fuentes;
+    private String familiaPorDefecto;
+
+    private final AtomicLong conversiones = new AtomicLong();
+    private final AtomicLong rechazadas = new AtomicLong();
+    private final AtomicLong vencidas = new AtomicLong();
+
+    @PostConstruct
+    public void inicializar() {
+        DefaultFontProvider proveedorFuentes = new DefaultFontProvider(true, true, false);
+        fuentes = proveedorFuentes.getFontSet();
+        familiaPorDefecto = proveedorFuentes.getDefaultFontFamily();
+        propiedadesBase = new ConverterProperties();
+
+        AtomicInteger numeroHilo = new AtomicInteger();
+        ejecutor = new ThreadPoolExecutor(Math.max(1, hilos), Math.max(1, hilos), 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, colaMax)), r -> {
+                Thread hilo = new Thread(r, "pdf-render-" + numeroHilo.incrementAndGet());
+                hilo.setDaemon(true);
+                return hilo;
+            }, new ThreadPoolExecutor.AbortPolicy());
+
+        // Primera conversión en frío (carga de clases, CSS por defecto y fuentes) fuera de una descarga real
+        long inicio = System.currentTimeMillis();
+        try {
+            convertirEnHiloActual("<html><body><p>PDF</p></body></html>");
+            logger.info("Renderizador de PDFs listo: {} hilos, cola de {}, {} fuentes precargadas ({} ms)",
+                ejecutor.getMaximumPoolSize(), colaMax, fuentes.size(), System.currentTimeMillis() - inicio);
+        } catch (Exception e) {
+            logger.warn("No se pudo precalentar el conversor de PDFs: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        ejecutor.shutdownNow();
+    }
+
+    /**
+     * Convierte el HTML a PDF en el pool de renderizado y espera el resultado.
+     * Si la cola está llena o la conversión no termina a tiempo lanza {@link PdfSaturadoException}.
+     */
+    public byte[] convertir(String html) throws Exception {
+        Future<byte[]> futuro = enviar(() -> convertirEnHiloActual(html));
+        try {
+            return futuro.get(timeoutSegundos, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            futuro.cancel(true);
+            vencidas.incrementAndGet();
+            logger.warn("Conversión de PDF cancelada tras {} s", timeoutSegundos);
+            throw new PdfSaturadoException(503, reintentarEnSegundos,
+                "La generación de PDFs está demorada, reintente en unos segundos");
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof Exception) {
+                throw (Exception) causa;
+            }
+            throw e;
+        }
+    }
+
+    private <T> Future<T> enviar(Callable<T> tarea) {
+        try {
+            return ejecutor.submit(tarea);
+        } catch (RejectedExecutionException e) {
+            rechazadas.incrementAndGet();
+            logger.warn("Cola de PDFs llena ({} pendientes), se rechaza la solicitud", ejecutor.getQueue().size());
+            throw new PdfSaturadoException(429, reintentarEnSegundos,
+                "Hay demasiados PDFs en generación, reintente en unos segundos");
+        }
+    }
+
+    private byte[] convertirEnHiloActual(String html) {
+        // El FontProvider guarda las fuentes usadas por documento, así que se crea uno liviano por conversión
+        ConverterProperties propiedades = new ConverterProperties(propiedadesBase)
+            .setFontProvider(new FontProvider(fuentes, familiaPorDefecto));
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        HtmlConverter.convertToPdf(html, salida, propiedades);
+        conversiones.incrementAndGet();
+        return salida.toByteArray();
+    }
+
+    public int getReintentarEnSegundos() {
+        return reintentarEnSegundos;
+    }
+
+    /**
+     * Resumen de métricas para endpoints de diagnóstico
+     */
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("hilos", ejecutor.getMaximumPoolSize());
+        estadisticas.put("activos", ejecutor.getActiveCount());
+        estadisticas.put("enCola", ejecutor.getQueue().size());
+        estadisticas.put("colaMax", colaMax);
+        estadisticas.put("conversiones", conversiones.get());
+        estadisticas.put("rechazadas", rechazadas.get());
+        estadisticas.put("vencidas", vencidas.get());
+        return estadisticas;
+    }
+
+    /**
+     * El pool de renderizado no puede aceptar más trabajo por ahora. Lleva el estado HTTP
+     * a devolver (429 o 503) y los segundos sugeridos para el encabezado Retry-After.
+     */
+    public static class PdfSaturadoException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int estadoHttp;
+        private final int reintentarEnSegundos;
+
+        public PdfSaturadoException(int estadoHttp, int reintentarEnSegundos, String mensaje) {
+            super(mensaje);
+            this.estadoHttp = estadoHttp;
+            this.reintentarEnSegundos = reintentarEnSegundos;
+        }
+
+        public int getEstadoHttp() {
+            return estadoHttp;
+        }
+
+        public int getReintentarEnSegundos() {
+            return reintentarEnSegundos;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.formulario.service;
+
+import com.formulario.model.RenovacionLinkCaso;
+import com.formulario.model.TrabajoRenovacionLinks;
+import com.formulario.repository.ExamenRepository;
+import com.formulario.repository.RenovacionLinkCasoRepository;
+import com.formulario.repository.TrabajoRenovacionLinksRepository;
+import com.formulario.util.ExamenTokenUtil;
+import com.formulario.util.LimitadorTasa;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renovación masiva del link de reintento (custom_B26FNCDU) de todos los casos de Bondarea.
+ * Los exámenes con caso se leen por páginas de IDs, los envíos corren en paralelo con un límite
+ * de solicitudes HTTP por minuto (token bucket, contando reintentos y failover) y el resultado de
+ * cada caso queda guardado, así el trabajo se retoma tras un reinicio sin reenviar lo ya procesado. Solo corre un trabajo a la vez.
+ */
+@Service
+public class RenovacionLinksService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RenovacionLinksService.class);
+
+    @Autowired
+    private ExamenRepository examenRepository;
+
+    @Autowired
+    private TrabajoRenovacionLinksRepository trabajoRenovacionLinksRepository;
+
+    @Autowired
+    private RenovacionLinkCasoRepository renovacionLinkCasoRepository;
+
+    @Autowired
+    private BondareaService bondareaService;
+
+    @Autowired
+    private TokensExamenService tokensExamenService;
+
+    @Value("${bondarea.renovacion.solicitudes-por-minuto:15}")
+    private double solicitudesPorMinuto;
+
+    @Value("${bondarea.renovacion.rafaga:1}")
+    private int rafaga;
+
+    @Value("${bondarea.renovacion.hilos:2}")
+    private int hilos;
+
+    @Value("${bondarea.renovacion.tamanio-pagina:200}")
+    private int tamanioPagina;
+
+    private ExecutorService coordinador;
+    private ExecutorService ejecutor;
+    private LimitadorTasa limitador;
+
+    private final AtomicBoolean enEjecucion = new AtomicBoolean(false);
+    private volatile boolean cancelado;
+
+    @PostConstruct
+    public void inicializar() {
+        limitador = new LimitadorTasa(solicitudesPorMinuto, rafaga);
+        coordinador = Executors.newSingleThreadExecutor(r -> {
+            Thread hilo = new Thread(r, "renovar-links-bondarea");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        AtomicInteger numeroHilo = new AtomicInteger();
+        ejecutor = Executors.newFixedThreadPool(Math.max(1, hilos), r -> {
+            Thread hilo = new Thread(r, "renovar-links-envio-" + numeroHilo.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    @PreDestroy
+    public void detener() {
+        // Un trabajo interrumpido por el apagado queda EN_CURSO y se retoma al arrancar
+        coordinador.shutdownNow();
+        ejecutor.shutdownNow();
+    }
+
+    /**
+     * Inicia una renovación nueva para todos los exámenes con caso de Bondarea.
+     * @param baseUrl URL base de la aplicación para armar los links (sin barra final)
+     * @param limite máximo de casos a procesar (null = todos)
+     * @return el trabajo creado, o null si ya hay una renovación en curso
+     */
+    public TrabajoRenovacionLinks iniciar(String baseUrl, Integer limite) {
+        if (!enEjecucion.compareAndSet(false, true)) {
+            return null;
+        }
+        try {
+            // Un trabajo que quedó EN_CURSO y no se retomó se da por cancelado: lo reemplaza el nuevo
+            trabajoRenovacionLinksRepository.findFirstByEstadoOrderByIdDesc(TrabajoRenovacionLinks.Estado.EN_CURSO)
+                .ifPresent(anterior -> finalizar(anterior.getId(), TrabajoRenovacionLinks.Estado.CANCELADO, "Reemplazado por el trabajo nuevo"));
+
+            long conBondarea = examenRepository.countCasosBondareaDesde(0L);
+            long totalEstimado = limite != null ? Math.min(limite, conBondarea) : conBondarea;
+            TrabajoRenovacionLinks trabajo = trabajoRenovacionLinksRepository.save(
+                new TrabajoRenovacionLinks(baseUrl, limite, totalEstimado));
+            lanzar(trabajo);
+            return trabajo;
+        } catch (RuntimeException e) {
+            enEjecucion.set(false);
+            throw e;
+        }
+    }
+
+    /**
+     * Retoma el último trabajo que quedó EN_CURSO (por ejemplo, por un reinicio de la aplicación)
+     */
+    public void reanudarPendiente() {
+        trabajoRenovacionLinksRepository.findFirstByEstadoOrderByIdDesc(TrabajoRenovacionLinks.Estado.EN_CURSO)
+            .ifPresent(trabajo -> {
+                if (enEjecucion.compareAndSet(false, true)) {
+                    logger.info("🔄 [RENOVAR-LINKS] Retomando el trabajo {} desde el examen ID {}",
+                        trabajo.getId(), trabajo.getUltimoExamenId());
+                    lanzar(trabajo);
+                }
+            });
+    }
+
+    /**
+     * Pide la cancelación del trabajo en curso: los envíos ya iniciados terminan, no se toman nuevos
+     * @return false si no hay ningún trabajo en curso
+     */
+    public boolean cancelar() {
+        if (!enEjecucion.get()) {
+            return false;
+        }
+        cancelado = true;
+        logger.info("🛑 [RENOVAR-LINKS] Cancelación solicitada");
+        return true;
+    }
+
+    public boolean estaEnEjecucion() {
+        return enEjecucion.get();
+    }
+
+    private void lanzar(TrabajoRenovacionLinks trabajo) {
+        cancelado = false;
+        Long trabajoId = trabajo.getId();
+        String baseUrl = trabajo.getBaseUrl();
+        Integer limite = trabajo.getLimite();
+        long desdeExamenId = trabajo.getUltimoExamenId();
+        coordinador.submit(() -> ejecutar(trabajoId, baseUrl, limite, desdeExamenId));
+    }
+
+    private void ejecutar(Long trabajoId, String baseUrl, Integer limite, long desdeExamenId) {
+        logger.info("🔄 [RENOVAR-LINKS] Trabajo {} iniciado desde el examen ID {} - {} solicitudes/min, {} hilos",
+            trabajoId, desdeExamenId, solicitudesPorMinuto, hilos);
+        try {
+            long procesados = renovacionLinkCasoRepository.countByTrabajoId(trabajoId);
+            long ultimoExamenId = desdeExamenId;
+
+            while (!cancelado && (limite == null || procesados < limite)) {
+                List<Object[]> pagina = examenRepository.findCasosBondareaDesde(ultimoExamenId,
+                    PageRequest.of(0, Math.max(1, tamanioPagina)));
+                if (pagina.isEmpty()) {
+                    break;
+                }
+
+                List<Long> examenIds = new ArrayList<>(pagina.size());
+                pagina.forEach(fila -> examenIds.add((Long) fila[0]));
+                Set<Long> yaProcesados = new HashSet<>(renovacionLinkCasoRepository.findExamenIdsProcesados(trabajoId, examenIds));
+
+                List<Callable<Void>> envios = new ArrayList<>(pagina.size());
+                long ultimoDeLaPagina = ultimoExamenId;
+                for (Object[] fila : pagina) {
+                    Long examenId = (Long) fila[0];
+                    String idCaso = ((String) fila[1]).trim();
+                    if (!yaProcesados.contains(examenId)) {
+                        if (limite != null && procesados >= limite) {
+                            break;
+                        }
+                        procesados++;
+                        envios.add(() -> {
+                            renovar(trabajoId, baseUrl, examenId, idCaso);
+                            return null;
+                        });
+                    }
+                    ultimoDeLaPagina = examenId;
+                }
+                ejecutor.invokeAll(envios);
+
+                // Si se canceló a mitad de página, el avance no se mueve: al retomar se saltean los que ya tienen resultado
+                if (!cancelado) {
+                    ultimoExamenId = ultimoDeLaPagina;
+                    guardarAvance(trabajoId, ultimoExamenId);
+                }
+            }
+
+            guardarAvance(trabajoId, ultimoExamenId);
+            finalizar(trabajoId, cancelado ? TrabajoRenovacionLinks.Estado.CANCELADO : TrabajoRenovacionLinks.Estado.COMPLETADO, null);
+            logger.info("🏁 [RENOVAR-LINKS] Trabajo {} {}: {} actualizados ✅ | {} errores ❌", trabajoId,
+                cancelado ? "cancelado" : "completado",
+                renovacionLinkCasoRepository.countByTrabajoIdAndEstado(trabajoId, RenovacionLinkCaso.Estado.ACTUALIZADO),
+                renovacionLinkCasoRepository.countByTrabajoIdAndEstado(trabajoId, RenovacionLinkCaso.Estado.ERROR));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("🛑 [RENOVAR-LINKS] Trabajo {} interrumpido, se retoma en el próximo arranque", trabajoId);
+        } catch (Exception e) {
+            logger.error("❌ [RENOVAR-LINKS] Trabajo {} terminó con error: {}", trabajoId, e.getMessage(), e);
+            finalizar(trabajoId, TrabajoRenovacionLinks.Estado.ERROR, e.getMessage());
+        } finally {
+            cancelado = false;
+            enEjecucion.set(false);
+        }
+    }
+
+    // El limitador se aplica a cada solicitud HTTP dentro de BondareaService (reintentos y failover incluidos)
+    private void renovar(Long trabajoId, String baseUrl, Long examenId, String idCaso) {
+        if (cancelado) {
+            return;
+        }
+
+        RenovacionLinkCaso.Estado estado;
+        String error = null;
+        try {
+            String nuevoLink = baseUrl + "/examen/reintento/" + tokensExamenService.generar(examenId, ExamenTokenUtil.Proposito.REINTENTO);
+            Map<String, Object> resultado = bondareaService.actualizarUrlReintentoEnBondarea(idCaso, nuevoLink, limitador);
+            if (Boolean.TRUE.equals(resultado.get("success"))) {
+                estado = RenovacionLinkCaso.Estado.ACTUALIZADO;
+                logger.info("✅ [RENOVAR-LINKS] Examen: {} | idCaso: {}", examenId, idCaso);
+            } else {
+                estado = RenovacionLinkCaso.Estado.ERROR;
+                error = resultado.get("error") != null ? resultado.get("error").toString() : "Bondarea no confirmó la actualización";
+                logger.warn("❌ [RENOVAR-LINKS] Falló | Examen: {} | idCaso: {} | {}", examenId, idCaso, error);
+            }
+        } catch (Exception e) {
+            estado = RenovacionLinkCaso.Estado.ERROR;
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            logger.error("❌ [RENOVAR-LINKS] Error | Examen: {} | idCaso: {} | {}", examenId, idCaso, error);
+        }
+        renovacionLinkCasoRepository.save(new RenovacionLinkCaso(trabajoId, examenId, idCaso, estado, error));
+    }
+
+    private void guardarAvance(Long trabajoId, long ultimoExamenId) {
+        trabajoRenovacionLinksRepository.findById(trabajoId).ifPresent(trabajo -> {
+            trabajo.setUltimoExamenId(ultimoExamenId);
+            trabajo.setActualizados(renovacionLinkCasoRepository.countByTrabajoIdAndEstado(trabajoId, RenovacionLinkCaso.Estado.ACTUALIZADO));
+            trabajo.setErrores(renovacionLinkCasoRepository.countByTrabajoIdAndEstado(trabajoId, RenovacionLinkCaso.Estado.ERROR));
+            trabajo.setFechaActualizacion(LocalDateTime.now());
+            trabajoRenovacionLinksRepository.save(trabajo);
+        });
+    }
+
+    private void finalizar(Long trabajoId, TrabajoRenovacionLinks.Estado estado, String error) {
+        trabajoRenovacionLinksRepository.findById(trabajoId).ifPresent(trabajo -> {
+            trabajo.setEstado(estado);
+            trabajo.setError(error != null && error.length() > 500 ? error.substring(0, 500) : error);
+            trabajo.setFechaFin(LocalDateTime.now());
+            trabajo.setFechaActualizacion(trabajo.getFechaFin());
+            trabajoRenovacionLinksRepository.save(trabajo);
+        });
+    }
+
+    /**
+     * Progreso del último trabajo (o null si nunca se ejecutó ninguno), con los últimos casos con error
+     */
+    public Map<String, Object> obtenerProgreso() {
+        TrabajoRenovacionLinks trabajo = trabajoRenovacionLinksRepository.findFirstByOrderByIdDesc().orElse(null);
+        if (trabajo == null) {
+            return null;
+        }
+        long actualizados = renovacionLinkCasoRepository.countByTrabajoIdAndEstado(trabajo.getId(), RenovacionLinkCaso.Estado.ACTUALIZADO);
+        long errores = renovacionLinkCasoRepository.countByTrabajoIdAndEstado(trabajo.getId(), RenovacionLinkCaso.Estado.ERROR);
+        long procesados = actualizados + errores;
+        long restantes = Math.max(0, trabajo.getTotalEstimado() - procesados);
+
+        Map<String, Object> progreso = new LinkedHashMap<>();
+        progreso.put("id", trabajo.getId());
+        progreso.put("estado", trabajo.getEstado().name());
+        progreso.put("enEjecucion", enEjecucion.get());
+        progreso.put("baseUrl", trabajo.getBaseUrl());
+        progreso.put("limite", trabajo.getLimite());
+        progreso.put("totalEstimado", trabajo.getTotalEstimado());
+        progreso.put("procesados", procesados);
+        progreso.put("actualizados", actualizados);
+        progreso.put("errores", errores);
+        progreso.put("porcentaje", trabajo.getTotalEstimado() == 0 ? 100 : Math.min(100, procesados * 100 / trabajo.getTotalEstimado()));
+        progreso.put("ultimoExamenId", trabajo.getUltimoExamenId());
+        progreso.put("solicitudesPorMinuto", solicitudesPorMinuto);
+        progreso.put("tiempoRestanteEstimadoMinutos", trabajo.getEstado() == TrabajoRenovacionLinks.Estado.EN_CURSO
+            ? (long) Math.ceil(restantes / solicitudesPorMinuto) : 0);
+        progreso.put("fechaInicio", trabajo.getFechaInicio());
+        progreso.put("fechaActualizacion", trabajo.getFechaActualizacion());
+        progreso.put("fechaFin", trabajo.getFechaFin());
+        progreso.put("error", trabajo.getError());
+
+        List<Map<String, Object>> ultimosErrores = new ArrayList<>();
+        for (RenovacionLinkCaso caso : renovacionLinkCasoRepository.findByTrabajoIdAndEstadoOrderByIdDesc(
+                trabajo.getId(), RenovacionLinkCaso.Estado.ERROR, PageRequest.of(0, 20))) {
+            Map<String, Object> detalle = new LinkedHashMap<>();
+            detalle.put("examenId", caso.getExamenId());
+            detalle.put("idCaso", caso.getIdCaso());
+            detalle.put("error", caso.getError());
+            detalle.put("fecha", caso.getFecha());
+            ultimosErrores.add(detalle);
+        }
+        progreso.put("ultimosErrores", ultimosErrores);
+        return progreso;
+    }
+}
@@ -19,6 +19,9 @@ public class RolProfesionalService {
     @Autowired
     private RolProfesionalRepository rolProfesionalRepository;
     
+    @Autowired
+    private VersionCatalogoService versionCatalogoService;
+    
     @Autowired
     private FormularioService formularioService;
     
@@ -28,13 +31,29 @@ public class RolProfesionalService {
     @Autowired
     private PosicionLaboralRepository posicionLaboralRepository;
     
+    @Autowired
+    private MatrizCompatibilidadRolesService matrizCompatibilidadRolesService;
+    
+    @Autowired
+    private CacheRecomendacionesService cacheRecomendacionesService;
+    
     /**
      * Genera recomendaciones de roles profesionales para un candidato
      */
     @Transactional(readOnly = true)
     public List<RecomendacionRolDTO> generarRecomendacionesRoles(Long personaId) {
+        // Un examen finalizado se calcula una sola vez por versión del catálogo
+        return cacheRecomendacionesService.obtenerRoles(personaId,
+                () -> generarRecomendacionesRoles(personaId, Integer.MAX_VALUE));
+    }
+    
+    /**
+     * Genera las recomendaciones de los {@code limite} roles más compatibles, puntuando el examen
+     * contra la matriz compilada de roles activos
+     */
+    private List<RecomendacionRolDTO> generarRecomendacionesRoles(Long personaId, int limite) {
         try {
-            logger.info("🔄 Iniciando generación de recomendaciones de roles para persona ID: " + personaId);
+            logger.debug("Generando recomendaciones de roles para persona ID: {}", personaId);
             
             // Obtener el examen del candidato
             Optional<Examen> examenOpt = formularioService.obtenerResultadoCompleto(personaId);
@@ -44,7 +63,6 @@ public class RolProfesionalService {
             }
             
             Examen examen = examenOpt.get();
-            logger.info("✅ Examen encontrado - ID: " + examen.getId());
             
             // Recomendaciones universales: se muestran a todos sin importar el resultado del test
             List<RecomendacionEstudiosDTO> recomendacionesUniversales = recomendacionEstudiosRepository
@@ -53,66 +71,30 @@ public class RolProfesionalService {
                     .filter(RecomendacionEstudios::isActiva)
                     .map(RecomendacionEstudiosDTO::new)
                     .collect(Collectors.toList());
-            logger.info("📚 Recomendaciones universales: " + recomendacionesUniversales.size());
             
-            // Obtener todos los roles activos con posición laboral cargada (JOIN FETCH)
-            List<RolProfesional> roles = rolProfesionalRepository.findByActivoTrueWithPosicionLaboral();
-            logger.info("📋 Roles profesionales activos encontrados: " + roles.size());
+            // Puntuar contra todos los roles activos de una vez y quedarse con los más compatibles
+            List<MatrizCompatibilidadRoles.PuntajeRol> puntajes = matrizCompatibilidadRolesService.obtenerMatriz()
+                    .mejores(examen, limite, null, null);
+            List<RolProfesional> roles = cargarRoles(puntajes);
             
-            if (roles.isEmpty() && recomendacionesUniversales.isEmpty()) {
-                logger.info("❌ No hay roles profesionales activos ni recomendaciones universales en la base de datos");
-                return new ArrayList<>();
-            }
-            
-            // Obtener todas las posiciones laborales para vincular si es necesario
-            List<PosicionLaboral> todasLasPosiciones = posicionLaboralRepository.findByActivaTrue();
-            Map<String, PosicionLaboral> posicionesPorTitulo = todasLasPosiciones.stream()
-                    .collect(Collectors.toMap(
-                            PosicionLaboral::getTitulo,
-                            p -> p,
-                            (p1, p2) -> p1 // En caso de duplicados, tomar la primera
-                    ));
-            
-            // Calcular compatibilidad para cada rol
+            // Armar las recomendaciones en orden de compatibilidad (ya vienen ordenadas de mayor a menor)
+            Map<Long, RolProfesional> rolesPorId = roles.stream()
+                    .collect(Collectors.toMap(RolProfesional::getId, r -> r));
+            Map<Long, List<RecomendacionEstudios>> estudiosPorPosicion = cargarEstudiosPorPosicion(roles);
             List<RecomendacionRolDTO> recomendaciones = new ArrayList<>();
-            
-            for (RolProfesional rol : roles) {
-                // Si el rol no tiene posición vinculada, intentar vincularla automáticamente
-                if (rol.getPosicionLaboral() == null) {
-                    PosicionLaboral posicionCorrespondiente = posicionesPorTitulo.get(rol.getTitulo());
-                    if (posicionCorrespondiente != null) {
-                        rol.setPosicionLaboral(posicionCorrespondiente);
-                        rolProfesionalRepository.save(rol);
-                        logger.info("🔗 Rol '" + rol.getTitulo() + "' vinculado automáticamente a posición laboral ID: " + posicionCorrespondiente.getId());
-                    }
-                }
-                try {
-                    logger.info("🔄 Calculando compatibilidad para rol: " + rol.getTitulo());
-                    double compatibilidad = rol.calcularCompatibilidad(examen);
-                    logger.info("📊 Compatibilidad calculada: " + compatibilidad);
-                    
-                    // Solo incluir roles con compatibilidad > 0
-                    if (compatibilidad > 0) {
-                        RecomendacionRolDTO recomendacion = new RecomendacionRolDTO(rol, examen, compatibilidad);
-                        
-                        // Obtener recomendaciones de estudios vinculadas a este rol y fusionar con universales (sin duplicados por id)
-                        List<RecomendacionEstudiosDTO> estudiosVinculados = obtenerRecomendacionesEstudiosPorRol(rol);
-                        List<RecomendacionEstudiosDTO> estudiosConUniversales = fusionarConRecomendacionesUniversales(estudiosVinculados, recomendacionesUniversales);
-                        recomendacion.setRecomendacionesEstudios(estudiosConUniversales);
-                        
-                        recomendaciones.add(recomendacion);
-                        logger.info("✅ Recomendación agregada: " + rol.getTitulo() + " (" + compatibilidad + ") con " + estudiosConUniversales.size() + " estudios (incl. universales)");
-                    } else {
-                        logger.info("❌ Compatibilidad insuficiente: " + rol.getTitulo() + " (" + compatibilidad + ")");
-                    }
-                } catch (Exception e) {
-                    logger.error("❌ Error al calcular compatibilidad para " + rol.getTitulo() + ": " + e.getMessage());
-                    e.printStackTrace();
+            for (MatrizCompatibilidadRoles.PuntajeRol puntaje : puntajes) {
+                RolProfesional rol = rolesPorId.get(puntaje.getRolId());
+                if (rol == null) {
+                    continue; // Rol eliminado o desactivado desde que se armó la matriz
                 }
+                RecomendacionRolDTO recomendacion = new RecomendacionRolDTO(rol, examen, puntaje.getCompatibilidad());
+                
+                // Obtener recomendaciones de estudios vinculadas a este rol y fusionar con universales (sin duplicados por id)
+                List<RecomendacionEstudiosDTO> estudiosVinculados = obtenerRecomendacionesEstudiosPorRol(rol, estudiosPorPosicion);
+                recomendacion.setRecomendacionesEstudios(fusionarConRecomendacionesUniversales(estudiosVinculados, recomendacionesUniversales));
+                recomendaciones.add(recomendacion);
             }
             
-            logger.info("📊 Total de recomendaciones de roles generadas: " + recomendaciones.size());
-            
             // Si no hay roles que coincidan pero sí hay recomendaciones universales, mostrar solo estas (rol "virtual")
             if (recomendaciones.isEmpty() && !recomendacionesUniversales.isEmpty()) {
                 RecomendacionRolDTO rolUniversal = new RecomendacionRolDTO();
@@ -120,13 +102,9 @@ public class RolProfesionalService {
                 rolUniversal.setDescripcion("Las siguientes opciones están disponibles para todos los perfiles, sin importar el resultado del test.");
                 rolUniversal.setRecomendacionesEstudios(recomendacionesUniversales);
                 recomendaciones.add(rolUniversal);
-                logger.info("✅ Mostrando bloque de Recomendación Universal con " + recomendacionesUniversales.size() + " opciones");
             }
             
-            // Ordenar por compatibilidad descendente (el rol virtual no tiene compatibilidad, queda al final)
-            recomendaciones.sort((r1, r2) -> Double.compare(r2.getCompatibilidad(), r1.getCompatibilidad()));
-            
-            logger.info("✅ Generación de recomendaciones de roles completada exitosamente");
+            logger.info("✅ Recomendaciones de roles para persona ID {}: {} roles compatibles", personaId, recomendaciones.size());
             return recomendaciones;
             
         } catch (Exception e) {
@@ -142,27 +120,7 @@ public class RolProfesionalService {
     @Transactional(readOnly = true)
     public List<RecomendacionRolDTO> generarRecomendacionesRolesPorCategoria(Long personaId, String categoria) {
         try {
-            Optional<Examen> examenOpt = formularioService.obtenerResultadoCompleto(personaId);
-            if (examenOpt.isEmpty()) {
-                return new ArrayList<>();
-            }
-            
-            Examen examen = examenOpt.get();
-            List<RolProfesional> roles = rolProfesionalRepository.findByCategoriaAndActivoTrue(categoria);
-            
-            List<RecomendacionRolDTO> recomendaciones = new ArrayList<>();
-            
-            for (RolProfesional rol : roles) {
-                double compatibilidad = rol.calcularCompatibilidad(examen);
-                if (compatibilidad > 0) {
-                    RecomendacionRolDTO recomendacion = new RecomendacionRolDTO(rol, examen, compatibilidad);
-                    recomendaciones.add(recomendacion);
-                }
-            }
-            
-            recomendaciones.sort((r1, r2) -> Double.compare(r2.getCompatibilidad(), r1.getCompatibilidad()));
-            return recomendaciones;
-            
+            return generarRecomendacionesFiltradas(personaId, categoria, null);
         } catch (Exception e) {
             logger.error("Error al generar recomendaciones de roles por categoría: " + e.getMessage());
             return new ArrayList<>();
@@ -175,42 +133,52 @@ public class RolProfesionalService {
     @Transactional(readOnly = true)
     public List<RecomendacionRolDTO> generarRecomendacionesRolesPorNivel(Long personaId, String nivel) {
         try {
-            Optional<Examen> examenOpt = formularioService.obtenerResultadoCompleto(personaId);
-            if (examenOpt.isEmpty()) {
-                return new ArrayList<>();
-            }
-            
-            Examen examen = examenOpt.get();
-            List<RolProfesional> roles = rolProfesionalRepository.findByNivelAndActivoTrue(nivel);
-            
-            List<RecomendacionRolDTO> recomendaciones = new ArrayList<>();
-            
-            for (RolProfesional rol : roles) {
-                double compatibilidad = rol.calcularCompatibilidad(examen);
-                if (compatibilidad > 0) {
-                    RecomendacionRolDTO recomendacion = new RecomendacionRolDTO(rol, examen, compatibilidad);
-                    recomendaciones.add(recomendacion);
-                }
-            }
-            
-            recomendaciones.sort((r1, r2) -> Double.compare(r2.getCompatibilidad(), r1.getCompatibilidad()));
-            return recomendaciones;
-            
+            return generarRecomendacionesFiltradas(personaId, null, nivel);
         } catch (Exception e) {
             logger.error("Error al generar recomendaciones de roles por nivel: " + e.getMessage());
             return new ArrayList<>();
         }
     }
     
+    private List<RecomendacionRolDTO> generarRecomendacionesFiltradas(Long personaId, String categoria, String nivel) {
+        Optional<Examen> examenOpt = formularioService.obtenerResultadoCompleto(personaId);
+        if (examenOpt.isEmpty() || (categoria == null && nivel == null)) {
+            return new ArrayList<>();
+        }
+        
+        Examen examen = examenOpt.get();
+        List<MatrizCompatibilidadRoles.PuntajeRol> puntajes = matrizCompatibilidadRolesService.obtenerMatriz()
+                .mejores(examen, Integer.MAX_VALUE, categoria, nivel);
+        Map<Long, RolProfesional> rolesPorId = cargarRoles(puntajes).stream()
+                .collect(Collectors.toMap(RolProfesional::getId, r -> r));
+        
+        List<RecomendacionRolDTO> recomendaciones = new ArrayList<>();
+        for (MatrizCompatibilidadRoles.PuntajeRol puntaje : puntajes) {
+            RolProfesional rol = rolesPorId.get(puntaje.getRolId());
+            if (rol != null) {
+                recomendaciones.add(new RecomendacionRolDTO(rol, examen, puntaje.getCompatibilidad()));
+            }
+        }
+        return recomendaciones;
+    }
+    
+    // Carga (con su posición laboral) solo los roles que quedaron entre los compatibles
+    private List<RolProfesional> cargarRoles(List<MatrizCompatibilidadRoles.PuntajeRol> puntajes) {
+        if (puntajes.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> ids = puntajes.stream()
+                .map(MatrizCompatibilidadRoles.PuntajeRol::getRolId)
+                .collect(Collectors.toList());
+        return rolProfesionalRepository.findByIdInWithPosicionLaboral(ids);
+    }
+    
     /**
      * Obtiene las mejores recomendaciones de roles (top N)
      */
     @Transactional(readOnly = true)
     public List<RecomendacionRolDTO> obtenerMejoresRecomendacionesRoles(Long personaId, int limite) {
-        List<RecomendacionRolDTO> todasLasRecomendaciones = generarRecomendacionesRoles(personaId);
-        return todasLasRecomendaciones.stream()
-                .limit(limite)
-                .collect(Collectors.toList());
+        return generarRecomendacionesRoles(personaId, limite);
     }
     
     /**
@@ -574,24 +542,10 @@ public class RolProfesionalService {
             rolProfesionalRepository.saveAll(roles);
             
             // Ahora vincular las posiciones laborales (después de guardar para asegurar que los IDs estén disponibles)
-            logger.info("🔗 Vinculando roles con posiciones laborales...");
-            List<PosicionLaboral> todasLasPosiciones = posicionLaboralRepository.findByActivaTrue();
-            
-            for (RolProfesional rol : roles) {
-                // Buscar posición laboral que coincida con el título del rol
-                Optional<PosicionLaboral> posicionOpt = todasLasPosiciones.stream()
-                        .filter(p -> rol.getTitulo().equalsIgnoreCase(p.getTitulo()))
-                        .findFirst();
-                
-                if (posicionOpt.isPresent()) {
-                    rol.setPosicionLaboral(posicionOpt.get());
-                    rolProfesionalRepository.save(rol);
-                    logger.info("✅ Rol '" + rol.getTitulo() + "' vinculado a posición laboral ID: " + posicionOpt.get().getId());
-                } else {
-                    logger.info("⚠️ No se encontró posición laboral para el rol: " + rol.getTitulo());
-                }
-            }
+            vincularRolesConPosiciones();
             
+            versionCatalogoService.registrarCambio();
+            matrizCompatibilidadRolesService.reconstruirTrasCommit();
             logger.info("✅ " + roles.size() + " roles profesionales creados y vinculados exitosamente");
             
         } catch (Exception e) {
@@ -600,6 +554,43 @@ public class RolProfesionalService {
         }
     }
     
+    /**
+     * Vincula por título (sin distinguir mayúsculas) los roles sin posición laboral con la posición activa
+     * correspondiente. Arma el índice título → posición una sola vez y guarda todos los vínculos en un lote.
+     * Se ejecuta al iniciar y tras las ediciones del catálogo, para que generar recomendaciones sea solo lectura.
+     * @return cantidad de roles vinculados
+     */
+    @Transactional
+    public int vincularRolesConPosiciones() {
+        List<RolProfesional> sinPosicion = rolProfesionalRepository.findByPosicionLaboralIsNull();
+        if (sinPosicion.isEmpty()) {
+            return 0;
+        }
+        
+        Map<String, PosicionLaboral> posicionesPorTitulo = new HashMap<>();
+        for (PosicionLaboral posicion : posicionLaboralRepository.findByActivaTrue()) {
+            if (posicion.getTitulo() != null) {
+                posicionesPorTitulo.putIfAbsent(posicion.getTitulo().trim().toLowerCase(), posicion); // En caso de duplicados, tomar la primera
+            }
+        }
+        
+        List<RolProfesional> vinculados = new ArrayList<>();
+        for (RolProfesional rol : sinPosicion) {
+            PosicionLaboral posicion = rol.getTitulo() != null ? posicionesPorTitulo.get(rol.getTitulo().trim().toLowerCase()) : null;
+            if (posicion != null) {
+                rol.setPosicionLaboral(posicion);
+                vinculados.add(rol);
+            }
+        }
+        
+        if (!vinculados.isEmpty()) {
+            rolProfesionalRepository.saveAll(vinculados);
+            versionCatalogoService.registrarCambio();
+        }
+        logger.info("🔗 Roles vinculados con posiciones laborales: {} de {} sin posición", vinculados.size(), sinPosicion.size());
+        return vinculados.size();
+    }
+    
     /**
      * Obtiene las recomendaciones de estudios vinculadas a un rol profesional
      * Obtiene la posición laboral vinculada al rol (ManyToOne)
@@ -631,55 +622,54 @@ public class RolProfesionalService {
         return resultado;
     }
     
-    private List<RecomendacionEstudiosDTO> obtenerRecomendacionesEstudiosPorRol(RolProfesional rol) {
-        try {
-            // Forzar la carga de la relación LAZY antes de usarla
-            // Esto asegura que la posición laboral esté cargada desde la base de datos
+    /**
+     * Recomendaciones de estudios de las posiciones laborales activas de los roles, con una sola consulta
+     * (clave: ID de la posición)
+     */
+    private Map<Long, List<RecomendacionEstudios>> cargarEstudiosPorPosicion(List<RolProfesional> roles) {
+        Set<Long> posicionIds = new HashSet<>();
+        for (RolProfesional rol : roles) {
             PosicionLaboral posicion = rol.getPosicionLaboral();
-            
-            // Si es null, intentar recargar el rol desde la base de datos para forzar la carga
-            if (posicion == null) {
-                logger.info("⚠️ El rol " + rol.getTitulo() + " no tiene posición laboral cargada, intentando recargar...");
-                Optional<RolProfesional> rolRecargado = rolProfesionalRepository.findById(rol.getId());
-                if (rolRecargado.isPresent()) {
-                    posicion = rolRecargado.get().getPosicionLaboral();
-                }
-            }
-            
-            if (posicion == null) {
-                logger.info("⚠️ El rol " + rol.getTitulo() + " (ID: " + rol.getId() + ") no tiene una posición laboral vinculada en la base de datos");
-                return new ArrayList<>();
+            if (posicion != null && posicion.getId() != null && posicion.isActiva()) {
+                posicionIds.add(posicion.getId());
             }
-            
-            // Forzar la inicialización de la posición (para evitar LazyInitializationException)
-            if (posicion.getId() != null) {
-                logger.info("🔍 Rol " + rol.getTitulo() + " vinculado a posición laboral: " + posicion.getTitulo() + " (ID: " + posicion.getId() + ")");
-            }
-            
-            if (!posicion.isActiva()) {
-                logger.info("⚠️ La posición laboral vinculada al rol " + rol.getTitulo() + " no está activa");
-                return new ArrayList<>();
-            }
-            
-            // Obtener todas las recomendaciones de estudios que tienen marcado el checkbox de esta posición
-            // en la sección "Posiciones Laborales Vinculadas" de la edición de recomendaciones de estudios
-            List<RecomendacionEstudios> estudios = recomendacionEstudiosRepository.findByPosicionLaboralId(posicion.getId());
-            
-            logger.info("📚 Posición " + posicion.getTitulo() + " (ID: " + posicion.getId() + ") tiene " + estudios.size() + " recomendaciones de estudios vinculadas (checkboxes marcados)");
-            
-            // Convertir a DTO y retornar solo las activas
-            List<RecomendacionEstudiosDTO> estudiosDTO = estudios.stream()
-                    .filter(RecomendacionEstudios::isActiva)
-                    .map(RecomendacionEstudiosDTO::new)
-                    .collect(Collectors.toList());
-            
-            logger.info("✅ Total de " + estudiosDTO.size() + " recomendaciones de estudios activas para el rol: " + rol.getTitulo());
-            return estudiosDTO;
-            
-        } catch (Exception e) {
-            logger.error("❌ Error al obtener recomendaciones de estudios para el rol " + rol.getTitulo() + ": " + e.getMessage());
-            e.printStackTrace();
+        }
+        Map<Long, List<RecomendacionEstudios>> estudiosPorPosicion = new HashMap<>();
+        if (posicionIds.isEmpty()) {
+            return estudiosPorPosicion;
+        }
+        for (Object[] fila : recomendacionEstudiosRepository.findByPosicionLaboralIdIn(posicionIds)) {
+            estudiosPorPosicion.computeIfAbsent((Long) fila[0], k -> new ArrayList<>()).add((RecomendacionEstudios) fila[1]);
+        }
+        return estudiosPorPosicion;
+    }
+    
+    /**
+     * Recomendaciones de estudios vinculadas a un rol: las que tienen marcado el checkbox de su posición
+     * laboral en "Posiciones Laborales Vinculadas" (ya cargadas por {@link #cargarEstudiosPorPosicion})
+     */
+    private List<RecomendacionEstudiosDTO> obtenerRecomendacionesEstudiosPorRol(RolProfesional rol,
+            Map<Long, List<RecomendacionEstudios>> estudiosPorPosicion) {
+        // Los roles llegan con la posición cargada (JOIN FETCH); los vínculos faltantes
+        // se resuelven al indexar el catálogo (vincularRolesConPosiciones), no en la lectura
+        PosicionLaboral posicion = rol.getPosicionLaboral();
+        
+        if (posicion == null) {
+            logger.debug("El rol {} (ID: {}) no tiene una posición laboral vinculada", rol.getTitulo(), rol.getId());
+            return new ArrayList<>();
+        }
+        if (!posicion.isActiva()) {
+            logger.debug("La posición laboral vinculada al rol {} no está activa", rol.getTitulo());
             return new ArrayList<>();
         }
+        
+        List<RecomendacionEstudiosDTO> estudiosDTO = estudiosPorPosicion.getOrDefault(posicion.getId(), List.of()).stream()
+                .filter(RecomendacionEstudios::isActiva)
+                .map(RecomendacionEstudiosDTO::new)
+                .collect(Collectors.toList());
+        
+        logger.debug("Rol {} -> posición {} (ID: {}): {} recomendaciones de estudios activas",
+                rol.getTitulo(), posicion.getTitulo(), posicion.getId(), estudiosDTO.size());
+        return estudiosDTO;
     }
 } 
\ No newline at end of file
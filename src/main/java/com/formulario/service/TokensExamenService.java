@@ -0,0 +1,312 @@
+package com.formulario.service;
+
+import com.formulario.model.TokenRevocado;
+import com.formulario.repository.TokenRevocadoRepository;
+import com.formulario.util.ExamenTokenUtil;
+import com.formulario.util.ExamenTokenUtil.Proposito;
+import com.formulario.util.ExamenTokenUtil.TokenExamen;
+import com.formulario.util.FiltroBloom;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Emite y valida los links de examen: tokens versionados con propósito y vencimiento
+ * (ver {@link ExamenTokenUtil}) y revocación de links puntuales.
+ * <p>
+ * Las revocaciones se guardan en la tabla tokens_revocados y se cargan en un filtro de Bloom:
+ * si el filtro dice que el token no está revocado (el caso normal) no se consulta la base; solo
+ * ante un posible positivo se confirma con la tabla. Un hilo suma cada pocos segundos las
+ * revocaciones hechas por otras instancias y cada tanto reconstruye el filtro completo.
+ */
+@Service
+public class TokensExamenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokensExamenService.class);
+
+    @Autowired
+    private TokenRevocadoRepository tokenRevocadoRepository;
+
+    @Value("${examen.token.vigencia-dias.examen:30}")
+    private int vigenciaDiasExamen;
+
+    @Value("${examen.token.vigencia-dias.reintento:90}")
+    private int vigenciaDiasReintento;
+
+    @Value("${examen.token.vigencia-dias.resultado:30}")
+    private int vigenciaDiasResultado;
+
+    @Value("${examen.token.aceptar-sin-version:true}")
+    private boolean aceptarSinVersion;
+
+    @Value("${examen.token.revocaciones.capacidad:10000}")
+    private int capacidadRevocaciones;
+
+    @Value("${examen.token.revocaciones.intervalo-segundos:10}")
+    private int intervaloSegundos;
+
+    private volatile FiltroBloom revocados;
+
+    @Value("${examen.token.revocaciones.solape-segundos:300}")
+    private int solapeSegundos;
+
+    @Value("${examen.token.revocaciones.reconstruccion-minutos:30}")
+    private int reconstruccionMinutos;
+
+    // Fecha de la revocación más nueva cargada en el filtro y momento de la última reconstrucción completa
+    private LocalDateTime ultimaFechaCargada;
+    private long ultimaReconstruccion;
+
+    private ScheduledExecutorService vigilante;
+
+    private final LongAdder validaciones = new LongAdder();
+    private final LongAdder posiblesRevocados = new LongAdder();
+    private final LongAdder rechazadosRevocados = new LongAdder();
+
+    @PostConstruct
+    public void inicializar() {
+        if (intervaloSegundos <= 0) {
+            return;
+        }
+        vigilante = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "tokens-revocados");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        vigilante.scheduleWithFixedDelay(this::cargarRevocacionesSinFallar, intervaloSegundos,
+            intervaloSegundos, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (vigilante != null) {
+            vigilante.shutdownNow();
+        }
+    }
+
+    /**
+     * Genera el token de un examen para un propósito, con el vencimiento configurado para ese propósito.
+     * El vencimiento se redondea a la hora, así el mismo link pedido varias veces en la misma hora es idéntico.
+     */
+    public String generar(Long examenId, Proposito proposito) {
+        Instant vencimiento = Instant.now()
+            .plus(Duration.ofDays(Math.max(1, vigenciaDias(proposito))))
+            .truncatedTo(ChronoUnit.HOURS);
+        return ExamenTokenUtil.generarToken(examenId, proposito, vencimiento);
+    }
+
+    /**
+     * Valida un token para un propósito
+     * @return ID del examen, o null si el token es inválido, venció, es de otro propósito o fue revocado
+     */
+    public Long validar(String token, Proposito proposito) {
+        validaciones.increment();
+        TokenExamen decodificado = ExamenTokenUtil.decodificar(token);
+        if (decodificado == null) {
+            return null;
+        }
+        if (decodificado.esVersionado()) {
+            if (decodificado.getProposito() != proposito || decodificado.estaVencido(Instant.now())) {
+                return null;
+            }
+        } else if (!aceptarSinVersion) {
+            return null;
+        }
+        if (estaRevocado(decodificado)) {
+            rechazadosRevocados.increment();
+            logger.warn("Se usó un link revocado del examen {} ({})", decodificado.getExamenId(),
+                decodificado.esVersionado() ? decodificado.getProposito() : "sin versión");
+            return null;
+        }
+        return decodificado.getExamenId();
+    }
+
+    /**
+     * Acepta el ID numérico de un examen como identificador (links anteriores a los tokens).
+     * Solo se permite mientras se aceptan los links sin versión, y nunca para un examen con algún
+     * link revocado: si no, el ID que viaja en claro en cualquier token saltearía vencimiento y revocación.
+     * @return el mismo ID, o null si no se acepta
+     */
+    public Long validarIdSinToken(Long examenId) {
+        if (examenId == null || !aceptarSinVersion) {
+            return null;
+        }
+        if (tokenRevocadoRepository.existsByExamenId(examenId)) {
+            rechazadosRevocados.increment();
+            logger.warn("Se intentó abrir por ID el examen {}, que tiene links revocados", examenId);
+            return null;
+        }
+        return examenId;
+    }
+
+    /**
+     * Revoca un link. Acepta el token o la URL completa del link.
+     * @return la revocación registrada (o la existente, si ya estaba revocado)
+     * @throws IllegalArgumentException si el token no es válido
+     */
+    public TokenRevocado revocar(String tokenOUrl, String motivo, String usuario) {
+        String token = tokenOUrl == null ? null : tokenOUrl.trim();
+        if (token != null && token.contains("/")) {
+            token = token.substring(token.lastIndexOf('/') + 1);
+        }
+        TokenExamen decodificado = ExamenTokenUtil.decodificar(token);
+        if (decodificado == null) {
+            throw new IllegalArgumentException("El token no es válido");
+        }
+
+        byte[] huella = calcularHuella(decodificado);
+        String huellaHex = HexFormat.of().formatHex(huella);
+        LocalDateTime vencimiento = decodificado.getVencimiento() == null ? null
+            : LocalDateTime.ofInstant(decodificado.getVencimiento(), ZoneId.systemDefault());
+        TokenRevocado revocacion = new TokenRevocado(huellaHex, decodificado.getExamenId(),
+            decodificado.esVersionado() ? decodificado.getProposito().name() : null,
+            vencimiento, motivo, usuario);
+        try {
+            revocacion = tokenRevocadoRepository.save(revocacion);
+        } catch (DataIntegrityViolationException e) {
+            logger.info("El link del examen {} ya estaba revocado", decodificado.getExamenId());
+        }
+        // Agregarlo antes de confirmar solo puede causar un falso positivo, que se verifica contra la base
+        obtenerFiltro().agregar(huella);
+        logger.info("Link revocado - examen {}, propósito {}, usuario {}", decodificado.getExamenId(),
+            revocacion.getProposito(), usuario);
+        return revocacion;
+    }
+
+    public List<TokenRevocado> listarRevocados(int limite) {
+        return tokenRevocadoRepository.findAllByOrderByIdDesc(PageRequest.of(0, Math.max(1, limite)));
+    }
+
+    public Map<String, Object> estadisticas() {
+        FiltroBloom filtro = revocados;
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("validaciones", validaciones.sum());
+        estadisticas.put("posiblesRevocados", posiblesRevocados.sum());
+        estadisticas.put("rechazadosRevocados", rechazadosRevocados.sum());
+        estadisticas.put("revocacionesEnFiltro", filtro != null ? filtro.getElementos() : 0);
+        estadisticas.put("capacidadFiltro", filtro != null ? filtro.getCapacidad() : 0);
+        estadisticas.put("bitsFiltro", filtro != null ? filtro.getCantidadBits() : 0);
+        estadisticas.put("aceptaSinVersion", aceptarSinVersion);
+        return estadisticas;
+    }
+
+    private boolean estaRevocado(TokenExamen decodificado) {
+        byte[] huella = calcularHuella(decodificado);
+        if (!obtenerFiltro().puedeContener(huella)) {
+            return false;
+        }
+        // Posible positivo (o falso positivo del filtro): se confirma con la tabla
+        posiblesRevocados.increment();
+        return tokenRevocadoRepository.existsByHuella(HexFormat.of().formatHex(huella));
+    }
+
+    private int vigenciaDias(Proposito proposito) {
+        switch (proposito) {
+            case REINTENTO:
+                return vigenciaDiasReintento;
+            case RESULTADO:
+                return vigenciaDiasResultado;
+            default:
+                return vigenciaDiasExamen;
+        }
+    }
+
+    private FiltroBloom obtenerFiltro() {
+        FiltroBloom filtro = revocados;
+        if (filtro != null) {
+            return filtro;
+        }
+        cargarRevocaciones();
+        return revocados;
+    }
+
+    /**
+     * Suma al filtro las revocaciones recientes. Los IDs no se confirman en orden, así que no sirven
+     * como marca: se relee una ventana de solape hacia atrás desde la última fecha cargada (cubre
+     * transacciones largas y diferencias de reloj entre instancias; volver a agregar una huella no
+     * cambia el filtro) y además el filtro se reconstruye completo cada tanto desde la tabla.
+     */
+    private synchronized void cargarRevocaciones() {
+        FiltroBloom filtro = revocados;
+        if (filtro == null || System.nanoTime() - ultimaReconstruccion >= TimeUnit.MINUTES.toNanos(Math.max(1, reconstruccionMinutos))) {
+            reconstruirFiltro();
+            return;
+        }
+        List<Object[]> recientes = tokenRevocadoRepository.findHuellasDesde(
+            ultimaFechaCargada.minusSeconds(Math.max(0, solapeSegundos)));
+        int nuevas = 0;
+        for (Object[] fila : recientes) {
+            if (filtro.agregar(HexFormat.of().parseHex((String) fila[1]))) {
+                nuevas++;
+            }
+            ultimaFechaCargada = maximo(ultimaFechaCargada, (LocalDateTime) fila[0]);
+        }
+        if (nuevas > 0) {
+            logger.info("Filtro de tokens revocados actualizado: {} revocaciones nuevas", nuevas);
+        }
+        if (filtro.getElementos() > filtro.getCapacidad()) {
+            // Se superó la capacidad: se reconstruye más grande para que no crezcan los falsos positivos
+            reconstruirFiltro();
+        }
+    }
+
+    private void reconstruirFiltro() {
+        List<Object[]> todas = tokenRevocadoRepository.findTodasLasHuellas();
+        int capacidad = (int) Math.min(Integer.MAX_VALUE, Math.max(Math.max(1, capacidadRevocaciones), 2L * todas.size()));
+        FiltroBloom filtro = new FiltroBloom(capacidad, 0.01);
+        LocalDateTime ultima = LocalDateTime.now();
+        for (Object[] fila : todas) {
+            filtro.agregar(HexFormat.of().parseHex((String) fila[1]));
+            ultima = maximo(ultima, (LocalDateTime) fila[0]);
+        }
+        ultimaFechaCargada = ultima;
+        ultimaReconstruccion = System.nanoTime();
+        revocados = filtro;
+        logger.debug("Filtro de tokens revocados reconstruido: {} revocaciones, capacidad {}", todas.size(), capacidad);
+    }
+
+    private static LocalDateTime maximo(LocalDateTime a, LocalDateTime b) {
+        return b != null && b.isAfter(a) ? b : a;
+    }
+
+    private void cargarRevocacionesSinFallar() {
+        try {
+            cargarRevocaciones();
+        } catch (Exception e) {
+            logger.warn("No se pudieron cargar las revocaciones de tokens: {}", e.getMessage());
+        }
+    }
+
+    // SHA-256 de la parte firmada: identifica al link aunque cambie el secreto con el que se firma
+    private static byte[] calcularHuella(TokenExamen decodificado) {
+        try {
+            return MessageDigest.getInstance("SHA-256")
+                .digest(decodificado.getCarga().getBytes(StandardCharsets.US_ASCII));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 no disponible", e);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.formulario.service;
+
+import com.formulario.service.PdfService.TipoPdf;
+import com.formulario.service.RenderizadorPdfService.PdfSaturadoException;
+import com.formulario.util.CacheAcotada;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generación asíncrona de PDFs: el cliente recibe un ID de trabajo y consulta el estado o descarga
+ * el PDF cuando está listo. Los trabajos corren en un pool propio (no en el de renderizado, que
+ * los trabajos usan a su vez para la conversión) y se olvidan pasado su tiempo de vida.
+ */
+@Service
+public class TrabajosPdfService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrabajosPdfService.class);
+
+    public enum EstadoTrabajo { PENDIENTE, EN_PROCESO, LISTO, ERROR }
+
+    @Autowired
+    private PdfService pdfService;
+
+    @Autowired
+    private RenderizadorPdfService renderizadorPdfService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${pdf.trabajos.hilos:2}")
+    private int hilos;
+
+    @Value("${pdf.trabajos.cola-max:50}")
+    private int colaMax;
+
+    @Value("${pdf.trabajos.ttl-minutos:15}")
+    private int ttlMinutos;
+
+    private ThreadPoolExecutor ejecutor;
+    private TransactionTemplate lectura;
+    private CacheAcotada<String, TrabajoPdf> trabajos;
+
+    @PostConstruct
+    public void inicializar() {
+        lectura = new TransactionTemplate(transactionManager);
+        lectura.setReadOnly(true);
+        // Entran en memoria a lo sumo los trabajos encolados más los ya terminados recientes
+        trabajos = new CacheAcotada<>(Math.max(1, colaMax) * 4, Duration.ofMinutes(Math.max(1, ttlMinutos)));
+
+        AtomicInteger numeroHilo = new AtomicInteger();
+        ejecutor = new ThreadPoolExecutor(Math.max(1, hilos), Math.max(1, hilos), 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, colaMax)), r -> {
+                Thread hilo = new Thread(r, "pdf-trabajo-" + numeroHilo.incrementAndGet());
+                hilo.setDaemon(true);
+                return hilo;
+            }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void detener() {
+        ejecutor.shutdownNow();
+    }
+
+    /**
+     * Encola la generación de un PDF y devuelve el trabajo creado.
+     * Lanza {@link PdfSaturadoException} (429) si la cola de trabajos está llena.
+     */
+    public TrabajoPdf encolar(Long personaId, TipoPdf tipo) {
+        TrabajoPdf trabajo = new TrabajoPdf(UUID.randomUUID().toString(), personaId, tipo);
+        trabajos.guardar(trabajo.getId(), trabajo);
+        try {
+            ejecutor.execute(() -> ejecutar(trabajo));
+        } catch (RejectedExecutionException e) {
+            trabajos.invalidar(trabajo.getId());
+            throw new PdfSaturadoException(429, renderizadorPdfService.getReintentarEnSegundos(),
+                "Hay demasiados PDFs en generación, reintente en unos segundos");
+        }
+        logger.info("Trabajo de PDF {} encolado: {} para persona ID: {}", trabajo.getId(), tipo, personaId);
+        return trabajo;
+    }
+
+    public TrabajoPdf obtener(String id) {
+        return id != null ? trabajos.obtener(id) : null;
+    }
+
+    private void ejecutar(TrabajoPdf trabajo) {
+        trabajo.estado = EstadoTrabajo.EN_PROCESO;
+        try {
+            // Transacción de solo lectura para que las plantillas puedan recorrer relaciones lazy fuera del request
+            byte[] pdf = lectura.execute(status -> {
+                try {
+                    String clave = pdfService.calcularClaveCache(trabajo.personaId, trabajo.tipo);
+                    trabajo.etag = clave != null ? "\"" + clave + "\"" : null;
+                    return pdfService.obtenerPdf(trabajo.personaId, trabajo.tipo, clave);
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new RuntimeException(e.getMessage(), e);
+                }
+            });
+            trabajo.pdf = pdf;
+            trabajo.estado = EstadoTrabajo.LISTO;
+            trabajo.resultado.complete(pdf);
+        } catch (Exception e) {
+            logger.error("Error en el trabajo de PDF {} para persona ID: {}", trabajo.id, trabajo.personaId, e);
+            trabajo.error = e.getMessage();
+            trabajo.estado = EstadoTrabajo.ERROR;
+            trabajo.resultado.completeExceptionally(e);
+        } finally {
+            trabajo.fechaFin = LocalDateTime.now();
+        }
+    }
+
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("activos", ejecutor.getActiveCount());
+        estadisticas.put("enCola", ejecutor.getQueue().size());
+        estadisticas.put("colaMax", colaMax);
+        estadisticas.put("trabajosRecientes", trabajos.tamanio());
+        return estadisticas;
+    }
+
+    /**
+     * Trabajo de generación de un PDF. Lo escribe solo el hilo que lo ejecuta.
+     */
+    public static class TrabajoPdf {
+
+        private final String id;
+        private final Long personaId;
+        private final TipoPdf tipo;
+        private final LocalDateTime fechaCreacion = LocalDateTime.now();
+        private final CompletableFuture<byte[]> resultado = new CompletableFuture<>();
+        private volatile EstadoTrabajo estado = EstadoTrabajo.PENDIENTE;
+        private volatile byte[] pdf;
+        private volatile String etag;
+        private volatile String error;
+        private volatile LocalDateTime fechaFin;
+
+        private TrabajoPdf(String id, Long personaId, TipoPdf tipo) {
+            this.id = id;
+            this.personaId = personaId;
+            this.tipo = tipo;
+        }
+
+        /**
+         * Espera hasta el tiempo dado a que el trabajo termine (0 = no espera)
+         */
+        public void esperar(long segundos) {
+            if (segundos <= 0 || resultado.isDone()) {
+                return;
+            }
+            try {
+                resultado.get(segundos, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                // El estado del trabajo ya refleja el error o que sigue en curso
+            }
+        }
+
+        public Map<String, Object> resumen() {
+            Map<String, Object> resumen = new LinkedHashMap<>();
+            resumen.put("id", id);
+            resumen.put("personaId", personaId);
+            resumen.put("tipo", tipo.name());
+            resumen.put("estado", estado.name());
+            resumen.put("fechaCreacion", fechaCreacion);
+            resumen.put("fechaFin", fechaFin);
+            if (error != null) {
+                resumen.put("error", error);
+            }
+            return resumen;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Long getPersonaId() {
+            return personaId;
+        }
+
+        public TipoPdf getTipo() {
+            return tipo;
+        }
+
+        public EstadoTrabajo getEstado() {
+            return estado;
+        }
+
+        public byte[] getPdf() {
+            return pdf;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.formulario.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Versión del catálogo de recomendaciones (roles profesionales, posiciones laborales y recomendaciones
+ * de estudios). Se guarda en la configuración del sistema y cambia con cada alta, edición o baja, para que
+ * los resultados derivados del catálogo (PDFs, recomendaciones) puedan cachearse por versión.
+ */
+@Service
+public class VersionCatalogoService {
+
+    public static final String CLAVE_VERSION_CATALOGO = "version_catalogo";
+
+    @Autowired
+    private ConfiguracionService configuracionService;
+
+    public long obtenerVersion() {
+        String valor = configuracionService.obtenerValor(CLAVE_VERSION_CATALOGO);
+        if (valor == null) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(valor.trim());
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    /**
+     * Registra un cambio en el catálogo. La nueva versión es la hora actual en milisegundos
+     * (siempre mayor a la anterior), así no hace falta leer y sumar sobre el valor guardado.
+     */
+    public long registrarCambio() {
+        long version = Math.max(System.currentTimeMillis(), obtenerVersion() + 1);
+        configuracionService.guardarConfiguracion(CLAVE_VERSION_CATALOGO, String.valueOf(version),
+            "Versión del catálogo de roles, posiciones y recomendaciones de estudios", "SISTEMA");
+        return version;
+    }
+}
@@ -0,0 +1,145 @@
+package com.formulario.util;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Caché en memoria acotada por cantidad de entradas (LRU), con expiración opcional por tiempo
+ * y contadores de aciertos/fallos. Es segura para usar desde varios hilos.
+ */
+public class CacheAcotada<K, V> {
+
+    private final int maxEntradas;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entrada<V>> entradas;
+
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong desalojos = new AtomicLong();
+
+    /**
+     * @param maxEntradas cantidad máxima de entradas antes de desalojar la menos usada
+     * @param ttl tiempo de vida de cada entrada (null o cero = sin expiración)
+     */
+    public CacheAcotada(int maxEntradas, Duration ttl) {
+        if (maxEntradas <= 0) {
+            throw new IllegalArgumentException("La caché debe admitir al menos una entrada");
+        }
+        this.maxEntradas = maxEntradas;
+        this.ttlNanos = ttl == null ? 0 : ttl.toNanos();
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entrada<V>> eldest) {
+                boolean desalojar = size() > CacheAcotada.this.maxEntradas;
+                if (desalojar) {
+                    desalojos.incrementAndGet();
+                }
+                return desalojar;
+            }
+        };
+    }
+
+    public CacheAcotada(int maxEntradas) {
+        this(maxEntradas, null);
+    }
+
+    /**
+     * Devuelve el valor asociado a la clave, o null si no existe o expiró
+     */
+    public synchronized V obtener(K clave) {
+        Entrada<V> entrada = entradas.get(clave);
+        if (entrada == null) {
+            fallos.incrementAndGet();
+            return null;
+        }
+        if (entrada.ttlNanos > 0 && System.nanoTime() - entrada.creadaEn > entrada.ttlNanos) {
+            entradas.remove(clave);
+            fallos.incrementAndGet();
+            return null;
+        }
+        aciertos.incrementAndGet();
+        return entrada.valor;
+    }
+
+    public synchronized void guardar(K clave, V valor) {
+        guardar(clave, valor, ttlNanos);
+    }
+
+    /**
+     * Guarda un valor con un tiempo de vida propio (útil para cachear respuestas negativas por menos tiempo)
+     */
+    public synchronized void guardar(K clave, V valor, Duration ttl) {
+        guardar(clave, valor, ttl == null ? 0 : ttl.toNanos());
+    }
+
+    private void guardar(K clave, V valor, long ttlEntradaNanos) {
+        entradas.put(clave, new Entrada<>(valor, System.nanoTime(), ttlEntradaNanos));
+    }
+
+    public synchronized void invalidar(K clave) {
+        entradas.remove(clave);
+    }
+
+    /**
+     * Elimina las entradas cuya clave cumple la condición
+     */
+    public synchronized void invalidarSi(Predicate<K> condicion) {
+        entradas.keySet().removeIf(condicion);
+    }
+
+    public synchronized void limpiar() {
+        entradas.clear();
+    }
+
+    public synchronized int tamanio() {
+        return entradas.size();
+    }
+
+    public int getMaxEntradas() {
+        return maxEntradas;
+    }
+
+    public long getAciertos() {
+        return aciertos.get();
+    }
+
+    public long getFallos() {
+        return fallos.get();
+    }
+
+    public long getDesalojos() {
+        return desalojos.get();
+    }
+
+    /**
+     * Resumen de métricas para endpoints de diagnóstico
+     */
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        long totalAciertos = aciertos.get();
+        long totalFallos = fallos.get();
+        long consultas = totalAciertos + totalFallos;
+        estadisticas.put("entradas", tamanio());
+        estadisticas.put("maxEntradas", maxEntradas);
+        estadisticas.put("aciertos", totalAciertos);
+        estadisticas.put("fallos", totalFallos);
+        estadisticas.put("desalojos", desalojos.get());
+        estadisticas.put("tasaAciertos", consultas == 0 ? 0.0 : Math.round(totalAciertos * 1000.0 / consultas) / 10.0);
+        return estadisticas;
+    }
+
+    private static final class Entrada<V> {
+        private final V valor;
+        private final long creadaEn;
+        private final long ttlNanos;
+
+        private Entrada(V valor, long creadaEn, long ttlNanos) {
+            this.valor = valor;
+            this.creadaEn = creadaEn;
+            this.ttlNanos = ttlNanos;
+        }
+    }
+}
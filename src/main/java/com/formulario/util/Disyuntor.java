@@ -0,0 +1,93 @@
+package com.formulario.util;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Circuit breaker para un destino remoto. Tras {@code fallosParaAbrir} fallos seguidos se abre y
+ * rechaza las llamadas durante {@code tiempoAbierto}; pasado ese tiempo deja pasar una sola llamada
+ * de prueba (semiabierto): si sale bien se cierra, si falla vuelve a abrirse.
+ * Es seguro para usar desde varios hilos.
+ */
+public class Disyuntor {
+
+    public enum Estado { CERRADO, ABIERTO, SEMIABIERTO }
+
+    private final String nombre;
+    private final int fallosParaAbrir;
+    private final long tiempoAbiertoNanos;
+
+    private Estado estado = Estado.CERRADO;
+    private int fallosSeguidos;
+    private long abiertoDesde;
+    private boolean pruebaEnCurso;
+    private long totalExitos;
+    private long totalFallos;
+    private long totalRechazos;
+
+    public Disyuntor(String nombre, int fallosParaAbrir, Duration tiempoAbierto) {
+        if (fallosParaAbrir <= 0) {
+            throw new IllegalArgumentException("El disyuntor debe abrir con al menos un fallo");
+        }
+        this.nombre = nombre;
+        this.fallosParaAbrir = fallosParaAbrir;
+        this.tiempoAbiertoNanos = tiempoAbierto.toNanos();
+    }
+
+    /**
+     * true si se puede llamar al destino ahora. Con el circuito semiabierto solo autoriza una llamada
+     * de prueba a la vez; quien la obtiene debe informar el resultado con {@link #registrarExito()}
+     * o {@link #registrarFallo()}.
+     */
+    public synchronized boolean permitir() {
+        if (estado == Estado.ABIERTO && System.nanoTime() - abiertoDesde >= tiempoAbiertoNanos) {
+            estado = Estado.SEMIABIERTO;
+            pruebaEnCurso = false;
+        }
+        if (estado == Estado.CERRADO) {
+            return true;
+        }
+        if (estado == Estado.SEMIABIERTO && !pruebaEnCurso) {
+            pruebaEnCurso = true;
+            return true;
+        }
+        totalRechazos++;
+        return false;
+    }
+
+    public synchronized void registrarExito() {
+        totalExitos++;
+        fallosSeguidos = 0;
+        pruebaEnCurso = false;
+        estado = Estado.CERRADO;
+    }
+
+    public synchronized void registrarFallo() {
+        totalFallos++;
+        fallosSeguidos++;
+        pruebaEnCurso = false;
+        if (estado == Estado.SEMIABIERTO || fallosSeguidos >= fallosParaAbrir) {
+            estado = Estado.ABIERTO;
+            abiertoDesde = System.nanoTime();
+        }
+    }
+
+    public synchronized Estado getEstado() {
+        return estado;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public synchronized Map<String, Object> estadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("estado", estado.name());
+        estadisticas.put("fallosSeguidos", fallosSeguidos);
+        estadisticas.put("exitos", totalExitos);
+        estadisticas.put("fallos", totalFallos);
+        estadisticas.put("rechazadas", totalRechazos);
+        return estadisticas;
+    }
+}
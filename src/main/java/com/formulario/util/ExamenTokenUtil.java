@@ -3,37 +3,82 @@ package com.formulario.util;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Utilidad para generar y validar tokens de examen basados en hash
  * El token no se almacena en BD, se calcula dinámicamente
+ * <p>
+ * Los secretos se leen una sola vez (propiedad de sistema o variable de entorno) y cada hilo
+ * reutiliza su propia instancia de {@link Mac} ya inicializada.
+ * <p>
+ * Rotación de secretos: cada secreto tiene un identificador (kid). El kid "0" es el formato
+ * original {id}-{hash}; con cualquier otro kid el token es {id}-{kid}.{hash}. Para rotar, se
+ * configura el secreto nuevo con su kid (EXAMEN_TOKEN_SECRET / EXAMEN_TOKEN_KID) y se pasa el
+ * anterior a EXAMEN_TOKEN_SECRETOS_ANTERIORES ("kid:secreto,kid:secreto"), así los links ya
+ * enviados siguen siendo válidos.
+ * <p>
+ * Tokens versionados (v2): la parte firmada es 2.{id}.{propósito}.{vencimiento}, con el propósito
+ * (examen, reintento o resultado) y el vencimiento en segundos epoch en base 36, así un link solo
+ * sirve para lo que fue emitido y deja de valer solo. Los tokens sin versión siguen siendo
+ * válidos para cualquier propósito y sin vencimiento (ver TokensExamenService).
  */
 public class ExamenTokenUtil {
-    
+
     private static final String HMAC_ALGORITHM = "HmacSHA256";
-    private static final String SEPARATOR = "-";
-    
-    // Secret key para firmar los tokens (se lee de application.properties)
-    private static String getSecretKey() {
-        String secret = System.getProperty("examen.token.secret");
-        if (secret == null || secret.isEmpty()) {
-            // Intentar leer de variable de entorno
-            secret = System.getenv("EXAMEN_TOKEN_SECRET");
-        }
-        if (secret == null || secret.isEmpty()) {
-            // Valor por defecto (cambiar en producción)
-            secret = "default-secret-key-change-in-production-2024";
-        }
-        return secret;
+    private static final char SEPARATOR = '-';
+    private static final char SEPARADOR_KID = '.';
+    private static final String KID_ORIGINAL = "0";
+    private static final String PREFIJO_V2 = "2.";
+
+    // Bytes del HMAC que van en el token (16 caracteres hexadecimales)
+    private static final int BYTES_HASH = 8;
+
+    private static final byte[] HEXADECIMAL = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final Base64.Encoder CODIFICADOR = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODIFICADOR = Base64.getUrlDecoder();
+
+    // Lee una configuración de las propiedades de sistema o, si no está, de la variable de entorno
+    private static String leerConfiguracion(String propiedad, String variableEntorno) {
+        String valor = System.getProperty(propiedad);
+        if (valor == null || valor.isEmpty()) {
+            valor = System.getenv(variableEntorno);
+        }
+        return valor == null || valor.isEmpty() ? null : valor;
     }
-    
+
+    /**
+     * Propósito para el que se emite un token versionado
+     */
+    public enum Proposito {
+        EXAMEN('E'), REINTENTO('R'), RESULTADO('S');
+
+        private final char codigo;
+
+        Proposito(char codigo) {
+            this.codigo = codigo;
+        }
+
+        private static Proposito desdeCodigo(String codigo) {
+            for (Proposito proposito : values()) {
+                if (codigo.length() == 1 && proposito.codigo == codigo.charAt(0)) {
+                    return proposito;
+                }
+            }
+            return null;
+        }
+    }
+
     /**
      * Genera un token único para un examen basado en su ID
-     * Formato: {examenId}-{hash}
-     * 
+     * Formato: {examenId}-{hash} (o {examenId}-{kid}.{hash} si el secreto vigente tiene kid)
+     *
      * @param examenId ID del examen
      * @return Token en formato base64 URL-safe
      */
@@ -41,111 +86,162 @@ public class ExamenTokenUtil {
         if (examenId == null) {
             throw new IllegalArgumentException("El ID del examen no puede ser null");
         }
-        
+
         try {
-            // Calcular hash HMAC del ID del examen
-            String hash = calcularHash(examenId.toString());
-            
-            // Combinar ID y hash: {id}-{hash}
-            String token = examenId + SEPARATOR + hash;
-            
-            // Codificar en base64 URL-safe para URL limpia
-            return Base64.getUrlEncoder().withoutPadding().encodeToString(
-                token.getBytes(StandardCharsets.UTF_8)
-            );
-            
+            return firmar(Long.toString(examenId).getBytes(StandardCharsets.US_ASCII));
         } catch (Exception e) {
             throw new RuntimeException("Error al generar token para examen " + examenId, e);
         }
     }
-    
+
     /**
-     * Valida un token y extrae el ID del examen si es válido
-     * 
+     * Genera un token versionado que solo vale para un propósito y hasta un vencimiento
+     * Formato: 2.{examenId}.{propósito}.{vencimiento}-{hash}
+     *
+     * @param examenId ID del examen
+     * @param proposito uso permitido del token
+     * @param vencimiento momento a partir del cual el token deja de valer
+     * @return Token en formato base64 URL-safe
+     */
+    public static String generarToken(Long examenId, Proposito proposito, Instant vencimiento) {
+        if (examenId == null || proposito == null || vencimiento == null) {
+            throw new IllegalArgumentException("El ID del examen, el propósito y el vencimiento son obligatorios");
+        }
+
+        try {
+            String carga = PREFIJO_V2 + examenId + SEPARADOR_KID + proposito.codigo + SEPARADOR_KID
+                + Long.toString(vencimiento.getEpochSecond(), 36);
+            return firmar(carga.getBytes(StandardCharsets.US_ASCII));
+        } catch (Exception e) {
+            throw new RuntimeException("Error al generar token para examen " + examenId, e);
+        }
+    }
+
+    // Arma {carga}-{kid.}{hash} con el secreto vigente y lo codifica en base64 URL-safe
+    private static String firmar(byte[] carga) {
+        Clave clave = Llavero.VIGENTE;
+        byte[] prefijo = clave.prefijo;
+
+        byte[] token = new byte[carga.length + 1 + prefijo.length + BYTES_HASH * 2];
+        System.arraycopy(carga, 0, token, 0, carga.length);
+        token[carga.length] = SEPARATOR;
+        System.arraycopy(prefijo, 0, token, carga.length + 1, prefijo.length);
+        escribirHash(clave, carga, carga.length, token, carga.length + 1 + prefijo.length);
+
+        return CODIFICADOR.encodeToString(token);
+    }
+
+    /**
+     * Valida un token y extrae el ID del examen si es válido.
+     * No controla propósito ni revocación: eso lo hace TokensExamenService.
+     *
      * @param token Token a validar
-     * @return ID del examen si el token es válido, null si no lo es
+     * @return ID del examen si el token es válido y no venció, null si no lo es
      */
     public static Long validarYExtraerId(String token) {
+        TokenExamen decodificado = decodificar(token);
+        if (decodificado == null || decodificado.estaVencido(Instant.now())) {
+            return null;
+        }
+        return decodificado.getExamenId();
+    }
+
+    /**
+     * Verifica la firma de un token y devuelve su contenido
+     *
+     * @param token Token a decodificar
+     * @return contenido del token, o null si el formato o la firma no son válidos
+     */
+    public static TokenExamen decodificar(String token) {
         if (token == null || token.trim().isEmpty()) {
             return null;
         }
-        
+
         try {
             // Decodificar base64
-            byte[] decodedBytes = Base64.getUrlDecoder().decode(token);
-            String decodedToken = new String(decodedBytes, StandardCharsets.UTF_8);
-            
-            // Separar ID y hash
-            int separatorIndex = decodedToken.lastIndexOf(SEPARATOR);
-            if (separatorIndex == -1) {
+            byte[] decodificado = DECODIFICADOR.decode(token);
+
+            // Separar carga y hash
+            int separador = ultimaPosicion(decodificado, SEPARATOR);
+            if (separador <= 0) {
                 return null; // Formato inválido
             }
-            
-            String examenIdStr = decodedToken.substring(0, separatorIndex);
-            String hashRecibido = decodedToken.substring(separatorIndex + 1);
-            
-            // Validar que el ID sea numérico
-            Long examenId;
-            try {
-                examenId = Long.parseLong(examenIdStr);
-            } catch (NumberFormatException e) {
-                return null; // ID inválido
+
+            // Secreto con el que se firmó: kid explícito o el formato original
+            int inicioHash = separador + 1;
+            String kid = KID_ORIGINAL;
+            int separadorKid = ultimaPosicion(decodificado, SEPARADOR_KID);
+            if (separadorKid > separador) {
+                kid = new String(decodificado, inicioHash, separadorKid - inicioHash, StandardCharsets.US_ASCII);
+                inicioHash = separadorKid + 1;
+            }
+            Clave clave = Llavero.POR_KID.get(kid);
+            if (clave == null || decodificado.length - inicioHash != BYTES_HASH * 2) {
+                return null;
             }
-            
-            // Calcular hash esperado
-            String hashEsperado = calcularHash(examenIdStr);
-            
-            // Comparar hashes de forma segura (timing-safe)
-            if (hashEsperado.equals(hashRecibido)) {
-                return examenId;
+
+            // Calcular hash esperado y comparar en tiempo constante
+            byte[] esperado = new byte[BYTES_HASH * 2];
+            escribirHash(clave, decodificado, separador, esperado, 0);
+            byte[] recibido = new byte[BYTES_HASH * 2];
+            System.arraycopy(decodificado, inicioHash, recibido, 0, recibido.length);
+            if (!MessageDigest.isEqual(esperado, recibido)) {
+                return null; // Hash no coincide
             }
-            
-            return null; // Hash no coincide
-            
+
+            return leerCarga(new String(decodificado, 0, separador, StandardCharsets.US_ASCII));
+
         } catch (Exception e) {
-            // Si hay cualquier error (base64 inválido, etc.), el token es inválido
+            // Si hay cualquier error (base64 inválido, ID no numérico, etc.), el token es inválido
+            return null;
+        }
+    }
+
+    // Interpreta la parte firmada: 2.{id}.{propósito}.{vencimiento} o, en el formato original, solo {id}
+    private static TokenExamen leerCarga(String carga) {
+        if (!carga.startsWith(PREFIJO_V2)) {
+            return new TokenExamen(carga, Long.parseLong(carga), null, null);
+        }
+        String[] partes = carga.split("\\.");
+        if (partes.length != 4) {
             return null;
         }
+        Proposito proposito = Proposito.desdeCodigo(partes[2]);
+        if (proposito == null) {
+            return null;
+        }
+        return new TokenExamen(carga, Long.parseLong(partes[1]), proposito,
+            Instant.ofEpochSecond(Long.parseLong(partes[3], 36)));
     }
-    
+
     /**
-     * Calcula el hash HMAC-SHA256 de un valor
-     * 
-     * @param valor Valor a hashear
-     * @return Hash en hexadecimal
+     * Calcula el HMAC-SHA256 de los primeros {@code largo} bytes de {@code valor} y escribe sus
+     * primeros bytes en hexadecimal en {@code destino}, a partir de {@code desde}
      */
-    private static String calcularHash(String valor) {
-        try {
-            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
-            SecretKeySpec secretKeySpec = new SecretKeySpec(
-                getSecretKey().getBytes(StandardCharsets.UTF_8), 
-                HMAC_ALGORITHM
-            );
-            mac.init(secretKeySpec);
-            
-            byte[] hashBytes = mac.doFinal(valor.getBytes(StandardCharsets.UTF_8));
-            
-            // Convertir a hexadecimal
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hashBytes) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
+    private static void escribirHash(Clave clave, byte[] valor, int largo, byte[] destino, int desde) {
+        Mac mac = clave.mac.get();
+        mac.update(valor, 0, largo);
+        byte[] hashBytes = mac.doFinal();
+
+        // Convertir a hexadecimal (solo los primeros bytes, para un token más corto)
+        for (int i = 0; i < BYTES_HASH; i++) {
+            destino[desde + i * 2] = HEXADECIMAL[(hashBytes[i] >> 4) & 0x0f];
+            destino[desde + i * 2 + 1] = HEXADECIMAL[hashBytes[i] & 0x0f];
+        }
+    }
+
+    private static int ultimaPosicion(byte[] bytes, char caracter) {
+        for (int i = bytes.length - 1; i >= 0; i--) {
+            if (bytes[i] == caracter) {
+                return i;
             }
-            
-            // Tomar solo los primeros 16 caracteres para token más corto
-            return hexString.substring(0, Math.min(16, hexString.length()));
-            
-        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
-            throw new RuntimeException("Error al calcular hash", e);
         }
+        return -1;
     }
-    
+
     /**
      * Verifica si un token es válido para un examen específico
-     * 
+     *
      * @param token Token a validar
      * @param examenId ID del examen esperado
      * @return true si el token es válido para ese examen
@@ -154,5 +250,100 @@ public class ExamenTokenUtil {
         Long idExtraido = validarYExtraerId(token);
         return idExtraido != null && idExtraido.equals(examenId);
     }
-}
 
+    /**
+     * Contenido firmado de un token. En los tokens sin versión, propósito y vencimiento son null.
+     */
+    public static final class TokenExamen {
+        private final String carga;
+        private final Long examenId;
+        private final Proposito proposito;
+        private final Instant vencimiento;
+
+        private TokenExamen(String carga, Long examenId, Proposito proposito, Instant vencimiento) {
+            this.carga = carga;
+            this.examenId = examenId;
+            this.proposito = proposito;
+            this.vencimiento = vencimiento;
+        }
+
+        /** Parte firmada del token; identifica al link con independencia del secreto que lo firmó */
+        public String getCarga() { return carga; }
+        public Long getExamenId() { return examenId; }
+        public Proposito getProposito() { return proposito; }
+        public Instant getVencimiento() { return vencimiento; }
+
+        public boolean esVersionado() {
+            return proposito != null;
+        }
+
+        public boolean estaVencido(Instant ahora) {
+            return vencimiento != null && !ahora.isBefore(vencimiento);
+        }
+    }
+
+    /**
+     * Secreto de firma con su kid y un Mac ya inicializado por hilo
+     */
+    private static final class Clave {
+        private final byte[] prefijo;
+        private final ThreadLocal<Mac> mac;
+
+        private Clave(String kid, String secreto) {
+            this.prefijo = KID_ORIGINAL.equals(kid)
+                ? new byte[0]
+                : (kid + SEPARADOR_KID).getBytes(StandardCharsets.US_ASCII);
+            SecretKeySpec secretKeySpec = new SecretKeySpec(secreto.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+            this.mac = ThreadLocal.withInitial(() -> {
+                try {
+                    Mac instancia = Mac.getInstance(HMAC_ALGORITHM);
+                    instancia.init(secretKeySpec);
+                    return instancia;
+                } catch (GeneralSecurityException e) {
+                    throw new RuntimeException("Error al inicializar HMAC", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Secretos configurados, leídos una sola vez al primer uso
+     */
+    private static final class Llavero {
+        private static final Map<String, Clave> POR_KID;
+        private static final Clave VIGENTE;
+
+        static {
+            Map<String, Clave> claves = new HashMap<>();
+            String anteriores = leerConfiguracion("examen.token.secretos-anteriores", "EXAMEN_TOKEN_SECRETOS_ANTERIORES");
+            if (anteriores != null) {
+                for (String entrada : anteriores.split(",")) {
+                    int dosPuntos = entrada.indexOf(':');
+                    if (dosPuntos <= 0 || dosPuntos == entrada.length() - 1) {
+                        throw new IllegalStateException("Secreto anterior de token mal formado, se espera kid:secreto");
+                    }
+                    String kid = validarKid(entrada.substring(0, dosPuntos).trim());
+                    claves.put(kid, new Clave(kid, entrada.substring(dosPuntos + 1).trim()));
+                }
+            }
+
+            String kidVigente = leerConfiguracion("examen.token.kid", "EXAMEN_TOKEN_KID");
+            kidVigente = validarKid(kidVigente != null ? kidVigente.trim() : KID_ORIGINAL);
+            String secreto = leerConfiguracion("examen.token.secret", "EXAMEN_TOKEN_SECRET");
+            if (secreto == null) {
+                // Valor por defecto (cambiar en producción)
+                secreto = "default-secret-key-change-in-production-2024";
+            }
+            VIGENTE = new Clave(kidVigente, secreto);
+            claves.put(kidVigente, VIGENTE);
+            POR_KID = Map.copyOf(claves);
+        }
+
+        private static String validarKid(String kid) {
+            if (!kid.matches("[A-Za-z0-9]{1,8}")) {
+                throw new IllegalStateException("El kid de un secreto de token debe ser alfanumérico (1 a 8 caracteres): " + kid);
+            }
+            return kid;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.formulario.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Filtro de Bloom sobre huellas de al menos 16 bytes (por ejemplo un SHA-256): responde
+ * "seguro que no está" o "puede estar". Agregar y consultar no toman bloqueos, así que
+ * se puede consultar desde cualquier hilo mientras otro agrega elementos.
+ */
+public class FiltroBloom {
+
+    private final AtomicLongArray bits;
+    private final long cantidadBits;
+    private final int funciones;
+    private final int capacidad;
+    private final LongAdder elementos = new LongAdder();
+
+    /**
+     * @param capacidad elementos esperados
+     * @param probabilidadFalsoPositivo tasa de falsos positivos buscada con esa cantidad de elementos
+     */
+    public FiltroBloom(int capacidad, double probabilidadFalsoPositivo) {
+        if (capacidad <= 0 || probabilidadFalsoPositivo <= 0 || probabilidadFalsoPositivo >= 1) {
+            throw new IllegalArgumentException("Capacidad o probabilidad de falso positivo inválidas");
+        }
+        this.capacidad = capacidad;
+        double ln2 = Math.log(2);
+        long m = (long) Math.ceil(-capacidad * Math.log(probabilidadFalsoPositivo) / (ln2 * ln2));
+        this.cantidadBits = Math.max(64, ((m + 63) / 64) * 64);
+        this.funciones = Math.max(1, (int) Math.round((double) cantidadBits / capacidad * ln2));
+        this.bits = new AtomicLongArray((int) (cantidadBits / 64));
+    }
+
+    /**
+     * Agrega una huella
+     * @return false si ya estaba (todos sus bits ya encendidos); en ese caso no cuenta como elemento nuevo
+     */
+    public boolean agregar(byte[] huella) {
+        long h1 = primerHash(huella);
+        long h2 = segundoHash(huella);
+        boolean cambio = false;
+        for (int i = 0; i < funciones; i++) {
+            long bit = Math.floorMod(h1 + i * h2, cantidadBits);
+            int palabra = (int) (bit >>> 6);
+            long mascara = 1L << (bit & 63);
+            long actual;
+            do {
+                actual = bits.get(palabra);
+                if ((actual & mascara) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(palabra, actual, actual | mascara));
+            cambio |= (actual & mascara) == 0;
+        }
+        if (cambio) {
+            elementos.increment();
+        }
+        return cambio;
+    }
+
+    public boolean puedeContener(byte[] huella) {
+        long h1 = primerHash(huella);
+        long h2 = segundoHash(huella);
+        for (int i = 0; i < funciones; i++) {
+            long bit = Math.floorMod(h1 + i * h2, cantidadBits);
+            if ((bits.get((int) (bit >>> 6)) & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Elementos distintos agregados (aproximado: una huella nueva cuyos bits ya estaban no se cuenta) */
+    public long getElementos() {
+        return elementos.sum();
+    }
+
+    public int getCapacidad() {
+        return capacidad;
+    }
+
+    public long getCantidadBits() {
+        return cantidadBits;
+    }
+
+    public int getFunciones() {
+        return funciones;
+    }
+
+    // Doble hashing (Kirsch-Mitzenmacher): la huella ya es uniforme, se usan sus dos primeros longs
+    private static long primerHash(byte[] huella) {
+        return ByteBuffer.wrap(huella, 0, 8).getLong();
+    }
+
+    private static long segundoHash(byte[] huella) {
+        // Impar para que recorra todas las posiciones
+        return ByteBuffer.wrap(huella, 8, 8).getLong() | 1;
+    }
+}
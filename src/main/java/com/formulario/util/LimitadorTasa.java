@@ -0,0 +1,53 @@
+package com.formulario.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limitador de tasa de tipo token bucket: el balde se recarga a {@code permisosPorMinuto} y admite
+ * ráfagas de hasta {@code rafaga} permisos. Es seguro para usar desde varios hilos; los hilos que
+ * piden un permiso sin saldo esperan hasta que se recargue.
+ */
+public class LimitadorTasa {
+
+    private final double permisosPorNano;
+    private final double capacidad;
+
+    private double disponibles;
+    private long ultimaRecarga;
+
+    public LimitadorTasa(double permisosPorMinuto, int rafaga) {
+        if (permisosPorMinuto <= 0) {
+            throw new IllegalArgumentException("La tasa debe ser mayor a cero");
+        }
+        this.permisosPorNano = permisosPorMinuto / TimeUnit.MINUTES.toNanos(1);
+        this.capacidad = Math.max(1, rafaga);
+        // Arranca con un solo permiso para no descargar una ráfaga completa apenas se crea
+        this.disponibles = 1;
+        this.ultimaRecarga = System.nanoTime();
+    }
+
+    /**
+     * Toma un permiso, esperando lo necesario
+     * @throws InterruptedException si el hilo se interrumpe mientras espera
+     */
+    public void adquirir() throws InterruptedException {
+        while (true) {
+            long esperaNanos;
+            synchronized (this) {
+                recargar();
+                if (disponibles >= 1) {
+                    disponibles -= 1;
+                    return;
+                }
+                esperaNanos = (long) Math.ceil((1 - disponibles) / permisosPorNano);
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.max(esperaNanos, TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+    }
+
+    private void recargar() {
+        long ahora = System.nanoTime();
+        disponibles = Math.min(capacidad, disponibles + (ahora - ultimaRecarga) * permisosPorNano);
+        ultimaRecarga = ahora;
+    }
+}
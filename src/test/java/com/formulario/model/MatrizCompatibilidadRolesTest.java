@@ -0,0 +1,140 @@
+package com.formulario.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * La matriz tiene que dar el mismo puntaje y el mismo orden que RolProfesional.calcularCompatibilidad
+ */
+class MatrizCompatibilidadRolesTest {
+
+    @Test
+    void areaPonderadaSinMinimoDaCero() {
+        RolProfesional rol = rol(1L, null, 3, 60, 2);
+        Examen examen = examen(80, 80, 80, 80);
+
+        assertEquals(0.0, rol.calcularCompatibilidad(examen), 0.0);
+        assertTrue(new MatrizCompatibilidadRoles(1, List.of(rol)).mejores(examen, 5, null, null).isEmpty());
+    }
+
+    @Test
+    void areaNulaEnElExamen() {
+        // Sin mínimo en el área nula: se ignora; con mínimo: no cumple
+        RolProfesional sinMinimo = rol(1L, null, 3, 50, 1);
+        RolProfesional conMinimo = rol(2L, 40, 3, 50, 1);
+        Examen examen = examen(null, 70, 70, 70);
+
+        List<MatrizCompatibilidadRoles.PuntajeRol> mejores =
+            new MatrizCompatibilidadRoles(1, List.of(sinMinimo, conMinimo)).mejores(examen, 5, null, null);
+        assertEquals(1, mejores.size());
+        assertEquals(1L, mejores.get(0).getRolId());
+        assertEquals(sinMinimo.calcularCompatibilidad(examen), mejores.get(0).getCompatibilidad(), 1e-9);
+        assertEquals(0.0, conMinimo.calcularCompatibilidad(examen), 0.0);
+    }
+
+    @Test
+    void topeDe120PorAreaY100Final() {
+        RolProfesional rol = rol(1L, -300, 1, null, null);
+        Examen examen = examen(90, null, null, null);
+
+        double esperado = rol.calcularCompatibilidad(examen);
+        assertEquals(100.0, esperado, 0.0);
+        assertEquals(esperado, new MatrizCompatibilidadRoles(1, List.of(rol)).mejores(examen, 1, null, null)
+            .get(0).getCompatibilidad(), 0.0);
+    }
+
+    @Test
+    void empatesSeOrdenanPorIdAscendente() {
+        List<RolProfesional> roles = List.of(rol(30L, 50, 1, null, null), rol(10L, 50, 1, null, null),
+            rol(20L, 50, 1, null, null));
+        List<MatrizCompatibilidadRoles.PuntajeRol> mejores =
+            new MatrizCompatibilidadRoles(1, roles).mejores(examen(60, 60, 60, 60), 2, null, null);
+
+        assertEquals(List.of(10L, 20L), mejores.stream().map(MatrizCompatibilidadRoles.PuntajeRol::getRolId)
+            .collect(Collectors.toList()));
+    }
+
+    @Test
+    void coincideConElCalculoOriginalEnCatalogosAleatorios() {
+        Random random = new Random(20240501L);
+        for (int caso = 0; caso < 300; caso++) {
+            List<RolProfesional> roles = new ArrayList<>();
+            int cantidad = 1 + random.nextInt(40);
+            for (int i = 0; i < cantidad; i++) {
+                RolProfesional rol = new RolProfesional("Rol " + i, "", random.nextBoolean() ? "JUNIOR" : "SENIOR",
+                    random.nextBoolean() ? "DATOS" : "DESARROLLO");
+                rol.setId((long) (i * 7 + 1));
+                rol.setMinLogica(minimo(random));
+                rol.setMinMatematica(minimo(random));
+                rol.setMinCreatividad(minimo(random));
+                rol.setMinProgramacion(minimo(random));
+                rol.setMinPromedio(random.nextInt(4) == 0 ? random.nextInt(80) : null);
+                rol.setPesoLogica(peso(random));
+                rol.setPesoMatematica(peso(random));
+                rol.setPesoCreatividad(peso(random));
+                rol.setPesoProgramacion(peso(random));
+                roles.add(rol);
+            }
+            Examen examen = examen(puntaje(random), puntaje(random), puntaje(random), puntaje(random));
+            int k = 1 + random.nextInt(10);
+            String categoria = random.nextInt(3) == 0 ? "DATOS" : null;
+
+            List<RolProfesional> esperados = roles.stream()
+                .filter(r -> categoria == null || categoria.equals(r.getCategoria()))
+                .filter(r -> r.calcularCompatibilidad(examen) > 0)
+                .sorted(Comparator.comparingDouble((RolProfesional r) -> -r.calcularCompatibilidad(examen))
+                    .thenComparing(RolProfesional::getId))
+                .limit(k)
+                .collect(Collectors.toList());
+            List<MatrizCompatibilidadRoles.PuntajeRol> obtenidos =
+                new MatrizCompatibilidadRoles(caso, roles).mejores(examen, k, categoria, null);
+
+            assertEquals(esperados.size(), obtenidos.size(), "caso " + caso);
+            for (int i = 0; i < esperados.size(); i++) {
+                assertEquals(esperados.get(i).getId().longValue(), obtenidos.get(i).getRolId(), "caso " + caso + ", posición " + i);
+                assertEquals(esperados.get(i).calcularCompatibilidad(examen), obtenidos.get(i).getCompatibilidad(), 1e-9);
+            }
+        }
+    }
+
+    // Mínimo y peso de lógica y matemática; creatividad y programación quedan sin mínimo ni peso
+    private static RolProfesional rol(Long id, Integer minLogica, Integer pesoLogica, Integer minMatematica, Integer pesoMatematica) {
+        RolProfesional rol = new RolProfesional("Rol " + id, "", "JUNIOR", "DESARROLLO");
+        rol.setId(id);
+        rol.setMinLogica(minLogica);
+        rol.setPesoLogica(pesoLogica);
+        rol.setMinMatematica(minMatematica);
+        rol.setPesoMatematica(pesoMatematica);
+        return rol;
+    }
+
+    private static Examen examen(Integer logica, Integer matematica, Integer creatividad, Integer programacion) {
+        Examen examen = new Examen();
+        examen.setLogica(logica);
+        examen.setMatematica(matematica);
+        examen.setCreatividad(creatividad);
+        examen.setProgramacion(programacion);
+        return examen;
+    }
+
+    private static Integer minimo(Random random) {
+        return random.nextInt(3) == 0 ? null : random.nextInt(90);
+    }
+
+    private static Integer peso(Random random) {
+        int valor = random.nextInt(7) - 1;
+        return valor == 5 ? null : valor;
+    }
+
+    private static Integer puntaje(Random random) {
+        return random.nextInt(8) == 0 ? null : random.nextInt(101);
+    }
+}
@@ -0,0 +1,71 @@
+package com.formulario.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ExportacionServiceTest {
+
+    @Test
+    void soloEntreComillasCuandoHaceFalta() throws Exception {
+        assertEquals("Juan Pérez", campo("Juan Pérez"));
+        assertEquals("", campo(""));
+        assertEquals("\"Pérez, Juan\"", campo("Pérez, Juan"));
+        assertEquals("\"dijo \"\"hola\"\"\"", campo("dijo \"hola\""));
+        assertEquals("\"línea 1\nlínea 2\"", campo("línea 1\nlínea 2"));
+        assertEquals("\"fin\r\"", campo("fin\r"));
+    }
+
+    @Test
+    void unaFilaSeLeeIgualQueSeEscribio() throws Exception {
+        List<String> valores = List.of("simple", "con, coma", "\"entre comillas\"", "a\r\nb", "", "ñandú;x");
+        StringWriter writer = new StringWriter();
+        for (int i = 0; i < valores.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            ExportacionService.escribirCampoCsv(writer, valores.get(i));
+        }
+
+        assertEquals(valores, leerFila(writer.toString()));
+    }
+
+    private static String campo(String valor) throws Exception {
+        StringWriter writer = new StringWriter();
+        ExportacionService.escribirCampoCsv(writer, valor);
+        return writer.toString();
+    }
+
+    // Lector RFC 4180 mínimo para una sola fila
+    private static List<String> leerFila(String linea) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"' && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    actual.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreComillas = false;
+                } else {
+                    actual.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == ',') {
+                campos.add(actual.toString());
+                actual.setLength(0);
+            } else {
+                actual.append(c);
+            }
+        }
+        campos.add(actual.toString());
+        return campos;
+    }
+}
@@ -0,0 +1,138 @@
+package com.formulario.service;
+
+import com.formulario.model.BancoPreguntas;
+import com.formulario.model.Pregunta;
+import com.formulario.model.Pregunta.AreaConocimiento;
+import com.formulario.model.PreguntaBanco;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MuestreadorPreguntasTest {
+
+    private final MuestreadorPreguntas muestreador = new MuestreadorPreguntas();
+
+    @Test
+    void respetaLasCuotasSinRepetir() {
+        BancoPreguntas banco = banco(Map.of(AreaConocimiento.LOGICA, 50, AreaConocimiento.MATEMATICA, 5,
+            AreaConocimiento.CREATIVIDAD, 8, AreaConocimiento.PROGRAMACION, 0));
+        Map<AreaConocimiento, Integer> cuotas = new EnumMap<>(AreaConocimiento.class);
+        cuotas.put(AreaConocimiento.LOGICA, 10);
+        cuotas.put(AreaConocimiento.MATEMATICA, 8);
+
+        for (int i = 0; i < 2000; i++) {
+            List<PreguntaBanco> examen = muestreador.muestrear(banco, cuotas, null);
+            Map<AreaConocimiento, Integer> porArea = contarPorArea(examen);
+            // Cuota mayor que el área: se toman todas; área sin cuota: valor por defecto
+            assertEquals(10, porArea.getOrDefault(AreaConocimiento.LOGICA, 0));
+            assertEquals(5, porArea.getOrDefault(AreaConocimiento.MATEMATICA, 0));
+            assertEquals(8, porArea.getOrDefault(AreaConocimiento.CREATIVIDAD, 0));
+            assertEquals(0, porArea.getOrDefault(AreaConocimiento.PROGRAMACION, 0));
+            assertEquals(examen.size(), idsDistintos(examen));
+        }
+    }
+
+    @Test
+    void seleccionUniformeSinSesgo() {
+        BancoPreguntas banco = banco(Map.of(AreaConocimiento.LOGICA, 10));
+        Map<AreaConocimiento, Integer> cuotas = cuotaSoloLogica(3);
+        int sorteos = 30000;
+        int[] apariciones = new int[10];
+        for (int i = 0; i < sorteos; i++) {
+            for (PreguntaBanco pregunta : muestreador.muestrear(banco, cuotas, null)) {
+                apariciones[(int) (pregunta.getId() % 1000)]++;
+            }
+        }
+        // Cada pregunta sale en 3/10 de los sorteos (9000); tolerancia ~7 desvíos
+        for (int cantidad : apariciones) {
+            assertTrue(Math.abs(cantidad - 9000) < 550, "apariciones fuera de rango: " + cantidad);
+        }
+    }
+
+    @Test
+    void ponderaPorDificultad() {
+        // 5 preguntas de dificultad 1 y 5 de dificultad 3; la 3 pesa 4 veces más
+        BancoPreguntas banco = banco(Map.of(AreaConocimiento.LOGICA, 10));
+        Map<AreaConocimiento, Integer> cuotas = cuotaSoloLogica(1);
+        int dificiles = 0;
+        int sorteos = 20000;
+        for (int i = 0; i < sorteos; i++) {
+            PreguntaBanco pregunta = muestreador.muestrear(banco, cuotas, Map.of(1, 1.0, 3, 4.0)).get(0);
+            if (pregunta.getDificultad() == 3) {
+                dificiles++;
+            }
+        }
+        double proporcion = (double) dificiles / sorteos;
+        assertTrue(Math.abs(proporcion - 0.8) < 0.02, "proporción de difíciles: " + proporcion);
+    }
+
+    @Test
+    void pesosMuyConcentradosNoRepitenPreguntas() {
+        // Una pregunta acapara casi todo el peso: el sorteo por rechazo agota los intentos y pasa al exacto
+        BancoPreguntas banco = banco(Map.of(AreaConocimiento.LOGICA, 10));
+        Map<AreaConocimiento, Integer> cuotas = cuotaSoloLogica(6);
+        for (int i = 0; i < 500; i++) {
+            List<PreguntaBanco> examen = muestreador.muestrear(banco, cuotas, Map.of(1, 1e-9, 3, 1e9));
+            assertEquals(6, examen.size());
+            assertEquals(6, idsDistintos(examen));
+        }
+    }
+
+    @Test
+    void permutarDevuelvePermutaciones() {
+        for (int cantidad = 0; cantidad < 12; cantidad++) {
+            int[] permutacion = muestreador.permutar(cantidad);
+            Set<Integer> vistos = new HashSet<>();
+            for (int posicion : permutacion) {
+                assertTrue(posicion >= 0 && posicion < cantidad);
+                vistos.add(posicion);
+            }
+            assertEquals(cantidad, vistos.size());
+        }
+    }
+
+    private static Map<AreaConocimiento, Integer> cuotaSoloLogica(int cuota) {
+        Map<AreaConocimiento, Integer> cuotas = new EnumMap<>(AreaConocimiento.class);
+        for (AreaConocimiento area : AreaConocimiento.values()) {
+            cuotas.put(area, 0);
+        }
+        cuotas.put(AreaConocimiento.LOGICA, cuota);
+        return cuotas;
+    }
+
+    // IDs {ordinal del área}*1000 + i; dificultad 1 en la primera mitad de cada área y 3 en la segunda
+    private static BancoPreguntas banco(Map<AreaConocimiento, Integer> cantidades) {
+        List<Pregunta> preguntas = new ArrayList<>();
+        cantidades.forEach((area, cantidad) -> {
+            for (int i = 0; i < cantidad; i++) {
+                Pregunta pregunta = new Pregunta("Pregunta " + i, area, 1);
+                pregunta.setId(area.ordinal() * 1000L + i);
+                pregunta.setDificultad(i < cantidad / 2 ? 1 : 3);
+                preguntas.add(pregunta);
+            }
+        });
+        return new BancoPreguntas(1, preguntas);
+    }
+
+    private static Map<AreaConocimiento, Integer> contarPorArea(List<PreguntaBanco> preguntas) {
+        Map<AreaConocimiento, Integer> porArea = new EnumMap<>(AreaConocimiento.class);
+        for (PreguntaBanco pregunta : preguntas) {
+            porArea.merge(pregunta.getAreaConocimiento(), 1, Integer::sum);
+        }
+        return porArea;
+    }
+
+    private static int idsDistintos(List<PreguntaBanco> preguntas) {
+        Set<Long> ids = new HashSet<>();
+        preguntas.forEach(pregunta -> ids.add(pregunta.getId()));
+        return ids.size();
+    }
+}
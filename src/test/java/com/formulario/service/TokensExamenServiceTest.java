@@ -0,0 +1,140 @@
+package com.formulario.service;
+
+import com.formulario.model.TokenRevocado;
+import com.formulario.repository.TokenRevocadoRepository;
+import com.formulario.util.ExamenTokenUtil;
+import com.formulario.util.ExamenTokenUtil.Proposito;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TokensExamenServiceTest {
+
+    private final List<TokenRevocado> tabla = new ArrayList<>();
+    private TokensExamenService servicio;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        servicio = new TokensExamenService();
+        asignar("tokenRevocadoRepository", repositorioEnMemoria());
+        asignar("vigenciaDiasExamen", 30);
+        asignar("vigenciaDiasReintento", 90);
+        asignar("vigenciaDiasResultado", 30);
+        asignar("capacidadRevocaciones", 1000);
+        asignar("solapeSegundos", 300);
+        asignar("reconstruccionMinutos", 30);
+        asignar("aceptarSinVersion", true);
+    }
+
+    @Test
+    void elTokenSoloValeParaSuProposito() {
+        String token = servicio.generar(15L, Proposito.EXAMEN);
+
+        assertEquals(15L, servicio.validar(token, Proposito.EXAMEN));
+        assertNull(servicio.validar(token, Proposito.REINTENTO));
+        assertNull(servicio.validar(token + "x", Proposito.EXAMEN));
+    }
+
+    @Test
+    void revocarUnLinkNoAfectaALosDemas() {
+        String examen = servicio.generar(15L, Proposito.EXAMEN);
+        String reintento = servicio.generar(15L, Proposito.REINTENTO);
+
+        servicio.revocar("https://ejemplo.com/examen/" + examen, "se filtró", "admin");
+
+        assertNull(servicio.validar(examen, Proposito.EXAMEN));
+        assertEquals(15L, servicio.validar(reintento, Proposito.REINTENTO));
+        assertThrows(IllegalArgumentException.class, () -> servicio.revocar("basura", null, "admin"));
+    }
+
+    @Test
+    void tokensSinVersionEIdNumerico() throws Exception {
+        String sinVersion = ExamenTokenUtil.generarToken(20L);
+        assertEquals(20L, servicio.validar(sinVersion, Proposito.RESULTADO));
+        assertEquals(20L, servicio.validarIdSinToken(20L));
+
+        // Con un link revocado, el examen ya no se puede abrir por ID
+        servicio.revocar(servicio.generar(20L, Proposito.EXAMEN), null, "admin");
+        assertNull(servicio.validarIdSinToken(20L));
+
+        asignar("aceptarSinVersion", false);
+        assertNull(servicio.validar(sinVersion, Proposito.RESULTADO));
+        assertNull(servicio.validarIdSinToken(21L));
+    }
+
+    @Test
+    void revocacionDeOtraInstanciaConFechaAtrasadaSeCargaPorElSolape() throws Exception {
+        String token = servicio.generar(30L, Proposito.EXAMEN);
+        assertEquals(30L, servicio.validar(token, Proposito.EXAMEN));
+
+        // Otra instancia revoca el link con un reloj atrasado dos minutos respecto de la última carga
+        TokensExamenService otraInstancia = new TokensExamenService();
+        Field repositorio = TokensExamenService.class.getDeclaredField("tokenRevocadoRepository");
+        repositorio.setAccessible(true);
+        repositorio.set(otraInstancia, repositorio.get(servicio));
+        TokenRevocado revocacion = otraInstancia.revocar(token, null, "admin");
+        revocacion.setFecha(LocalDateTime.now().minusMinutes(2));
+
+        Method cargar = TokensExamenService.class.getDeclaredMethod("cargarRevocaciones");
+        cargar.setAccessible(true);
+        cargar.invoke(servicio);
+
+        assertNull(servicio.validar(token, Proposito.EXAMEN));
+    }
+
+    private void asignar(String campo, Object valor) throws Exception {
+        Field field = TokensExamenService.class.getDeclaredField(campo);
+        field.setAccessible(true);
+        field.set(servicio, valor);
+    }
+
+    // Repositorio en memoria con las consultas que usa el servicio
+    private TokenRevocadoRepository repositorioEnMemoria() {
+        return (TokenRevocadoRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] {TokenRevocadoRepository.class}, (proxy, metodo, argumentos) -> {
+                switch (metodo.getName()) {
+                    case "save":
+                        TokenRevocado nuevo = (TokenRevocado) argumentos[0];
+                        if (tabla.stream().anyMatch(t -> t.getHuella().equals(nuevo.getHuella()))) {
+                            throw new org.springframework.dao.DataIntegrityViolationException("huella duplicada");
+                        }
+                        nuevo.setId((long) tabla.size() + 1);
+                        tabla.add(nuevo);
+                        return nuevo;
+                    case "existsByHuella":
+                        return tabla.stream().anyMatch(t -> t.getHuella().equals(argumentos[0]));
+                    case "existsByExamenId":
+                        return tabla.stream().anyMatch(t -> t.getExamenId().equals(argumentos[0]));
+                    case "findHuellasDesde":
+                        LocalDateTime desde = (LocalDateTime) argumentos[0];
+                        return filas(tabla.stream().filter(t -> !t.getFecha().isBefore(desde)).toList());
+                    case "findTodasLasHuellas":
+                        return filas(tabla);
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == argumentos[0];
+                    case "toString":
+                        return "TokenRevocadoRepository en memoria";
+                    default:
+                        throw new UnsupportedOperationException(metodo.getName());
+                }
+            });
+    }
+
+    private static List<Object[]> filas(List<TokenRevocado> revocaciones) {
+        List<Object[]> filas = new ArrayList<>();
+        revocaciones.forEach(t -> filas.add(new Object[] {t.getFecha(), t.getHuella()}));
+        return filas;
+    }
+}
@@ -0,0 +1,84 @@
+package com.formulario.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CacheAcotadaTest {
+
+    @Test
+    void desalojaLaMenosUsada() {
+        CacheAcotada<String, Integer> cache = new CacheAcotada<>(2);
+        cache.guardar("a", 1);
+        cache.guardar("b", 2);
+        // Leer "a" la vuelve la más reciente: al guardar "c" sale "b"
+        assertEquals(1, cache.obtener("a"));
+        cache.guardar("c", 3);
+
+        assertNull(cache.obtener("b"));
+        assertEquals(1, cache.obtener("a"));
+        assertEquals(3, cache.obtener("c"));
+        assertEquals(2, cache.tamanio());
+        assertEquals(1L, cache.getDesalojos());
+    }
+
+    @Test
+    void lasEntradasExpiranPorTiempo() throws Exception {
+        CacheAcotada<String, Integer> cache = new CacheAcotada<>(10, Duration.ofMillis(30));
+        cache.guardar("general", 1);
+        cache.guardar("corta", 2, Duration.ofMillis(1));
+        cache.guardar("eterna", 3, null);
+        Thread.sleep(10);
+
+        assertNull(cache.obtener("corta"));
+        assertEquals(1, cache.obtener("general"));
+
+        Thread.sleep(40);
+        assertNull(cache.obtener("general"));
+        assertEquals(3, cache.obtener("eterna"));
+        assertEquals(1, cache.tamanio());
+    }
+
+    @Test
+    void invalidarSiBorraSoloLasClavesQueCumplen() {
+        CacheAcotada<String, Integer> cache = new CacheAcotada<>(10);
+        cache.guardar("rol:1", 1);
+        cache.guardar("rol:2", 2);
+        cache.guardar("examen:1", 3);
+
+        cache.invalidarSi(clave -> clave.startsWith("rol:"));
+
+        assertNull(cache.obtener("rol:1"));
+        assertNull(cache.obtener("rol:2"));
+        assertEquals(3, cache.obtener("examen:1"));
+    }
+
+    @Test
+    void estadisticasCuentanAciertosYFallos() {
+        CacheAcotada<String, Integer> cache = new CacheAcotada<>(1);
+        cache.guardar("a", 1);
+        cache.obtener("a");
+        cache.obtener("a");
+        cache.obtener("a");
+        cache.obtener("x");
+        cache.guardar("b", 2);
+
+        Map<String, Object> estadisticas = cache.estadisticas();
+        assertEquals(1, estadisticas.get("entradas"));
+        assertEquals(1, estadisticas.get("maxEntradas"));
+        assertEquals(3L, estadisticas.get("aciertos"));
+        assertEquals(1L, estadisticas.get("fallos"));
+        assertEquals(1L, estadisticas.get("desalojos"));
+        assertEquals(75.0, estadisticas.get("tasaAciertos"));
+    }
+
+    @Test
+    void capacidadInvalida() {
+        assertThrows(IllegalArgumentException.class, () -> new CacheAcotada<String, Integer>(0));
+    }
+}
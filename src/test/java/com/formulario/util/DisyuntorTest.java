@@ -0,0 +1,104 @@
+package com.formulario.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DisyuntorTest {
+
+    @Test
+    void abreTrasLosFallosSeguidos() {
+        Disyuntor disyuntor = new Disyuntor("prueba", 3, Duration.ofMinutes(1));
+
+        disyuntor.registrarFallo();
+        disyuntor.registrarFallo();
+        // Un éxito en el medio reinicia la cuenta
+        disyuntor.registrarExito();
+        disyuntor.registrarFallo();
+        disyuntor.registrarFallo();
+        assertEquals(Disyuntor.Estado.CERRADO, disyuntor.getEstado());
+        assertTrue(disyuntor.permitir());
+
+        disyuntor.registrarFallo();
+        assertEquals(Disyuntor.Estado.ABIERTO, disyuntor.getEstado());
+        assertFalse(disyuntor.permitir());
+        assertFalse(disyuntor.permitir());
+        assertEquals(2L, disyuntor.estadisticas().get("rechazadas"));
+    }
+
+    @Test
+    void semiabiertoDejaPasarUnaSolaPruebaYSeCierraSiSaleBien() throws Exception {
+        Disyuntor disyuntor = abierto(Duration.ofMillis(20));
+        Thread.sleep(30);
+
+        assertTrue(disyuntor.permitir());
+        assertEquals(Disyuntor.Estado.SEMIABIERTO, disyuntor.getEstado());
+        assertFalse(disyuntor.permitir());
+
+        disyuntor.registrarExito();
+        assertEquals(Disyuntor.Estado.CERRADO, disyuntor.getEstado());
+        assertTrue(disyuntor.permitir());
+        assertTrue(disyuntor.permitir());
+    }
+
+    @Test
+    void unFalloEnLaPruebaVuelveAAbrir() throws Exception {
+        Disyuntor disyuntor = abierto(Duration.ofMillis(20));
+        Thread.sleep(30);
+
+        assertTrue(disyuntor.permitir());
+        disyuntor.registrarFallo();
+        assertEquals(Disyuntor.Estado.ABIERTO, disyuntor.getEstado());
+        assertFalse(disyuntor.permitir());
+    }
+
+    @Test
+    void conVariosHilosSoloUnoObtieneLaPrueba() throws Exception {
+        Disyuntor disyuntor = abierto(Duration.ofMillis(20));
+        Thread.sleep(30);
+
+        int hilos = 16;
+        ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<Boolean>> resultados = new ArrayList<>();
+        for (int i = 0; i < hilos; i++) {
+            resultados.add(ejecutor.submit(() -> {
+                largada.await();
+                return disyuntor.permitir();
+            }));
+        }
+        largada.countDown();
+        int permitidas = 0;
+        for (Future<Boolean> resultado : resultados) {
+            if (resultado.get()) {
+                permitidas++;
+            }
+        }
+        ejecutor.shutdown();
+
+        assertEquals(1, permitidas);
+    }
+
+    @Test
+    void fallosParaAbrirInvalido() {
+        assertThrows(IllegalArgumentException.class, () -> new Disyuntor("prueba", 0, Duration.ofSeconds(1)));
+    }
+
+    private static Disyuntor abierto(Duration tiempoAbierto) {
+        Disyuntor disyuntor = new Disyuntor("prueba", 1, tiempoAbierto);
+        disyuntor.registrarFallo();
+        assertEquals(Disyuntor.Estado.ABIERTO, disyuntor.getEstado());
+        return disyuntor;
+    }
+}
@@ -0,0 +1,160 @@
+package com.formulario.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Los secretos se leen una sola vez por clase cargada, así que cada escenario carga ExamenTokenUtil
+ * en un class loader propio con sus propiedades de sistema.
+ */
+class ExamenTokenUtilTest {
+
+    private static final String SECRETO = "secreto-de-prueba";
+    private static final String SECRETO_NUEVO = "secreto-rotado";
+
+    @Test
+    void tokenConKidOriginalEsIdenticoAlFormatoAnterior() throws Exception {
+        Token util = cargar(Map.of("examen.token.secret", SECRETO));
+        for (long id : new long[] {1L, 42L, 123456789L, Long.MAX_VALUE}) {
+            assertEquals(tokenFormatoAnterior(id, SECRETO), util.generar(id));
+            assertEquals(id, util.validar(tokenFormatoAnterior(id, SECRETO)));
+        }
+    }
+
+    @Test
+    void tokenDelKidAnteriorSigueValiendoTrasRotar() throws Exception {
+        String anterior = tokenFormatoAnterior(42L, SECRETO);
+
+        Map<String, String> rotado = new HashMap<>();
+        rotado.put("examen.token.secret", SECRETO_NUEVO);
+        rotado.put("examen.token.kid", "k2");
+        rotado.put("examen.token.secretos-anteriores", "0:" + SECRETO);
+        Token util = cargar(rotado);
+
+        assertEquals(42L, util.validar(anterior));
+        String nuevo = util.generar(42L);
+        assertNotEquals(anterior, nuevo);
+        assertTrue(new String(Base64.getUrlDecoder().decode(nuevo), StandardCharsets.US_ASCII).startsWith("42-k2."));
+        assertEquals(42L, util.validar(nuevo));
+
+        // Sin el secreto anterior configurado, el link viejo deja de valer
+        Token sinAnterior = cargar(Map.of("examen.token.secret", SECRETO_NUEVO, "examen.token.kid", "k2"));
+        assertNull(sinAnterior.validar(anterior));
+        assertEquals(42L, sinAnterior.validar(nuevo));
+    }
+
+    @Test
+    void tokenAlteradoOVencidoNoValida() throws Exception {
+        Token util = cargar(Map.of("examen.token.secret", SECRETO));
+        String token = util.generar(7L);
+        String otroId = Base64.getUrlEncoder().withoutPadding().encodeToString(
+            new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII)
+                .replaceFirst("^7-", "8-").getBytes(StandardCharsets.US_ASCII));
+        assertNull(util.validar(otroId));
+        assertNull(util.validar("no-es-un-token"));
+
+        Instant futuro = Instant.now().plus(1, ChronoUnit.DAYS);
+        assertEquals(7L, util.validar(util.generarVersionado(7L, "EXAMEN", futuro)));
+        Instant pasado = Instant.now().minus(1, ChronoUnit.HOURS);
+        assertNull(util.validar(util.generarVersionado(7L, "EXAMEN", pasado)));
+    }
+
+    // Implementación original (antes del Mac por hilo y de los kid), como referencia del formato
+    private static String tokenFormatoAnterior(long examenId, String secreto) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secreto.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        byte[] hashBytes = mac.doFinal(Long.toString(examenId).getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder();
+        for (byte b : hashBytes) {
+            String h = Integer.toHexString(0xff & b);
+            if (h.length() == 1) {
+                hex.append('0');
+            }
+            hex.append(h);
+        }
+        String token = examenId + "-" + hex.substring(0, 16);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Token cargar(Map<String, String> propiedades) throws Exception {
+        URL clases = ExamenTokenUtil.class.getProtectionDomain().getCodeSource().getLocation();
+        ClassLoader loader = new URLClassLoader(new URL[] {clases}, ClassLoader.getPlatformClassLoader());
+        Class<?> clase = Class.forName(ExamenTokenUtil.class.getName(), true, loader);
+        Class<?> proposito = Class.forName(ExamenTokenUtil.Proposito.class.getName(), true, loader);
+        return new Token(clase, proposito, propiedades);
+    }
+
+    /**
+     * ExamenTokenUtil cargado aparte; las propiedades se aplican en la primera llamada, que es
+     * cuando se inicializan los secretos
+     */
+    private static final class Token {
+        private final Class<?> clase;
+        private final Class<?> proposito;
+        private Map<String, String> propiedades;
+
+        private Token(Class<?> clase, Class<?> proposito, Map<String, String> propiedades) {
+            this.clase = clase;
+            this.proposito = proposito;
+            this.propiedades = propiedades;
+        }
+
+        String generar(long examenId) throws Exception {
+            return (String) invocar("generarToken", new Class<?>[] {Long.class}, examenId);
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        String generarVersionado(long examenId, String nombreProposito, Instant vencimiento) throws Exception {
+            Object valor = Enum.valueOf((Class) proposito, nombreProposito);
+            return (String) invocar("generarToken", new Class<?>[] {Long.class, proposito, Instant.class},
+                examenId, valor, vencimiento);
+        }
+
+        Long validar(String token) throws Exception {
+            return (Long) invocar("validarYExtraerId", new Class<?>[] {String.class}, token);
+        }
+
+        private Object invocar(String metodo, Class<?>[] tipos, Object... argumentos) throws Exception {
+            if (propiedades == null) {
+                return clase.getMethod(metodo, tipos).invoke(null, argumentos);
+            }
+            Map<String, String> previas = new HashMap<>();
+            for (String clave : new String[] {"examen.token.secret", "examen.token.kid", "examen.token.secretos-anteriores"}) {
+                previas.put(clave, System.getProperty(clave));
+                String valor = propiedades.get(clave);
+                if (valor != null) {
+                    System.setProperty(clave, valor);
+                } else {
+                    System.clearProperty(clave);
+                }
+            }
+            try {
+                return clase.getMethod(metodo, tipos).invoke(null, argumentos);
+            } finally {
+                previas.forEach((clave, valor) -> {
+                    if (valor == null) {
+                        System.clearProperty(clave);
+                    } else {
+                        System.setProperty(clave, valor);
+                    }
+                });
+                propiedades = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.formulario.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FiltroBloomTest {
+
+    @Test
+    void sinFalsosNegativosYConLaTasaDeFalsosPositivosBuscada() throws Exception {
+        FiltroBloom filtro = new FiltroBloom(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filtro.agregar(huella(i));
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(filtro.puedeContener(huella(i)), "falso negativo: " + i);
+        }
+
+        int falsosPositivos = 0;
+        int consultas = 100000;
+        for (int i = 0; i < consultas; i++) {
+            if (filtro.puedeContener(huella(1_000_000 + i))) {
+                falsosPositivos++;
+            }
+        }
+        double tasa = (double) falsosPositivos / consultas;
+        assertTrue(tasa < 0.015, "tasa de falsos positivos: " + tasa);
+    }
+
+    @Test
+    void agregarDosVecesNoCuentaDosElementos() throws Exception {
+        FiltroBloom filtro = new FiltroBloom(100, 0.01);
+        assertTrue(filtro.agregar(huella(1)));
+        assertFalse(filtro.agregar(huella(1)));
+        assertTrue(filtro.agregar(huella(2)));
+        assertEquals(2, filtro.getElementos());
+    }
+
+    @Test
+    void parametrosInvalidos() {
+        assertThrows(IllegalArgumentException.class, () -> new FiltroBloom(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new FiltroBloom(10, 0));
+        assertThrows(IllegalArgumentException.class, () -> new FiltroBloom(10, 1));
+    }
+
+    private static byte[] huella(long valor) throws Exception {
+        return MessageDigest.getInstance("SHA-256").digest(ByteBuffer.allocate(8).putLong(valor).array());
+    }
+}
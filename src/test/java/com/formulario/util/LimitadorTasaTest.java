@@ -0,0 +1,68 @@
+package com.formulario.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LimitadorTasaTest {
+
+    // 6000 por minuto: un permiso cada 10 ms
+    private static final double TASA = 6000;
+
+    @Test
+    void arrancaConUnSoloPermiso() throws Exception {
+        LimitadorTasa limitador = new LimitadorTasa(TASA, 10);
+
+        long inicio = System.nanoTime();
+        limitador.adquirir();
+        long primero = System.nanoTime() - inicio;
+        limitador.adquirir();
+        long segundo = System.nanoTime() - inicio;
+
+        assertTrue(primero < TimeUnit.MILLISECONDS.toNanos(5), "el primer permiso esperó " + primero + " ns");
+        assertTrue(segundo >= TimeUnit.MILLISECONDS.toNanos(8), "el segundo permiso no esperó la recarga: " + segundo + " ns");
+    }
+
+    @Test
+    void respetaLaTasaSostenida() throws Exception {
+        LimitadorTasa limitador = new LimitadorTasa(TASA, 1);
+        limitador.adquirir();
+
+        long inicio = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            limitador.adquirir();
+        }
+        long transcurrido = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+        assertTrue(transcurrido >= 190, "20 permisos en " + transcurrido + " ms");
+        assertTrue(transcurrido < 1000, "20 permisos en " + transcurrido + " ms");
+    }
+
+    @Test
+    void laRafagaAcumulaHastaLaCapacidad() throws Exception {
+        LimitadorTasa limitador = new LimitadorTasa(TASA, 5);
+        limitador.adquirir();
+        // En 200 ms se recargarían 20 permisos, pero el balde se llena con 5
+        Thread.sleep(200);
+
+        long inicio = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            limitador.adquirir();
+        }
+        long rafaga = System.nanoTime() - inicio;
+        limitador.adquirir();
+        long conSexto = System.nanoTime() - inicio;
+
+        assertTrue(rafaga < TimeUnit.MILLISECONDS.toNanos(5), "la ráfaga esperó " + rafaga + " ns");
+        assertTrue(conSexto >= TimeUnit.MILLISECONDS.toNanos(8), "el sexto permiso no esperó: " + conSexto + " ns");
+    }
+
+    @Test
+    void tasaInvalida() {
+        assertThrows(IllegalArgumentException.class, () -> new LimitadorTasa(0, 5));
+        assertThrows(IllegalArgumentException.class, () -> new LimitadorTasa(-1, 5));
+    }
+}